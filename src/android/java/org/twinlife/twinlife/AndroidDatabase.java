@@ -27,10 +27,23 @@ public class AndroidDatabase implements Database {
     private static final String LOG_TAG = "AndroidDatabase";
     private static final boolean DEBUG = false;
     private final SQLiteDatabase mDatabase;
+    private final DatabaseStatementCache<AndroidDatabaseStatement.Program> mStatements;
 
     AndroidDatabase(@NonNull SQLiteDatabase database) {
 
+        this(database, DatabaseStatementCache.DEFAULT_SIZE);
+    }
+
+    /**
+     * Create the database with a statement cache of the given size (0 disables the cache).
+     *
+     * @param database the SQLcipher database.
+     * @param cacheSize the max number of compiled statements kept in the cache.
+     */
+    AndroidDatabase(@NonNull SQLiteDatabase database, int cacheSize) {
+
         mDatabase = database;
+        mStatements = new DatabaseStatementCache<>(cacheSize);
     }
 
     @Override
@@ -99,7 +112,7 @@ public class AndroidDatabase implements Database {
     }
 
     @Override
-    public void execSQLWithArgs(@NonNull String sql, String[] args) throws DatabaseException {
+    public void execSQLWithArgs(@NonNull String sql, Object[] args) throws DatabaseException {
         if (DEBUG) {
             Log.d(LOG_TAG, "execSQLWithArgs: sql=" + sql);
         }
@@ -223,20 +236,42 @@ public class AndroidDatabase implements Database {
             Log.d(LOG_TAG, "longQuery: sql=" + sql);
         }
 
-        try (Cursor cursor = mDatabase.rawQuery(sql, args)) {
-            if (cursor.moveToFirst()) {
-                if (cursor.isNull(0)) {
-                    return null;
-                }
-                return cursor.getLong(0);
-            }
-            return null;
+        try (AndroidDatabaseStatement statement = new AndroidDatabaseStatement(mStatements, mDatabase, sql)) {
+            statement.bindArgs(args);
+            return statement.queryLong();
+        }
+    }
 
-        } catch (SQLException exception) {
+    @Override
+    @NonNull
+    public DatabaseStatement compileStatement(@NonNull String sql) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "compileStatement: sql=" + sql);
+        }
 
-            raiseException(exception);
-            return null;
+        return new AndroidDatabaseStatement(mStatements, mDatabase, sql);
+    }
+
+    /**
+     * Check if this database object is the wrapper of the SQLcipher database.
+     *
+     * @param database the SQLcipher database.
+     * @return true if it wraps the database.
+     */
+    boolean isDatabase(@NonNull SQLiteDatabase database) {
+
+        return mDatabase == database;
+    }
+
+    /**
+     * Release the compiled statements before the database is closed.
+     */
+    void close() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "close");
         }
+
+        mStatements.close();
     }
 
     static void raiseException(@NonNull SQLException exception) throws DatabaseException {
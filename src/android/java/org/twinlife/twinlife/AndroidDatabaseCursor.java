@@ -1,5 +1,5 @@
 /*
- *  Copyright (c) 2022-2023 twinlife SA.
+ *  Copyright (c) 2022-2025 twinlife SA.
  *  SPDX-License-Identifier: AGPL-3.0-only
  *
  *  Contributors:
@@ -9,6 +9,7 @@
 package org.twinlife.twinlife;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import net.sqlcipher.Cursor;
 import net.sqlcipher.SQLException;
@@ -25,10 +26,27 @@ import java.util.UUID;
 public class AndroidDatabaseCursor implements DatabaseCursor {
     @NonNull
     private final Cursor mCursor;
+    @Nullable
+    private final Runnable mRelease;
+    private boolean mReleased;
 
     AndroidDatabaseCursor(@NonNull Cursor cursor) {
 
         mCursor = cursor;
+        mRelease = null;
+    }
+
+    /**
+     * Create the cursor of a cached statement: the release operation is called instead of closing the cursor
+     * so that it is kept in the statement cache.
+     *
+     * @param cursor the SQLcipher cursor.
+     * @param release the operation which gives back the cursor to the statement cache.
+     */
+    AndroidDatabaseCursor(@NonNull Cursor cursor, @NonNull Runnable release) {
+
+        mCursor = cursor;
+        mRelease = release;
     }
 
     /**
@@ -113,6 +131,9 @@ public class AndroidDatabaseCursor implements DatabaseCursor {
     @Override
     public UUID getUUID(int columnIndex) throws DatabaseException {
         try {
+            if (mCursor.getType(columnIndex) == Cursor.FIELD_TYPE_BLOB) {
+                return Utils.toUUID(mCursor.getBlob(columnIndex));
+            }
             return Utils.toUUID(mCursor.getString(columnIndex));
 
         } catch (SQLException exception) {
@@ -213,7 +234,12 @@ public class AndroidDatabaseCursor implements DatabaseCursor {
     @Override
     public void close() {
 
-        mCursor.close();
+        if (mRelease == null) {
+            mCursor.close();
+        } else if (!mReleased) {
+            mReleased = true;
+            mRelease.run();
+        }
     }
 
     private void raiseException(@NonNull SQLException exception) throws DatabaseException {
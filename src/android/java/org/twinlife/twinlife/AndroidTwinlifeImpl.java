@@ -112,6 +112,8 @@ public class AndroidTwinlifeImpl extends TwinlifeImpl implements Runnable {
     }
 
     private class TwinlifeSQLiteOpenHelper extends SQLiteOpenHelper {
+        @Nullable
+        private AndroidDatabase mDatabase;
 
         @SuppressWarnings("SameParameterValue")
         TwinlifeSQLiteOpenHelper(Context context, String name, CursorFactory factory, int version,
@@ -129,7 +131,7 @@ public class AndroidTwinlifeImpl extends TwinlifeImpl implements Runnable {
                 Log.d(LOG_TAG, "onCreate database=" + database);
             }
 
-            final AndroidDatabase db = new AndroidDatabase(database);
+            final AndroidDatabase db = getDatabase(database);
             AndroidTwinlifeImpl.this.onCreate(db);
         }
 
@@ -188,7 +190,7 @@ public class AndroidTwinlifeImpl extends TwinlifeImpl implements Runnable {
             }
 
             mDatabaseUpgraded = true;
-            final AndroidDatabase db = new AndroidDatabase(database);
+            final AndroidDatabase db = getDatabase(database);
 
             // Leave the current transaction to let the database service onUpgrade()
             // handle several commits at different steps of the upgrade so that we can
@@ -220,9 +222,41 @@ public class AndroidTwinlifeImpl extends TwinlifeImpl implements Runnable {
                 Log.d(LOG_TAG, "onOpen database=" + database);
             }
 
-            final AndroidDatabase db = new AndroidDatabase(database);
+            final AndroidDatabase db = getDatabase(database);
             AndroidTwinlifeImpl.this.onOpen(db);
         }
+
+        @Override
+        public synchronized void close() {
+            if (DEBUG) {
+                Log.d(LOG_TAG, "close");
+            }
+
+            if (mDatabase != null) {
+                mDatabase.close();
+                mDatabase = null;
+            }
+            super.close();
+        }
+
+        /**
+         * Get the database object which wraps the SQLcipher database.  The same object is used by the
+         * onCreate(), onUpgrade() and onOpen() so that its compiled statements are released by close().
+         *
+         * @param database the SQLcipher database.
+         * @return the database object.
+         */
+        @NonNull
+        private AndroidDatabase getDatabase(@NonNull SQLiteDatabase database) {
+
+            if (mDatabase == null || !mDatabase.isDatabase(database)) {
+                if (mDatabase != null) {
+                    mDatabase.close();
+                }
+                mDatabase = new AndroidDatabase(database);
+            }
+            return mDatabase;
+        }
     }
 
     //
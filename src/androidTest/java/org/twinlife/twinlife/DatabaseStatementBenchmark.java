@@ -0,0 +1,159 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import net.sqlcipher.database.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.twinlife.twinlife.util.Utils;
+
+import java.io.File;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compare the latency of the twincode lookups executed with and without the statement cache on a SQLcipher
+ * database.  The lookups use the same SQL as DatabaseServiceImpl: one by the twincode database id (integer
+ * parameter) and one by the twincode UUID (blob parameter).  The results are reported in the logcat with
+ * the "DatabaseStatementBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseStatementBenchmark {
+    private static final String LOG_TAG = "DatabaseStatementBenchmark";
+
+    private static final int TWINCODE_COUNT = 2000;
+    private static final int WARMUP_LOOKUPS = 1000;
+    private static final int LOOKUPS = 10000;
+
+    private static final String TWINCODE_OUTBOUND_SELECT = "SELECT"
+            + " twout.id, twout.twincodeId, twout.modificationDate, twout.name,"
+            + " twout.avatarId, twout.description, twout.capabilities, twout.attributes, twout.flags"
+            + " FROM twincodeOutbound AS twout";
+    private static final String TWINCODE_OUTBOUND_BY_ID = TWINCODE_OUTBOUND_SELECT + " WHERE twout.id = ?";
+    private static final String TWINCODE_OUTBOUND_BY_UUID = TWINCODE_OUTBOUND_SELECT + " WHERE twout.twincodeId = ?";
+
+    private File mFile;
+    private SQLiteDatabase mDatabase;
+    private UUID[] mTwincodes;
+
+    @Before
+    public void setUp() {
+
+        final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        SQLiteDatabase.loadLibs(context);
+        mFile = new File(context.getCacheDir(), "benchmark.cipher");
+        Utils.deleteFile(LOG_TAG, mFile);
+        mDatabase = SQLiteDatabase.openOrCreateDatabase(mFile, "benchmark", null, null, null);
+        mDatabase.execSQL("CREATE TABLE twincodeOutbound (id INTEGER PRIMARY KEY,"
+                + " twincodeId BLOB UNIQUE NOT NULL, modificationDate INTEGER NOT NULL, name TEXT,"
+                + " avatarId INTEGER, description TEXT, capabilities TEXT, attributes BLOB, flags INTEGER NOT NULL)");
+
+        mTwincodes = new UUID[TWINCODE_COUNT];
+        mDatabase.beginTransaction();
+        try {
+            for (int i = 0; i < TWINCODE_COUNT; i++) {
+                mTwincodes[i] = UUID.randomUUID();
+                mDatabase.execSQL("INSERT INTO twincodeOutbound (id, twincodeId, modificationDate, name, flags)"
+                        + " VALUES (?, ?, ?, ?, 0)", new Object[] {
+                                (long) (i + 1), Utils.toBytes(mTwincodes[i]), System.currentTimeMillis(), "Twincode " + i
+                        });
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+
+        mDatabase.close();
+        Utils.deleteFile(LOG_TAG, mFile);
+    }
+
+    @Test
+    public void testLookupById() throws DatabaseException {
+
+        final long noCache = measure(new AndroidDatabase(mDatabase, 0), false);
+        final long cache = measure(new AndroidDatabase(mDatabase), false);
+
+        report("twincodeOutbound by id", noCache, cache);
+    }
+
+    @Test
+    public void testLookupByUUID() throws DatabaseException {
+
+        final long noCache = measure(new AndroidDatabase(mDatabase, 0), true);
+        final long cache = measure(new AndroidDatabase(mDatabase), true);
+
+        report("twincodeOutbound by twincodeId", noCache, cache);
+    }
+
+    /**
+     * Run the lookups on the database and return the mean latency of one lookup.
+     *
+     * @param database the database with or without the statement cache.
+     * @param byUUID when true lookup the twincode by its UUID, otherwise by its id.
+     * @return the mean lookup latency in ns.
+     */
+    private long measure(@NonNull AndroidDatabase database, boolean byUUID) throws DatabaseException {
+
+        final Random random = new Random(1);
+        try {
+            for (int i = 0; i < WARMUP_LOOKUPS; i++) {
+                lookup(database, random.nextInt(TWINCODE_COUNT), byUUID);
+            }
+
+            final long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                lookup(database, random.nextInt(TWINCODE_COUNT), byUUID);
+            }
+            return (System.nanoTime() - start) / LOOKUPS;
+
+        } finally {
+            database.close();
+        }
+    }
+
+    private void lookup(@NonNull AndroidDatabase database, int index, boolean byUUID) throws DatabaseException {
+
+        try (DatabaseStatement statement = database.compileStatement(byUUID ? TWINCODE_OUTBOUND_BY_UUID : TWINCODE_OUTBOUND_BY_ID)) {
+            if (byUUID) {
+                statement.bindUUID(1, mTwincodes[index]);
+            } else {
+                statement.bindLong(1, index + 1);
+            }
+            try (DatabaseCursor cursor = statement.query()) {
+                assertTrue(cursor.moveToNext());
+                assertEquals(index + 1, cursor.getLong(0));
+                assertEquals(mTwincodes[index], cursor.getUUID(1));
+                assertEquals("Twincode " + index, cursor.getString(3));
+            }
+        }
+    }
+
+    private static void report(@NonNull String name, long noCache, long cache) {
+
+        Log.i(LOG_TAG, name + ": " + LOOKUPS + " lookups, without cache " + noCache + " ns/lookup, with cache "
+                + cache + " ns/lookup (" + (noCache > 0 ? (100 * (noCache - cache) / noCache) : 0) + "% faster)");
+    }
+}
@@ -14,6 +14,7 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import android.util.Log;
 import android.database.sqlite.SQLiteOpenHelper;
 
@@ -72,6 +73,9 @@ public class EngineTwinlifeImpl extends TwinlifeImpl implements Runnable {
     private TwinlifeSQLiteOpenHelper mTwinlifeSQLiteOpenHelper;
 
     private class TwinlifeSQLiteOpenHelper extends SQLiteOpenHelper {
+        @Nullable
+        private SQLiteDatabase mDatabase;
+
 
         @SuppressWarnings("SameParameterValue")
         TwinlifeSQLiteOpenHelper(Context context, String name,
@@ -89,7 +93,7 @@ public class EngineTwinlifeImpl extends TwinlifeImpl implements Runnable {
                 Log.d(LOG_TAG, "onCreate database=" + database);
             }
 
-            final SQLiteDatabase db = new SQLiteDatabase(database);
+            final SQLiteDatabase db = getDatabase(database);
             for (BaseServiceImpl baseService : mBaseServiceImpls) {
                 if (baseService.isServiceOn()) {
                     baseService.onCreateDatabase(db);
@@ -137,7 +141,7 @@ public class EngineTwinlifeImpl extends TwinlifeImpl implements Runnable {
             }
 
             mDatabaseUpgraded = true;
-            final SQLiteDatabase db = new SQLiteDatabase(database);
+            final SQLiteDatabase db = getDatabase(database);
             for (BaseServiceImpl baseService : mBaseServiceImpls) {
                 if (baseService.isServiceOn()) {
                     baseService.onUpgradeDatabase(db, oldVersion, newVersion);
@@ -156,7 +160,7 @@ public class EngineTwinlifeImpl extends TwinlifeImpl implements Runnable {
                 Log.d(LOG_TAG, "onOpen database=" + database);
             }
 
-            final SQLiteDatabase db = new SQLiteDatabase(database);
+            final SQLiteDatabase db = getDatabase(database);
             for (BaseServiceImpl baseService : mBaseServiceImpls) {
                 if (baseService.isServiceOn()) {
                     baseService.onOpenDatabase(db);
@@ -168,6 +172,35 @@ public class EngineTwinlifeImpl extends TwinlifeImpl implements Runnable {
                 }
             }
         }
+
+        @Override
+        public synchronized void close() {
+
+            if (mDatabase != null) {
+                mDatabase.close();
+                mDatabase = null;
+            }
+            super.close();
+        }
+
+        /**
+         * Get the database object which wraps the SQLite database.  The same object is used by the
+         * onCreate(), onUpgrade() and onOpen() so that its compiled statements are released by close().
+         *
+         * @param database the SQLite database.
+         * @return the database object.
+         */
+        @NonNull
+        private SQLiteDatabase getDatabase(@NonNull android.database.sqlite.SQLiteDatabase database) {
+
+            if (mDatabase == null || !mDatabase.isDatabase(database)) {
+                if (mDatabase != null) {
+                    mDatabase.close();
+                }
+                mDatabase = new SQLiteDatabase(database);
+            }
+            return mDatabase;
+        }
     }
 
     public EngineTwinlifeImpl(Context context,
@@ -1,5 +1,5 @@
 /*
- *  Copyright (c) 2022-2023 twinlife SA.
+ *  Copyright (c) 2022-2025 twinlife SA.
  *  SPDX-License-Identifier: AGPL-3.0-only
  *
  *  Contributors:
@@ -22,10 +22,12 @@ import android.database.sqlite.SQLiteDiskIOException;
  */
 public class SQLiteDatabase implements Database {
     private final android.database.sqlite.SQLiteDatabase mDatabase;
+    private final DatabaseStatementCache<SQLiteDatabaseStatement.Program> mStatements;
 
     SQLiteDatabase(@NonNull android.database.sqlite.SQLiteDatabase database) {
 
         mDatabase = database;
+        mStatements = new DatabaseStatementCache<>(DatabaseStatementCache.DEFAULT_SIZE);
     }
 
     @Override
@@ -64,7 +66,7 @@ public class SQLiteDatabase implements Database {
     }
 
     @Override
-    public void execSQLWithArgs(@NonNull String sql, String[] args) throws DatabaseException {
+    public void execSQLWithArgs(@NonNull String sql, Object[] args) throws DatabaseException {
 
         try {
             mDatabase.execSQL(sql, args);
@@ -147,7 +149,43 @@ public class SQLiteDatabase implements Database {
         }
     }
 
-    private void raiseException(@NonNull SQLException exception) throws DatabaseException {
+    @Override
+    @Nullable
+    public Long longQuery(@NonNull String sql, Object[] args) throws DatabaseException {
+
+        try (SQLiteDatabaseStatement statement = new SQLiteDatabaseStatement(mStatements, mDatabase, sql)) {
+            statement.bindArgs(args);
+            return statement.queryLong();
+        }
+    }
+
+    @Override
+    @NonNull
+    public DatabaseStatement compileStatement(@NonNull String sql) {
+
+        return new SQLiteDatabaseStatement(mStatements, mDatabase, sql);
+    }
+
+    /**
+     * Check if this database object is the wrapper of the SQLite database.
+     *
+     * @param database the SQLite database.
+     * @return true if it wraps the database.
+     */
+    boolean isDatabase(@NonNull android.database.sqlite.SQLiteDatabase database) {
+
+        return mDatabase == database;
+    }
+
+    /**
+     * Release the compiled statements before the database is closed.
+     */
+    void close() {
+
+        mStatements.close();
+    }
+
+    static void raiseException(@NonNull SQLException exception) throws DatabaseException {
 
         if (exception instanceof SQLiteFullException) {
             throw new DatabaseException(exception.getMessage()) {
@@ -9,6 +9,7 @@
 package org.twinlife.twinlife;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import android.database.Cursor;
 
@@ -18,10 +19,27 @@ import android.database.Cursor;
 public class SQLiteDatabaseCursor implements DatabaseCursor {
     @NonNull
     private final Cursor mCursor;
+    @Nullable
+    private final Runnable mRelease;
+    private boolean mReleased;
 
     SQLiteDatabaseCursor(@NonNull Cursor cursor) {
 
         mCursor = cursor;
+        mRelease = null;
+    }
+
+    /**
+     * Create the cursor of a cached statement: the release operation is called instead of closing the cursor
+     * so that it is kept in the statement cache.
+     *
+     * @param cursor the SQLite cursor.
+     * @param release the operation which gives back the cursor to the statement cache.
+     */
+    SQLiteDatabaseCursor(@NonNull Cursor cursor, @NonNull Runnable release) {
+
+        mCursor = cursor;
+        mRelease = release;
     }
 
     /**
@@ -147,6 +165,11 @@ public class SQLiteDatabaseCursor implements DatabaseCursor {
     @Override
     public void close() {
 
-        mCursor.close();
+        if (mRelease == null) {
+            mCursor.close();
+        } else if (!mReleased) {
+            mReleased = true;
+            mRelease.run();
+        }
     }
 }
@@ -0,0 +1,204 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteProgram;
+import android.database.sqlite.SQLiteQuery;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Implement the statement on top of Android SQLite API.
+ * <p>
+ * The Android rawQuery() only accepts string parameters: the cursor query is created with a cursor factory
+ * which binds the typed parameters on the compiled SQLiteQuery program before the query is executed.  When the
+ * cursor is closed, it is deactivated and kept with its SQLiteQuery in the statement cache: the next query with
+ * the same SQL binds the new parameters on the same SQLiteQuery and runs it again with requery().  The single
+ * value query uses a SQLiteStatement which is compiled once and kept in the statement cache.
+ */
+final class SQLiteDatabaseStatement extends BaseDatabaseStatement<SQLiteDatabaseStatement.Program>
+        implements android.database.sqlite.SQLiteDatabase.CursorFactory {
+
+    static final class Program implements DatabaseStatementCache.Entry {
+        @NonNull
+        private final String mSql;
+        @Nullable
+        private SQLiteStatement mStatement;
+        @Nullable
+        private SQLiteCursor mCursor;
+        @Nullable
+        private SQLiteQuery mQuery;
+
+        Program(@NonNull String sql) {
+
+            mSql = sql;
+        }
+
+        @Override
+        @NonNull
+        public String getSql() {
+
+            return mSql;
+        }
+
+        @Override
+        public void dispose() {
+
+            if (mStatement != null) {
+                mStatement.close();
+            }
+            if (mCursor != null) {
+                mCursor.close();
+            }
+        }
+    }
+
+    @NonNull
+    private final android.database.sqlite.SQLiteDatabase mDatabase;
+    @Nullable
+    private SQLiteQuery mNewQuery;
+
+    SQLiteDatabaseStatement(@NonNull DatabaseStatementCache<Program> cache,
+                            @NonNull android.database.sqlite.SQLiteDatabase database, @NonNull String sql) {
+        super(cache, sql);
+
+        mDatabase = database;
+    }
+
+    @Override
+    @NonNull
+    public DatabaseCursor query() throws DatabaseException {
+
+        final Program program = takeProgram();
+        try {
+            if (program.mCursor == null || !requery(program)) {
+                if (program.mCursor != null) {
+                    program.mCursor.close();
+                }
+                mNewQuery = null;
+                program.mCursor = (SQLiteCursor) mDatabase.rawQueryWithFactory(this, getSql(), null, null);
+                program.mQuery = mNewQuery;
+                mNewQuery = null;
+            }
+            final SQLiteCursor cursor = program.mCursor;
+            return new SQLiteDatabaseCursor(cursor, () -> {
+                cursor.deactivate();
+                releaseProgram(program);
+            });
+
+        } catch (SQLException exception) {
+
+            program.dispose();
+            SQLiteDatabase.raiseException(exception);
+            return null;
+        } catch (RuntimeException exception) {
+
+            program.dispose();
+            throw exception;
+        }
+    }
+
+    @Override
+    @Nullable
+    public Long queryLong() throws DatabaseException {
+
+        try {
+            final Program entry = getProgram();
+            if (entry.mStatement == null) {
+                entry.mStatement = mDatabase.compileStatement(getSql());
+            }
+            final SQLiteStatement program = entry.mStatement;
+            program.clearBindings();
+            bindProgram(program);
+
+            // The string form tells us whether the value is null.
+            final String value = program.simpleQueryForString();
+            if (value == null) {
+                return null;
+            }
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException exception) {
+                // A real or text value: let SQLite convert it as Cursor.getLong() does.
+                return program.simpleQueryForLong();
+            }
+
+        } catch (SQLiteDoneException exception) {
+
+            return null;
+        } catch (SQLException exception) {
+
+            SQLiteDatabase.raiseException(exception);
+            return null;
+        }
+    }
+
+    /**
+     * Create the cursor for rawQueryWithFactory(): the query is compiled but not executed yet.
+     */
+    @Override
+    @NonNull
+    public Cursor newCursor(android.database.sqlite.SQLiteDatabase db, SQLiteCursorDriver masterQuery,
+                            String editTable, SQLiteQuery query) {
+
+        bindProgram(query);
+        mNewQuery = query;
+        return new SQLiteCursor(masterQuery, editTable, query);
+    }
+
+    @Override
+    @NonNull
+    protected Program compile(@NonNull String sql) {
+
+        return new Program(sql);
+    }
+
+    //
+    // Private Methods
+    //
+
+    /**
+     * Run again the query of a deactivated cursor with the new parameters.
+     *
+     * @param program the program with the cursor and its query.
+     * @return true if the cursor is ready.
+     */
+    private boolean requery(@NonNull Program program) {
+
+        if (program.mQuery == null || program.mCursor.isClosed()) {
+            return false;
+        }
+        program.mQuery.clearBindings();
+        bindProgram(program.mQuery);
+        return program.mCursor.requery();
+    }
+
+    private void bindProgram(@NonNull SQLiteProgram program) {
+
+        for (int i = 0; i < mArgCount; i++) {
+            final Object value = mArgs[i];
+            if (value == null) {
+                program.bindNull(i + 1);
+            } else if (value instanceof Long) {
+                program.bindLong(i + 1, (Long) value);
+            } else if (value instanceof byte[]) {
+                program.bindBlob(i + 1, (byte[]) value);
+            } else {
+                program.bindString(i + 1, value.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.twinlife.twinlife.util.Utils;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Common part of the statements of the database implementations: the parameters are kept with their type
+ * until the statement is executed.  The compiled program is taken from the database statement cache the first
+ * time it is needed.  It is given back when the statement is closed or, for a cursor query, when the cursor
+ * is closed.
+ */
+abstract class BaseDatabaseStatement<P extends DatabaseStatementCache.Entry> implements DatabaseStatement {
+
+    @NonNull
+    private final DatabaseStatementCache<P> mCache;
+    @NonNull
+    private final String mSql;
+    @NonNull
+    protected Object[] mArgs;
+    protected int mArgCount;
+    @Nullable
+    private P mProgram;
+
+    BaseDatabaseStatement(@NonNull DatabaseStatementCache<P> cache, @NonNull String sql) {
+
+        mCache = cache;
+        mSql = sql;
+        mArgs = new Object[4];
+    }
+
+    @NonNull
+    public String getSql() {
+
+        return mSql;
+    }
+
+    @Override
+    public void bindLong(int index, long value) {
+
+        bind(index, value);
+    }
+
+    @Override
+    public void bindInt(int index, int value) {
+
+        bind(index, (long) value);
+    }
+
+    @Override
+    public void bindBlob(int index, @NonNull byte[] value) {
+
+        bind(index, value);
+    }
+
+    @Override
+    public void bindString(int index, @NonNull String value) {
+
+        bind(index, value);
+    }
+
+    @Override
+    public void bindUUID(int index, @NonNull UUID value) {
+
+        bind(index, Utils.toBytes(value));
+    }
+
+    @Override
+    public void bindNull(int index) {
+
+        bind(index, null);
+    }
+
+    /**
+     * Bind the parameters given to Database.longQuery() with their type: Long, Integer and Boolean are bound as
+     * integers, byte[] as blob and the other values as strings.
+     *
+     * @param args the parameters or null.
+     */
+    void bindArgs(@Nullable Object[] args) {
+
+        if (args != null) {
+            for (int i = 0; i < args.length; i++) {
+                final Object value = args[i];
+                if (value == null) {
+                    bindNull(i + 1);
+                } else if (value instanceof Long || value instanceof Integer) {
+                    bindLong(i + 1, ((Number) value).longValue());
+                } else if (value instanceof Boolean) {
+                    bindLong(i + 1, (Boolean) value ? 1 : 0);
+                } else if (value instanceof byte[]) {
+                    bindBlob(i + 1, (byte[]) value);
+                } else {
+                    bindString(i + 1, value.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the parameters that were bound in an array of the exact size.
+     *
+     * @return the parameters or null if there is none.
+     */
+    @Nullable
+    protected Object[] getArgs() {
+
+        if (mArgCount == 0) {
+            return null;
+        }
+        if (mArgs.length != mArgCount) {
+            mArgs = Arrays.copyOf(mArgs, mArgCount);
+        }
+        return mArgs;
+    }
+
+    /**
+     * Get the compiled program from the statement cache or compile it.
+     *
+     * @return the compiled program.
+     */
+    @NonNull
+    protected P getProgram() {
+
+        if (mProgram == null) {
+            mProgram = mCache.acquire(mSql);
+            if (mProgram == null) {
+                mProgram = compile(mSql);
+            }
+        }
+        return mProgram;
+    }
+
+    /**
+     * Take the compiled program out of the statement: it is no longer given back when the statement is closed
+     * and the caller must give it back with releaseProgram() or dispose it.  This is used by the cursor which
+     * keeps the program until it is closed.
+     *
+     * @return the compiled program.
+     */
+    @NonNull
+    protected P takeProgram() {
+
+        final P program = getProgram();
+        mProgram = null;
+        return program;
+    }
+
+    /**
+     * Give back to the statement cache a program obtained by takeProgram().
+     *
+     * @param program the compiled program.
+     */
+    protected void releaseProgram(@NonNull P program) {
+
+        mCache.release(program);
+    }
+
+    /**
+     * Compile the SQL statement.
+     *
+     * @param sql the SQL statement.
+     * @return the compiled program.
+     */
+    @NonNull
+    protected abstract P compile(@NonNull String sql);
+
+    @Override
+    public void close() {
+
+        if (mProgram != null) {
+            mCache.release(mProgram);
+            mProgram = null;
+        }
+    }
+
+    //
+    // Private Methods
+    //
+
+    private void bind(int index, @Nullable Object value) {
+
+        if (index > mArgs.length) {
+            mArgs = Arrays.copyOf(mArgs, Math.max(index, mArgs.length * 2));
+        }
+        mArgs[index - 1] = value;
+        if (index > mArgCount) {
+            mArgCount = index;
+        }
+    }
+}
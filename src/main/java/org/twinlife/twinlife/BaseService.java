@@ -387,6 +387,17 @@ public interface BaseService <Observer extends BaseService.ServiceObserver> {
         public long databaseFullCount;
         public long databaseIOCount;
         public long databaseErrorCount;
+        public long pendingRequestCount;
+        public long maxPendingRequestCount;
+        public long timeoutLatencyAverage;
+        public long timeoutLatencyMax;
+        public long cacheSize;
+        public long cacheEvictedSize;
+        public long cacheHitCount;
+        public long cacheMissCount;
+        public long cacheEvictionCount;
+        public long idAllocationCount;
+        public long idReserveCount;
     }
 
     abstract class AttributeNameValue {
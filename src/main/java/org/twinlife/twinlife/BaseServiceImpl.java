@@ -14,6 +14,7 @@ import androidx.annotation.Nullable;
 import android.util.Log;
 
 import org.twinlife.twinlife.util.BinaryErrorPacketIQ;
+import org.twinlife.twinlife.util.BinaryPacketBuffer;
 import org.twinlife.twinlife.util.BinaryPacketIQ;
 import org.twinlife.twinlife.util.Logger;
 import org.twinlife.twinlife.util.SerializerFactoryImpl;
@@ -22,28 +23,28 @@ import org.twinlife.twinlife.util.Utils;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Timeout management
  * <p>
- * The timeout management is global to a BaseServiceImpl instance: there is only one timeout deadline for all pending requests.
- * This allows to have a simple implementation but the timeout is less precise.
+ * Each pending request has its own deadline computed when the request is sent: the request timeout
+ * plus TIMEOUT_CHECK_DELAY (2.0) seconds.  Pending requests are indexed by requestId in mPendingRequestList
+ * and ordered by deadline in mPendingDeadlines.
  * <p>
- * When a first request is sent, a timeout deadline is computed for the request and a Job is scheduled with the JobService.
- * The job is scheduled TIMEOUT_CHECK_DELAY (2.0) seconds after the deadline. The requestId is added to the pendingRequestIdList set.
+ * A single Job is scheduled with the JobService for the earliest deadline.  When a request with an earlier
+ * deadline is sent, the job is re-scheduled.
  * <p>
- * When another request is sent, a new deadline time is computed and it replaces the current deadline. The scheduled job
- * is not modified. The requestId is also added to the pendingRequestIdList set.
- * <p>
- * When the timeout job is executed, we look at the deadline and if it was passed, all pending requests are reported
- * with an error.  If the deadline has not passed and we still have pending requests, a new job is scheduled TIMEOUT_CHECK_DELAY
- * seconds after the deadline.
+ * When the timeout job is executed, only the requests whose deadline has passed (within TIMEOUT_COALESCE_DELAY)
+ * are reported with an error and the job is scheduled again for the next deadline.
  * <p>
  * When a response is received, we expect the receive handler to call receivedIQ so that we remove the requestId from the pending list.
  */
@@ -72,6 +73,29 @@ public abstract class BaseServiceImpl <Observer extends BaseService.ServiceObser
     public static final int DATABASE_ERROR_DELAY_GUARD = 2 * 120 * 1000; // 2 minutes
 
     private static final long TIMEOUT_CHECK_DELAY = 2000;
+    private static final long TIMEOUT_COALESCE_DELAY = 250;
+
+    private static final class PendingRequest implements Comparable<PendingRequest> {
+        final long requestId;
+        final long deadline;
+        final boolean isBinary;
+
+        PendingRequest(long requestId, long deadline, boolean isBinary) {
+
+            this.requestId = requestId;
+            this.deadline = deadline;
+            this.isBinary = isBinary;
+        }
+
+        @Override
+        public int compareTo(@NonNull PendingRequest second) {
+
+            if (deadline != second.deadline) {
+                return deadline < second.deadline ? -1 : 1;
+            }
+            return Long.compare(requestId, second.requestId);
+        }
+    }
 
     private final CopyOnWriteArrayList<Observer> mServiceObservers = new CopyOnWriteArrayList<>();
     private volatile boolean mSignIn = false;
@@ -89,8 +113,12 @@ public abstract class BaseServiceImpl <Observer extends BaseService.ServiceObser
     private final AtomicInteger mDatabaseErrorCount = new AtomicInteger();
     @NonNull
     protected final JobService mJobService;
-    private Map<Long, Boolean> mPendingRequestList;
-    private long mNextDeadline;
+    private final AtomicLong mTimeoutLatencyTotal = new AtomicLong();
+    private final AtomicLong mTimeoutLatencyMax = new AtomicLong();
+    private final Map<Long, PendingRequest> mPendingRequestList = new HashMap<>();
+    private final TreeSet<PendingRequest> mPendingDeadlines = new TreeSet<>();
+    private int mMaxPendingRequestCount;
+    private long mScheduleDeadline;
     private JobService.Job mScheduleJobId;
 
     @NonNull
@@ -214,6 +242,14 @@ public abstract class BaseServiceImpl <Observer extends BaseService.ServiceObser
         result.databaseFullCount = mDatabaseFullCount.get();
         result.databaseIOCount = mDatabaseIOCount.get();
 
+        final long timeoutCount = result.sendTimeoutCount;
+        result.timeoutLatencyMax = mTimeoutLatencyMax.get();
+        result.timeoutLatencyAverage = timeoutCount > 0 ? mTimeoutLatencyTotal.get() / timeoutCount : 0;
+        synchronized (this) {
+            result.pendingRequestCount = mPendingRequestList.size();
+            result.maxPendingRequestCount = mMaxPendingRequestCount;
+        }
+
         return result;
     }
 
@@ -388,17 +424,18 @@ public abstract class BaseServiceImpl <Observer extends BaseService.ServiceObser
         mSignIn = false;
         mOnline = false;
 
-        Map<Long, Boolean> pendingRequests;
+        final List<PendingRequest> pendingRequests;
         synchronized (this) {
-            pendingRequests = mPendingRequestList;
-            mPendingRequestList = null;
+            pendingRequests = new ArrayList<>(mPendingDeadlines);
+            mPendingRequestList.clear();
+            mPendingDeadlines.clear();
             if (mScheduleJobId != null) {
                 mScheduleJobId.cancel();
                 mScheduleJobId = null;
             }
         }
-        if (pendingRequests != null) {
-            onTimeout(pendingRequests);
+        if (!pendingRequests.isEmpty()) {
+            onTimeout(pendingRequests, System.currentTimeMillis());
         }
     }
 
@@ -425,9 +462,10 @@ public abstract class BaseServiceImpl <Observer extends BaseService.ServiceObser
         }
 
         long requestId = iq.getRequestId();
+        final BinaryPacketBuffer packet = BinaryPacketBuffer.acquire();
         try {
             if (mSignIn) {
-                byte[] packet = iq.serializeCompact(mSerializerFactory);
+                iq.serializeCompact(mSerializerFactory, packet);
                 packetTimeout(requestId, timeout, true);
                 if (mConnection.sendDataPacket(packet)) {
                     mSendCount.incrementAndGet();
@@ -440,6 +478,8 @@ public abstract class BaseServiceImpl <Observer extends BaseService.ServiceObser
         } catch (Exception ex) {
             onErrorPacket(new BinaryErrorPacketIQ(requestId, ErrorCode.LIBRARY_ERROR));
             return ErrorCode.TWINLIFE_OFFLINE;
+        } finally {
+            packet.release();
         }
     }
 
@@ -448,9 +488,10 @@ public abstract class BaseServiceImpl <Observer extends BaseService.ServiceObser
             Log.d(LOG_TAG, "sendResponse iq=" + iq);
         }
 
+        final BinaryPacketBuffer packet = BinaryPacketBuffer.acquire();
         try {
             if (mSignIn) {
-                byte[] packet = iq.serializeCompact(mSerializerFactory);
+                iq.serializeCompact(mSerializerFactory, packet);
                 if (mConnection.sendDataPacket(packet)) {
                     mSendCount.incrementAndGet();
                     return;
@@ -461,6 +502,8 @@ public abstract class BaseServiceImpl <Observer extends BaseService.ServiceObser
             if (Logger.INFO) {
                 Logger.info(LOG_TAG, "sendResponse", ex, " iq=", iq);
             }
+        } finally {
+            packet.release();
         }
     }
 
@@ -469,15 +512,24 @@ public abstract class BaseServiceImpl <Observer extends BaseService.ServiceObser
             Log.d(LOG_TAG, "packetTimeout requestId=" + requestId + " timeout=" + timeout + " isBinary=" + isBinary);
         }
 
-        long nextDeadline = System.currentTimeMillis() + timeout + TIMEOUT_CHECK_DELAY;
+        final PendingRequest request = new PendingRequest(requestId, System.currentTimeMillis() + timeout + TIMEOUT_CHECK_DELAY, isBinary);
         synchronized (this) {
-            mNextDeadline = nextDeadline;
-            if (mPendingRequestList == null) {
-                mPendingRequestList = new HashMap<>();
+            final PendingRequest previous = mPendingRequestList.put(requestId, request);
+            if (previous != null) {
+                mPendingDeadlines.remove(previous);
             }
-            mPendingRequestList.put(requestId, isBinary);
-            if (mScheduleJobId == null) {
-                mScheduleJobId = mJobService.scheduleAfter("server timeout", this::onPacketTimeout, mNextDeadline, JobService.Priority.CONNECT);
+            mPendingDeadlines.add(request);
+            if (mPendingRequestList.size() > mMaxPendingRequestCount) {
+                mMaxPendingRequestCount = mPendingRequestList.size();
+            }
+
+            // Schedule the job for this request if it expires before the current job.
+            if (mScheduleJobId == null || request.deadline < mScheduleDeadline) {
+                if (mScheduleJobId != null) {
+                    mScheduleJobId.cancel();
+                }
+                mScheduleDeadline = request.deadline;
+                mScheduleJobId = mJobService.scheduleAfter("server timeout", this::onPacketTimeout, request.deadline, JobService.Priority.CONNECT);
             }
         }
     }
@@ -487,17 +539,32 @@ public abstract class BaseServiceImpl <Observer extends BaseService.ServiceObser
             Log.d(LOG_TAG, "receivedIQ requestId=" + requestId);
         }
 
-        Boolean result = null;
+        final PendingRequest request;
         synchronized (this) {
-            if (mPendingRequestList != null) {
-                result = mPendingRequestList.remove(requestId);
-                if (mPendingRequestList.isEmpty() && mScheduleJobId != null) {
-                    mScheduleJobId.cancel();
-                    mScheduleJobId = null;
-                }
+            request = mPendingRequestList.remove(requestId);
+            if (request != null) {
+                mPendingDeadlines.remove(request);
+            }
+            if (mPendingRequestList.isEmpty() && mScheduleJobId != null) {
+                mScheduleJobId.cancel();
+                mScheduleJobId = null;
             }
         }
-        return result != null && result;
+        return request != null && request.isBinary;
+    }
+
+    /**
+     * Check if a binary request is still waiting for its response without removing it.
+     *
+     * @param requestId the request id.
+     * @return true if the request was sent by this service and is not yet answered.
+     */
+    protected boolean isPendingRequest(long requestId) {
+
+        synchronized (this) {
+            final PendingRequest request = mPendingRequestList.get(requestId);
+            return request != null && request.isBinary;
+        }
     }
 
     protected void onError(long requestId, ErrorCode status, String errorParameter) {
@@ -566,33 +633,48 @@ public abstract class BaseServiceImpl <Observer extends BaseService.ServiceObser
             Log.d(LOG_TAG, "onPacketTimeout");
         }
 
-        long now = System.currentTimeMillis();
-        Map<Long, Boolean> pendingRequests = null;
+        final long now = System.currentTimeMillis();
+        final List<PendingRequest> expiredRequests = new ArrayList<>();
         synchronized (this) {
             mScheduleJobId = null;
-            if (mNextDeadline < now) {
-                pendingRequests = mPendingRequestList;
-                mPendingRequestList = null;
-            } else {
-                mScheduleJobId = mJobService.scheduleAfter("server timeout", this::onPacketTimeout, mNextDeadline, JobService.Priority.CONNECT);
+
+            // Collect the requests that have expired (or will expire very soon).
+            while (!mPendingDeadlines.isEmpty()) {
+                final PendingRequest request = mPendingDeadlines.first();
+                if (request.deadline > now + TIMEOUT_COALESCE_DELAY) {
+                    mScheduleDeadline = request.deadline;
+                    mScheduleJobId = mJobService.scheduleAfter("server timeout", this::onPacketTimeout, request.deadline, JobService.Priority.CONNECT);
+                    break;
+                }
+                mPendingDeadlines.pollFirst();
+                mPendingRequestList.remove(request.requestId);
+                expiredRequests.add(request);
             }
         }
-        if (pendingRequests != null) {
-            onTimeout(pendingRequests);
+        if (!expiredRequests.isEmpty()) {
+            onTimeout(expiredRequests, now);
         }
     }
 
-    private void onTimeout(Map<Long, Boolean> requestIds) {
+    private void onTimeout(@NonNull List<PendingRequest> requests, long now) {
         if (DEBUG) {
-            Log.d(LOG_TAG, "onTimeout requestIds=" + requestIds);
+            Log.d(LOG_TAG, "onTimeout requests=" + requests.size());
         }
 
-        for (Map.Entry<Long, Boolean> requestInfo : requestIds.entrySet()) {
+        for (PendingRequest request : requests) {
             mSendTimeoutCount.incrementAndGet();
-            if (requestInfo.getValue()) {
-                onErrorPacket(new BinaryErrorPacketIQ(requestInfo.getKey(), ErrorCode.TWINLIFE_OFFLINE));
+
+            // Record how late the request is reported compared to its deadline
+            // (0 when it is failed early by a disconnection).
+            final long latency = Math.max(now - request.deadline, 0);
+            mTimeoutLatencyTotal.addAndGet(latency);
+            if (latency > mTimeoutLatencyMax.get()) {
+                mTimeoutLatencyMax.set(latency);
+            }
+            if (request.isBinary) {
+                onErrorPacket(new BinaryErrorPacketIQ(request.requestId, ErrorCode.TWINLIFE_OFFLINE));
             } else {
-                onError(requestInfo.getKey(), ErrorCode.TWINLIFE_OFFLINE, null);
+                onError(request.requestId, ErrorCode.TWINLIFE_OFFLINE, null);
             }
         }
     }
@@ -19,9 +19,9 @@ public interface BinaryPacketListener {
      * Process the next packet sent to this packet listener.
      * <p>
      * <p>
-     * A single thread is responsible for invoking all listeners, so it's very
-     * important that implementations of this method not block for any extended
-     * period of time.
+     * The listeners of a same service are invoked one at a time on the service dispatch
+     * lane and a small thread pool is shared by all lanes, so it's very important that
+     * implementations of this method not block for any extended period of time.
      *
      * @param iq the packet to process.
      */
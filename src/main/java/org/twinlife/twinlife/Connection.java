@@ -9,45 +9,216 @@
 package org.twinlife.twinlife;
 
 import android.util.Log;
-import android.util.Pair;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import org.libwebsockets.ErrorCategory;
 import org.libwebsockets.ConnectionStats;
-import org.twinlife.twinlife.util.BinaryCompactDecoder;
-import org.twinlife.twinlife.util.BinaryDecoder;
+import org.twinlife.twinlife.util.BinaryPacketBuffer;
 import org.twinlife.twinlife.util.BinaryPacketIQ;
-import org.twinlife.twinlife.util.ByteBufferInputStream;
+import org.twinlife.twinlife.util.ByteBufferDecoder;
 import org.twinlife.twinlife.util.SchemaKey;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class Connection {
     private static final String LOG_TAG = "Connection";
     private static final boolean DEBUG = false;
 
+    // Number of threads shared by the dispatch lanes.
+    private static final int READER_THREAD_COUNT = 3;
+
+    // Max number of packets processed by a lane before giving the thread to another lane.
+    private static final int MAX_LANE_BATCH = 8;
+
     static class WebSocketThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger();
 
         public Thread newThread(@NonNull Runnable runnable) {
 
-            return new Thread(runnable, "websocket-reader");
+            return new Thread(runnable, "websocket-reader-" + mCount.incrementAndGet());
+        }
+    }
+
+    /**
+     * How the incoming IQs are dispatched to the packet listeners:
+     * - SERIAL: a single lane processes every packet in the order they are received,
+     * - PER_SERVICE: each service has its own serial lane and independent services run concurrently.
+     */
+    public enum DispatchMode {
+        SERIAL,
+        PER_SERVICE
+    }
+
+    /**
+     * Statistics collected on a dispatch lane (latencies are in microseconds).
+     */
+    public static final class DispatchStats {
+        @NonNull
+        public final String name;
+        public final int queueDepth;
+        public final int maxQueueDepth;
+        public final long packetCount;
+        public final long averageLatency;
+        public final long maxLatency;
+
+        DispatchStats(@NonNull String name, int queueDepth, int maxQueueDepth, long packetCount,
+                      long averageLatency, long maxLatency) {
+
+            this.name = name;
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.packetCount = packetCount;
+            this.averageLatency = averageLatency;
+            this.maxLatency = maxLatency;
+        }
+    }
+
+    /**
+     * A serial lane executing the packet handlers of a service one at a time on the shared
+     * reader thread pool.  The lane holds a thread only while it has packets to process.
+     */
+    static final class DispatchLane implements Runnable {
+        @NonNull
+        private final String mName;
+        @NonNull
+        private final Executor mExecutor;
+        private final ArrayDeque<Runnable> mQueue = new ArrayDeque<>();
+        private boolean mRunning;
+        private int mMaxQueueDepth;
+        private long mPacketCount;
+        private long mTotalLatency;
+        private long mMaxLatency;
+
+        DispatchLane(@NonNull String name, @NonNull Executor executor) {
+
+            mName = name;
+            mExecutor = executor;
+        }
+
+        void submit(@NonNull Runnable handler) {
+
+            synchronized (this) {
+                mQueue.add(handler);
+                if (mQueue.size() > mMaxQueueDepth) {
+                    mMaxQueueDepth = mQueue.size();
+                }
+                if (mRunning) {
+                    return;
+                }
+                mRunning = true;
+            }
+            mExecutor.execute(this);
+        }
+
+        @Override
+        public void run() {
+
+            try {
+                for (int i = 0; i < MAX_LANE_BATCH; i++) {
+                    final Runnable handler;
+                    synchronized (this) {
+                        handler = mQueue.poll();
+                        if (handler == null) {
+                            break;
+                        }
+                    }
+
+                    final long startTime = System.nanoTime();
+                    try {
+                        handler.run();
+                    } catch (Exception exception) {
+                        Log.e(LOG_TAG, "Exception in " + mName + " packet handler", exception);
+                    }
+                    final long latency = (System.nanoTime() - startTime) / 1000L;
+                    synchronized (this) {
+                        mPacketCount++;
+                        mTotalLatency += latency;
+                        if (latency > mMaxLatency) {
+                            mMaxLatency = latency;
+                        }
+                    }
+                }
+            } finally {
+                // Release the lane or give the thread to other lanes and continue later.  This is also
+                // done when a handler throws an Error so that the lane is not left without a thread.
+                final boolean more;
+                synchronized (this) {
+                    more = !mQueue.isEmpty();
+                    mRunning = more;
+                }
+                if (more) {
+                    mExecutor.execute(this);
+                }
+            }
+        }
+
+        @NonNull
+        synchronized DispatchStats getStats() {
+
+            return new DispatchStats(mName, mQueue.size(), mMaxQueueDepth, mPacketCount,
+                    mPacketCount > 0 ? mTotalLatency / mPacketCount : 0, mMaxLatency);
+        }
+    }
+
+    /**
+     * Find the service that owns a packet which is not bound to a service (ex: an error packet
+     * is owned by the service which sent the request).
+     */
+    public interface PacketOwner {
+
+        /**
+         * Get the service that must process the packet.
+         *
+         * @param iq the received packet.
+         * @return the service id or null if no service owns the packet.
+         */
+        @Nullable
+        BaseService.BaseServiceId getServiceId(@NonNull BinaryPacketIQ iq);
+    }
+
+    static final class PacketHandler {
+        @NonNull
+        final Serializer serializer;
+        @NonNull
+        final BinaryPacketListener listener;
+        @NonNull
+        final DispatchLane lane;
+        @Nullable
+        final PacketOwner owner;
+
+        PacketHandler(@NonNull Serializer serializer, @NonNull BinaryPacketListener listener, @NonNull DispatchLane lane,
+                      @Nullable PacketOwner owner) {
+
+            this.serializer = serializer;
+            this.listener = listener;
+            this.lane = lane;
+            this.owner = owner;
         }
     }
 
     @NonNull
     private final SerializerFactory mSerializerFactory;
     @NonNull
-    protected final Map<SchemaKey, Pair<Serializer, BinaryPacketListener>> mBinaryListeners = new HashMap<>();
+    protected final Map<SchemaKey, PacketHandler> mBinaryListeners = new HashMap<>();
+    private final Map<BaseService.BaseServiceId, DispatchLane> mDispatchLanes = new HashMap<>();
+    @NonNull
+    private final DispatchLane mDefaultLane;
+    private volatile DispatchMode mDispatchMode = DispatchMode.SERIAL;
     @Nullable
     protected final ProxyDescriptor[] mProxyDescriptors;
     @NonNull
@@ -79,7 +250,8 @@ public abstract class Connection {
         mConnectionListener = connectionListener;
         mSerializerFactory = serializerFactory;
         mProxyDescriptors = proxyDescriptors;
-        mReaderExecutorService = Executors.newSingleThreadExecutor(new WebSocketThreadFactory());
+        mReaderExecutorService = Executors.newFixedThreadPool(READER_THREAD_COUNT, new WebSocketThreadFactory());
+        mDefaultLane = new DispatchLane("default", mReaderExecutorService);
     }
 
     /**
@@ -106,6 +278,18 @@ public abstract class Connection {
      */
     public abstract boolean sendDataPacket(byte[] packet);
 
+    /**
+     * Sends the packet serialized in the encode buffer.  The buffer content is only used
+     * during the call and the caller can release it when the operation returns.
+     *
+     * @param packet the encode buffer holding the packet to send.
+     * return true if the packet was sent and false if the connection was closed.
+     */
+    public boolean sendDataPacket(@NonNull BinaryPacketBuffer packet) {
+
+        return sendDataPacket(packet.toByteArray());
+    }
+
     /**
      * Closes the connection.
      */
@@ -187,7 +371,7 @@ public abstract class Connection {
      * Registers a packet listener with this connection. A packet filter
      * determines which packets will be delivered to the listener. If the same
      * packet listener is added again with a different filter, only the new
-     * filter will be used.
+     * filter will be used.  The listener is executed on the default dispatch lane.
      *
      * @param packetListener the packet listener to notify of new received packets.
      */
@@ -195,7 +379,86 @@ public abstract class Connection {
 
         final SchemaKey key = new SchemaKey(serializer.schemaId, serializer.schemaVersion);
 
-        mBinaryListeners.put(key, new Pair<>(serializer, packetListener));
+        synchronized (mBinaryListeners) {
+            mBinaryListeners.put(key, new PacketHandler(serializer, packetListener, mDefaultLane, null));
+        }
+    }
+
+    /**
+     * Registers a packet listener for packets which are not bound to a service.  The packet owner
+     * identifies the service for each received packet and the listener is executed on that service
+     * dispatch lane, after the packets of that service that were received before.  The default lane
+     * is used when the packet has no owner.
+     *
+     * @param serializer the packet serializer.
+     * @param packetOwner the packet owner to find the service which must process the packet.
+     * @param packetListener the packet listener to notify of new received packets.
+     */
+    public void addPacketListener(@NonNull Serializer serializer, @NonNull PacketOwner packetOwner,
+                                  @NonNull BinaryPacketListener packetListener) {
+
+        final SchemaKey key = new SchemaKey(serializer.schemaId, serializer.schemaVersion);
+
+        synchronized (mBinaryListeners) {
+            mBinaryListeners.put(key, new PacketHandler(serializer, packetListener, mDefaultLane, packetOwner));
+        }
+    }
+
+    /**
+     * Registers a packet listener for a service.  The packets of a same service are processed
+     * in order on the service dispatch lane and the packets of different services can be processed
+     * concurrently (unless the dispatch mode is SERIAL).
+     *
+     * @param serviceId the service which handles the packet.
+     * @param serializer the packet serializer.
+     * @param packetListener the packet listener to notify of new received packets.
+     */
+    public void addPacketListener(@NonNull BaseService.BaseServiceId serviceId, @NonNull Serializer serializer,
+                                  @NonNull BinaryPacketListener packetListener) {
+
+        final SchemaKey key = new SchemaKey(serializer.schemaId, serializer.schemaVersion);
+
+        synchronized (mBinaryListeners) {
+            DispatchLane lane = mDispatchLanes.get(serviceId);
+            if (lane == null) {
+                lane = new DispatchLane(serviceId.name(), mReaderExecutorService);
+                mDispatchLanes.put(serviceId, lane);
+            }
+            mBinaryListeners.put(key, new PacketHandler(serializer, packetListener, lane, null));
+        }
+    }
+
+    /**
+     * Set the dispatch mode for the incoming packets.  The default is SERIAL: the packet listeners are
+     * executed one at a time as with a single reader thread.  PER_SERVICE must only be selected when the
+     * listeners of the different services can run concurrently.
+     *
+     * @param mode the dispatch mode.
+     */
+    public void setDispatchMode(@NonNull DispatchMode mode) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "setDispatchMode: mode=" + mode);
+        }
+
+        mDispatchMode = mode;
+    }
+
+    /**
+     * Get the queue depth and handler latency statistics of the dispatch lanes.
+     *
+     * @return the list of dispatch lane stats.
+     */
+    @NonNull
+    public List<DispatchStats> getDispatchStats() {
+
+        final List<DispatchStats> result = new ArrayList<>();
+        synchronized (mBinaryListeners) {
+            result.add(mDefaultLane.getStats());
+            for (DispatchLane lane : mDispatchLanes.values()) {
+                result.add(lane.getStats());
+            }
+        }
+        return result;
     }
 
     public abstract void onNetworkDisconnect();
@@ -248,21 +511,44 @@ public abstract class Connection {
         mConnectionListener.onDisconnect(ErrorCategory.ERR_NONE);
     }
 
+    @NonNull
+    private DispatchLane getServiceLane(@Nullable BaseService.BaseServiceId serviceId) {
+
+        if (serviceId == null) {
+            return mDefaultLane;
+        }
+
+        synchronized (mBinaryListeners) {
+            final DispatchLane lane = mDispatchLanes.get(serviceId);
+            return lane != null ? lane : mDefaultLane;
+        }
+    }
+
     protected void onBinaryMessageInternal(@NonNull ByteBuffer buffer) {
         if (DEBUG) {
             Log.d(LOG_TAG, "onBinaryMessageInternal: buffer=" + buffer);
         }
 
         try {
-            final ByteBufferInputStream inputStream = new ByteBufferInputStream(buffer);
-            BinaryDecoder binaryDecoder = new BinaryCompactDecoder(inputStream);
+            final ByteBufferDecoder binaryDecoder = new ByteBufferDecoder(buffer, true);
             UUID schemaId = binaryDecoder.readUUID();
             int version = binaryDecoder.readInt();
             SchemaKey key = new SchemaKey(schemaId, version);
-            Pair<Serializer, BinaryPacketListener> listener = mBinaryListeners.get(key);
-            if (listener != null) {
-                BinaryPacketIQ iq = (BinaryPacketIQ) listener.first.deserialize(mSerializerFactory, binaryDecoder);
-                mReaderExecutorService.submit(() -> listener.second.processPacket(iq));
+            final PacketHandler handler;
+            synchronized (mBinaryListeners) {
+                handler = mBinaryListeners.get(key);
+            }
+            if (handler != null) {
+                BinaryPacketIQ iq = (BinaryPacketIQ) handler.serializer.deserialize(mSerializerFactory, binaryDecoder);
+                final DispatchLane lane;
+                if (mDispatchMode == DispatchMode.SERIAL) {
+                    lane = mDefaultLane;
+                } else if (handler.owner != null) {
+                    lane = getServiceLane(handler.owner.getServiceId(iq));
+                } else {
+                    lane = handler.lane;
+                }
+                lane.submit(() -> handler.listener.processPacket(iq));
             }
 
         } catch (Exception ex) {
@@ -296,6 +296,97 @@ public interface ConversationService extends BaseService<ConversationService.Ser
         }
     }
 
+    /**
+     * Last descriptor of a conversation with its number of unread descriptors and the date of its last descriptor.
+     */
+    class LastDescriptor {
+        @Nullable
+        private final Descriptor mDescriptor;
+        private final int mUnreadCount;
+        private final long mLastActivity;
+
+        public LastDescriptor(@Nullable Descriptor descriptor, int unreadCount, long lastActivity) {
+            mDescriptor = descriptor;
+            mUnreadCount = unreadCount;
+            mLastActivity = lastActivity;
+        }
+
+        @Nullable
+        public Descriptor getDescriptor() {
+
+            return mDescriptor;
+        }
+
+        public int getUnreadCount() {
+
+            return mUnreadCount;
+        }
+
+        public long getLastActivity() {
+
+            return mLastActivity;
+        }
+    }
+
+    /**
+     * Congestion control state of the file transfer on a conversation (sizes in bytes, rates in bytes/s, times in ms).
+     */
+    class FileTransferStats {
+        private final long mWindow;
+        private final int mChunkSize;
+        private final long mGoodput;
+        private final long mBandwidth;
+        private final int mSmoothedRTT;
+        private final int mRTTVariance;
+        private final int mMinRTT;
+
+        public FileTransferStats(long window, int chunkSize, long goodput, long bandwidth,
+                                 int smoothedRTT, int rttVariance, int minRTT) {
+            mWindow = window;
+            mChunkSize = chunkSize;
+            mGoodput = goodput;
+            mBandwidth = bandwidth;
+            mSmoothedRTT = smoothedRTT;
+            mRTTVariance = rttVariance;
+            mMinRTT = minRTT;
+        }
+
+        public long getWindow() {
+
+            return mWindow;
+        }
+
+        public int getChunkSize() {
+
+            return mChunkSize;
+        }
+
+        public long getGoodput() {
+
+            return mGoodput;
+        }
+
+        public long getBandwidth() {
+
+            return mBandwidth;
+        }
+
+        public int getSmoothedRTT() {
+
+            return mSmoothedRTT;
+        }
+
+        public int getRTTVariance() {
+
+            return mRTTVariance;
+        }
+
+        public int getMinRTT() {
+
+            return mMinRTT;
+        }
+    }
+
     interface Descriptor {
 
         enum Type {
@@ -675,6 +766,15 @@ public interface ConversationService extends BaseService<ConversationService.Ser
     @Nullable
     Conversation getConversation(@NonNull RepositoryObject object);
 
+    /**
+     * Get the file transfer window, goodput and RTT measured on the conversation P2P connection.
+     *
+     * @param conversation the conversation.
+     * @return the file transfer stats or null if there is no P2P connection.
+     */
+    @Nullable
+    FileTransferStats getFileTransferStats(@NonNull Conversation conversation);
+
     void incomingPeerConnection(@NonNull UUID peerConnectionId, @NonNull RepositoryObject object,
                                 @NonNull TwincodeOutbound peerTwincodeOutbound, boolean create);
 
@@ -876,7 +976,8 @@ public interface ConversationService extends BaseService<ConversationService.Ser
 
     /**
      * Search the descriptors from a list of conversations and matching a given search text.
-     * The final list is composed of `{ conversation, descriptor }` pairs and sorted on the
+     * A message matches when its content contains the search text (ASCII letters are compared
+     * without case).  The final list is composed of `{ conversation, descriptor }` pairs and sorted on the
      * descriptor creation date.
      *
      * @param conversations the list of conversations
@@ -889,6 +990,23 @@ public interface ConversationService extends BaseService<ConversationService.Ser
                                                            @NonNull String searchText,
                                                            long beforeTimestamp, int maxDescriptors);
 
+    /**
+     * Search the descriptors from a list of conversations and matching a given search text.
+     * The final list is composed of `{ conversation, descriptor }` pairs and sorted on the
+     * relevance of the descriptor for the search text.  The messages are matched as for searchDescriptors().
+     * Until the search index is built, or when the search text has less than 3 characters, the list
+     * is sorted on the descriptor creation date.
+     *
+     * @param conversations the list of conversations
+     * @param offset the number of descriptors to skip (pagination).
+     * @param maxDescriptors the maximum number of descriptors to return.
+     * @return the list of descriptors or null if the service is disabled.
+     */
+    @Nullable
+    List<Pair<Conversation, Descriptor>> searchDescriptorsByRank(@NonNull List<Conversation> conversations,
+                                                                 @NonNull String searchText,
+                                                                 int offset, int maxDescriptors);
+
     /**
      * Get a map of conversations filtered by the given filter and for each of them, get the last descriptor
      * sent or received.  If a conversation has no descriptor, a null entry is added for it.
@@ -901,6 +1019,18 @@ public interface ConversationService extends BaseService<ConversationService.Ser
     Map<Conversation, Descriptor> getLastConversationDescriptors(@NonNull Filter<Conversation> filter,
                                                                  @NonNull DisplayCallsMode callsMode);
 
+    /**
+     * Get a map of conversations filtered by the given filter and for each of them, get the last descriptor,
+     * the number of unread descriptors and the creation date of the last descriptor (0 if there is no descriptor).
+     *
+     * @param filter the filter for the conversation.
+     * @param callsMode the mode to filter the call descriptors.
+     * @return the map of conversations with their last descriptor.
+     */
+    @Nullable
+    Map<Conversation, LastDescriptor> getLastDescriptors(@NonNull Filter<Conversation> filter,
+                                                         @NonNull DisplayCallsMode callsMode);
+
     /**
      * Get the twincode of descriptors used in the conversation and before the specified date.
      * When a type is given, look only for descriptors of the given type.
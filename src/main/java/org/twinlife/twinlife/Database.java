@@ -1,5 +1,5 @@
 /*
- *  Copyright (c) 2022-2024 twinlife SA.
+ *  Copyright (c) 2022-2025 twinlife SA.
  *  SPDX-License-Identifier: AGPL-3.0-only
  *
  *  Contributors:
@@ -30,7 +30,7 @@ public interface Database {
 
     void execSQL(@NonNull String sql) throws DatabaseException;
 
-    void execSQLWithArgs(@NonNull String sql, String[] args) throws DatabaseException;
+    void execSQLWithArgs(@NonNull String sql, Object[] args) throws DatabaseException;
 
     long insert(@NonNull String tablename, @Nullable String sql,
                 @NonNull ContentValues values) throws DatabaseException;
@@ -53,4 +53,14 @@ public interface Database {
 
     @Nullable
     Long longQuery(@NonNull String sql, Object[] args) throws DatabaseException;
+
+    /**
+     * Get a statement with typed parameters for the SQL.  The statement must be closed after its execution
+     * to give back its compiled program to the statement cache.
+     *
+     * @param sql the SQL statement with '?' parameters.
+     * @return the statement.
+     */
+    @NonNull
+    DatabaseStatement compileStatement(@NonNull String sql) throws DatabaseException;
 }
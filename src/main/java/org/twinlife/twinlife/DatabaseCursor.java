@@ -1,5 +1,5 @@
 /*
- *  Copyright (c) 2022-2023 twinlife SA.
+ *  Copyright (c) 2022-2025 twinlife SA.
  *  SPDX-License-Identifier: AGPL-3.0-only
  *
  *  Contributors:
@@ -94,6 +94,13 @@ public interface DatabaseCursor extends Closeable {
      */
     byte[] getBlob(int columnIndex) throws DatabaseException;
 
+    /**
+     * Returns the value of the requested column as a UUID.  The UUID is stored either as a
+     * 16 bytes BLOB or as a TEXT (UUID or base64 string form).
+     *
+     * @param columnIndex the zero-based index of the target column.
+     * @return the UUID or null if the column is null or is not a valid UUID.
+     */
     UUID getUUID(int columnIndex) throws DatabaseException;
 
     /**
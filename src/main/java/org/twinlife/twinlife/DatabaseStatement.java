@@ -0,0 +1,67 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.util.UUID;
+
+/**
+ * A SQL statement with typed bind parameters.
+ * <p>
+ * The statement is obtained from Database.compileStatement() and it is used by one thread at a time: the
+ * parameters are bound, the statement is executed and it is closed.  The program compiled by queryLong()
+ * is kept in the database statement cache when the statement is closed, and the program compiled by query()
+ * when its cursor is closed, so that the next query with the same SQL re-uses it without parsing the SQL
+ * again.  The parameter index starts at 1.
+ */
+public interface DatabaseStatement extends Closeable {
+
+    void bindLong(int index, long value);
+
+    void bindInt(int index, int value);
+
+    void bindBlob(int index, @NonNull byte[] value);
+
+    void bindString(int index, @NonNull String value);
+
+    /**
+     * Bind the UUID in its 16 bytes binary form (see Utils.toBytes()).
+     *
+     * @param index the parameter index.
+     * @param value the UUID.
+     */
+    void bindUUID(int index, @NonNull UUID value);
+
+    void bindNull(int index);
+
+    /**
+     * Execute the query with the bound parameters.  The cursor remains valid after the statement is closed
+     * and it must be closed to give back its compiled program to the statement cache.
+     *
+     * @return the cursor on the result.
+     */
+    @NonNull
+    DatabaseCursor query() throws DatabaseException;
+
+    /**
+     * Execute the query with the bound parameters and return the first column of the first row.
+     *
+     * @return the value or null if there is no row or the value is null.
+     */
+    @Nullable
+    Long queryLong() throws DatabaseException;
+
+    /**
+     * Give back the compiled program to the statement cache.
+     */
+    void close();
+}
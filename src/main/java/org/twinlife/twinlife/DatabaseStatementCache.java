@@ -0,0 +1,95 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the compiled programs of a database, indexed by their SQL.
+ * <p>
+ * A program is removed from the cache while it is used so that two threads never share the same
+ * compiled program: a second thread which needs the same SQL compiles its own program and the
+ * last one given back replaces the other which is disposed.  The programs evicted by the LRU are disposed
+ * and they are all disposed when the database is closed.
+ */
+final class DatabaseStatementCache<T extends DatabaseStatementCache.Entry> {
+
+    interface Entry {
+
+        @NonNull
+        String getSql();
+
+        void dispose();
+    }
+
+    static final int DEFAULT_SIZE = 64;
+
+    private final LinkedHashMap<String, T> mPrograms;
+    private boolean mClosed;
+
+    DatabaseStatementCache(int maxSize) {
+
+        mPrograms = new LinkedHashMap<String, T>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+
+                if (size() <= maxSize) {
+                    return false;
+                }
+                eldest.getValue().dispose();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Get the compiled program for the SQL.  The caller must give it back with release().
+     *
+     * @param sql the SQL statement.
+     * @return the program or null if it must be compiled.
+     */
+    @Nullable
+    synchronized T acquire(@NonNull String sql) {
+
+        return mPrograms.remove(sql);
+    }
+
+    /**
+     * Give back the program to the cache.  It is disposed when the cache is closed.
+     *
+     * @param program the program to give back.
+     */
+    synchronized void release(@NonNull T program) {
+
+        if (mClosed) {
+            program.dispose();
+            return;
+        }
+        final T previous = mPrograms.put(program.getSql(), program);
+        if (previous != null && previous != program) {
+            previous.dispose();
+        }
+    }
+
+    /**
+     * Dispose the programs when the database is closed.  The programs given back after are disposed.
+     */
+    synchronized void close() {
+
+        mClosed = true;
+        for (T program : mPrograms.values()) {
+            program.dispose();
+        }
+        mPrograms.clear();
+    }
+}
@@ -22,6 +22,7 @@ import org.webrtc.VideoTrack;
 import org.webrtc.RtpTransceiver.RtpTransceiverDirection;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.UUID;
 
 @SuppressWarnings("unused")
@@ -38,11 +39,33 @@ public interface PeerConnectionService extends BaseService<PeerConnectionService
 
         public boolean acceptIncomingCalls;
 
+        // Number of serial executor lanes for the peer connections (0 to select it from the number of CPUs).
+        public int executorLanes;
+
         public PeerConnectionServiceConfiguration() {
 
             super(BaseServiceId.PEER_CONNECTION_SERVICE_ID, VERSION, false);
 
             acceptIncomingCalls = false;
+            executorLanes = 0;
+        }
+    }
+
+    /**
+     * Statistics of a peer connection executor lane.
+     */
+    final class ExecutorStats {
+        public final int lane;
+        public final int queueDepth;
+        public final int peerConnections;
+        public final long taskCount;
+
+        public ExecutorStats(int lane, int queueDepth, int peerConnections, long taskCount) {
+
+            this.lane = lane;
+            this.queueDepth = queueDepth;
+            this.peerConnections = peerConnections;
+            this.taskCount = taskCount;
         }
     }
 
@@ -206,6 +229,14 @@ public interface PeerConnectionService extends BaseService<PeerConnectionService
      */
     boolean hasPeerConnections();
 
+    /**
+     * Get the queue depth and the number of peer connections of the executor lanes.
+     *
+     * @return the list of executor lane stats.
+     */
+    @NonNull
+    List<ExecutorStats> getExecutorStats();
+
     @NonNull
     ErrorCode listenPeerConnection(@NonNull UUID peerConnectionId, @NonNull PeerConnectionObserver observer);
 
@@ -273,6 +304,17 @@ public interface PeerConnectionService extends BaseService<PeerConnectionService
 
     void sendMessage(@NonNull UUID peerConnectionId, @NonNull StatType statType, @NonNull byte[] bytes);
 
+    /**
+     * Send the message and replace the long timestamp encoded at the given position with the
+     * current time when the message leaves the send queue.
+     *
+     * @param peerConnectionId the peer connection id.
+     * @param statType the stat counter to increment.
+     * @param bytes the message to send.
+     * @param timestampOffset the position of the encoded timestamp in the message.
+     */
+    void sendMessage(@NonNull UUID peerConnectionId, @NonNull StatType statType, @NonNull byte[] bytes, int timestampOffset);
+
     void sendPacket(@NonNull UUID peerConnectionId, @NonNull StatType statType, @NonNull BinaryPacketIQ iq);
 
     void incrementStat(@NonNull UUID peerConnectionId, @NonNull StatType statType);
@@ -1,5 +1,5 @@
 /*
- *  Copyright (c) 2022-2024 twinlife SA.
+ *  Copyright (c) 2022-2025 twinlife SA.
  *  SPDX-License-Identifier: AGPL-3.0-only
  *
  *  Contributors:
@@ -21,12 +21,18 @@ import java.util.zip.Inflater;
 /**
  * SDP sent to the peer or received from the peer.
  * <p>
- * The SDP can be compressed or encrypted.
+ * The SDP can be compressed or encrypted.  The compression can use a preset dictionary which must be
+ * supported by the peer: the dictionary id is sent with the compressed flag and the encryption key index.
  */
 public class Sdp {
     static int COMPRESS_LIMIT = 256;
+    static int DICTIONARY_COMPRESS_LIMIT = 64;
+
+    public static final int DICTIONARY_NONE = SdpDictionary.NONE;
+    public static final int DICTIONARY_V1 = SdpDictionary.V1;
 
     private final boolean mCompressed;
+    private final int mDictionary;
     private final byte[] mSdp;
     private final int mSdpLen;
     private final int mKeyIndex;
@@ -40,7 +46,22 @@ public class Sdp {
      * @param keyIndex the encryption key index > 0 if the SDP is encrypted (not yes supported).
      */
     public Sdp(@NonNull byte[] content, int length, boolean compressed, int keyIndex) {
+
+        this(content, length, compressed, DICTIONARY_NONE, keyIndex);
+    }
+
+    /**
+     * Create the SDP content from the binary content as received on the wire from the peer.
+     *
+     * @param content the content data.
+     * @param length the content length (the buffer can be larger than the real content).
+     * @param compressed true if the SDP is compressed.
+     * @param dictionary the preset dictionary used by the compression.
+     * @param keyIndex the encryption key index > 0 if the SDP is encrypted.
+     */
+    public Sdp(@NonNull byte[] content, int length, boolean compressed, int dictionary, int keyIndex) {
         mCompressed = compressed;
+        mDictionary = compressed ? dictionary : DICTIONARY_NONE;
         mSdp = content;
         mSdpLen = length;
         mKeyIndex = keyIndex;
@@ -53,30 +74,41 @@ public class Sdp {
      */
     public Sdp(@NonNull String content) {
 
+        this(content, DICTIONARY_NONE);
+    }
+
+    /**
+     * Create the SDP with the given content and compress it with the preset dictionary if necessary.
+     * The dictionary must be supported by the peer.
+     *
+     * @param content the SDP content to send on the wire to the peer.
+     * @param dictionary the preset dictionary or DICTIONARY_NONE.
+     */
+    public Sdp(@NonNull String content, int dictionary) {
+
         mKeyIndex = 0;
-        byte[] data = Utf8.getBytes(content);
-        if (data.length < COMPRESS_LIMIT) {
+        final byte[] data = Utf8.getBytes(content);
+        final byte[] preset = SdpDictionary.get(dictionary);
+        final byte[] buffer;
+        final int len;
+        if (data.length < (preset != null ? DICTIONARY_COMPRESS_LIMIT : COMPRESS_LIMIT)) {
+            buffer = null;
+            len = 0;
+        } else {
+            buffer = new byte[data.length];
+            len = compress(data, preset, buffer);
+        }
+
+        if (buffer == null || len <= 0) {
             mSdp = data;
             mSdpLen = data.length;
             mCompressed = false;
+            mDictionary = DICTIONARY_NONE;
         } else {
-            mSdp = new byte[data.length];
-
-            // Don't spend time on compression we better have bigger compressed content
-            // but faster compression because sending data can be fast enough on most networks.
-            final Deflater compresser = new Deflater(Deflater.BEST_SPEED);
-            compresser.setInput(data);
-            compresser.finish();
-
-            final int len = compresser.deflate(mSdp);
-
-            // Append the de-compressed size at the end so that we help the de-compression
-            // by telling it the size of buffer to allocate.
-            mSdp[len] = (byte) (data.length >> 8);
-            mSdp[len + 1] = (byte) (data.length & 0x0ff);
-            mSdpLen = len + 2;
+            mSdp = buffer;
+            mSdpLen = len;
             mCompressed = true;
-            compresser.end();
+            mDictionary = preset != null ? dictionary : DICTIONARY_NONE;
         }
     }
 
@@ -90,6 +122,16 @@ public class Sdp {
         return mCompressed;
     }
 
+    /**
+     * Get the preset dictionary used by the compression.
+     *
+     * @return the dictionary or DICTIONARY_NONE.
+     */
+    public int getDictionary() {
+
+        return mDictionary;
+    }
+
     /**
      * Returns true if the SDP is encrypted.
      *
@@ -122,22 +164,32 @@ public class Sdp {
             return null;
 
         } else if (mCompressed) {
+            final Inflater decompresser = new Inflater();
             try {
                 // Get the size of final decompressed SDP by looking at two bytes at end of compressed buffer.
                 final int len = ((int) (mSdp[mSdpLen - 1]) & 0x0FF) + (((int) (mSdp[mSdpLen - 2]) & 0x0FF) << 8);
 
-                final Inflater decompresser = new Inflater();
                 decompresser.setInput(mSdp, 0, mSdpLen - 2);
 
                 final byte[] result = new byte[len];
-                final int resultLength = decompresser.inflate(result);
-                decompresser.end();
+                int resultLength = decompresser.inflate(result);
+                if (resultLength == 0 && decompresser.needsDictionary()) {
+                    final byte[] preset = SdpDictionary.get(mDictionary);
+                    if (preset == null) {
+                        return null;
+                    }
+                    decompresser.setDictionary(preset);
+                    resultLength = decompresser.inflate(result);
+                }
                 if (resultLength == len) {
                     return Utf8.create(result, resultLength);
                 }
 
             } catch (Exception exception) {
                 return null;
+
+            } finally {
+                decompresser.end();
             }
 
             return null;
@@ -205,6 +257,43 @@ public class Sdp {
         return mSdpLen;
     }
 
+    /**
+     * Compress the SDP with an optional preset dictionary.
+     *
+     * @param data the SDP to compress.
+     * @param dictionary the preset dictionary or null.
+     * @param buffer the buffer with the same size as the SDP to write the compressed SDP followed by the SDP length.
+     * @return the length of the compressed SDP or 0 if the compression is not useful.
+     */
+    private static int compress(@NonNull byte[] data, @Nullable byte[] dictionary, @NonNull byte[] buffer) {
+
+        // Don't spend time on compression we better have bigger compressed content
+        // but faster compression because sending data can be fast enough on most networks.
+        final Deflater compresser = new Deflater(Deflater.BEST_SPEED);
+        try {
+            if (dictionary != null) {
+                compresser.setDictionary(dictionary);
+            }
+            compresser.setInput(data);
+            compresser.finish();
+
+            // Keep the compressed SDP only if it is smaller.
+            final int len = compresser.deflate(buffer, 0, data.length - 2);
+            if (!compresser.finished()) {
+                return 0;
+            }
+
+            // Append the de-compressed size at the end so that we help the de-compression
+            // by telling it the size of buffer to allocate.
+            buffer[len] = (byte) (data.length >> 8);
+            buffer[len + 1] = (byte) (data.length & 0x0ff);
+            return len + 2;
+
+        } finally {
+            compresser.end();
+        }
+    }
+
     /**
      * List of Audio and Video codecs which are accepted ("rtx" is added because it is required).
      */
@@ -389,6 +478,6 @@ public class Sdp {
     @Override
     public String toString() {
 
-        return "SDP[len=" + mSdpLen + ", " + (mCompressed ? " compressed" : "") + (mKeyIndex > 0 ? " key=" + mKeyIndex : "") + "]";
+        return "SDP[len=" + mSdpLen + ", " + (mCompressed ? " compressed" : "") + (mDictionary > 0 ? " dictionary=" + mDictionary : "") + (mKeyIndex > 0 ? " key=" + mKeyIndex : "") + "]";
     }
 }
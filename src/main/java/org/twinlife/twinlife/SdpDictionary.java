@@ -0,0 +1,120 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife;
+
+import androidx.annotation.Nullable;
+
+import org.twinlife.twinlife.util.Utf8;
+
+/**
+ * Preset dictionaries used to compress the SDP.
+ * <p>
+ * The dictionary holds the SDP text that is common to the offers and answers produced by WebRTC
+ * (codec lines, rtcp-fb, extmap URIs, data channel) so that the deflate stream can refer to it from the first
+ * byte.  Deflate matches are cheaper when they are close: the most frequent strings are at the end.
+ * It must not contain lines that depend on a browser or WebRTC version.
+ * <p>
+ * A dictionary is identified by the id which is sent with the SDP and it must never be changed once released:
+ * a new dictionary must be added with a new id and it must be enabled by a new peer call service version.
+ */
+final class SdpDictionary {
+
+    static final int NONE = 0;
+    static final int V1 = 1;
+
+    private static final String DICTIONARY_V1 =
+            "a=rtpmap:0 PCMU/8000\r\n"
+            + "a=rtpmap:8 PCMA/8000\r\n"
+            + "a=rtpmap:9 G722/8000\r\n"
+            + "a=rtpmap:13 CN/8000\r\n"
+            + "a=rtpmap:110 telephone-event/48000\r\n"
+            + "a=rtpmap:126 telephone-event/8000\r\n"
+            + "a=rtpmap:63 red/48000/2\r\n"
+            + "a=rtpmap:123 ulpfec/90000\r\n"
+            + "a=rtpmap:122 red/90000\r\n"
+            + "a=fmtp:98 level-asymmetry-allowed=1;packetization-mode=0;profile-level-id=42e01f\r\n"
+            + "a=fmtp:100 level-asymmetry-allowed=1;packetization-mode=1;profile-level-id=640c1f\r\n"
+            + "a=rtpmap:45 AV1/90000\r\n"
+            + "a=fmtp:98 profile-id=2\r\n"
+            + "a=fmtp:120 max-fs=12288;max-fr=60\r\n"
+            + "a=fmtp:109 maxplaybackrate=48000;stereo=1;useinbandfec=1\r\n"
+            + "a=ice-options:trickle\r\n"
+            + "a=extmap:3 urn:3gpp:video-orientation\r\n"
+            + "a=extmap:5 http://www.webrtc.org/experiments/rtp-hdrext/playout-delay\r\n"
+            + "a=extmap:6 http://www.webrtc.org/experiments/rtp-hdrext/video-content-type\r\n"
+            + "a=extmap:7 http://www.webrtc.org/experiments/rtp-hdrext/video-timing\r\n"
+            + "a=extmap:8 http://www.webrtc.org/experiments/rtp-hdrext/color-space\r\n"
+            + "a=extmap:10 urn:ietf:params:rtp-hdrext:sdes:rtp-stream-id\r\n"
+            + "a=extmap:11 urn:ietf:params:rtp-hdrext:sdes:repaired-rtp-stream-id\r\n"
+            + "a=extmap:1 urn:ietf:params:rtp-hdrext:toffset\r\n"
+            + "a=extmap:14 urn:ietf:params:rtp-hdrext:toffset\r\n"
+            + "a=rtcp-rsize\r\n"
+            + "a=ssrc-group:FID \r\n"
+            + "a=ssrc: cname:\r\n"
+            + "a=ssrc: msid:\r\n"
+            + "a=msid-semantic: WMS\r\n"
+            + "m=video 9 UDP/TLS/RTP/SAVPF 96 97 98 99 100 101 127 103 104 105 106 107 108 109\r\n"
+            + "a=rtpmap:96 VP8/90000\r\n"
+            + "a=rtpmap:98 VP9/90000\r\n"
+            + "a=rtpmap:102 H264/90000\r\n"
+            + "a=fmtp:102 level-asymmetry-allowed=1;packetization-mode=1;profile-level-id=42001f\r\n"
+            + "a=fmtp:106 profile-id=0\r\n"
+            + "a=fmtp:104 level-asymmetry-allowed=1;packetization-mode=1;profile-level-id=42e01f\r\n"
+            + "a=rtcp-fb:96 goog-remb\r\n"
+            + "a=rtcp-fb:96 transport-cc\r\n"
+            + "a=rtcp-fb:96 ccm fir\r\n"
+            + "a=rtcp-fb:96 nack\r\n"
+            + "a=rtcp-fb:96 nack pli\r\n"
+            + "a=rtpmap:97 rtx/90000\r\n"
+            + "a=fmtp:97 apt=96\r\n"
+            + "m=audio 9 UDP/TLS/RTP/SAVPF 111 63 9 0 8 13 110 126\r\n"
+            + "a=extmap:1 urn:ietf:params:rtp-hdrext:ssrc-audio-level\r\n"
+            + "a=extmap:2 http://www.webrtc.org/experiments/rtp-hdrext/abs-send-time\r\n"
+            + "a=extmap:3 http://www.ietf.org/id/draft-holmer-rmcat-transport-wide-cc-extensions-01\r\n"
+            + "a=extmap:4 urn:ietf:params:rtp-hdrext:sdes:mid\r\n"
+            + "a=rtpmap:111 opus/48000/2\r\n"
+            + "a=rtcp-fb:111 transport-cc\r\n"
+            + "a=fmtp:111 minptime=10;useinbandfec=1\r\n"
+            + "a=sendrecv\r\n"
+            + "a=msid:- \r\n"
+            + "m=application 9 UDP/DTLS/SCTP webrtc-datachannel\r\n"
+            + "a=sctp-port:5000\r\n"
+            + "a=max-message-size:262144\r\n"
+            + "v=0\r\n"
+            + "o=- 2 IN IP4 127.0.0.1\r\n"
+            + "s=-\r\n"
+            + "t=0 0\r\n"
+            + "a=group:BUNDLE 0 1 2\r\n"
+            + "a=extmap-allow-mixed\r\n"
+            + "c=IN IP4 0.0.0.0\r\n"
+            + "a=rtcp:9 IN IP4 0.0.0.0\r\n"
+            + "a=ice-options:trickle renomination\r\n"
+            + "a=fingerprint:sha-256 \r\n"
+            + "a=setup:actpass\r\n"
+            + "a=setup:active\r\n"
+            + "a=rtcp-mux\r\n"
+            + "a=ice-ufrag:\r\n"
+            + "a=ice-pwd:\r\n"
+            + "a=mid:0\r\n"
+            + "a=mid:1\r\n";
+
+    private static final byte[] DICTIONARY_V1_BYTES = Utf8.getBytes(DICTIONARY_V1);
+
+    /**
+     * Get the dictionary content.  The array is shared and it must not be modified.
+     *
+     * @param dictionary the dictionary id.
+     * @return the dictionary or null if it is not known.
+     */
+    @Nullable
+    static byte[] get(int dictionary) {
+
+        return dictionary == V1 ? DICTIONARY_V1_BYTES : null;
+    }
+}
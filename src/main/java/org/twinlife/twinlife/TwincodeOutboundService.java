@@ -16,7 +16,9 @@ import android.util.Pair;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @SuppressWarnings("unused")
@@ -65,6 +67,19 @@ public interface TwincodeOutboundService extends BaseService<TwincodeOutboundSer
 
     void getTwincode(@NonNull UUID twincodeOutboundId, long refreshPeriod, @NonNull Consumer<TwincodeOutbound> complete);
 
+    /**
+     * Get a list of twincodes.  The twincodes which are not known locally are fetched from the server:
+     * the requests made within a short delay are sent in a single request and a twincode which is
+     * already being fetched is not requested again.  The completion handler is called once with the
+     * twincodes that were found (the twincodes that don't exist are not part of the map).
+     *
+     * @param twincodeOutboundIds the twincode ids to get.
+     * @param refreshPeriod the refresh period for the twincodes we fetch from the server.
+     * @param complete completion handler called.
+     */
+    void getTwincodes(@NonNull Collection<UUID> twincodeOutboundIds, long refreshPeriod,
+                      @NonNull Consumer<Map<UUID, TwincodeOutbound>> complete);
+
     /**
      * Get the twincode signed by the public key and verify the attribute signatures when we get it from the server.
      * This operation is not cached and requires a round-trip to the server.
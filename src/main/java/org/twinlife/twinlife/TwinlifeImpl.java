@@ -75,6 +75,23 @@ public abstract class TwinlifeImpl implements Twinlife, ConnectionListener, Base
 
     /*
      * <pre>
+     * Database Version 29
+     *  Date: 2026/10/16
+     *   Store the twincodeId of twincodeOutbound and twincodeInbound, the uuid and schemaId of repository
+     *   as 16 bytes BLOB instead of TEXT.
+     *
+     * Database Version 28
+     *  Date: 2025/06/10
+     *   New index on the descriptor expiration deadline.
+     *
+     * Database Version 27
+     *  Date: 2025/06/05
+     *   New lastDescriptor table with the last descriptor, the unread count and the last activity of each conversation.
+     *
+     * Database Version 26
+     *  Date: 2025/06/02
+     *   New descriptorSearch FTS5 table to search the messages.
+     *
      * Database Version 25
      *  Date: 2024/10/14
      *   Fix twincodeOutbound flags after introduction of beta support for SDPs encryption keys (internal version).
@@ -264,7 +281,7 @@ public abstract class TwinlifeImpl implements Twinlife, ConnectionListener, Base
      * </pre>
      */
 
-    protected static final int DATABASE_VERSION = 25;
+    protected static final int DATABASE_VERSION = 29;
 
     //
     // Singleton instance
@@ -500,7 +517,7 @@ public abstract class TwinlifeImpl implements Twinlife, ConnectionListener, Base
         mSerializerFactoryImpl.addSerializers(twinlifeConfiguration.serializers);
 
         mWebSocketConnection = connection;
-        mWebSocketConnection.addPacketListener(BinaryErrorPacketIQ.IQ_ON_ERROR_SERIALIZER, this::onErrorPacket);
+        mWebSocketConnection.addPacketListener(BinaryErrorPacketIQ.IQ_ON_ERROR_SERIALIZER, this::getErrorPacketOwner, this::onErrorPacket);
 
         // Create all service instances.
         mAccountServiceImpl = new AccountServiceImpl(this, mWebSocketConnection, applicationId,
@@ -695,6 +712,7 @@ public abstract class TwinlifeImpl implements Twinlife, ConnectionListener, Base
 
         destroy();
 
+        mDatabaseService.releaseIds();
         closeDatabase();
     }
 
@@ -1196,6 +1214,7 @@ public abstract class TwinlifeImpl implements Twinlife, ConnectionListener, Base
                 result.put(baseService.getServiceName(), baseService.getServiceStats());
             }
         }
+        result.put("DatabaseService", mDatabaseService.getServiceStats());
         return result;
     }
 
@@ -1241,6 +1260,28 @@ public abstract class TwinlifeImpl implements Twinlife, ConnectionListener, Base
     // Private Methods
     //
 
+    /**
+     * Find the service which sent the request for which we received the error so that the error
+     * is processed on the service dispatch lane, after the responses received before it.
+     *
+     * @param iq the error packet.
+     * @return the service which is waiting for the response or null.
+     */
+    @Nullable
+    private BaseServiceId getErrorPacketOwner(@NonNull BinaryPacketIQ iq) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "getErrorPacketOwner: iq=" + iq);
+        }
+
+        final long requestId = iq.getRequestId();
+        for (BaseServiceImpl<?> baseService : mBaseServiceImpls) {
+            if (baseService.isServiceOn() && baseService.isPendingRequest(requestId)) {
+                return baseService.getId();
+            }
+        }
+        return null;
+    }
+
     private void onErrorPacket(@NonNull BinaryPacketIQ iq) {
         if (DEBUG) {
             Log.d(LOG_TAG, "onErrorPacket: iq=" + iq);
@@ -20,6 +20,7 @@ import org.libwebsockets.Observer;
 import org.libwebsockets.ErrorCategory;
 import org.libwebsockets.Session;
 import org.libwebsockets.SocketProxyDescriptor;
+import org.twinlife.twinlife.util.BinaryPacketBuffer;
 import org.twinlife.twinlife.util.Logger;
 
 import java.nio.ByteBuffer;
@@ -357,6 +358,23 @@ public class WebSocketConnection extends Connection implements Observer {
         }
     }
 
+    @Override
+    public boolean sendDataPacket(@NonNull BinaryPacketBuffer packet) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "sendPacket packet.size=" + packet.size());
+        }
+
+        synchronized (mConnectionLock) {
+            if (mSession == null) {
+                return false;
+            }
+
+            // The libwebsockets session only sends a complete byte[]: the encode buffer content is
+            // copied once in an exact size array, and only when the session is opened.
+            return mSession.sendMessage(packet.toByteArray(), true);
+        }
+    }
+
     @Override
     public void onConnect(long sessionId, @NonNull ConnectionStats[] stats, int active) {
         if (DEBUG) {
@@ -142,15 +142,15 @@ public class AccountServiceImpl extends BaseServiceImpl<AccountService.ServiceOb
         mSerializerFactory.addSerializer(IQ_PONG_SERIALIZER);
 
         // Register the binary IQ handlers for the responses.
-        connection.addPacketListener(IQ_ON_AUTH_CHALLENGE_SERIALIZER, this::onAuthChallenge);
-        connection.addPacketListener(IQ_ON_AUTH_REQUEST_SERIALIZER, this::onAuthRequest);
-        connection.addPacketListener(IQ_ON_AUTH_ERROR_SERIALIZER, this::onAuthError);
-        connection.addPacketListener(IQ_ON_CREATE_ACCOUNT_SERIALIZER, this::onCreateAccount);
-        connection.addPacketListener(IQ_ON_DELETE_ACCOUNT_SERIALIZER, this::onDeleteAccount);
-        connection.addPacketListener(IQ_ON_CHANGE_PASSWORD_SERIALIZER, this::onChangePassword);
-        connection.addPacketListener(IQ_ON_SUBSCRIBE_FEATURE_SERIALIZER, this::onSubscribeFeature);
-        connection.addPacketListener(IQ_ON_CANCEL_FEATURE_SERIALIZER, this::onSubscribeFeature);
-        connection.addPacketListener(IQ_ON_SERVER_PING_SERIALIZER, this::onServerPingIQ);
+        connection.addPacketListener(BaseServiceId.ACCOUNT_SERVICE_ID, IQ_ON_AUTH_CHALLENGE_SERIALIZER, this::onAuthChallenge);
+        connection.addPacketListener(BaseServiceId.ACCOUNT_SERVICE_ID, IQ_ON_AUTH_REQUEST_SERIALIZER, this::onAuthRequest);
+        connection.addPacketListener(BaseServiceId.ACCOUNT_SERVICE_ID, IQ_ON_AUTH_ERROR_SERIALIZER, this::onAuthError);
+        connection.addPacketListener(BaseServiceId.ACCOUNT_SERVICE_ID, IQ_ON_CREATE_ACCOUNT_SERIALIZER, this::onCreateAccount);
+        connection.addPacketListener(BaseServiceId.ACCOUNT_SERVICE_ID, IQ_ON_DELETE_ACCOUNT_SERIALIZER, this::onDeleteAccount);
+        connection.addPacketListener(BaseServiceId.ACCOUNT_SERVICE_ID, IQ_ON_CHANGE_PASSWORD_SERIALIZER, this::onChangePassword);
+        connection.addPacketListener(BaseServiceId.ACCOUNT_SERVICE_ID, IQ_ON_SUBSCRIBE_FEATURE_SERIALIZER, this::onSubscribeFeature);
+        connection.addPacketListener(BaseServiceId.ACCOUNT_SERVICE_ID, IQ_ON_CANCEL_FEATURE_SERIALIZER, this::onSubscribeFeature);
+        connection.addPacketListener(BaseServiceId.ACCOUNT_SERVICE_ID, IQ_ON_SERVER_PING_SERIALIZER, this::onServerPingIQ);
 
         mApplicationId = applicationId;
         mServiceId = serviceId;
@@ -41,8 +41,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
@@ -62,11 +66,11 @@ import static org.twinlife.twinlife.BaseService.DEFAULT_REQUEST_ID;
  *    => mListFiles is looked to compute such stats.
  * 3/ Send list of files with information in batch of 64-files max taking into account the file size limit
  *    => mListFiles is cleaned while the list is sent to the peer
- *       mSendingFiles is populated with the list of files
+ *       mSendingFiles is populated with the list of files (mSmallFiles for the small files when the peer supports PutFilesIQ)
  *       files bigger that mMaxFileSize are dropped.
  * 4/ Send data blocks.
  * 5/ Send the application settings.
- * 6/ Send the database.
+ * 6/ Send the database.  With a 2.3 peer, only the blocks that the peer does not hold are sent (see DatabaseBlockTransfer).
  *    IMPORTANT NOTE: the database file must be copied in the location pointed to by Android getDatabasePath()
  *    otherwise, the renameTo() that we are doing can fail.  We must also handle the copy of either twinlife.db
  *    or twinlife.cipher or twinlife-4.cipher: it can happen that there was not enough space for the SQLcipher
@@ -92,9 +96,11 @@ import static org.twinlife.twinlife.BaseService.DEFAULT_REQUEST_ID;
  * </pre>
  * During a file transfer, the FileInfoImpl can move as follows:
  * <pre>
- * [sendFileChunk() => mWaitAckFiles] -> [processOnPutFile() => deleted if file transfer OK]
+ * [sendFileChunk() => mWaitAckFiles] -> [processOnPutFile() => mSentFiles if file transfer OK]
  *                                    -> [processOnPutFile() => mSendingFiles if file transfer KO]
  * </pre>
+ * Small files are sent by groups in a PutFilesIQ while the big files are sent one chunk at a time with a PutFileIQ.
+ * Each file of a PutFilesIQ is acknowledged by its own OnPutFileIQ.
  * For the receiving side, the FileInfoImpl instances are inserted by processListFiles() and removed when a successful
  * transfer is made by processPutFile().
  * <p>
@@ -102,7 +108,8 @@ import static org.twinlife.twinlife.BaseService.DEFAULT_REQUEST_ID;
  * and start with a new fresh state.  This is done in three steps:
  * <p>
  * - cleanup() is called at disconnection time to close the opened files, cleanup the FileInfoImpl maps,
- * - scanDirectory() is called at disconnection time to get a fresh new accurate mListFiles map,
+ * - scanDirectory() is called at disconnection time to get a fresh new accurate mListFiles map, the files recorded
+ *   in mSentFiles are not sent again and other files resume from the offset reported by the peer in OnListFilesIQ,
  * - progress counters are cleared by onOpenDataChannel() when we are re-connected.
  */
 class AccountMigrationExecutor extends PeerConnectionObserver {
@@ -112,6 +119,8 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
     private static final int MAX_FILES_PER_IQ = 64;       // Max files reported for ListFilesIQ
     private static final int MAX_PENDING_REQUESTS = 64;   // We can send 64 PutFileIQ without waiting the corresponding OnPutFileIQ response.
     private static final int DATA_CHUNK_SIZE = 64 * 1024; // DATA_CHUNK_SIZE * MAX_PENDING_REQUEST must be <= 16Mb (WebRTC SCTP constraint).
+    private static final int SMALL_FILE_SIZE = 16 * 1024; // Files with less remaining bytes are batched in a PutFilesIQ.
+    private static final int MAX_FILES_PER_PUT = 32;      // Max files sent in a PutFilesIQ (total data is <= DATA_CHUNK_SIZE).
 
     static final String TWINLIFE_SECURED_CONFIGURATION_KEY = "TwinlifeSecuredConfiguration";
     static final String ACCOUNT_SERVICE_SECURED_CONFIGURATION_KEY = "AccountServiceSecuredConfiguration";
@@ -152,6 +161,8 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
     private static final StatType IQ_STAT_ON_LIST_FILES = StatType.IQ_RESULT_PUSH_FILE;
     private static final StatType IQ_STAT_PUT_FILE = StatType.IQ_SET_PUSH_FILE_CHUNK;
     private static final StatType IQ_STAT_ON_PUT_FILE = StatType.IQ_RESULT_PUSH_FILE_CHUNK;
+    private static final StatType IQ_STAT_QUERY_BLOCKS = StatType.IQ_SET_UPDATE_OBJECT;
+    private static final StatType IQ_STAT_ON_QUERY_BLOCKS = StatType.IQ_RESULT_UPDATE_OBJECT;
     private static final StatType IQ_STAT_SETTINGS = StatType.IQ_SET_INVITE_GROUP;
     private static final StatType IQ_STAT_START = StatType.IQ_SET_PUSH_TWINCODE;
     private static final StatType IQ_STAT_ACCOUNT = StatType.IQ_SET_PUSH_GEOLOCATION;
@@ -163,6 +174,9 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
     private static final UUID LIST_FILES_SCHEMA_ID = UUID.fromString("5964dbf0-5620-4c78-963b-c6e08665fc33");
     private static final UUID START_SCHEMA_ID = UUID.fromString("8a26fefe-6bd5-45e2-9098-3d736d8a1c4e");
     private static final UUID PUT_FILE_SCHEMA_ID = UUID.fromString("ccc791c2-3a5c-4d83-ab06-48137a4ad262");
+    private static final UUID PUT_FILES_SCHEMA_ID = UUID.fromString("b5f3a6d4-2c1e-4f0b-9e57-6a8d3c1f24e9");
+    private static final UUID QUERY_BLOCKS_SCHEMA_ID = UUID.fromString("6e0d2b8a-94c7-4a1e-bb3f-2f57c8e1d630");
+    private static final UUID PUT_BLOCK_SCHEMA_ID = UUID.fromString("0f8e6c52-7b3d-4d1a-a9c4-58e2b7f31d06");
     private static final UUID SETTINGS_SCHEMA_ID = UUID.fromString("09557d03-3af7-4151-aa60-c6a4b992e18b");
     private static final UUID SWAP_ACCOUNT_SCHEMA_ID = UUID.fromString("11161f66-68e9-4cb4-8c12-241f4e071af4");
     private static final UUID TERMINATE_MIGRATION_SCHEMA_ID = UUID.fromString("a35089f8-326f-4f25-b160-e0f9f2c9795c");
@@ -172,11 +186,15 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
     private static final UUID ON_QUERY_STAT_SCHEMA_ID = UUID.fromString("0906f883-6adf-4d90-9252-9ab401fbe531");
     private static final UUID ON_LIST_FILES_SCHEMA_ID = UUID.fromString("e74fea73-abc7-42ca-ad37-b636f6c4df2b");
     private static final UUID ON_PUT_FILE_SCHEMA_ID = UUID.fromString("ef7b3c03-33d5-49c2-8644-79ea2688403e");
+    private static final UUID ON_QUERY_BLOCKS_SCHEMA_ID = UUID.fromString("d41c7f3e-5a90-4b26-8e1d-93a6f0b2c75e");
 
     private static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_QUERY_STAT_SERIALIZER = QueryStatsIQ.createSerializer(QUERY_STAT_SCHEMA_ID, 1);
     private static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_LIST_FILES_SERIALIZER = ListFilesIQ.createSerializer(LIST_FILES_SCHEMA_ID, 1);
     private static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_START_SERIALIZER = StartIQ.createSerializer(START_SCHEMA_ID, 1);
     private static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_PUT_FILE_SERIALIZER = PutFileIQ.createSerializer(PUT_FILE_SCHEMA_ID, 1);
+    private static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_PUT_FILES_SERIALIZER = PutFilesIQ.createSerializer(PUT_FILES_SCHEMA_ID, 1);
+    private static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_QUERY_BLOCKS_SERIALIZER = QueryBlocksIQ.createSerializer(QUERY_BLOCKS_SCHEMA_ID, 1);
+    private static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_PUT_BLOCK_SERIALIZER = PutFileIQ.createSerializer(PUT_BLOCK_SCHEMA_ID, 1);
     private static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_SETTINGS_SERIALIZER = SettingsIQ.createSerializer(SETTINGS_SCHEMA_ID, 1);
     private static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_SWAP_ACCOUNT_SERIALIZER = AccountIQ.createSerializer(SWAP_ACCOUNT_SCHEMA_ID, 1);
     private static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_TERMINATE_MIGRATION_SERIALIZER = TerminateMigrationIQ.createSerializer(TERMINATE_MIGRATION_SCHEMA_ID, 1);
@@ -186,15 +204,19 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
     private static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_ON_QUERY_STAT_SERIALIZER = OnQueryStatsIQ.createSerializer(ON_QUERY_STAT_SCHEMA_ID, 1);
     private static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_ON_LIST_FILES_SERIALIZER = OnListFilesIQ.createSerializer(ON_LIST_FILES_SCHEMA_ID, 1);
     private static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_ON_PUT_FILE_SERIALIZER = OnPutFileIQ.createSerializer(ON_PUT_FILE_SCHEMA_ID, 1);
+    private static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_ON_QUERY_BLOCKS_SERIALIZER = OnQueryBlocksIQ.createSerializer(ON_QUERY_BLOCKS_SCHEMA_ID, 1);
 
     private final AccountMigrationServiceImpl mAccountMigrationService;
     private final Set<Long> mPendingIQRequests;
     private final List<FileInfoImpl> mListFiles;
     private final Map<Integer, FileInfoImpl> mWaitListFiles;
     private final Map<Integer, FileInfoImpl> mSendingFiles;
+    private final Map<Integer, FileInfoImpl> mSmallFiles;
     private final Map<Integer, FileInfoImpl> mReceivingFiles;
     private final Map<Integer, FileInfoImpl> mWaitAckFiles;
     private final Map<Integer, ReceivingFileInfo> mReceivingStreams;
+    private final Map<String, FileInfoImpl> mSentFiles;
+    private final Map<Integer, RandomAccessFile> mReceivingBlocks;
     private final ConfigurationService mConfigurationService;
     private final File mRootDirectory;
     private final File mMigrationDirectory;
@@ -213,6 +235,8 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
     private long mReceiveTotal = 0;
     private long mSendPending = 0;
     private long mReceivePending = 0;
+    private long mSentFilesSize = 0;
+    private long mReceivedFilesSize = 0;
     private boolean mAccountReceived = false;
     private boolean mAccountSent = false;
     private boolean mSettingsReceived = false;
@@ -222,6 +246,10 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
     private int mReceiveErrorCount = 0;
     private int mSendErrorCount = 0;
     private SendingFileInfo mSendingFile;
+    @Nullable
+    private DatabaseBlockTransfer mDatabaseTransfer;
+    private boolean mDatabaseBlockFailed = false;
+    private long mReceiveBlockPending = 0;
     private volatile AccountMigrationService.State mState = State.STARTING;
     private long mLastReport = 0;
     private QueryInfoImpl mPeerInfo;
@@ -237,6 +265,10 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
         serializerFactory.addSerializer(IQ_LIST_FILES_SERIALIZER);
         serializerFactory.addSerializer(IQ_START_SERIALIZER);
         serializerFactory.addSerializer(IQ_PUT_FILE_SERIALIZER);
+        serializerFactory.addSerializer(IQ_PUT_FILES_SERIALIZER);
+        serializerFactory.addSerializer(IQ_QUERY_BLOCKS_SERIALIZER);
+        serializerFactory.addSerializer(IQ_PUT_BLOCK_SERIALIZER);
+        serializerFactory.addSerializer(IQ_ON_QUERY_BLOCKS_SERIALIZER);
         serializerFactory.addSerializer(IQ_SETTINGS_SERIALIZER);
         serializerFactory.addSerializer(IQ_ON_QUERY_STAT_SERIALIZER);
         serializerFactory.addSerializer(IQ_ON_PUT_FILE_SERIALIZER);
@@ -261,11 +293,14 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
         mConfigurationService = twinlifeImpl.getConfigurationService();
         mAccountMigrationId = accountMigrationId;
         mSendingFiles = new HashMap<>();
+        mSmallFiles = new LinkedHashMap<>();
         mReceivingFiles = new HashMap<>();
         mListFiles = new ArrayList<>();
         mWaitListFiles = new HashMap<>();
         mWaitAckFiles = new HashMap<>();
         mReceivingStreams = new HashMap<>();
+        mSentFiles = new HashMap<>();
+        mReceivingBlocks = new HashMap<>();
         mPendingIQRequests = new HashSet<>();
         mRootDirectory = rootDirectory;
         mDatabase = database;
@@ -293,6 +328,11 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
         addPacketListener(IQ_ON_LIST_FILES_SERIALIZER, this::onOnListFilesIQ);
 
         addPacketListener(IQ_PUT_FILE_SERIALIZER, this::onPutFileIQ);
+        addPacketListener(IQ_PUT_FILES_SERIALIZER, this::onPutFilesIQ);
+
+        addPacketListener(IQ_QUERY_BLOCKS_SERIALIZER, this::onQueryBlocksIQ);
+        addPacketListener(IQ_ON_QUERY_BLOCKS_SERIALIZER, this::onOnQueryBlocksIQ);
+        addPacketListener(IQ_PUT_BLOCK_SERIALIZER, this::onPutBlockIQ);
         addPacketListener(IQ_ON_PUT_FILE_SERIALIZER, this::onOnPutFileIQ);
 
         addPacketListener(IQ_SETTINGS_SERIALIZER, this::onSettingsIQ);
@@ -380,6 +420,7 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
         mWaitAckFiles.clear();
         mReceivingFiles.clear();
         mSendingFiles.clear();
+        mSmallFiles.clear();
         mPendingIQRequests.clear();
         mNeedRestart = true;
 
@@ -402,6 +443,23 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
             mSendingFile.cancel();
             mSendingFile = null;
         }
+
+        // Cancel the database block transfer: the blocks already written by the peer are kept.
+        if (mDatabaseTransfer != null) {
+            mDatabaseTransfer.cancel();
+            mDatabaseTransfer = null;
+        }
+        for (RandomAccessFile file : mReceivingBlocks.values()) {
+            try {
+                file.close();
+            } catch (IOException exception) {
+                if (Logger.DEBUG) {
+                    Logger.debug(LOG_TAG, "close", exception);
+                }
+            }
+        }
+        mReceivingBlocks.clear();
+        mReceiveBlockPending = 0;
     }
 
     /**
@@ -434,19 +492,25 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
 
         } else if (mNeedRestart && state != State.CANCELED && state != State.TERMINATED && state != State.ERROR && state != State.NEGOTIATE) {
             mNeedRestart = false;
-            mSent = 0;
-            mReceived = 0;
+
+            // Files fully transferred before the interruption are not sent again (see scanDirectory()):
+            // keep them in the progress.  A peer before 2.2 does not skip them and will send them again.
+            if (!isPeerVersion(2, 2)) {
+                mReceivedFilesSize = 0;
+            }
+            mSent = mSentFilesSize;
+            mReceived = mReceivedFilesSize;
             mSendPending = 0;
             mReceivePending = 0;
             if (mPeerInfo != null) {
-                mReceiveTotal = mPeerInfo.getDatabaseFileSize();
+                mReceiveTotal = mPeerInfo.getDatabaseFileSize() + mReceivedFilesSize;
             } else {
-                mReceiveTotal = 0;
+                mReceiveTotal = mReceivedFilesSize;
             }
             if (mLocalInfo != null) {
-                mSendTotal = mLocalInfo.getDatabaseFileSize();
+                mSendTotal = mLocalInfo.getDatabaseFileSize() + mSentFilesSize;
             } else {
-                mSendTotal = 0;
+                mSendTotal = mSentFilesSize;
             }
             setState(State.LIST_FILES);
 
@@ -700,6 +764,80 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
         mExecutor.execute(() -> processPutFile((PutFileIQ)iq));
     }
 
+    /**
+     * Put several files operation.
+     *
+     * Each file is handled as a put-file operation and is acknowledged by its own on-put-file response.
+     *
+     * @param iq the put-files request.
+     */
+    private void onPutFilesIQ(@NonNull BinaryPacketIQ iq) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "onPutFilesIQ iq=" + iq);
+        }
+
+        if (!(iq instanceof PutFilesIQ)) {
+            throw new IllegalArgumentException("Invalid IQ");
+        }
+
+        mExecutor.execute(() -> processPutFiles((PutFilesIQ)iq));
+    }
+
+    /**
+     * Query blocks operation.
+     *
+     * Compute the SHA256 of the blocks of a file that we have already received.
+     *
+     * @param iq the query blocks request.
+     */
+    private void onQueryBlocksIQ(@NonNull BinaryPacketIQ iq) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "onQueryBlocksIQ iq=" + iq);
+        }
+
+        if (!(iq instanceof QueryBlocksIQ)) {
+            throw new IllegalArgumentException("Invalid IQ");
+        }
+
+        mExecutor.execute(() -> processQueryBlocks((QueryBlocksIQ)iq));
+    }
+
+    /**
+     * Response received after query-blocks operation.
+     *
+     * @param iq the on-query-blocks response.
+     */
+    private void onOnQueryBlocksIQ(@NonNull BinaryPacketIQ iq) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "onOnQueryBlocksIQ iq=" + iq);
+        }
+
+        if (!(iq instanceof OnQueryBlocksIQ)) {
+            throw new IllegalArgumentException("Invalid IQ");
+        }
+
+        mExecutor.execute(() -> processOnQueryBlocks((OnQueryBlocksIQ)iq));
+    }
+
+    /**
+     * Put block operation.
+     *
+     * Write a block of the database file at its position.
+     *
+     * @param iq the put-block request.
+     */
+    private void onPutBlockIQ(@NonNull BinaryPacketIQ iq) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "onPutBlockIQ iq=" + iq);
+        }
+
+        if (!(iq instanceof PutFileIQ)) {
+            throw new IllegalArgumentException("Invalid IQ");
+        }
+
+        mExecutor.execute(() -> processPutBlock((PutFileIQ)iq));
+    }
+
     /**
      * Response received after put-file operation.
      *
@@ -1028,7 +1166,7 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
                     fileInfo.setRemoteOffset(0);
                 }
                 mSendTotal += fileInfo.getSize();
-                mSendingFiles.put(fileInfo.getIndex(), fileInfo);
+                queueSendingFile(fileInfo);
             } else {
                 Log.w(LOG_TAG, "File " + state.mFileId + " was not found");
             }
@@ -1052,14 +1190,206 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
 
         mRequestTimeoutExpired = false;
 
-        ReceivingFileInfo fileStream = mReceivingStreams.get(iq.fileId);
+        processFileChunk(iq, iq.fileId, iq.offset, iq.fileData, iq.size, iq.sha256);
+    }
+
+    /**
+     * Receive a list of small files and handle each of them as a file chunk.
+     *
+     * @param iq the put-files IQ.
+     */
+    private void processPutFiles(@NonNull PutFilesIQ iq) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "processPutFiles iq=" + iq);
+        }
+
+        mRequestTimeoutExpired = false;
+
+        for (PutFilesIQ.FileChunk chunk : iq.files) {
+            processFileChunk(iq, chunk.fileId, chunk.offset, chunk.fileData, chunk.getSize(), chunk.sha256);
+        }
+    }
+
+    /**
+     * Compute the SHA256 of the blocks of a file we have received in a previous migration attempt.
+     *
+     * @param iq the query blocks IQ.
+     */
+    private void processQueryBlocks(@NonNull QueryBlocksIQ iq) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "processQueryBlocks iq=" + iq);
+        }
+
+        mRequestTimeoutExpired = false;
+
+        FileInfoImpl fileInfo = mReceivingFiles.get(iq.fileId);
+        File file = fileInfo == null ? null : toLocalPath(fileInfo);
+        List<byte[]> hashes;
+        if (file == null) {
+            Log.w(LOG_TAG, "File " + iq.fileId + " not registered in receiving list");
+            hashes = new ArrayList<>();
+        } else {
+            // Flush the blocks we are writing before reading them.
+            RandomAccessFile output = mReceivingBlocks.remove(iq.fileId);
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException exception) {
+                    if (Logger.DEBUG) {
+                        Logger.debug(LOG_TAG, "close", exception);
+                    }
+                }
+            }
+            hashes = DatabaseBlockTransfer.computeBlockHashes(file, iq.blockSize, iq.firstBlock, iq.count);
+        }
+
+        sendPeerPacket(IQ_STAT_ON_QUERY_BLOCKS, new OnQueryBlocksIQ(IQ_ON_QUERY_BLOCKS_SERIALIZER, iq, iq.fileId, iq.firstBlock, hashes));
+    }
+
+    /**
+     * Compare the block hashes of the peer with our database blocks to identify the blocks to send.
+     *
+     * @param iq the block hashes sent by the peer.
+     */
+    private void processOnQueryBlocks(@NonNull OnQueryBlocksIQ iq) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "processOnQueryBlocks iq=" + iq);
+        }
+
+        mRequestTimeoutExpired = false;
+
+        mPendingIQRequests.remove(iq.getRequestId());
+
+        final DatabaseBlockTransfer transfer = mDatabaseTransfer;
+        if (transfer != null && transfer.getFileIndex() == iq.fileId) {
+            try {
+                mSendPending += transfer.onBlockHashes(iq.firstBlock, iq.hashes);
+
+            } catch (IOException exception) {
+                if (Logger.ERROR) {
+                    Logger.error(LOG_TAG, "Cannot read database blocks: ", exception.getMessage());
+                }
+
+                // Switch to the sequential transfer.
+                transfer.cancel();
+                mDatabaseTransfer = null;
+                mDatabaseBlockFailed = true;
+                FileInfoImpl fileInfo = mWaitAckFiles.remove(iq.fileId);
+                if (fileInfo != null) {
+                    fileInfo.setRemoteOffset(0);
+                    queueSendingFile(fileInfo);
+                }
+            }
+
+            if (mState == State.WAIT_FILES) {
+                setState(State.SEND_DATABASE);
+            }
+        }
+
+        // Continue the migration process.
+        if (mState != AccountMigrationService.State.STOPPED) {
+            mExecutor.execute(this::processMigration);
+        }
+    }
+
+    /**
+     * Write a block of the database at its position.  The last IQ carries the SHA256 of the complete file
+     * which is verified before we acknowledge the file.
+     *
+     * @param iq the put block IQ.
+     */
+    private void processPutBlock(@NonNull PutFileIQ iq) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "processPutBlock iq=" + iq);
+        }
+
+        mRequestTimeoutExpired = false;
+
+        FileInfoImpl fileInfo = mReceivingFiles.get(iq.fileId);
+        File file = fileInfo == null ? null : toLocalPath(fileInfo);
+        if (file == null) {
+            Log.w(LOG_TAG, "File " + iq.fileId + " not registered in receiving list");
+
+            mReceiveErrorCount++;
+            sendPeerPacket(IQ_STAT_ON_PUT_FILE, new OnPutFileIQ(IQ_ON_PUT_FILE_SERIALIZER, iq, iq.fileId, -1));
+            return;
+        }
+
+        long offset;
+        try {
+            RandomAccessFile output = mReceivingBlocks.get(iq.fileId);
+            if (output == null) {
+                // Stop a sequential transfer of the same file if there is one.
+                ReceivingFileInfo fileStream = mReceivingStreams.remove(iq.fileId);
+                if (fileStream != null) {
+                    fileStream.cancel();
+                }
+                File parentDir = file.getParentFile();
+                if (parentDir != null && !parentDir.exists() && !parentDir.mkdirs()) {
+                    Log.w(LOG_TAG, "Cannot create " + parentDir.getPath());
+                }
+                output = new RandomAccessFile(file, "rw");
+                mReceivingBlocks.put(iq.fileId, output);
+            }
+
+            offset = iq.offset;
+            if (iq.fileData != null && iq.size > 0) {
+                output.seek(iq.offset);
+                output.write(iq.fileData, iq.dataOffset, iq.size);
+                offset += iq.size;
+                mReceivePending += iq.size;
+                mReceiveBlockPending += iq.size;
+            }
+
+            if (iq.sha256 != null) {
+                mReceivingBlocks.remove(iq.fileId);
+                output.setLength(iq.offset);
+                output.close();
+                mReceivePending -= mReceiveBlockPending;
+                mReceiveBlockPending = 0;
+
+                if (!Arrays.equals(iq.sha256, DatabaseBlockTransfer.computeDigest(file))) {
+                    offset = 0;
+                    if (Logger.ERROR) {
+                        Logger.error(LOG_TAG, "Bad receipt for ", iq.fileId);
+                    }
+                } else {
+                    mReceivingFiles.remove(iq.fileId);
+                    mReceived += iq.offset;
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            if (mLastReport + 500 < now) {
+                mLastReport = now;
+                updateProgress();
+            }
+
+        } catch (IOException exception) {
+            if (Logger.ERROR) {
+                Logger.error(LOG_TAG, "Fatal IO Error: ", exception.getMessage());
+            }
+            offset = -1; // IO error means we cannot retry.
+            mReceiveErrorCount++;
+            sendPeerPacket(IQ_STAT_ERROR, sendError(iq.getRequestId(), ErrorCode.IO_ERROR));
+        }
+        sendPeerPacket(IQ_STAT_ON_PUT_FILE, new OnPutFileIQ(IQ_ON_PUT_FILE_SERIALIZER, iq, iq.fileId, offset));
+    }
+
+    private void processFileChunk(@NonNull BinaryPacketIQ iq, int fileId, long chunkOffset, @Nullable byte[] fileData,
+                                  int size, @Nullable byte[] sha256) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "processFileChunk fileId=" + fileId + " chunkOffset=" + chunkOffset + " size=" + size);
+        }
+
+        ReceivingFileInfo fileStream = mReceivingStreams.get(fileId);
         if (fileStream == null) {
-            FileInfoImpl fileInfo = mReceivingFiles.get(iq.fileId);
+            FileInfoImpl fileInfo = mReceivingFiles.get(fileId);
             if (fileInfo == null) {
-                Log.w(LOG_TAG, "File " + iq.fileId + " not registered in receiving list");
+                Log.w(LOG_TAG, "File " + fileId + " not registered in receiving list");
 
                 mReceiveErrorCount++;
-                sendPeerPacket(IQ_STAT_ON_PUT_FILE, new OnPutFileIQ(IQ_ON_PUT_FILE_SERIALIZER, iq, iq.fileId, -1));
+                sendPeerPacket(IQ_STAT_ON_PUT_FILE, new OnPutFileIQ(IQ_ON_PUT_FILE_SERIALIZER, iq, fileId, -1));
                 return;
             }
 
@@ -1067,18 +1397,18 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
 
             Log.e(LOG_TAG, "Receiving file " + fileInfo.getPath());
             try {
-                fileStream = new ReceivingFileInfo(file, fileInfo, iq.offset);
+                fileStream = new ReceivingFileInfo(file, fileInfo, chunkOffset);
                 mReceivingStreams.put(fileInfo.getIndex(), fileStream);
 
             } catch (Exception exception) {
                 if (Logger.ERROR) {
-                    Logger.error(LOG_TAG, "Fatal IO error for ", iq.fileId, ": ", exception.getMessage());
+                    Logger.error(LOG_TAG, "Fatal IO error for ", fileId, ": ", exception.getMessage());
                 }
 
                 sendPeerPacket(IQ_STAT_ERROR, sendError(iq.getRequestId(), ErrorCode.IO_ERROR));
 
                 mReceiveErrorCount++;
-                sendPeerPacket(IQ_STAT_ON_PUT_FILE, new OnPutFileIQ(IQ_ON_PUT_FILE_SERIALIZER, iq, iq.fileId, -1));
+                sendPeerPacket(IQ_STAT_ON_PUT_FILE, new OnPutFileIQ(IQ_ON_PUT_FILE_SERIALIZER, iq, fileId, -1));
                 return;
             }
 
@@ -1088,25 +1418,25 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
         long offset;
         try {
             offset = fileStream.getPosition();
-            if (iq.offset > offset) {
+            if (chunkOffset > offset) {
                 // This error occurs when a file transfer is interrupted and a miss-match occurs due to some IQs
                 // that are not taken into account and must be discarded.
                 // Log.e(LOG_TAG, "Invalid offset: " + offset);
                 mReceivingStreams.remove(fileStream.getFileIndex());
                 fileStream.cancel();
-            } else if (iq.offset == offset) {
-                if (iq.size > 0) {
+            } else if (chunkOffset == offset) {
+                if (size > 0) {
                     mReceivePending -= offset;
-                    fileStream.write(iq.fileData, iq.size);
+                    fileStream.write(fileData, size);
                     offset = fileStream.getPosition();
                     mReceivePending += offset;
                 }
 
-                if (iq.sha256 != null) {
+                if (sha256 != null) {
                     mReceivingStreams.remove(fileStream.getFileIndex());
                     mReceivePending -= offset;
 
-                    if (!fileStream.close(iq.sha256)) {
+                    if (!fileStream.close(sha256)) {
                         offset = 0;
                         if (Logger.ERROR) {
                             Logger.error(LOG_TAG, "Bad receipt for ", fileStream.getFileIndex());
@@ -1115,6 +1445,9 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
                         // Log.e(LOG_TAG, "File " + fileStream.getFileIndex() + " received successfully");
                         mReceivingFiles.remove(fileStream.getFileIndex());
                         mReceived += offset;
+                        if (fileStream.getFileIndex() >= FIRST_FILE_INDEX) {
+                            mReceivedFilesSize += offset;
+                        }
                     }
                 }
 
@@ -1138,7 +1471,7 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
                 Logger.error(LOG_TAG, "Exception ", exception);
             }
         }
-        sendPeerPacket(IQ_STAT_ON_PUT_FILE, new OnPutFileIQ(IQ_ON_PUT_FILE_SERIALIZER, iq, iq.fileId, offset));
+        sendPeerPacket(IQ_STAT_ON_PUT_FILE, new OnPutFileIQ(IQ_ON_PUT_FILE_SERIALIZER, iq, fileId, offset));
     }
 
     /**
@@ -1155,6 +1488,20 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
         mRequestTimeoutExpired = false;
 
         FileInfoImpl fileInfo = mWaitAckFiles.get(iq.fileId);
+        final DatabaseBlockTransfer transfer = mDatabaseTransfer;
+        if (transfer != null && transfer.getFileIndex() == iq.fileId) {
+            if (transfer.isDigestRequest(iq.getRequestId()) || iq.offset < 0) {
+                // Database transfer by blocks is finished: if the peer rejects it, we send the file sequentially.
+                transfer.cancel();
+                mDatabaseTransfer = null;
+                if (iq.offset == 0) {
+                    mDatabaseBlockFailed = true;
+                }
+            } else {
+                // Acknowledge of a database block.
+                fileInfo = null;
+            }
+        }
         if (fileInfo != null) {
             // Log.d(LOG_TAG, "processOnPutFile iq=" + iq + " fileSize=" + fileInfo.getSize());
 
@@ -1162,6 +1509,12 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
             if (fileInfo.getSize() == iq.offset) {
                 mWaitAckFiles.remove(iq.fileId);
                 mSent += fileInfo.getSize();
+
+                // Remember the file so that it is not sent again if we are interrupted.
+                if (fileInfo.getIndex() >= FIRST_FILE_INDEX) {
+                    mSentFiles.put(fileInfo.getPath(), fileInfo);
+                    mSentFilesSize += fileInfo.getSize();
+                }
                 mSendPending -= fileInfo.getSize();
                 if (mSendPending < 0) {
                     mSendPending = 0;
@@ -1179,8 +1532,8 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
             } else if (iq.offset == 0 || iq.offset > fileInfo.getSize()
                     || (mSendingFile != null && !mSendingFile.isAcceptedDataChunk(fileInfo, iq.offset, MAX_PENDING_REQUESTS * DATA_CHUNK_SIZE))) {
                 mWaitAckFiles.remove(iq.fileId);
-                mSendingFiles.put(fileInfo.getIndex(), fileInfo);
                 fileInfo.setRemoteOffset(iq.offset);
+                queueSendingFile(fileInfo);
                 mSendPending -= fileInfo.getSize();
                 if (mSendPending < 0) {
                     mSendPending = 0;
@@ -1385,13 +1738,13 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
                 }
 
                 case SEND_FILES: {
-                    PutFileIQ putFileIQ = sendFileChunk();
+                    BinaryPacketIQ putFileIQ = sendFileChunk();
                     if (putFileIQ != null) {
-                        sendIQRequest(IQ_STAT_PUT_FILE, putFileIQ);
+                        sendIQRequest(putFileIQ instanceof QueryBlocksIQ ? IQ_STAT_QUERY_BLOCKS : IQ_STAT_PUT_FILE, putFileIQ);
                     } else if (!mWaitListFiles.isEmpty()) {
                         // Log.e(LOG_TAG, "Wait files: " + mWaitListFiles);
                         return;
-                    } else if (!mSendingFiles.isEmpty()) {
+                    } else if (!mSendingFiles.isEmpty() || !mSmallFiles.isEmpty()) {
                         // Log.e(LOG_TAG, "Still having files to send: " + mSendingFiles);
                         return;
                     } else if (!mWaitAckFiles.isEmpty()) {
@@ -1425,9 +1778,9 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
 
                 case SEND_DATABASE: {
                     // Log.e(LOG_TAG, "Sending database");
-                    PutFileIQ putFileIQ = sendFileChunk();
+                    BinaryPacketIQ putFileIQ = sendFileChunk();
                     if (putFileIQ != null) {
-                        sendIQRequest(IQ_STAT_PUT_FILE, putFileIQ);
+                        sendIQRequest(putFileIQ instanceof QueryBlocksIQ ? IQ_STAT_QUERY_BLOCKS : IQ_STAT_PUT_FILE, putFileIQ);
                     } else {
                         setState(State.WAIT_FILES);
                         // Log.e(LOG_TAG, "Switch to wait files");
@@ -1439,7 +1792,7 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
                     if (!mWaitListFiles.isEmpty()) {
                         // Log.e(LOG_TAG, "Waiting database list: " + mWaitListFiles);
                         return;
-                    } else if (!mSendingFiles.isEmpty()) {
+                    } else if (!mSendingFiles.isEmpty() || !mSmallFiles.isEmpty()) {
                         // Log.e(LOG_TAG, "Waiting database send : " + mSendingFiles);
                         setState(State.SEND_DATABASE);
                     } else if (!mWaitAckFiles.isEmpty()) {
@@ -1615,16 +1968,29 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
 
     /**
      * Identify a file that must be sent and make a chunk IQ to send the content.
+     * Small files are sent first and several of them are grouped in a PutFilesIQ.  The database is sent
+     * by blocks when the peer supports it.
      *
      * @return the file chunk IQ to send or null if there is nothing to send.
      */
     @Nullable
-    private PutFileIQ sendFileChunk() {
+    private BinaryPacketIQ sendFileChunk() {
         if (DEBUG) {
             Log.d(LOG_TAG, "sendFileChunk");
         }
 
         try {
+            if (!mSmallFiles.isEmpty()) {
+                PutFilesIQ putFilesIQ = sendSmallFiles();
+                if (putFilesIQ != null) {
+                    return putFilesIQ;
+                }
+            }
+
+            if (mDatabaseTransfer != null) {
+                return sendDatabaseBlock(mDatabaseTransfer);
+            }
+
             // Get the next file to send.
             if (mSendingFile == null) {
                 int size = mSendingFiles.size();
@@ -1640,15 +2006,12 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
                 FileInfoImpl sendFile = fileInfoEntry.getValue();
                 mWaitAckFiles.put(sendFile.getIndex(), sendFile);
 
-                File file;
-                if (sendFile.getIndex() == DATABASE_FILE_INDEX
-                        || sendFile.getIndex() == DATABASE_CIPHER_3_FILE_INDEX
-                        || sendFile.getIndex() == DATABASE_CIPHER_4_FILE_INDEX) {
-                    file = mDatabaseFile;
-                } else {
-                    file = new File(mRootDirectory, sendFile.getPath());
+                if (isDatabaseFile(sendFile) && isPeerVersion(2, 3) && !mDatabaseBlockFailed) {
+                    mDatabaseTransfer = new DatabaseBlockTransfer(mDatabaseFile, sendFile);
+                    return sendDatabaseBlock(mDatabaseTransfer);
                 }
-                mSendingFile = new SendingFileInfo(file, sendFile);
+
+                mSendingFile = new SendingFileInfo(getSendingPath(sendFile), sendFile);
                 if (mSendingFile.isFinished()) {
                     long requestId = newRequestId();
 
@@ -1658,7 +2021,9 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
                 }
             }
 
-            byte[] data = new byte[DATA_CHUNK_SIZE];
+            // Don't allocate a full chunk for the end of the file.
+            long remain = mSendingFile.getLength() - mSendingFile.getPosition();
+            byte[] data = new byte[(int) Math.max(0, Math.min(DATA_CHUNK_SIZE, remain))];
             long offset = mSendingFile.getPosition();
             int size = mSendingFile.read(data);
             int fileId = mSendingFile.getFileIndex();
@@ -1685,6 +2050,159 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
         }
     }
 
+    /**
+     * Read the remaining content of several small files and make a PutFilesIQ to send them.
+     * Each file is complete and carries its SHA256 signature.
+     *
+     * @return the put files IQ to send or null if there is nothing to send.
+     */
+    @Nullable
+    private PutFilesIQ sendSmallFiles() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "sendSmallFiles");
+        }
+
+        List<PutFilesIQ.FileChunk> files = new ArrayList<>();
+        long total = 0;
+        Iterator<FileInfoImpl> iterator = mSmallFiles.values().iterator();
+        while (iterator.hasNext() && files.size() < MAX_FILES_PER_PUT) {
+            FileInfoImpl sendFile = iterator.next();
+            long remain = sendFile.getSize() - sendFile.getRemoteOffset();
+            if (!files.isEmpty() && total + remain > DATA_CHUNK_SIZE) {
+                break;
+            }
+
+            iterator.remove();
+
+            SendingFileInfo sendingFile = null;
+            try {
+                sendingFile = new SendingFileInfo(getSendingPath(sendFile), sendFile);
+                long offset = sendingFile.getPosition();
+                byte[] data = null;
+                if (!sendingFile.isFinished()) {
+                    data = new byte[(int) (sendingFile.getLength() - offset)];
+                    int size = sendingFile.read(data);
+                    if (size != data.length) {
+                        data = Arrays.copyOf(data, Math.max(size, 0));
+                    }
+                }
+                files.add(new PutFilesIQ.FileChunk(sendFile.getIndex(), offset, data, sendingFile.getDigest()));
+                if (data != null) {
+                    total += data.length;
+                    mSendPending += data.length;
+                }
+                mWaitAckFiles.put(sendFile.getIndex(), sendFile);
+
+            } catch (Exception exception) {
+                if (Logger.ERROR) {
+                    Logger.error(LOG_TAG, "Cannot read ", sendFile.getIndex(), ": ", exception.getMessage());
+                }
+                if (sendingFile != null) {
+                    sendingFile.cancel();
+                }
+                mSendErrorCount++;
+            }
+        }
+
+        if (files.isEmpty()) {
+            return null;
+        }
+
+        long requestId = newRequestId();
+        return new PutFilesIQ(IQ_PUT_FILES_SERIALIZER, requestId, files);
+    }
+
+    /**
+     * Add the file in the list of files to send.  When the peer supports the PutFilesIQ, small files
+     * are put in a separate list to send them by groups.
+     *
+     * @param fileInfo the file to send.
+     */
+    private void queueSendingFile(@NonNull FileInfoImpl fileInfo) {
+
+        if (fileInfo.getSize() - fileInfo.getRemoteOffset() <= SMALL_FILE_SIZE && isPeerVersion(2, 2)) {
+            mSmallFiles.put(fileInfo.getIndex(), fileInfo);
+        } else {
+            mSendingFiles.put(fileInfo.getIndex(), fileInfo);
+        }
+    }
+
+    /**
+     * Check if the peer protocol version is at least the given version:
+     * - 2.2 supports the PutFilesIQ,
+     * - 2.3 supports the database block transfer.
+     *
+     * @param major the major version.
+     * @param minor the minor version.
+     * @return true if the peer supports the protocol version.
+     */
+    private boolean isPeerVersion(int major, int minor) {
+
+        return mPeerVersion != null && (mPeerVersion.major > major || (mPeerVersion.major == major && mPeerVersion.minor >= minor));
+    }
+
+    /**
+     * Make the IQ for the database block transfer: query the block hashes of the peer, send the blocks
+     * that are different and finish with the database SHA256.
+     *
+     * @param transfer the database block transfer.
+     * @return the IQ to send or null if we must wait for the peer block hashes.
+     * @throws IOException if the database cannot be read.
+     */
+    @Nullable
+    private BinaryPacketIQ sendDatabaseBlock(@NonNull DatabaseBlockTransfer transfer) throws IOException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "sendDatabaseBlock");
+        }
+
+        final int fileId = transfer.getFileIndex();
+        if (transfer.needQuery()) {
+            final int firstBlock = transfer.getQueryFirstBlock();
+            final int count = transfer.startQuery();
+
+            return new QueryBlocksIQ(IQ_QUERY_BLOCKS_SERIALIZER, newRequestId(), fileId,
+                    DatabaseBlockTransfer.BLOCK_SIZE, firstBlock, count);
+        }
+
+        if (transfer.hasData()) {
+            final long offset = transfer.getPosition();
+            final byte[] data = transfer.readChunk(DATA_CHUNK_SIZE);
+            mSendPending += data.length;
+
+            return new PutFileIQ(IQ_PUT_BLOCK_SERIALIZER, newRequestId(), fileId, data, 0, offset, data.length, null);
+        }
+
+        if (transfer.isComplete()) {
+            if (Logger.INFO) {
+                Logger.info(LOG_TAG, "Database sent by blocks, skipped ", transfer.getSkipped(), " of ", transfer.getLength());
+            }
+
+            final long requestId = newRequestId();
+            final byte[] sha256 = transfer.getDigest(requestId);
+            return new PutFileIQ(IQ_PUT_BLOCK_SERIALIZER, requestId, fileId, null, 0, transfer.getLength(), 0, sha256);
+        }
+
+        // Wait for the block hashes.
+        return null;
+    }
+
+    private static boolean isDatabaseFile(@NonNull FileInfoImpl fileInfo) {
+
+        return fileInfo.getIndex() == DATABASE_FILE_INDEX
+                || fileInfo.getIndex() == DATABASE_CIPHER_3_FILE_INDEX
+                || fileInfo.getIndex() == DATABASE_CIPHER_4_FILE_INDEX;
+    }
+
+    @NonNull
+    private File getSendingPath(@NonNull FileInfoImpl fileInfo) {
+
+        if (isDatabaseFile(fileInfo)) {
+            return mDatabaseFile;
+        } else {
+            return new File(mRootDirectory, fileInfo.getPath());
+        }
+    }
+
     /**
      * Collect the application settings and build the IQ to send them.
      *
@@ -1766,9 +2284,20 @@ class AccountMigrationExecutor extends PeerConnectionObserver {
                 } else {
                     long size = file.length();
                     long date = file.lastModified();
+                    String path = basePath + "/" + file.getName();
+
+                    // Skip the files that were transferred and acknowledged before an interruption.
+                    FileInfoImpl sentFile = mSentFiles.get(path);
+                    if (sentFile != null) {
+                        if (sentFile.getSize() == size && sentFile.getModificationDate() == date) {
+                            continue;
+                        }
+                        mSentFiles.remove(path);
+                        mSentFilesSize -= sentFile.getSize();
+                    }
 
                     mFileIndex++;
-                    FileInfoImpl fileInfo = new FileInfoImpl(mFileIndex,basePath + "/" + file.getName(), size, date);
+                    FileInfoImpl fileInfo = new FileInfoImpl(mFileIndex, path, size, date);
                     mListFiles.add(fileInfo);
                 }
             }
@@ -0,0 +1,352 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.accountMigration;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.twinlife.twinlife.util.FileInfoImpl;
+import org.twinlife.twinlife.util.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Transfer of the database file by blocks (protocol 2.3).
+ * <p>
+ * The database file is split in BLOCK_SIZE blocks.  The sender queries the SHA256 of the blocks that the peer
+ * already holds from a previous migration attempt (QueryBlocksIQ/OnQueryBlocksIQ) and it only sends the blocks
+ * which differ.  Blocks are written in place by the peer and the transfer terminates with the SHA256 of the
+ * complete file: the peer verifies the whole file and acknowledges with its size or with 0 when it does not
+ * match, in which case the sender falls back to the sequential file transfer.
+ * <p>
+ * SQLite pages are aligned on the block boundaries so that an interrupted migration, or a database that was
+ * slightly modified between two attempts, only costs the blocks that are missing or were changed.
+ */
+final class DatabaseBlockTransfer {
+    private static final String LOG_TAG = "DatabaseBlockTransfer";
+    private static final boolean DEBUG = false;
+
+    static final int BLOCK_SIZE = 256 * 1024;
+    static final int MAX_BLOCKS_PER_QUERY = 256;
+    private static final int MAX_QUEUED_BLOCKS = 64; // Don't query more blocks while we have many blocks to send.
+
+    @NonNull
+    private final FileInfoImpl mFileInfo;
+    @NonNull
+    private final RandomAccessFile mFile;
+    @NonNull
+    private final MessageDigest mDigest;
+    @NonNull
+    private final MessageDigest mBlockDigest;
+    @NonNull
+    private final ArrayDeque<Integer> mBlocks;
+    @NonNull
+    private final byte[] mBuffer;
+    private final long mLength;
+    private final int mBlockCount;
+    private int mNextQueryBlock;
+    private int mQueryCount;
+    private long mPosition;
+    private long mBlockEnd;
+    private long mDigestRequestId;
+    private long mSkipped;
+
+    DatabaseBlockTransfer(@NonNull File file, @NonNull FileInfoImpl fileInfo) throws IOException, NoSuchAlgorithmException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "DatabaseBlockTransfer: file=" + file + " fileInfo=" + fileInfo);
+        }
+
+        mFileInfo = fileInfo;
+        mDigest = MessageDigest.getInstance("SHA-256");
+        mBlockDigest = MessageDigest.getInstance("SHA-256");
+        mBlocks = new ArrayDeque<>();
+        mBuffer = new byte[BLOCK_SIZE];
+        mLength = fileInfo.getSize();
+        mBlockCount = (int) ((mLength + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        mDigestRequestId = -1;
+        mFile = new RandomAccessFile(file, "r");
+    }
+
+    @NonNull
+    Integer getFileIndex() {
+
+        return mFileInfo.getIndex();
+    }
+
+    long getLength() {
+
+        return mLength;
+    }
+
+    /**
+     * Get the number of bytes that were not sent because the peer holds them.
+     *
+     * @return the number of bytes skipped.
+     */
+    long getSkipped() {
+
+        return mSkipped;
+    }
+
+    /**
+     * Check if we must query the block hashes from the peer.  Only one query is pending at a time
+     * and we stop querying when many blocks are waiting to be sent.
+     *
+     * @return true if a QueryBlocksIQ must be sent.
+     */
+    boolean needQuery() {
+
+        return mQueryCount == 0 && mNextQueryBlock < mBlockCount && mBlocks.size() < MAX_QUEUED_BLOCKS;
+    }
+
+    int getQueryFirstBlock() {
+
+        return mNextQueryBlock;
+    }
+
+    /**
+     * Get the number of blocks to query and mark the query as pending.
+     *
+     * @return the number of blocks to query.
+     */
+    int startQuery() {
+
+        mQueryCount = Math.min(MAX_BLOCKS_PER_QUERY, mBlockCount - mNextQueryBlock);
+        return mQueryCount;
+    }
+
+    /**
+     * Compare the block hashes returned by the peer with our blocks and queue the blocks that must be sent.
+     * The blocks are read in sequence to compute the SHA256 of the complete file.
+     *
+     * @param firstBlock the first block described by the hashes.
+     * @param hashes the block hashes (null when the peer does not have the block).
+     * @return the number of bytes that don't need to be sent.
+     * @throws IOException if the file cannot be read.
+     */
+    long onBlockHashes(int firstBlock, @NonNull List<byte[]> hashes) throws IOException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "onBlockHashes: firstBlock=" + firstBlock + " count=" + hashes.size());
+        }
+
+        if (firstBlock != mNextQueryBlock || mQueryCount == 0) {
+            return 0;
+        }
+
+        long skipped = 0;
+        for (int i = 0; i < mQueryCount; i++) {
+            final int block = firstBlock + i;
+            final long offset = (long) block * BLOCK_SIZE;
+            final int length = (int) Math.min(BLOCK_SIZE, mLength - offset);
+            mFile.seek(offset);
+            mFile.readFully(mBuffer, 0, length);
+            mDigest.update(mBuffer, 0, length);
+
+            final byte[] peerHash = i < hashes.size() ? hashes.get(i) : null;
+            if (peerHash != null) {
+                mBlockDigest.update(mBuffer, 0, length);
+                if (Arrays.equals(peerHash, mBlockDigest.digest())) {
+                    skipped += length;
+                    continue;
+                }
+            }
+            mBlocks.add(block);
+        }
+        mNextQueryBlock += mQueryCount;
+        mQueryCount = 0;
+        mSkipped += skipped;
+        return skipped;
+    }
+
+    /**
+     * Check if we have some block data to send.
+     *
+     * @return true if readChunk() can be called.
+     */
+    boolean hasData() {
+
+        return mPosition < mBlockEnd || !mBlocks.isEmpty();
+    }
+
+    /**
+     * Get the file offset of the next chunk returned by readChunk().
+     *
+     * @return the file offset.
+     */
+    long getPosition() {
+
+        nextBlock();
+        return mPosition;
+    }
+
+    /**
+     * Read the next chunk of a block that must be sent.
+     *
+     * @param maxSize the maximum chunk size.
+     * @return the chunk data.
+     * @throws IOException if the file cannot be read.
+     */
+    @NonNull
+    byte[] readChunk(int maxSize) throws IOException {
+
+        nextBlock();
+        final byte[] data = new byte[(int) Math.min(maxSize, mBlockEnd - mPosition)];
+        mFile.seek(mPosition);
+        mFile.readFully(data);
+        mPosition += data.length;
+        return data;
+    }
+
+    /**
+     * Check if all the blocks were queried and sent and the file digest must be sent.
+     *
+     * @return true if we can send the file digest.
+     */
+    boolean isComplete() {
+
+        return mDigestRequestId < 0 && mNextQueryBlock >= mBlockCount && mQueryCount == 0 && !hasData();
+    }
+
+    /**
+     * Get the SHA256 of the file and remember the request that carries it.
+     *
+     * @param requestId the request id of the IQ with the file digest.
+     * @return the file digest.
+     */
+    @NonNull
+    byte[] getDigest(long requestId) {
+
+        mDigestRequestId = requestId;
+        return mDigest.digest();
+    }
+
+    /**
+     * Check if the request is the final one that carries the file digest.
+     *
+     * @param requestId the request id.
+     * @return true if this is the digest request.
+     */
+    boolean isDigestRequest(long requestId) {
+
+        return mDigestRequestId == requestId;
+    }
+
+    void cancel() {
+
+        try {
+            mFile.close();
+        } catch (IOException exception) {
+            if (Logger.DEBUG) {
+                Logger.debug(LOG_TAG, "close", exception);
+            }
+        }
+    }
+
+    /**
+     * Compute the SHA256 of a range of blocks of a file that was received.  A null hash is returned for
+     * a block that is beyond the end of the file.  A truncated last block is hashed as is.
+     *
+     * @param file the local file.
+     * @param blockSize the block size.
+     * @param firstBlock the first block.
+     * @param count the number of blocks.
+     * @return the list of block hashes.
+     */
+    @NonNull
+    static List<byte[]> computeBlockHashes(@NonNull File file, int blockSize, int firstBlock, int count) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "computeBlockHashes: file=" + file + " firstBlock=" + firstBlock + " count=" + count);
+        }
+
+        final List<byte[]> result = new ArrayList<>(Math.max(count, 0));
+        if (blockSize <= 0 || blockSize > BLOCK_SIZE || firstBlock < 0 || count <= 0 || count > MAX_BLOCKS_PER_QUERY
+                || !file.exists()) {
+            for (int i = 0; i < count && i < MAX_BLOCKS_PER_QUERY; i++) {
+                result.add(null);
+            }
+            return result;
+        }
+
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final byte[] buffer = new byte[blockSize];
+            final long length = input.length();
+            for (int i = 0; i < count; i++) {
+                final long offset = (long) (firstBlock + i) * blockSize;
+                if (offset >= length) {
+                    result.add(null);
+                    continue;
+                }
+                final int size = (int) Math.min(blockSize, length - offset);
+                input.seek(offset);
+                input.readFully(buffer, 0, size);
+                digest.update(buffer, 0, size);
+                result.add(digest.digest());
+            }
+
+        } catch (Exception exception) {
+            if (Logger.ERROR) {
+                Logger.error(LOG_TAG, "Cannot compute block hashes for ", file, ": ", exception.getMessage());
+            }
+            while (result.size() < count) {
+                result.add(null);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compute the SHA256 of the complete file.
+     *
+     * @param file the file.
+     * @return the SHA256 or null if the file cannot be read.
+     */
+    @Nullable
+    static byte[] computeDigest(@NonNull File file) {
+
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final byte[] buffer = new byte[BLOCK_SIZE];
+            int size;
+            while ((size = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, size);
+            }
+            return digest.digest();
+
+        } catch (Exception exception) {
+            if (Logger.ERROR) {
+                Logger.error(LOG_TAG, "Cannot compute digest for ", file, ": ", exception.getMessage());
+            }
+            return null;
+        }
+    }
+
+    //
+    // Private Methods
+    //
+
+    private void nextBlock() {
+
+        if (mPosition >= mBlockEnd && !mBlocks.isEmpty()) {
+            final int block = mBlocks.poll();
+            mPosition = (long) block * BLOCK_SIZE;
+            mBlockEnd = Math.min(mPosition + BLOCK_SIZE, mLength);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.accountMigration;
+
+import androidx.annotation.NonNull;
+
+import org.twinlife.twinlife.BuildConfig;
+import org.twinlife.twinlife.Decoder;
+import org.twinlife.twinlife.Encoder;
+import org.twinlife.twinlife.SerializerException;
+import org.twinlife.twinlife.SerializerFactory;
+import org.twinlife.twinlife.util.BinaryPacketIQ;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Query blocks response IQ with the SHA256 of each block that the peer holds.  A null hash is
+ * returned for a block that the peer does not have.
+ *
+ * Schema version 1
+ * <pre>
+ * {
+ *  "schemaId":"d41c7f3e-5a90-4b26-8e1d-93a6f0b2c75e",
+ *  "schemaVersion":"1",
+ *
+ *  "type":"record",
+ *  "name":"OnQueryBlocksIQ",
+ *  "namespace":"org.twinlife.schemas.deviceMigration",
+ *  "super":"org.twinlife.schemas.BinaryPacketIQ"
+ *  "fields": [
+ *     {"name":"fileId", "type":"int"},
+ *     {"name":"firstBlock", "type":"int"},
+ *     {"name":"count", "type":"int"},
+ *     [{"name":"sha256", [null, "type":"bytes"]}]
+ *  ]
+ * }
+ *
+ * </pre>
+ */
+class OnQueryBlocksIQ extends BinaryPacketIQ {
+
+    private static final int MAX_SIZE_PER_BLOCK = 40;
+
+    static class OnQueryBlocksIQSerializer extends BinaryPacketIQSerializer {
+
+        OnQueryBlocksIQSerializer(UUID schemaId, int schemaVersion) {
+
+            super(schemaId, schemaVersion, OnQueryBlocksIQ.class);
+        }
+
+        @Override
+        public void serialize(@NonNull SerializerFactory serializerFactory, @NonNull Encoder encoder,
+                              @NonNull Object object) throws SerializerException {
+
+            super.serialize(serializerFactory, encoder, object);
+
+            OnQueryBlocksIQ onQueryBlocksIQ = (OnQueryBlocksIQ) object;
+
+            encoder.writeInt(onQueryBlocksIQ.fileId);
+            encoder.writeInt(onQueryBlocksIQ.firstBlock);
+            encoder.writeInt(onQueryBlocksIQ.hashes.size());
+            for (byte[] hash : onQueryBlocksIQ.hashes) {
+                encoder.writeOptionalBytes(hash);
+            }
+        }
+
+        @Override
+        @NonNull
+        public Object deserialize(@NonNull SerializerFactory serializerFactory,
+                                  @NonNull Decoder decoder) throws SerializerException {
+
+            BinaryPacketIQ serviceRequestIQ = (BinaryPacketIQ) super.deserialize(serializerFactory, decoder);
+
+            int fileId = decoder.readInt();
+            int firstBlock = decoder.readInt();
+            List<byte[]> hashes = new ArrayList<>();
+            int count = decoder.readInt();
+            while (count > 0) {
+                hashes.add(decoder.readOptionalBytes(null));
+                count--;
+            }
+
+            return new OnQueryBlocksIQ(this, serviceRequestIQ, fileId, firstBlock, hashes);
+        }
+    }
+
+    public static BinaryPacketIQSerializer createSerializer(UUID schemaId, int schemaVersion) {
+
+        return new OnQueryBlocksIQSerializer(schemaId, schemaVersion);
+    }
+
+    final int fileId;
+    final int firstBlock;
+    @NonNull
+    final List<byte[]> hashes;
+
+    OnQueryBlocksIQ(@NonNull BinaryPacketIQSerializer serializer, @NonNull BinaryPacketIQ serviceRequestIQ,
+                    int fileId, int firstBlock, @NonNull List<byte[]> hashes) {
+
+        super(serializer, serviceRequestIQ);
+
+        this.fileId = fileId;
+        this.firstBlock = firstBlock;
+        this.hashes = hashes;
+    }
+
+    protected int getBufferSize() {
+
+        return SERIALIZER_BUFFER_DEFAULT_SIZE + hashes.size() * MAX_SIZE_PER_BLOCK;
+    }
+
+    //
+    // Override Object methods
+    //
+    @Override
+    protected void appendTo(@NonNull StringBuilder stringBuilder) {
+
+        if (BuildConfig.ENABLE_DUMP) {
+            super.appendTo(stringBuilder);
+            stringBuilder.append(" fileId=");
+            stringBuilder.append(fileId);
+            stringBuilder.append(" firstBlock=");
+            stringBuilder.append(firstBlock);
+            stringBuilder.append(" count=");
+            stringBuilder.append(hashes.size());
+        }
+    }
+
+    @NonNull
+    public String toString() {
+
+        StringBuilder stringBuilder = new StringBuilder();
+        if (BuildConfig.ENABLE_DUMP) {
+            stringBuilder.append("OnQueryBlocksIQ\n");
+            appendTo(stringBuilder);
+        }
+
+        return stringBuilder.toString();
+    }
+}
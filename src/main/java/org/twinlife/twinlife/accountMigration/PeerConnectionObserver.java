@@ -31,10 +31,8 @@ import org.twinlife.twinlife.Serializer;
 import org.twinlife.twinlife.SerializerFactory;
 import org.twinlife.twinlife.TwinlifeImpl;
 import org.twinlife.twinlife.conversation.ConversationAssertPoint;
-import org.twinlife.twinlife.util.BinaryCompactDecoder;
-import org.twinlife.twinlife.util.BinaryDecoder;
 import org.twinlife.twinlife.util.BinaryPacketIQ;
-import org.twinlife.twinlife.util.ByteBufferInputStream;
+import org.twinlife.twinlife.util.ByteBufferDecoder;
 import org.twinlife.twinlife.util.Logger;
 import org.twinlife.twinlife.util.SchemaKey;
 import org.twinlife.twinlife.util.Version;
@@ -80,7 +78,7 @@ abstract class PeerConnectionObserver extends PeerConnectionService.DefaultServi
     private static final boolean DEBUG = false;
 
     private static final String VERSION_PREFIX = "AccountMigration.";
-    private static final String VERSION = "2.1.0";
+    private static final String VERSION = "2.3.0";
     private static final int MIN_PROTOCOL_VERSION = 2;
     private static final int CONNECT_TIMEOUT = 20;
     private static final int RECONNECT_TIMEOUT = 10;
@@ -495,13 +493,7 @@ abstract class PeerConnectionObserver extends PeerConnectionService.DefaultServi
         UUID schemaId = null;
         int schemaVersion = 0;
         try {
-            ByteBufferInputStream inputStream = new ByteBufferInputStream(buffer);
-            BinaryDecoder binaryDecoder;
-            if (leadingPadding) {
-                binaryDecoder = new BinaryDecoder(inputStream);
-            } else {
-                binaryDecoder = new BinaryCompactDecoder(inputStream);
-            }
+            final ByteBufferDecoder binaryDecoder = new ByteBufferDecoder(buffer, !leadingPadding);
             schemaId = binaryDecoder.readUUID();
             schemaVersion = binaryDecoder.readInt();
             SchemaKey key = new SchemaKey(schemaId, schemaVersion);
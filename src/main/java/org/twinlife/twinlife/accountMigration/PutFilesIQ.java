@@ -0,0 +1,187 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.accountMigration;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.twinlife.twinlife.BuildConfig;
+import org.twinlife.twinlife.Decoder;
+import org.twinlife.twinlife.Encoder;
+import org.twinlife.twinlife.SerializerException;
+import org.twinlife.twinlife.SerializerFactory;
+import org.twinlife.twinlife.util.BinaryPacketIQ;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Upload of several small files in a single IQ (protocol 2.2).
+ *
+ * Each entry is handled by the peer as a PutFileIQ and it is acknowledged by its own OnPutFileIQ
+ * which carries the request id of the PutFilesIQ.
+ *
+ * Schema version 1
+ * <pre>
+ * {
+ *  "schemaId":"b5f3a6d4-2c1e-4f0b-9e57-6a8d3c1f24e9",
+ *  "schemaVersion":"1",
+ *
+ *  "type":"record",
+ *  "name":"PutFilesIQ",
+ *  "namespace":"org.twinlife.schemas.deviceMigration",
+ *  "super":"org.twinlife.schemas.BinaryPacketIQ"
+ *  "fields": [
+ *     {"name":"count", "type":"int"},
+ *     [
+ *       {"name":"fileId", "type":"int"},
+ *       {"name":"offset", "type":"long"},
+ *       {"name":"data", [null, "type":"bytes"]},
+ *       {"name":"sha256", [null, "type":"bytes"]}
+ *     ]
+ *  ]
+ * }
+ *
+ * </pre>
+ */
+class PutFilesIQ extends BinaryPacketIQ {
+
+    static class FileChunk {
+        final int fileId;
+        final long offset;
+        @Nullable
+        final byte[] fileData;
+        @Nullable
+        final byte[] sha256;
+
+        FileChunk(int fileId, long offset, @Nullable byte[] data, @Nullable byte[] sha256) {
+
+            this.fileId = fileId;
+            this.offset = offset;
+            this.fileData = data;
+            this.sha256 = sha256;
+        }
+
+        int getSize() {
+
+            return fileData == null ? 0 : fileData.length;
+        }
+    }
+
+    static class PutFilesIQSerializer extends BinaryPacketIQSerializer {
+
+        PutFilesIQSerializer(UUID schemaId, int schemaVersion) {
+
+            super(schemaId, schemaVersion, PutFilesIQ.class);
+        }
+
+        @Override
+        public void serialize(@NonNull SerializerFactory serializerFactory, @NonNull Encoder encoder,
+                              @NonNull Object object) throws SerializerException {
+
+            super.serialize(serializerFactory, encoder, object);
+
+            PutFilesIQ putFilesIQ = (PutFilesIQ) object;
+
+            encoder.writeInt(putFilesIQ.files.size());
+            for (FileChunk chunk : putFilesIQ.files) {
+                encoder.writeInt(chunk.fileId);
+                encoder.writeLong(chunk.offset);
+                encoder.writeOptionalBytes(chunk.fileData);
+                encoder.writeOptionalBytes(chunk.sha256);
+            }
+        }
+
+        @Override
+        @NonNull
+        public Object deserialize(@NonNull SerializerFactory serializerFactory,
+                                  @NonNull Decoder decoder) throws SerializerException {
+
+            BinaryPacketIQ serviceRequestIQ = (BinaryPacketIQ) super.deserialize(serializerFactory, decoder);
+
+            int count = decoder.readInt();
+            if (count < 0) {
+                throw new SerializerException();
+            }
+            List<FileChunk> files = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int fileId = decoder.readInt();
+                long offset = decoder.readLong();
+                byte[] data = decoder.readOptionalBytes(null);
+                byte[] sha256 = decoder.readOptionalBytes(null);
+
+                files.add(new FileChunk(fileId, offset, data, sha256));
+            }
+
+            return new PutFilesIQ(this, serviceRequestIQ, files);
+        }
+    }
+
+    public static BinaryPacketIQSerializer createSerializer(UUID schemaId, int schemaVersion) {
+
+        return new PutFilesIQSerializer(schemaId, schemaVersion);
+    }
+
+    @NonNull
+    final List<FileChunk> files;
+
+    PutFilesIQ(@NonNull BinaryPacketIQSerializer serializer, long requestId, @NonNull List<FileChunk> files) {
+
+        super(serializer, requestId);
+
+        this.files = files;
+    }
+
+    protected int getBufferSize() {
+
+        int size = SERIALIZER_BUFFER_DEFAULT_SIZE;
+        for (FileChunk chunk : files) {
+            size += chunk.getSize() + 64;
+        }
+        return size;
+    }
+
+    //
+    // Override Object methods
+    //
+    @Override
+    protected void appendTo(@NonNull StringBuilder stringBuilder) {
+
+        if (BuildConfig.ENABLE_DUMP) {
+            super.appendTo(stringBuilder);
+            stringBuilder.append(" files=");
+            stringBuilder.append(files.size());
+        }
+    }
+
+    @NonNull
+    public String toString() {
+
+        StringBuilder stringBuilder = new StringBuilder();
+        if (BuildConfig.ENABLE_DUMP) {
+            stringBuilder.append("PutFilesIQ\n");
+            appendTo(stringBuilder);
+        }
+
+        return stringBuilder.toString();
+    }
+
+    //
+    // Private Methods
+    //
+
+    private PutFilesIQ(@NonNull BinaryPacketIQSerializer serializer, @NonNull BinaryPacketIQ serviceRequestIQ,
+                       @NonNull List<FileChunk> files) {
+
+        super(serializer, serviceRequestIQ);
+
+        this.files = files;
+    }
+}
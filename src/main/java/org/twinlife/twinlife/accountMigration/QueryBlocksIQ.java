@@ -0,0 +1,150 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.accountMigration;
+
+import androidx.annotation.NonNull;
+
+import org.twinlife.twinlife.BuildConfig;
+import org.twinlife.twinlife.Decoder;
+import org.twinlife.twinlife.Encoder;
+import org.twinlife.twinlife.SerializerException;
+import org.twinlife.twinlife.SerializerFactory;
+import org.twinlife.twinlife.util.BinaryPacketIQ;
+
+import java.util.UUID;
+
+/**
+ * Query the SHA256 of a range of blocks of a file that the peer has already received (protocol 2.3).
+ *
+ * Schema version 1
+ * <pre>
+ * {
+ *  "schemaId":"6e0d2b8a-94c7-4a1e-bb3f-2f57c8e1d630",
+ *  "schemaVersion":"1",
+ *
+ *  "type":"record",
+ *  "name":"QueryBlocksIQ",
+ *  "namespace":"org.twinlife.schemas.deviceMigration",
+ *  "super":"org.twinlife.schemas.BinaryPacketIQ"
+ *  "fields": [
+ *     {"name":"fileId", "type":"int"},
+ *     {"name":"blockSize", "type":"int"},
+ *     {"name":"firstBlock", "type":"int"},
+ *     {"name":"count", "type":"int"}
+ *  ]
+ * }
+ *
+ * </pre>
+ */
+class QueryBlocksIQ extends BinaryPacketIQ {
+
+    static class QueryBlocksIQSerializer extends BinaryPacketIQSerializer {
+
+        QueryBlocksIQSerializer(UUID schemaId, int schemaVersion) {
+
+            super(schemaId, schemaVersion, QueryBlocksIQ.class);
+        }
+
+        @Override
+        public void serialize(@NonNull SerializerFactory serializerFactory, @NonNull Encoder encoder,
+                              @NonNull Object object) throws SerializerException {
+
+            super.serialize(serializerFactory, encoder, object);
+
+            QueryBlocksIQ queryBlocksIQ = (QueryBlocksIQ) object;
+
+            encoder.writeInt(queryBlocksIQ.fileId);
+            encoder.writeInt(queryBlocksIQ.blockSize);
+            encoder.writeInt(queryBlocksIQ.firstBlock);
+            encoder.writeInt(queryBlocksIQ.count);
+        }
+
+        @Override
+        @NonNull
+        public Object deserialize(@NonNull SerializerFactory serializerFactory,
+                                  @NonNull Decoder decoder) throws SerializerException {
+
+            BinaryPacketIQ serviceRequestIQ = (BinaryPacketIQ) super.deserialize(serializerFactory, decoder);
+
+            int fileId = decoder.readInt();
+            int blockSize = decoder.readInt();
+            int firstBlock = decoder.readInt();
+            int count = decoder.readInt();
+
+            return new QueryBlocksIQ(this, serviceRequestIQ, fileId, blockSize, firstBlock, count);
+        }
+    }
+
+    public static BinaryPacketIQSerializer createSerializer(UUID schemaId, int schemaVersion) {
+
+        return new QueryBlocksIQSerializer(schemaId, schemaVersion);
+    }
+
+    final int fileId;
+    final int blockSize;
+    final int firstBlock;
+    final int count;
+
+    QueryBlocksIQ(@NonNull BinaryPacketIQSerializer serializer, long requestId, int fileId,
+                  int blockSize, int firstBlock, int count) {
+
+        super(serializer, requestId);
+
+        this.fileId = fileId;
+        this.blockSize = blockSize;
+        this.firstBlock = firstBlock;
+        this.count = count;
+    }
+
+    //
+    // Override Object methods
+    //
+    @Override
+    protected void appendTo(@NonNull StringBuilder stringBuilder) {
+
+        if (BuildConfig.ENABLE_DUMP) {
+            super.appendTo(stringBuilder);
+            stringBuilder.append(" fileId=");
+            stringBuilder.append(fileId);
+            stringBuilder.append(" blockSize=");
+            stringBuilder.append(blockSize);
+            stringBuilder.append(" firstBlock=");
+            stringBuilder.append(firstBlock);
+            stringBuilder.append(" count=");
+            stringBuilder.append(count);
+        }
+    }
+
+    @NonNull
+    public String toString() {
+
+        StringBuilder stringBuilder = new StringBuilder();
+        if (BuildConfig.ENABLE_DUMP) {
+            stringBuilder.append("QueryBlocksIQ\n");
+            appendTo(stringBuilder);
+        }
+
+        return stringBuilder.toString();
+    }
+
+    //
+    // Private Methods
+    //
+
+    private QueryBlocksIQ(@NonNull BinaryPacketIQSerializer serializer, @NonNull BinaryPacketIQ serviceRequestIQ,
+                          int fileId, int blockSize, int firstBlock, int count) {
+
+        super(serializer, serviceRequestIQ);
+
+        this.fileId = fileId;
+        this.blockSize = blockSize;
+        this.firstBlock = firstBlock;
+        this.count = count;
+    }
+}
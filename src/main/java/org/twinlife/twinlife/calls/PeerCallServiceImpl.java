@@ -47,7 +47,10 @@ public class PeerCallServiceImpl extends BaseServiceImpl<PeerCallService.Service
     private static final boolean DEBUG = false;
 
     private static final int MAJOR_VERSION = 2;
-    private static final int MINOR_VERSION = 2;
+    private static final int MINOR_VERSION = 3;
+
+    // Version of the peer from which we can compress the SDP with the preset dictionary.
+    private static final Version SDP_DICTIONARY_VERSION = new Version(2, 3);
 
     private static final UUID CREATE_CALL_ROOM_SCHEMA_ID = UUID.fromString("e53c8953-6345-4e77-bf4b-c1dc227d5d2f");
     private static final UUID ON_CREATE_CALL_ROOM_SCHEMA_ID = UUID.fromString("9e53e24a-acf3-4819-8539-2af37272254f");
@@ -209,27 +212,27 @@ public class PeerCallServiceImpl extends BaseServiceImpl<PeerCallService.Service
         serializerFactory.addSerializer(IQ_MEMBER_NOTIFICATION_SERIALIZER);
 
         // Register the binary IQ handlers for the responses and server notifications.
-        connection.addPacketListener(IQ_ON_CREATE_CALL_ROOM_SERIALIZER, this::onCreateCallRoom);
-        connection.addPacketListener(IQ_ON_JOIN_CALL_ROOM_SERIALIZER, this::onJoinCallRoom);
-        connection.addPacketListener(IQ_ON_LEAVE_CALL_ROOM_SERIALIZER, this::onLeaveCallRoom);
-        connection.addPacketListener(IQ_ON_DESTROY_CALL_ROOM_SERIALIZER, this::onDestroyCallRoom);
-        connection.addPacketListener(IQ_INVITE_CALL_ROOM_SERIALIZER, this::onInviteCallRoom);
-        connection.addPacketListener(IQ_MEMBER_NOTIFICATION_SERIALIZER, this::onMemberNotification);
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_ON_CREATE_CALL_ROOM_SERIALIZER, this::onCreateCallRoom);
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_ON_JOIN_CALL_ROOM_SERIALIZER, this::onJoinCallRoom);
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_ON_LEAVE_CALL_ROOM_SERIALIZER, this::onLeaveCallRoom);
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_ON_DESTROY_CALL_ROOM_SERIALIZER, this::onDestroyCallRoom);
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_INVITE_CALL_ROOM_SERIALIZER, this::onInviteCallRoom);
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_MEMBER_NOTIFICATION_SERIALIZER, this::onMemberNotification);
 
         // Signaling IQ.
-        connection.addPacketListener(IQ_SESSION_INITIATE_SERIALIZER, this::onSessionInitiate);
-        connection.addPacketListener(IQ_SESSION_ACCEPT_SERIALIZER, this::onSessionAccept);
-        connection.addPacketListener(IQ_SESSION_UPDATE_SERIALIZER, this::onSessionUpdate);
-        connection.addPacketListener(IQ_TRANSPORT_INFO_SERIALIZER, this::onTransportInfo);
-        connection.addPacketListener(IQ_SESSION_TERMINATE_SERIALIZER, this::onSessionTerminate);
-        connection.addPacketListener(IQ_DEVICE_RINGING_SERIALIZER, this::onDeviceRinging);
-
-        connection.addPacketListener(IQ_ON_SESSION_INITIATE_SERIALIZER, this::onAckPacket);
-        connection.addPacketListener(IQ_ON_SESSION_ACCEPT_SERIALIZER, this::onAckPacket);
-        connection.addPacketListener(IQ_ON_TRANSPORT_INFO_SERIALIZER, this::onAckPacket);
-        connection.addPacketListener(IQ_ON_SESSION_UPDATE_SERIALIZER, this::onAckPacket);
-        connection.addPacketListener(IQ_ON_SESSION_TERMINATE_SERIALIZER, this::onAckPacket);
-        connection.addPacketListener(IQ_ON_SESSION_PING_SERIALIZER, this::onAckPacket);
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_SESSION_INITIATE_SERIALIZER, this::onSessionInitiate);
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_SESSION_ACCEPT_SERIALIZER, this::onSessionAccept);
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_SESSION_UPDATE_SERIALIZER, this::onSessionUpdate);
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_TRANSPORT_INFO_SERIALIZER, this::onTransportInfo);
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_SESSION_TERMINATE_SERIALIZER, this::onSessionTerminate);
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_DEVICE_RINGING_SERIALIZER, this::onDeviceRinging);
+
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_ON_SESSION_INITIATE_SERIALIZER, this::onAckPacket);
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_ON_SESSION_ACCEPT_SERIALIZER, this::onAckPacket);
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_ON_TRANSPORT_INFO_SERIALIZER, this::onAckPacket);
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_ON_SESSION_UPDATE_SERIALIZER, this::onAckPacket);
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_ON_SESSION_TERMINATE_SERIALIZER, this::onAckPacket);
+        connection.addPacketListener(BaseServiceId.PEER_CALL_SERVICE_ID, IQ_ON_SESSION_PING_SERIALIZER, this::onAckPacket);
 
     }
 
@@ -466,9 +469,26 @@ public class PeerCallServiceImpl extends BaseServiceImpl<PeerCallService.Service
         if (sdp.isEncrypted()) {
             offerValue |= (sdp.getKeyIndex() << SessionInitiateIQ.OFFER_ENCRYPT_SHIFT) & SessionInitiateIQ.OFFER_ENCRYPT_MASK;
         }
+        offerValue |= (sdp.getDictionary() << SessionInitiateIQ.OFFER_DICTIONARY_SHIFT) & SessionInitiateIQ.OFFER_DICTIONARY_MASK;
         return offerValue;
     }
 
+    /**
+     * Get the preset dictionary that can be used to compress the SDP sent to the peer.  The peer version is
+     * known when we receive its session-initiate or session-accept: the first offer is always compressed
+     * without the dictionary.
+     *
+     * @param peerOffer the peer offer or null if it is not yet known.
+     * @return the SDP dictionary to use.
+     */
+    public static int getSdpDictionary(@Nullable Offer peerOffer) {
+
+        if (peerOffer == null || peerOffer.version == null || peerOffer.version.compareTo(SDP_DICTIONARY_VERSION) < 0) {
+            return Sdp.DICTIONARY_NONE;
+        }
+        return Sdp.DICTIONARY_V1;
+    }
+
     /**
      * Send the session-initiate to start a P2P connection with the peer.
      *
@@ -585,6 +605,7 @@ public class PeerCallServiceImpl extends BaseServiceImpl<PeerCallService.Service
         if (sdp.isEncrypted()) {
             mode |= (sdp.getKeyIndex() << SessionInitiateIQ.OFFER_ENCRYPT_SHIFT) & SessionInitiateIQ.OFFER_ENCRYPT_MASK;
         }
+        mode |= (sdp.getDictionary() << SessionInitiateIQ.OFFER_DICTIONARY_SHIFT) & SessionInitiateIQ.OFFER_DICTIONARY_MASK;
 
         final TransportInfoIQ transportInfoIQ = new TransportInfoIQ(IQ_TRANSPORT_INFO_SERIALIZER, requestId, to, sessionId,
                 expirationDeadline, mode, sdp.getData(), sdp.getLength(), null);
@@ -621,6 +642,7 @@ public class PeerCallServiceImpl extends BaseServiceImpl<PeerCallService.Service
         if (sdp.isEncrypted()) {
             updateType |= (sdp.getKeyIndex() << SessionInitiateIQ.OFFER_ENCRYPT_SHIFT) & SessionInitiateIQ.OFFER_ENCRYPT_MASK;
         }
+        updateType |= (sdp.getDictionary() << SessionInitiateIQ.OFFER_DICTIONARY_SHIFT) & SessionInitiateIQ.OFFER_DICTIONARY_MASK;
 
         final SessionUpdateIQ updateIQ = new SessionUpdateIQ(IQ_SESSION_UPDATE_SERIALIZER, requestId, to, sessionId,
                 expirationDeadline, updateType, sdp.getData(), sdp.getLength());
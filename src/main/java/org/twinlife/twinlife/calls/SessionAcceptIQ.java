@@ -149,7 +149,9 @@ class SessionAcceptIQ extends BinaryPacketIQ {
         final boolean compressed = (offer & SessionInitiateIQ.OFFER_COMPRESSED) != 0;
         final int keyIndex = (offer & SessionInitiateIQ.OFFER_ENCRYPT_MASK) >> SessionInitiateIQ.OFFER_ENCRYPT_SHIFT;
 
-        return new Sdp(sdp, sdpLength, compressed, keyIndex);
+        final int dictionary = (offer & SessionInitiateIQ.OFFER_DICTIONARY_MASK) >> SessionInitiateIQ.OFFER_DICTIONARY_SHIFT;
+
+        return new Sdp(sdp, sdpLength, compressed, dictionary, keyIndex);
     }
 
     //
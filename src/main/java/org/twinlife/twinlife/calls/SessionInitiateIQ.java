@@ -66,6 +66,8 @@ class SessionInitiateIQ extends BinaryPacketIQ {
     static final int OFFER_TRANSFER = 0x80;        // The SDP is a session transfer (added in 1.3.0)
     static final int OFFER_ENCRYPT_MASK = 0x0ff00; // The encryption key index.
     static final int OFFER_ENCRYPT_SHIFT = 8;
+    static final int OFFER_DICTIONARY_MASK = 0x0f00000; // The SDP compression dictionary (added in 2.3).
+    static final int OFFER_DICTIONARY_SHIFT = 20;
     static final int OFFER_VOIP  = OFFER_AUDIO | OFFER_VIDEO;
 
     private static class SessionInitiateIQSerializer extends BinaryPacketIQSerializer {
@@ -163,7 +165,9 @@ class SessionInitiateIQ extends BinaryPacketIQ {
         final boolean compressed = (offer & OFFER_COMPRESSED) != 0;
         final int keyIndex = (offer & OFFER_ENCRYPT_MASK) >> OFFER_ENCRYPT_SHIFT;
 
-        return new Sdp(sdp, sdpLength, compressed, keyIndex);
+        final int dictionary = (offer & OFFER_DICTIONARY_MASK) >> OFFER_DICTIONARY_SHIFT;
+
+        return new Sdp(sdp, sdpLength, compressed, dictionary, keyIndex);
     }
 
     //
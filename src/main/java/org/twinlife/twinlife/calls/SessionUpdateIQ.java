@@ -111,7 +111,9 @@ class SessionUpdateIQ extends BinaryPacketIQ {
         final boolean compressed = (updateType & SessionInitiateIQ.OFFER_COMPRESSED) != 0;
         final int keyIndex = (updateType & SessionInitiateIQ.OFFER_ENCRYPT_MASK) >> SessionInitiateIQ.OFFER_ENCRYPT_SHIFT;
 
-        return new Sdp(sdp, sdpLength, compressed, keyIndex);
+        final int dictionary = (updateType & SessionInitiateIQ.OFFER_DICTIONARY_MASK) >> SessionInitiateIQ.OFFER_DICTIONARY_SHIFT;
+
+        return new Sdp(sdp, sdpLength, compressed, dictionary, keyIndex);
     }
 
     //
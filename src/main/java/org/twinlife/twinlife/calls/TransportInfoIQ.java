@@ -138,7 +138,9 @@ class TransportInfoIQ extends BinaryPacketIQ {
         final boolean compressed = (mode & SessionInitiateIQ.OFFER_COMPRESSED) != 0;
         final int keyIndex = (mode & SessionInitiateIQ.OFFER_ENCRYPT_MASK) >> SessionInitiateIQ.OFFER_ENCRYPT_SHIFT;
 
-        return new Sdp(sdp, sdpLength, compressed, keyIndex);
+        final int dictionary = (mode & SessionInitiateIQ.OFFER_DICTIONARY_MASK) >> SessionInitiateIQ.OFFER_DICTIONARY_SHIFT;
+
+        return new Sdp(sdp, sdpLength, compressed, dictionary, keyIndex);
     }
 
     //
@@ -123,7 +123,8 @@ public class ConversationConnection {
 
     private long mPeerTimeCorrection;
     private int mPeerDeviceState;
-    private int mEstimatedRTT;
+    @NonNull
+    private final FileTransferController mTransferController = new FileTransferController();
     private long mAccessedTime;
 
     @Nullable
@@ -184,6 +185,14 @@ public class ConversationConnection {
         }
     }
 
+    void sendMessage(@NonNull PeerConnectionService.StatType statType, @NonNull byte[] bytes, int timestampOffset) {
+
+        final UUID peerConnectionId = mPeerConnectionId;
+        if (peerConnectionId != null) {
+            mPeerConnectionService.sendMessage(peerConnectionId, statType, bytes, timestampOffset);
+        }
+    }
+
     public void sendPacket(@NonNull PeerConnectionService.StatType statType, @NonNull BinaryPacketIQ iq) {
 
         final UUID peerConnectionId = mPeerConnectionId;
@@ -270,6 +279,14 @@ public class ConversationConnection {
         return mConversationService.loadDescriptorWithId(descriptorId);
     }
 
+    boolean sharePushObject(@NonNull PushObjectOperation operation, @NonNull SharedPayload sharedPayload) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "sharePushObject operation=" + operation);
+        }
+
+        return mConversationService.sharePushObject(operation, sharedPayload);
+    }
+
     public void updateDescriptorImplTimestamps(@NonNull DescriptorImpl descriptorImpl) {
         if (DEBUG) {
             Log.d(LOG_TAG, "updateDescriptorImplTimestamps descriptorImpl=" + descriptorImpl);
@@ -663,40 +680,41 @@ public class ConversationConnection {
         }
 
         mPeerTimeCorrection = -tc;
-        mEstimatedRTT = (int) tp;
+        mTransferController.onRTTSample((int) tp);
 
         if (DEBUG) {
             Log.d(LOG_TAG, "Propagation=" + tp + " time correction=" + tc);
         }
     }
 
-    void updateEstimatedRTT(long timestamp) {
+    /**
+     * Update the file transfer congestion controller when a data chunk is acknowledged.
+     *
+     * @param timestamp the sender timestamp of the acknowledged chunk.
+     * @param ackedBytes the number of bytes acknowledged by this ack.
+     */
+    void onFileChunkAck(long timestamp, long ackedBytes) {
         if (DEBUG) {
-            Log.d(LOG_TAG, "updateEstimatedRTT: timestamp=" + timestamp);
+            Log.d(LOG_TAG, "onFileChunkAck: timestamp=" + timestamp + " ackedBytes=" + ackedBytes);
         }
 
-        long now = System.currentTimeMillis();
+        mTransferController.onAck(timestamp, ackedBytes);
+    }
 
-        // Compute the propagation time: RTT (ignore excessive values).
-        long tp = (now - timestamp);
-        if (tp < 0 || tp > 60000) {
-            return;
-        }
+    int getBestChunkSize() {
 
-        mEstimatedRTT = (mEstimatedRTT + (int) tp) / 2;
+        return mTransferController.getChunkSize();
     }
 
-    int getBestChunkSize() {
+    long getSendWindow() {
 
-        if (mEstimatedRTT > NETWORK_HIGH_RTT) {
-            return CHUNK_HIGH_RTT;
+        return mTransferController.getWindow();
+    }
 
-        } else if (mEstimatedRTT > NETWORK_NORMAL_RTT) {
-            return CHUNK_NORMAL_RTT;
+    @NonNull
+    ConversationService.FileTransferStats getFileTransferStats() {
 
-        } else {
-            return CHUNK_LOW_RTT;
-        }
+        return mTransferController.getStats();
     }
 
     void setSynchronizeKeys(boolean value) {
@@ -754,39 +772,13 @@ public class ConversationConnection {
         }
 
         try {
-            String path = fileDescriptorImpl.getPath();
-            if (mSendingFiles == null) {
-                mSendingFiles = new HashMap<>();
-            }
-
-            SendingFileInfo sendingFileInfo = mSendingFiles.get(path);
+            final SendingFileInfo sendingFileInfo = getSendingFile(filesDir, fileDescriptorImpl, chunkStart);
             if (sendingFileInfo == null) {
 
-                if (filesDir == null) {
-
-                    return null;
-                }
-
-                File file = new File(filesDir, path);
-                FileInfoImpl fileInfo = new FileInfoImpl(1, path, fileDescriptorImpl.getLength(), 0);
-                fileInfo.setRemoteOffset(chunkStart);
-                sendingFileInfo = new SendingFileInfo(file, fileInfo);
-                mSendingFiles.put(path, sendingFileInfo);
-            }
-
-            long position = sendingFileInfo.getPosition();
-            long remaining = sendingFileInfo.getLength() - position;
-            if (remaining <= 0) {
-
                 return null;
             }
-            if (position != chunkStart) {
 
-                if (Logger.ERROR) {
-                    Logger.error(LOG_TAG, "Incorrect offset ", chunkStart, " expecting ", position);
-                }
-                return null;
-            }
+            long remaining = sendingFileInfo.getLength() - chunkStart;
             if (remaining < chunkSize) {
                 chunkSize = (int) remaining;
             }
@@ -807,6 +799,78 @@ public class ConversationConnection {
         }
     }
 
+    /**
+     * Build the packet to send the next data chunk of the file: the chunk is read from the file
+     * directly after the serialized PushFileChunkIQ header, in the array given to the data channel.
+     *
+     * @param fileDescriptorImpl file descriptor being sent.
+     * @param pushFileChunkIQ the IQ header with the chunk start and chunk size.
+     * @return the packet to send or null.
+     */
+    @Nullable
+    byte[] readChunk(@Nullable File filesDir, @NonNull FileDescriptorImpl fileDescriptorImpl,
+                     @NonNull PushFileChunkIQ pushFileChunkIQ) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "readChunk: fileDescriptorImpl=" + fileDescriptorImpl + " pushFileChunkIQ=" + pushFileChunkIQ);
+        }
+
+        try {
+            final SendingFileInfo sendingFileInfo = getSendingFile(filesDir, fileDescriptorImpl, pushFileChunkIQ.chunkStart);
+            if (sendingFileInfo == null || sendingFileInfo.getLength() - pushFileChunkIQ.chunkStart < pushFileChunkIQ.size) {
+
+                return null;
+            }
+
+            return pushFileChunkIQ.serializeWithChunk(mSerializerFactory, sendingFileInfo, mLeadingPadding);
+
+        } catch (Exception exception) {
+            if (Logger.ERROR) {
+                Logger.error(LOG_TAG, "Cannot read file: ", exception);
+            }
+            return null;
+        }
+    }
+
+    @Nullable
+    private SendingFileInfo getSendingFile(@Nullable File filesDir, @NonNull FileDescriptorImpl fileDescriptorImpl,
+                                           long chunkStart) throws Exception {
+
+        String path = fileDescriptorImpl.getPath();
+        if (mSendingFiles == null) {
+            mSendingFiles = new HashMap<>();
+        }
+
+        SendingFileInfo sendingFileInfo = mSendingFiles.get(path);
+        if (sendingFileInfo == null) {
+
+            if (filesDir == null) {
+
+                return null;
+            }
+
+            File file = new File(filesDir, path);
+            FileInfoImpl fileInfo = new FileInfoImpl(1, path, fileDescriptorImpl.getLength(), 0);
+            fileInfo.setRemoteOffset(chunkStart);
+            sendingFileInfo = new SendingFileInfo(file, fileInfo);
+            mSendingFiles.put(path, sendingFileInfo);
+        }
+
+        long position = sendingFileInfo.getPosition();
+        long remaining = sendingFileInfo.getLength() - position;
+        if (remaining <= 0) {
+
+            return null;
+        }
+        if (position != chunkStart) {
+
+            if (Logger.ERROR) {
+                Logger.error(LOG_TAG, "Incorrect offset ", chunkStart, " expecting ", position);
+            }
+            return null;
+        }
+        return sendingFileInfo;
+    }
+
     long writeChunk(@Nullable File filesDir, @NonNull FileDescriptorImpl fileDescriptorImpl, long chunkStart, @Nullable byte[] chunk) {
         if (DEBUG) {
             Log.d(LOG_TAG, "writeChunk: fileDescriptorImpl=" + fileDescriptorImpl + " chunkStart=" + chunkStart + " chunk=" + Arrays.toString(chunk));
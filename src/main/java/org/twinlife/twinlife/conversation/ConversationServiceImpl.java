@@ -32,6 +32,7 @@ import org.twinlife.twinlife.DatabaseIdentifier;
 import org.twinlife.twinlife.DisplayCallsMode;
 import org.twinlife.twinlife.Filter;
 import org.twinlife.twinlife.ImageTools;
+import org.twinlife.twinlife.JobService;
 import org.twinlife.twinlife.PeerConnectionService;
 import org.twinlife.twinlife.PeerConnectionService.SdpEncryptionStatus;
 import org.twinlife.twinlife.PeerConnectionService.StatType;
@@ -64,11 +65,9 @@ import org.twinlife.twinlife.conversation.ConversationServiceIQ.UpdateGroupMembe
 import org.twinlife.twinlife.conversation.UpdateDescriptorTimestampOperation.UpdateDescriptorTimestampType;
 import org.twinlife.twinlife.crypto.CryptoServiceImpl;
 import org.twinlife.twinlife.crypto.SignatureInfoIQ;
-import org.twinlife.twinlife.util.BinaryCompactDecoder;
-import org.twinlife.twinlife.util.BinaryDecoder;
 import org.twinlife.twinlife.util.BinaryEncoder;
 import org.twinlife.twinlife.util.BinaryPacketIQ;
-import org.twinlife.twinlife.util.ByteBufferInputStream;
+import org.twinlife.twinlife.util.ByteBufferDecoder;
 import org.twinlife.twinlife.util.ErrorIQ;
 import org.twinlife.twinlife.util.EventMonitor;
 import org.twinlife.twinlife.util.IQ;
@@ -368,6 +367,8 @@ public class ConversationServiceImpl extends BaseServiceImpl<ConversationService
     static final int SERIALIZER_BUFFER_DEFAULT_SIZE = 1024;
 
     private static final int OPENING_TIMEOUT = 30; // s
+    private static final int SEARCH_INDEX_BATCH_SIZE = 500; // Messages indexed per transaction.
+    private static final int EXPIRE_BATCH_SIZE = 100; // Expired descriptors deleted per transaction.
 
     public static final int CHUNK_SIZE = 256 * 1024;
 
@@ -607,6 +608,9 @@ public class ConversationServiceImpl extends BaseServiceImpl<ConversationService
     private final ConversationServiceProvider mServiceProvider;
 
     private final Object mPeerConnectionLock = new Object();
+    private final Object mExpireLock = new Object();
+    @Nullable
+    private JobService.Job mExpireJob;
     private final HashMap<UUID, ConversationConnection> mPeerConnectionId2Conversation = new HashMap<>();
     private final Map<SchemaKey, Pair<Serializer, PeerConnectionBinaryPacketListener>> mBinaryListeners = new HashMap<>();
     private final ScheduledExecutorService mExecutor;
@@ -764,6 +768,10 @@ public class ConversationServiceImpl extends BaseServiceImpl<ConversationService
         mTwincodeInboundService.addListener(ConversationProtocol.ACTION_VALIDATE_SECRET, mConversationRefreshSecret);
         mGroupManager.onTwinlifeReady();
         mScheduler.loadOperations();
+        if (mServiceProvider.needSearchIndexBuild()) {
+            mExecutor.execute(this::buildSearchIndex);
+        }
+        scheduleExpireJob(0);
     }
 
     @Override
@@ -806,6 +814,22 @@ public class ConversationServiceImpl extends BaseServiceImpl<ConversationService
         return mServiceProvider.loadConversationWithSubject(subject);
     }
 
+    @Override
+    @Nullable
+    public FileTransferStats getFileTransferStats(@NonNull Conversation conversation) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "getFileTransferStats: conversation=" + conversation);
+        }
+
+        if (!(conversation instanceof ConversationImpl)) {
+
+            return null;
+        }
+
+        final ConversationConnection connection = ((ConversationImpl) conversation).getConnection();
+        return connection == null ? null : connection.getFileTransferStats();
+    }
+
     @Override
     public void incomingPeerConnection(@NonNull UUID peerConnectionId, @NonNull RepositoryObject subject,
                                        @NonNull TwincodeOutbound peerTwincodeOutbound, boolean create) {
@@ -1290,6 +1314,27 @@ public class ConversationServiceImpl extends BaseServiceImpl<ConversationService
             return null;
         }
 
+        final Map<Conversation, LastDescriptor> lastDescriptors = mServiceProvider.listLastDescriptors(filter, callsMode);
+        final Map<Conversation, Descriptor> result = new HashMap<>();
+        for (Map.Entry<Conversation, LastDescriptor> lastDescriptor : lastDescriptors.entrySet()) {
+            result.put(lastDescriptor.getKey(), lastDescriptor.getValue().getDescriptor());
+        }
+        return result;
+    }
+
+    @Override
+    @Nullable
+    public Map<Conversation, LastDescriptor> getLastDescriptors(@NonNull Filter<Conversation> filter,
+                                                                @NonNull DisplayCallsMode callsMode) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "getLastDescriptors: filter=" + filter + " callsMode=" + callsMode);
+        }
+
+        if (!isServiceOn()) {
+
+            return null;
+        }
+
         return mServiceProvider.listLastDescriptors(filter, callsMode);
     }
 
@@ -1327,6 +1372,24 @@ public class ConversationServiceImpl extends BaseServiceImpl<ConversationService
         return mServiceProvider.searchDescriptors(conversations, searchText, beforeTimestamp, maxDescriptors);
     }
 
+    @Override
+    @Nullable
+    public List<Pair<Conversation, Descriptor>> searchDescriptorsByRank(@NonNull List<Conversation> conversations,
+                                                                        @NonNull String searchText,
+                                                                        int offset, int maxDescriptors) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "searchDescriptorsByRank: searchText=" + searchText
+                    + " offset=" + offset + " maxDescriptors=" + maxDescriptors);
+        }
+
+        if (!isServiceOn()) {
+
+            return null;
+        }
+
+        return mServiceProvider.searchDescriptorsByRank(conversations, searchText, offset, maxDescriptors);
+    }
+
     @Override
     @Nullable
     public Set<UUID> getConversationTwincodes(@NonNull Conversation conversation, @Nullable Descriptor.Type type, long beforeTimestamp) {
@@ -1396,13 +1459,17 @@ public class ConversationServiceImpl extends BaseServiceImpl<ConversationService
         mServiceProvider.setAnnotation(descriptorImpl, AnnotationType.FORWARDED, 0);
         mServiceProvider.setAnnotation(forwarded, AnnotationType.FORWARD, 0);
 
-        // Send the object to each peer.
+        // Send the object to each peer, the group members share the serialized payload of a message.
+        final SharedPayload sharedPayload = forwarded instanceof ObjectDescriptorImpl && conversations.size() > 1 ? new SharedPayload(forwarded) : null;
         final Map<ConversationImpl, Object> pendingOperations = new HashMap<>();
         for (final ConversationImpl conversationImpl : conversations) {
 
             final Operation operation;
 
-            if (forwarded instanceof ObjectDescriptorImpl) {
+            if (sharedPayload != null) {
+                operation = new PushObjectOperation(conversationImpl, sharedPayload);
+
+            } else if (forwarded instanceof ObjectDescriptorImpl) {
                 ObjectDescriptorImpl objectDescriptorImpl = (ObjectDescriptorImpl) forwarded;
 
                 operation = new PushObjectOperation(conversationImpl, objectDescriptorImpl);
@@ -1556,12 +1623,19 @@ public class ConversationServiceImpl extends BaseServiceImpl<ConversationService
 
         // Send the object to each peer.
         if (!conversations.isEmpty()) {
+            // The group members share the serialized payload of the descriptor.
+            final SharedPayload sharedPayload = conversations.size() > 1 ? new SharedPayload(objectDescriptorImpl) : null;
             final Map<ConversationImpl, Object> pendingOperations = new HashMap<>();
             for (final ConversationImpl conversationImpl : conversations) {
                 conversationImpl.touch();
                 conversationImpl.setIsActive(true);
 
-                final PushObjectOperation pushObjectOperation = new PushObjectOperation(conversationImpl, objectDescriptorImpl);
+                final PushObjectOperation pushObjectOperation;
+                if (sharedPayload != null) {
+                    pushObjectOperation = new PushObjectOperation(conversationImpl, sharedPayload);
+                } else {
+                    pushObjectOperation = new PushObjectOperation(conversationImpl, objectDescriptorImpl);
+                }
                 pendingOperations.put(conversationImpl, pushObjectOperation);
             }
             addOperations(pendingOperations);
@@ -2917,9 +2991,102 @@ public class ConversationServiceImpl extends BaseServiceImpl<ConversationService
         });
     }
 
+    /**
+     * Make sure the expired descriptors job is scheduled before the descriptor expires.
+     *
+     * @param descriptorImpl the descriptor whose read timestamp was updated.
+     */
+    void updateExpireJob(@NonNull DescriptorImpl descriptorImpl) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "updateExpireJob: descriptorImpl=" + descriptorImpl);
+        }
+
+        final long readTimestamp = descriptorImpl.getReadTimestamp();
+        if (descriptorImpl.getExpireTimeout() > 0 && readTimestamp != 0) {
+            scheduleExpireJob(readTimestamp < 0 ? System.currentTimeMillis() : readTimestamp + descriptorImpl.getExpireTimeout());
+        }
+    }
+
     //
     // Private Methods
     //
+
+    /**
+     * Schedule the job that deletes the expired descriptors.
+     *
+     * @param deadline the expiration deadline of a descriptor or 0 to look at the database.
+     */
+    private void scheduleExpireJob(long deadline) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "scheduleExpireJob: deadline=" + deadline);
+        }
+
+        if (deadline == 0) {
+            deadline = mServiceProvider.getExpireDeadline();
+            if (deadline == 0) {
+                return;
+            }
+        }
+
+        synchronized (mExpireLock) {
+            if (mExpireJob != null) {
+                if (mExpireJob.getDeadline() <= deadline) {
+                    return;
+                }
+                mExpireJob.cancel();
+            }
+            mExpireJob = mJobService.scheduleAfter("Delete expired descriptors", this::deleteExpiredDescriptors,
+                    deadline, JobService.Priority.FOREGROUND);
+        }
+    }
+
+    /**
+     * Delete a batch of expired descriptors with their files, notify the observers and schedule the next batch.
+     */
+    private void deleteExpiredDescriptors() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "deleteExpiredDescriptors");
+        }
+
+        synchronized (mExpireLock) {
+            mExpireJob = null;
+        }
+        if (!isServiceOn()) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        final Map<Conversation, List<DescriptorId>> expired = new HashMap<>();
+        final int count = mServiceProvider.deleteExpiredDescriptors(now, EXPIRE_BATCH_SIZE, expired);
+        for (Map.Entry<Conversation, List<DescriptorId>> entry : expired.entrySet()) {
+            final Conversation conversation = entry.getKey();
+            final List<DescriptorId> descriptorList = entry.getValue();
+            final DescriptorId[] descriptorIds = descriptorList.toArray(new DescriptorId[0]);
+
+            deleteDescriptorFiles(descriptorList);
+            for (ConversationService.ServiceObserver serviceObserver : getServiceObservers()) {
+                mTwinlifeExecutor.execute(() -> serviceObserver.onDeleteDescriptors(DEFAULT_REQUEST_ID, conversation, descriptorIds));
+            }
+        }
+
+        // Continue immediately when the batch was full, otherwise wait for the next descriptor to expire.
+        scheduleExpireJob(count >= EXPIRE_BATCH_SIZE ? now : 0);
+    }
+
+    /**
+     * Index a batch of old messages and schedule the next batch: the executor remains available
+     * for the other conversation tasks between two batches.
+     */
+    private void buildSearchIndex() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "buildSearchIndex");
+        }
+
+        if (isServiceOn() && mServiceProvider.buildSearchIndex(SEARCH_INDEX_BATCH_SIZE)) {
+            mExecutor.execute(this::buildSearchIndex);
+        }
+    }
+
     @NonNull
     static List<ConversationImpl> getConversations(@NonNull Conversation conversation, @Nullable UUID sendTo) {
         if (conversation instanceof ConversationImpl) {
@@ -2957,6 +3124,14 @@ public class ConversationServiceImpl extends BaseServiceImpl<ConversationService
         return mServiceProvider.loadDescriptorWithId(descriptorId);
     }
 
+    boolean sharePushObject(@NonNull PushObjectOperation operation, @NonNull SharedPayload sharedPayload) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "sharePushObject operation=" + operation);
+        }
+
+        return mScheduler.sharePushObject(operation, sharedPayload);
+    }
+
     void updateDescriptorImplTimestamps(@NonNull DescriptorImpl descriptorImpl) {
         if (DEBUG) {
             Log.d(LOG_TAG, "updateDescriptorImplTimestamps descriptorImpl=" + descriptorImpl);
@@ -3236,13 +3411,7 @@ public class ConversationServiceImpl extends BaseServiceImpl<ConversationService
         UUID schemaId = null;
         int schemaVersion = -1;
         try {
-            final ByteBufferInputStream inputStream = new ByteBufferInputStream(buffer);
-            final BinaryDecoder binaryDecoder;
-            if (leadingPadding) {
-                binaryDecoder = new BinaryDecoder(inputStream);
-            } else {
-                binaryDecoder = new BinaryCompactDecoder(inputStream);
-            }
+            final ByteBufferDecoder binaryDecoder = new ByteBufferDecoder(buffer, !leadingPadding);
             schemaId = binaryDecoder.readUUID();
             schemaVersion = binaryDecoder.readInt();
             SchemaKey key = new SchemaKey(schemaId, schemaVersion);
@@ -6033,10 +6202,12 @@ public class ConversationServiceImpl extends BaseServiceImpl<ConversationService
                 FileOperation pushFileOperation = (FileOperation) operation;
                 FileDescriptorImpl fileDescriptorImpl = pushFileOperation.getFileDescriptorImpl();
                 if (fileDescriptorImpl != null) {
+                    final long chunkStart = pushFileOperation.getChunkStart();
+                    connection.onFileChunkAck(onPushFileChunkIQ.senderTimestamp,
+                            chunkStart >= 0 ? onPushFileChunkIQ.nextChunkStart - chunkStart : 0);
                     if (onPushFileChunkIQ.nextChunkStart < fileDescriptorImpl.getLength()) {
                         // We keep the same request id on the operation and continue sending more chunks.
                         pushFileOperation.setChunkStart(onPushFileChunkIQ.nextChunkStart);
-                        connection.updateEstimatedRTT(onPushFileChunkIQ.senderTimestamp);
                         // sendPushFileChunkIQ(conversationImpl, pushFileOperation, fileDescriptorImpl);
                         pushFileOperation.execute(connection);
                         return;
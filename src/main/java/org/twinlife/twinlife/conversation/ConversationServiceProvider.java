@@ -24,6 +24,7 @@ import org.twinlife.twinlife.ConversationService.DescriptorId;
 import org.twinlife.twinlife.ConversationService.AnnotationType;
 import org.twinlife.twinlife.ConversationService.DescriptorAnnotation;
 import org.twinlife.twinlife.ConversationService.InvitationDescriptor;
+import org.twinlife.twinlife.ConversationService.LastDescriptor;
 import org.twinlife.twinlife.DatabaseCursor;
 import org.twinlife.twinlife.DatabaseException;
 import org.twinlife.twinlife.DatabaseIdentifier;
@@ -44,9 +45,11 @@ import org.twinlife.twinlife.database.Tables;
 import org.twinlife.twinlife.database.Transaction;
 import org.twinlife.twinlife.util.EventMonitor;
 import org.twinlife.twinlife.util.Logger;
+import org.twinlife.twinlife.util.Utils;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -128,6 +131,131 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
     private static final String DESCRIPTOR_INDEX =
             "CREATE INDEX IF NOT EXISTS idx_descriptor_cid ON descriptor (cid, creationDate)";
 
+    /**
+     * Expiration deadline of a descriptor which has an expiration timeout (see DescriptorImpl.isExpired()):
+     * - the timeout starts when the descriptor is read (readDate > 0),
+     * - a descriptor which was not delivered (readDate < 0) has expired.
+     * The partial index on that expression is used to find the next descriptor to expire and the expired ones,
+     * the queries must use exactly the same expression and condition.
+     */
+    private static final String EXPIRE_DEADLINE =
+            "(CASE WHEN readDate < 0 THEN 0 ELSE readDate + expireTimeout END)";
+    private static final String EXPIRE_CONDITION = "expireTimeout > 0 AND readDate != 0";
+    private static final String EXPIRE_INDEX =
+            "CREATE INDEX IF NOT EXISTS idx_descriptor_expire ON descriptor " + EXPIRE_DEADLINE
+                    + " WHERE " + EXPIRE_CONDITION;
+
+    /**
+     * lastDescriptor table: last descriptor of each conversation for the conversation list.
+     * cid INTEGER: the conversation id (primary key)
+     * lastId INTEGER: the last descriptor (DisplayCallsMode.ALL)
+     * lastNoCallId INTEGER: the last descriptor which is not a call (DisplayCallsMode.NONE)
+     * lastMissedCallId INTEGER: the last descriptor which is not a call or is a missed call (DisplayCallsMode.MISSED)
+     * unreadCount INTEGER: the number of descriptors received from the peers and not yet read
+     * lastActivity INTEGER: the creation date of the last descriptor
+     * Note:
+     * - the table is maintained by the triggers below in the same transaction as the descriptor change,
+     * - an insert only compares the new descriptor with the current last descriptors (primary key lookups),
+     * - the last descriptors are searched with the idx_descriptor_cid index only when one of them is deleted
+     *   or when a call is no longer a missed call.
+     */
+    private static final String LAST_DESCRIPTOR_TABLE =
+            "CREATE TABLE IF NOT EXISTS lastDescriptor (cid INTEGER PRIMARY KEY,"
+                    + " lastId INTEGER, lastNoCallId INTEGER, lastMissedCallId INTEGER,"
+                    + " unreadCount INTEGER DEFAULT 0, lastActivity INTEGER DEFAULT 0"
+                    + ")";
+    // Missed call descriptors have the 0x20 flag set and the 0x40 flag cleared (See CallDescriptorImpl).
+    private static final String LAST_MISSED_CALL_QUERY =
+            "(SELECT id FROM descriptor WHERE cid=lastDescriptor.cid"
+                    + " AND (descriptorType != 12 OR (flags & 0x60 = 0x20)) ORDER BY creationDate DESC LIMIT 1)";
+    private static final String LAST_DESCRIPTOR_UPDATE =
+            "UPDATE lastDescriptor SET"
+                    + " lastId=(SELECT id FROM descriptor WHERE cid=lastDescriptor.cid"
+                    + " ORDER BY creationDate DESC LIMIT 1),"
+                    + " lastNoCallId=(SELECT id FROM descriptor WHERE cid=lastDescriptor.cid AND descriptorType != 12"
+                    + " ORDER BY creationDate DESC LIMIT 1),"
+                    + " lastMissedCallId=" + LAST_MISSED_CALL_QUERY + ","
+                    + " lastActivity=IFNULL((SELECT MAX(creationDate) FROM descriptor WHERE cid=lastDescriptor.cid), 0)";
+    private static final String LAST_DESCRIPTOR_UNREAD_UPDATE =
+            "UPDATE lastDescriptor SET unreadCount=(SELECT COUNT(*) FROM descriptor AS d"
+                    + " WHERE d.cid=lastDescriptor.cid AND " + unreadCondition("d") + ")";
+    // Use INSERT OR IGNORE followed by UPDATE because a conflict clause on the descriptor statement
+    // overrides the conflict clause of the statements in the trigger.
+    private static final String LAST_DESCRIPTOR_INSERT_TRIGGER =
+            "CREATE TRIGGER IF NOT EXISTS lastDescriptor_insert AFTER INSERT ON descriptor BEGIN"
+                    + " INSERT OR IGNORE INTO lastDescriptor (cid) VALUES (new.cid);"
+                    + " UPDATE lastDescriptor SET"
+                    + " lastId=CASE WHEN new.creationDate >= lastActivity THEN new.id ELSE lastId END,"
+                    + " lastNoCallId=CASE WHEN new.descriptorType != 12 AND new.creationDate >="
+                    + " IFNULL((SELECT creationDate FROM descriptor WHERE id=lastDescriptor.lastNoCallId), 0)"
+                    + " THEN new.id ELSE lastNoCallId END,"
+                    + " lastMissedCallId=CASE WHEN (new.descriptorType != 12 OR (new.flags & 0x60 = 0x20))"
+                    + " AND new.creationDate >="
+                    + " IFNULL((SELECT creationDate FROM descriptor WHERE id=lastDescriptor.lastMissedCallId), 0)"
+                    + " THEN new.id ELSE lastMissedCallId END,"
+                    + " unreadCount=unreadCount + (CASE WHEN " + unreadCondition("new") + " THEN 1 ELSE 0 END),"
+                    + " lastActivity=MAX(lastActivity, new.creationDate)"
+                    + " WHERE cid=new.cid; END";
+    private static final String LAST_DESCRIPTOR_DELETE_TRIGGER =
+            "CREATE TRIGGER IF NOT EXISTS lastDescriptor_delete AFTER DELETE ON descriptor BEGIN"
+                    + " UPDATE lastDescriptor SET unreadCount=unreadCount - 1"
+                    + " WHERE cid=old.cid AND " + unreadCondition("old") + ";"
+                    + " " + LAST_DESCRIPTOR_UPDATE + " WHERE cid=old.cid"
+                    + " AND (lastId=old.id OR lastNoCallId=old.id OR lastMissedCallId=old.id); END";
+    private static final String LAST_DESCRIPTOR_UPDATE_TRIGGER =
+            "CREATE TRIGGER IF NOT EXISTS lastDescriptor_update AFTER UPDATE OF flags ON descriptor"
+                    + " WHEN new.descriptorType=12 AND (old.flags & 0x60 = 0x20) != (new.flags & 0x60 = 0x20) BEGIN"
+                    + " UPDATE lastDescriptor SET lastMissedCallId=CASE"
+                    + " WHEN (new.flags & 0x60 = 0x20) AND new.creationDate >="
+                    + " IFNULL((SELECT creationDate FROM descriptor WHERE id=lastDescriptor.lastMissedCallId), 0)"
+                    + " THEN new.id"
+                    + " WHEN lastMissedCallId=new.id THEN " + LAST_MISSED_CALL_QUERY
+                    + " ELSE lastMissedCallId END WHERE cid=new.cid; END";
+    // The cid, twincodeOutbound and descriptorType columns are readonly: only the read and delete dates
+    // can change the unread state of a descriptor.
+    private static final String LAST_DESCRIPTOR_READ_TRIGGER =
+            "CREATE TRIGGER IF NOT EXISTS lastDescriptor_read AFTER UPDATE OF readDate, deleteDate ON descriptor"
+                    + " WHEN (IFNULL(old.readDate, 0) = 0 AND IFNULL(old.deleteDate, 0) = 0)"
+                    + " != (IFNULL(new.readDate, 0) = 0 AND IFNULL(new.deleteDate, 0) = 0)"
+                    + " AND new.descriptorType != 12 AND " + receivedCondition("new") + " BEGIN"
+                    + " UPDATE lastDescriptor SET unreadCount=unreadCount"
+                    + " + (CASE WHEN IFNULL(new.readDate, 0) = 0 AND IFNULL(new.deleteDate, 0) = 0 THEN 1 ELSE -1 END)"
+                    + " WHERE cid=new.cid; END";
+    private static final String LAST_DESCRIPTOR_CONVERSATION_TRIGGER =
+            "CREATE TRIGGER IF NOT EXISTS lastDescriptor_conversation AFTER DELETE ON conversation BEGIN"
+                    + " DELETE FROM lastDescriptor WHERE cid=old.id; END";
+
+    /**
+     * descriptorSearch table: FTS5 index of the message descriptors content.
+     * It is an external content table on the descriptor table maintained by the triggers below in the
+     * same transaction as the descriptor change.  When the index is created on an existing database,
+     * the `descriptorSearch` row of the sequence table holds the first descriptor id which is indexed
+     * by the triggers: older messages are indexed in the background by buildSearchIndex() and the row
+     * is removed when the index is complete.  The trigram tokenizer is used so that the index finds the
+     * messages containing the search text anywhere in a word, as the LIKE search does.
+     */
+    private static final String SEARCH_TABLE =
+            "CREATE VIRTUAL TABLE IF NOT EXISTS descriptorSearch USING fts5(content,"
+                    + " content='descriptor', content_rowid='id', tokenize='trigram')";
+    private static final String SEARCH_INSERT_TRIGGER =
+            "CREATE TRIGGER IF NOT EXISTS descriptorSearch_insert AFTER INSERT ON descriptor"
+                    + " WHEN new.descriptorType=2"
+                    + " AND new.id >= COALESCE((SELECT id FROM sequence WHERE name='descriptorSearch'), 0) BEGIN"
+                    + " INSERT INTO descriptorSearch(rowid, content) VALUES (new.id, new.content); END";
+    private static final String SEARCH_DELETE_TRIGGER =
+            "CREATE TRIGGER IF NOT EXISTS descriptorSearch_delete AFTER DELETE ON descriptor"
+                    + " WHEN old.descriptorType=2"
+                    + " AND old.id >= COALESCE((SELECT id FROM sequence WHERE name='descriptorSearch'), 0) BEGIN"
+                    + " INSERT INTO descriptorSearch(descriptorSearch, rowid, content) VALUES ('delete', old.id, old.content);"
+                    + " END";
+    private static final String SEARCH_UPDATE_TRIGGER =
+            "CREATE TRIGGER IF NOT EXISTS descriptorSearch_update AFTER UPDATE OF content ON descriptor"
+                    + " WHEN old.descriptorType=2"
+                    + " AND old.id >= COALESCE((SELECT id FROM sequence WHERE name='descriptorSearch'), 0) BEGIN"
+                    + " INSERT INTO descriptorSearch(descriptorSearch, rowid, content) VALUES ('delete', old.id, old.content);"
+                    + " INSERT INTO descriptorSearch(rowid, content) VALUES (new.id, new.content); END";
+    private static final String SEARCH_INDEX_NAME = "descriptorSearch";
+
     /**
      * invitation table:
      * id INTEGER NOT NULL: the invitation id == descriptor key (primary key)
@@ -200,6 +328,8 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
     private final WeakHashMap<DescriptorId, DescriptorImpl> mDescriptorCache;
     private final ConversationFactoryImpl mConversationFactory;
     private final GroupConversationFactoryImpl mGroupConversationFactory;
+    private volatile boolean mHasSearchIndex;
+    private volatile boolean mSearchIndexReady;
 
     //
     // Implement DatabaseServiceProvider interface
@@ -230,6 +360,14 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
         transaction.createSchema(ANNOTATION_TABLE);
         transaction.createSchema(OPERATION_TABLE);
         transaction.createSchema(DESCRIPTOR_INDEX);
+        transaction.createSchema(EXPIRE_INDEX);
+        transaction.createSchema(LAST_DESCRIPTOR_TABLE);
+        transaction.createSchema(LAST_DESCRIPTOR_INSERT_TRIGGER);
+        transaction.createSchema(LAST_DESCRIPTOR_DELETE_TRIGGER);
+        transaction.createSchema(LAST_DESCRIPTOR_UPDATE_TRIGGER);
+        transaction.createSchema(LAST_DESCRIPTOR_READ_TRIGGER);
+        transaction.createSchema(LAST_DESCRIPTOR_CONVERSATION_TRIGGER);
+        createSearchIndex(transaction);
     }
 
     @Override
@@ -241,6 +379,29 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
         /*
          * <pre>
          *
+         * Database Version 28
+         *  Date: 2025/06/10
+         *
+         *  ConversationService
+         *   Update oldVersion <= 27:
+         *    Create the idx_descriptor_expire index on the descriptor expiration deadline
+         *
+         * Database Version 27
+         *  Date: 2025/06/05
+         *
+         *  ConversationService
+         *   Update oldVersion <= 26:
+         *    Create the lastDescriptor table and its triggers on the descriptor and conversation tables
+         *    Populate the lastDescriptor table from the descriptor table
+         *
+         * Database Version 26
+         *  Date: 2025/06/02
+         *
+         *  ConversationService
+         *   Update oldVersion <= 25:
+         *    Create the descriptorSearch FTS5 table and its triggers on the descriptor table
+         *    Index the existing messages in the background (see buildSearchIndex)
+         *
          * Database Version 21
          *  Date: 2024/05/07
          *    Add columns creationDate and notificationId in the annotation table to record who annotates for the notification.
@@ -324,7 +485,21 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
          * </pre>
          */
 
+        // Messages created before the FTS5 index are indexed in the background: the triggers only
+        // handle the descriptors starting at the current last descriptor id.
+        final Long lastDescriptorId;
+        if (!transaction.hasTable(SEARCH_INDEX_NAME) && transaction.hasTable("descriptor")) {
+            lastDescriptorId = mDatabase.longQuery("SELECT MAX(id) FROM descriptor", null);
+        } else {
+            lastDescriptorId = null;
+        }
         onCreate(transaction);
+        if (lastDescriptorId != null && transaction.hasTable(SEARCH_INDEX_NAME)) {
+            final ContentValues values = new ContentValues();
+            values.put(Columns.NAME, SEARCH_INDEX_NAME);
+            values.put(Columns.ID, lastDescriptorId + 1);
+            transaction.insertOrReplace(Tables.SEQUENCE, values);
+        }
         if (oldVersion < 20) {
             MigrateConversation migrateConversation = new MigrateConversation(mService, mDatabase);
 
@@ -334,6 +509,13 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
             transaction.createSchema("ALTER TABLE annotation ADD COLUMN notificationId INTEGER");
         }
 
+        if (oldVersion <= 26) {
+            transaction.execSQLWithArgs("INSERT OR IGNORE INTO lastDescriptor (cid) SELECT id FROM conversation",
+                    new String[] {});
+            transaction.execSQLWithArgs(LAST_DESCRIPTOR_UPDATE, new String[] {});
+            transaction.execSQLWithArgs(LAST_DESCRIPTOR_UNREAD_UPDATE, new String[] {});
+        }
+
         // The conversation table was not updated when the pair::bind invocation was received.
         // Repair the conversation table where we should always have:
         //  <conversation>.peerTwincodeOutbound = <conversation>.subject.peerTwincodeOutbound
@@ -346,6 +528,139 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
         }
     }
 
+    @Override
+    protected void onOpen() throws DatabaseException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "onOpen");
+        }
+
+        final Long count = mDatabase.longQuery("SELECT COUNT(*) FROM sqlite_master WHERE type='table' AND name=?",
+                new String[] { SEARCH_INDEX_NAME });
+        mHasSearchIndex = count != null && count > 0 && checkSearchIndex();
+        mSearchIndexReady = mHasSearchIndex && getSearchIndexStart() == null;
+    }
+
+    //
+    // Message search index
+    //
+
+    /**
+     * Check if some messages must be indexed in the background by buildSearchIndex().
+     *
+     * @return true if the search index must be built.
+     */
+    boolean needSearchIndexBuild() {
+
+        return mHasSearchIndex && !mSearchIndexReady;
+    }
+
+    /**
+     * Index a batch of the messages which were created before the FTS5 index.  Messages are indexed from
+     * the most recent to the oldest ones and each batch is committed separately so that the database is not
+     * locked for a long time on large conversations.
+     *
+     * @param maxCount the maximum number of messages to index.
+     * @return true if some messages remain to be indexed.
+     */
+    boolean buildSearchIndex(int maxCount) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "buildSearchIndex: maxCount=" + maxCount);
+        }
+
+        if (!needSearchIndexBuild()) {
+            return false;
+        }
+
+        final long startTime = System.currentTimeMillis();
+        try (Transaction transaction = newTransaction()) {
+            final Long endId = getSearchIndexStart();
+            final Long startId = endId == null ? null : mDatabase.longQuery("SELECT MIN(id) FROM"
+                    + " (SELECT id FROM descriptor WHERE descriptorType=2 AND id<? ORDER BY id DESC LIMIT ?)",
+                    new Object[] { endId, maxCount });
+            if (startId == null) {
+                transaction.delete(Tables.SEQUENCE, "name=?", new String[] { SEARCH_INDEX_NAME });
+                transaction.commit();
+                mSearchIndexReady = true;
+                EventMonitor.event("Search index ready", startTime);
+                return false;
+            }
+
+            transaction.execSQLWithArgs("INSERT INTO descriptorSearch(rowid, content)"
+                    + " SELECT id, content FROM descriptor WHERE descriptorType=2 AND id>=? AND id<?", new String[] {
+                    Long.toString(startId), Long.toString(endId)
+            });
+            final ContentValues values = new ContentValues();
+            values.put(Columns.ID, startId);
+            transaction.update(Tables.SEQUENCE, values, "name=?", new String[] { SEARCH_INDEX_NAME });
+            transaction.commit();
+            EventMonitor.event("Build search index", startTime);
+            return true;
+
+        } catch (Exception exception) {
+            mService.onDatabaseException(exception);
+            return false;
+        }
+    }
+
+    private void createSearchIndex(@NonNull Transaction transaction) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "createSearchIndex");
+        }
+
+        // SQLite could be compiled without FTS5: the search is made with LIKE on the descriptor table.
+        try {
+            transaction.createSchema(SEARCH_TABLE);
+            transaction.createSchema(SEARCH_INSERT_TRIGGER);
+            transaction.createSchema(SEARCH_DELETE_TRIGGER);
+            transaction.createSchema(SEARCH_UPDATE_TRIGGER);
+
+        } catch (DatabaseException exception) {
+            if (Logger.ERROR) {
+                Logger.error(LOG_TAG, "Cannot create the message search index: ", exception.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Check that the FTS5 module and the trigram tokenizer are available to use the search index.  The database
+     * could have been created on another device (account migration): when SQLite does not support the index,
+     * its triggers are dropped because they would make every change on the descriptor table fail.
+     *
+     * @return true if the search index can be used.
+     */
+    private boolean checkSearchIndex() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "checkSearchIndex");
+        }
+
+        try {
+            mDatabase.longQuery("SELECT COUNT(*) FROM descriptorSearch WHERE rowid=0", null);
+            return true;
+
+        } catch (DatabaseException exception) {
+            if (Logger.ERROR) {
+                Logger.error(LOG_TAG, "Message search index is not supported: ", exception.getMessage());
+            }
+        }
+
+        try (Transaction transaction = newTransaction()) {
+            transaction.createSchema("DROP TRIGGER IF EXISTS descriptorSearch_insert");
+            transaction.createSchema("DROP TRIGGER IF EXISTS descriptorSearch_delete");
+            transaction.createSchema("DROP TRIGGER IF EXISTS descriptorSearch_update");
+            transaction.commit();
+
+        } catch (Exception exception) {
+            mService.onDatabaseException(exception);
+        }
+        return false;
+    }
+
+    @Nullable
+    private Long getSearchIndexStart() throws DatabaseException {
+
+        return mDatabase.longQuery("SELECT id FROM sequence WHERE name=?", new String[] { SEARCH_INDEX_NAME });
+    }
+
     //
     // Conversations
     //
@@ -556,12 +871,12 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
     }
 
     @Nullable
-    private Conversation loadConversationWithQuery(@NonNull String query, @NonNull String[] params) {
+    private Conversation loadConversationWithQuery(@NonNull String query, @NonNull Object[] params) {
         if (DEBUG) {
             Log.d(LOG_TAG, "loadConversationWithQuery: query=" + query + " params=" + params[0]);
         }
 
-        try (DatabaseCursor cursor = mDatabase.rawQuery(query, params)) {
+        try (DatabaseCursor cursor = mDatabase.queryWithArgs(query, params)) {
 
             while (cursor.moveToNext()) {
                 Conversation conversation = loadConversationWithCursor(cursor);
@@ -726,7 +1041,7 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
             final Long cid = mDatabase.longQuery("SELECT"
                     + " c.id"
                     + " FROM conversation AS c INNER JOIN twincodeOutbound AS twout ON c.peerTwincodeOutbound=twout.id"
-                    + " WHERE c.groupId=? AND twout.twincodeId=?", new String[]{ Long.toString(groupId), memberTwincodeId.toString() });
+                    + " WHERE c.groupId=? AND twout.twincodeId=?", new Object[]{ groupId, Utils.toBytes(memberTwincodeId) });
             if (cid != null) {
                 final DatabaseObject object = mDatabase.getCache(new DatabaseIdentifier(mGroupConversationFactory, cid));
                 if (object instanceof GroupMemberConversationImpl) {
@@ -860,7 +1175,7 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
                 + " INNER JOIN repository AS r ON c.subject = r.id"
                 + " INNER JOIN twincodeOutbound AS peerTwout ON r.peerTwincodeOutbound = peerTwout.id"
                 + " WHERE peerTwout.twincodeId=? AND c.id = c.groupId";
-        Conversation conversation = loadConversationWithQuery(query, new String[] { groupTwincodeId.toString() });
+        Conversation conversation = loadConversationWithQuery(query, new Object[] { Utils.toBytes(groupTwincodeId) });
         if (conversation instanceof GroupConversationImpl) {
             return (GroupConversationImpl) conversation;
         }
@@ -1086,7 +1401,7 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
         query.filterLong("d.cid", conversation.getDatabaseId().getId());
         query.filterBefore("d.creationDate", resetDate);
         if (twincodeOutboundId != null) {
-            query.filterUUID("twout.twincodeId", twincodeOutboundId);
+            query.filterBinaryUUID("twout.twincodeId", twincodeOutboundId);
         } else {
             query.groupBy("twincodeOutboundId");
         }
@@ -1237,7 +1552,7 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
         } else {
             query.append(" INNER JOIN twincodeOutbound AS twout ON d.twincodeOutbound=twout.id");
             query.filterLong("d.sequenceId", descriptorId.sequenceId);
-            query.filterUUID("twout.twincodeId", descriptorId.twincodeOutboundId);
+            query.filterBinaryUUID("twout.twincodeId", descriptorId.twincodeOutboundId);
         }
         return loadDescriptorWithQuery(query);
     }
@@ -1248,15 +1563,20 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
             Log.d(LOG_TAG, "loadDescriptorImpls: ids.size()="+ids.size());
         }
 
-        QueryBuilder query = new QueryBuilder("d.id, d.cid, d.sequenceId, d.twincodeOutbound, d.sentTo, replyTo.id,"
-                + " replyTo.sequenceId, replyTo.twincodeOutbound, d.descriptorType, d.creationDate,"
-                + " d.sendDate, d.receiveDate, d.readDate, d.updateDate, d.peerDeleteDate, d.deleteDate,"
-                + " d.expireTimeout, d.flags, d.content, d.value FROM descriptor AS d"
-                + " LEFT JOIN descriptor AS replyTo ON d.replyTo = replyTo.id");
+        final boolean jsonSet = mDatabase.hasJsonSet();
+        final List<Descriptor> result = new ArrayList<>(ids.size());
+        for (Collection<Long> part : QueryBuilder.splitSet(ids, jsonSet)) {
+            QueryBuilder query = new QueryBuilder("d.id, d.cid, d.sequenceId, d.twincodeOutbound, d.sentTo, replyTo.id,"
+                    + " replyTo.sequenceId, replyTo.twincodeOutbound, d.descriptorType, d.creationDate,"
+                    + " d.sendDate, d.receiveDate, d.readDate, d.updateDate, d.peerDeleteDate, d.deleteDate,"
+                    + " d.expireTimeout, d.flags, d.content, d.value FROM descriptor AS d"
+                    + " LEFT JOIN descriptor AS replyTo ON d.replyTo = replyTo.id");
 
-        query.filterIn("d.id", ids);
+            query.filterInSet("d.id", part, jsonSet);
 
-        return internalListDescriptors(query, null, ids.size());
+            result.addAll(internalListDescriptors(query, null, part.size()));
+        }
+        return result;
     }
 
     List<Descriptor> loadDescriptorImpls(@Nullable Conversation conversation, @Nullable Descriptor.Type[] types,
@@ -1299,6 +1619,98 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
                     + " beforeTimestamp=" + beforeTimestamp + " maxDescriptors=" + maxDescriptors);
         }
 
+        return internalSearchDescriptors(conversations, searchText, beforeTimestamp, 0, maxDescriptors, false);
+    }
+
+    @Nullable
+    List<Pair<Conversation, Descriptor>> searchDescriptorsByRank(@NonNull List<Conversation> conversations,
+                                                                 @NonNull String searchText,
+                                                                 int offset, int maxDescriptors) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "searchDescriptorsByRank: conversations=" + conversations + " searchText=" + searchText
+                    + " offset=" + offset + " maxDescriptors=" + maxDescriptors);
+        }
+
+        return internalSearchDescriptors(conversations, searchText, null, offset, maxDescriptors, true);
+    }
+
+    @NonNull
+    Map<Conversation, LastDescriptor> listLastDescriptors(@NonNull Filter<Conversation> filter, @NonNull DisplayCallsMode callsMode) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "listLastDescriptors: filter=" + filter + " callsMode=" + callsMode);
+        }
+
+        final long startTime = System.currentTimeMillis();
+        final List<Conversation> conversations = listConversations(filter);
+        final String lastColumn;
+        if (callsMode == DisplayCallsMode.NONE) {
+            lastColumn = "l.lastNoCallId";
+        } else if (callsMode == DisplayCallsMode.MISSED) {
+            lastColumn = "l.lastMissedCallId";
+        } else {
+            lastColumn = "l.lastId";
+        }
+        final List<Long> ids = new ArrayList<>(conversations.size());
+        final Map<Long, Conversation> toConversation = new HashMap<>();
+        final Map<Conversation, Descriptor> lastDescriptors = new HashMap<>();
+        for (Conversation c : conversations) {
+            ids.add(c.getDatabaseId().getId());
+            toConversation.put(c.getDatabaseId().getId(), c);
+        }
+
+        final boolean jsonSet = mDatabase.hasJsonSet();
+        for (Collection<Long> part : QueryBuilder.splitSet(ids, jsonSet)) {
+            final QueryBuilder query = new QueryBuilder("d.id, d.cid, d.sequenceId, d.twincodeOutbound, d.sentTo, replyTo.id,"
+                    + " replyTo.sequenceId, replyTo.twincodeOutbound, d.descriptorType, d.creationDate,"
+                    + " d.sendDate, d.receiveDate, d.readDate, d.updateDate, d.peerDeleteDate, d.deleteDate,"
+                    + " d.expireTimeout, d.flags, d.content, d.value FROM lastDescriptor AS l"
+                    + " INNER JOIN descriptor AS d ON d.id = " + lastColumn
+                    + " LEFT JOIN descriptor AS replyTo ON d.replyTo = replyTo.id");
+            query.filterInSet("l.cid", part, jsonSet);
+
+            final List<Descriptor> descriptors = internalListDescriptors(query, null, part.size());
+            for (Descriptor d : descriptors) {
+                final Conversation c = toConversation.get(((DescriptorImpl) d).getConversationId());
+                if (c != null) {
+                    lastDescriptors.put(c, d);
+                }
+            }
+        }
+
+        final Map<Long, long[]> counters = new HashMap<>();
+        for (Collection<Long> part : QueryBuilder.splitSet(ids, jsonSet)) {
+            final QueryBuilder query = new QueryBuilder("cid, unreadCount, lastActivity FROM lastDescriptor");
+            query.filterInSet("cid", part, jsonSet);
+
+            try (DatabaseCursor cursor = mDatabase.execQuery(query)) {
+                while (cursor.moveToNext()) {
+                    counters.put(cursor.getLong(0), new long[] { cursor.getLong(1), cursor.getLong(2) });
+                }
+            } catch (DatabaseException exception) {
+                mService.onDatabaseException(exception);
+            }
+        }
+
+        final Map<Conversation, LastDescriptor> result = new HashMap<>();
+        for (Conversation c : conversations) {
+            final long[] counter = counters.get(c.getDatabaseId().getId());
+            result.put(c, new LastDescriptor(lastDescriptors.get(c), counter == null ? 0 : (int) counter[0],
+                    counter == null ? 0 : counter[1]));
+        }
+        EventMonitor.event("listLastDescriptors", startTime);
+        return result;
+    }
+
+    @NonNull
+    private List<Pair<Conversation, Descriptor>> internalSearchDescriptors(@NonNull List<Conversation> conversations,
+                                                                         @NonNull String searchText,
+                                                                         @Nullable Long beforeTimestamp, int offset,
+                                                                         int maxDescriptors, boolean byRank) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "internalSearchDescriptors: searchText=" + searchText + " beforeTimestamp=" + beforeTimestamp
+                    + " offset=" + offset + " maxDescriptors=" + maxDescriptors + " byRank=" + byRank);
+        }
+
         final List<Long> ids = new ArrayList<>(conversations.size());
         final Map<Long, Conversation> toConversation = new HashMap<>();
         for (Conversation c : conversations) {
@@ -1307,19 +1719,31 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
         }
 
         final long startTime = System.currentTimeMillis();
-        final QueryBuilder query = new QueryBuilder("d.id, d.cid, d.sequenceId, d.twincodeOutbound, d.sentTo, replyTo.id,"
-                + " replyTo.sequenceId, replyTo.twincodeOutbound, d.descriptorType, d.creationDate,"
-                + " d.sendDate, d.receiveDate, d.readDate, d.updateDate, d.peerDeleteDate, d.deleteDate,"
-                + " d.expireTimeout, d.flags, d.content, d.value FROM descriptor AS d"
-                + " LEFT JOIN descriptor AS replyTo ON d.replyTo = replyTo.id");
-        query.filterBefore("d.creationDate", beforeTimestamp);
-        query.filterIn("d.cid", ids);
-        query.filterInt("d.descriptorType", 2); // Search only on messages.
-        query.filterName("d.content", searchText);
-        query.append(" ORDER BY d.creationDate DESC");
-        query.limit(maxDescriptors);
+        final boolean jsonSet = mDatabase.hasJsonSet();
+        final List<Collection<Long>> parts = QueryBuilder.splitSet(ids, jsonSet);
+        List<Descriptor> descriptors;
+        if (parts.size() == 1) {
+            final QueryBuilder query = createSearchQuery(ids, jsonSet, searchText, beforeTimestamp, byRank);
+            query.limit(maxDescriptors);
+            if (offset > 0) {
+                query.offset(offset);
+            }
+            descriptors = internalListDescriptors(query, null, maxDescriptors);
+
+        } else {
+            // Without json_each(), each part of the conversations is searched with the limit of the whole search
+            // and the results are merged on their creation date (the FTS5 rank cannot be merged).
+            descriptors = new ArrayList<>();
+            for (Collection<Long> part : parts) {
+                final QueryBuilder query = createSearchQuery(part, false, searchText, beforeTimestamp, false);
+                query.limit(offset + maxDescriptors);
+                descriptors.addAll(internalListDescriptors(query, null, offset + maxDescriptors));
+            }
+            Collections.sort(descriptors, (d1, d2) -> Long.compare(d2.getCreatedTimestamp(), d1.getCreatedTimestamp()));
+            descriptors = descriptors.subList(Math.min(offset, descriptors.size()),
+                    Math.min(offset + maxDescriptors, descriptors.size()));
+        }
 
-        final List<Descriptor> descriptors = internalListDescriptors(query, null, maxDescriptors);
         final List<Pair<Conversation, Descriptor>> result = new ArrayList<>(descriptors.size());
         for (Descriptor d : descriptors) {
             final DescriptorImpl descriptorImpl = (DescriptorImpl) d;
@@ -1333,49 +1757,36 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
     }
 
     @NonNull
-    Map<Conversation, Descriptor> listLastDescriptors(@NonNull Filter<Conversation> filter, @NonNull DisplayCallsMode callsMode) {
-        if (DEBUG) {
-            Log.d(LOG_TAG, "listLastDescriptors: filter=" + filter + " callsMode=" + callsMode);
-        }
+    private QueryBuilder createSearchQuery(@NonNull Collection<Long> ids, boolean jsonSet, @NonNull String searchText,
+                                           @Nullable Long beforeTimestamp, boolean byRank) {
 
-        final long startTime = System.currentTimeMillis();
-        List<Conversation> conversations = listConversations(filter);
-        QueryBuilder query = new QueryBuilder("d.id, d.cid, d.sequenceId, d.twincodeOutbound, d.sentTo, replyTo.id,"
+        // Until the FTS5 index contains all the messages, we must look at the descriptor table.
+        // The index is also not used for texts with less than 3 characters or with the '_' LIKE wildcard.
+        // The CROSS JOIN forces SQLite to use the FTS5 table as the outer loop.
+        final boolean useIndex = mSearchIndexReady && QueryBuilder.canMatch(searchText);
+        final QueryBuilder query = new QueryBuilder("d.id, d.cid, d.sequenceId, d.twincodeOutbound, d.sentTo, replyTo.id,"
                 + " replyTo.sequenceId, replyTo.twincodeOutbound, d.descriptorType, d.creationDate,"
                 + " d.sendDate, d.receiveDate, d.readDate, d.updateDate, d.peerDeleteDate, d.deleteDate,"
-                + " d.expireTimeout, d.flags, d.content, d.value FROM descriptor AS d"
-                + " LEFT JOIN descriptor AS replyTo ON d.replyTo = replyTo.id"
-                + " WHERE d.id IN (SELECT id FROM (SELECT d2.id, ROW_NUMBER()"
-                + " OVER (PARTITION BY cid ORDER BY creationDate DESC) AS rn FROM descriptor AS d2");
-        List<Long> ids = new ArrayList<>(conversations.size());
-        Map<Conversation, Descriptor> result = new HashMap<>();
-        for (Conversation c : conversations) {
-            ids.add(c.getDatabaseId().getId());
-            result.put(c, null);
-        }
-        query.filterIn("d2.cid", ids);
-        if (callsMode == DisplayCallsMode.NONE) {
-            query.append(" AND d2.descriptorType != 12");
-        } else if (callsMode == DisplayCallsMode.MISSED) {
-            // Missed call descriptors have the 0x20 flag set and the 0x40 flag cleared (See CallDescriptorImpl).
-            query.append(" AND (d2.descriptorType != 12 OR (d2.flags & 0x60 = 0x20))");
+                + " d.expireTimeout, d.flags, d.content, d.value"
+                + (useIndex ? " FROM descriptorSearch CROSS JOIN descriptor AS d ON d.id = descriptorSearch.rowid"
+                : " FROM descriptor AS d")
+                + " LEFT JOIN descriptor AS replyTo ON d.replyTo = replyTo.id");
+        query.filterBefore("d.creationDate", beforeTimestamp);
+        query.filterInSet("d.cid", ids, jsonSet);
+        query.filterInt("d.descriptorType", 2); // Search only on messages.
+        if (useIndex) {
+            query.filterMatch(SEARCH_INDEX_NAME, searchText);
         }
-        query.append(") lastDescriptorId WHERE rn = 1)");
 
-        List<Descriptor> descriptors = internalListDescriptors(query, null, conversations.size());
-        for (Conversation c : conversations) {
-            final long cid = c.getDatabaseId().getId();
-            for (Descriptor d : descriptors) {
-                DescriptorImpl descriptorImpl = (DescriptorImpl) d;
-                if (descriptorImpl.getConversationId() == cid) {
-                    result.put(c, descriptorImpl);
-                    descriptors.remove(d);
-                    break;
-                }
-            }
+        // The LIKE is also applied on the index results: the trigram tokenizer folds the case of all
+        // unicode characters while LIKE only folds ASCII characters and the result must not depend on the index.
+        query.filterName("d.content", searchText);
+        if (useIndex && byRank) {
+            query.order("descriptorSearch.rank, d.creationDate DESC");
+        } else {
+            query.order("d.creationDate DESC");
         }
-        EventMonitor.event("listLastDescriptors", startTime);
-        return result;
+        return query;
     }
 
     @NonNull
@@ -1409,39 +1820,42 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
         // Get the descriptor annotations in a second query.
         if (!descriptorMap.isEmpty() && conversation != null) {
 
-            query = new QueryBuilder("descriptor, kind, value, COUNT(*) FROM annotation");
-            if (conversation != null) {
-                query.filterLong("cid", conversation.getDatabaseId().getId());
-            }
-            query.filterIn("descriptor", descriptorMap.keySet());
-            query.append("GROUP BY descriptor, kind, value");
-
-            // Step 2: run the query and dispatch the annotation to the corresponding descriptor.
-            try (DatabaseCursor annotationCursor = mDatabase.execQuery(query)) {
-
-                while (annotationCursor.moveToNext()) {
-                    long descriptorId = annotationCursor.getLong(0);
-                    AnnotationType kind = toAnnotationType(annotationCursor.getInt(1));
-                    if (kind != null) {
-                        int value = annotationCursor.getInt(2);
-                        int count = annotationCursor.getInt(3);
-
-                        DescriptorImpl descriptorImpl = descriptorMap.get(descriptorId);
-                        if (descriptorImpl != null) {
-                            List<DescriptorAnnotation> annotations = descriptorImpl.getAnnotations();
-                            if (annotations == null) {
-                                annotations = new ArrayList<>();
-                                descriptorImpl.setAnnotations(annotations);
+            final boolean jsonSet = mDatabase.hasJsonSet();
+            for (Collection<Long> part : QueryBuilder.splitSet(descriptorMap.keySet(), jsonSet)) {
+                query = new QueryBuilder("descriptor, kind, value, COUNT(*) FROM annotation");
+                if (conversation != null) {
+                    query.filterLong("cid", conversation.getDatabaseId().getId());
+                }
+                query.filterInSet("descriptor", part, jsonSet);
+                query.append("GROUP BY descriptor, kind, value");
+
+                // Step 2: run the query and dispatch the annotation to the corresponding descriptor.
+                try (DatabaseCursor annotationCursor = mDatabase.execQuery(query)) {
+
+                    while (annotationCursor.moveToNext()) {
+                        long descriptorId = annotationCursor.getLong(0);
+                        AnnotationType kind = toAnnotationType(annotationCursor.getInt(1));
+                        if (kind != null) {
+                            int value = annotationCursor.getInt(2);
+                            int count = annotationCursor.getInt(3);
+
+                            DescriptorImpl descriptorImpl = descriptorMap.get(descriptorId);
+                            if (descriptorImpl != null) {
+                                List<DescriptorAnnotation> annotations = descriptorImpl.getAnnotations();
+                                if (annotations == null) {
+                                    annotations = new ArrayList<>();
+                                    descriptorImpl.setAnnotations(annotations);
+                                }
+                                annotations.add(new DescriptorAnnotation(kind, value, count));
                             }
-                            annotations.add(new DescriptorAnnotation(kind, value, count));
                         }
                     }
+                } catch (DatabaseException exception) {
+                    if (Logger.ERROR) {
+                        Logger.error(LOG_TAG, "exception", exception);
+                    }
+                    mService.onDatabaseException(exception);
                 }
-            } catch (DatabaseException exception) {
-                if (Logger.ERROR) {
-                    Logger.error(LOG_TAG, "exception", exception);
-                }
-                mService.onDatabaseException(exception);
             }
         }
 
@@ -1654,6 +2068,34 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
         return sb.toString();
     }
 
+    /**
+     * Condition for a descriptor that was sent by a peer: its twincode is not the twincode that the conversation
+     * subject (contact or group) uses to send our messages.
+     *
+     * @param table the descriptor table name or alias ("new" and "old" in triggers).
+     * @return the SQL condition.
+     */
+    @NonNull
+    private static String receivedCondition(@NonNull String table) {
+
+        return table + ".twincodeOutbound IS NOT (SELECT r.twincodeOutbound FROM conversation AS c"
+                + " INNER JOIN repository AS r ON r.id=c.subject WHERE c.id=" + table + ".cid)";
+    }
+
+    /**
+     * Condition for an unread descriptor: a descriptor received from a peer which is not read and not deleted.
+     * Calls are not counted: they are local descriptors and their read date is the date the call was accepted.
+     *
+     * @param table the descriptor table name or alias ("new" and "old" in triggers).
+     * @return the SQL condition.
+     */
+    @NonNull
+    private static String unreadCondition(@NonNull String table) {
+
+        return "IFNULL(" + table + ".readDate, 0) = 0 AND IFNULL(" + table + ".deleteDate, 0) = 0"
+                + " AND " + table + ".descriptorType != 12 AND " + receivedCondition(table);
+    }
+
     long newSequenceId() {
         if (DEBUG) {
             Log.d(LOG_TAG, "newSequenceId");
@@ -1945,7 +2387,9 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
 
         } catch (Exception exception) {
             mService.onDatabaseException(exception);
+            return;
         }
+        mService.updateExpireJob(descriptorImpl);
     }
 
     /**
@@ -2014,7 +2458,100 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
 
         } catch (Exception exception) {
             mService.onDatabaseException(exception);
+            return;
+        }
+        mService.updateExpireJob(descriptorImpl);
+    }
+
+    /**
+     * Get the deadline of the next descriptor to expire.
+     *
+     * @return the expiration deadline or 0 if no descriptor expires.
+     */
+    long getExpireDeadline() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "getExpireDeadline");
+        }
+
+        try {
+            final Long deadline = mDatabase.longQuery("SELECT MIN" + EXPIRE_DEADLINE + " FROM descriptor"
+                    + " WHERE " + EXPIRE_CONDITION, null);
+            return deadline == null ? 0 : Math.max(deadline, 1);
+
+        } catch (DatabaseException exception) {
+            mService.onDatabaseException(exception);
+            return 0;
+        }
+    }
+
+    /**
+     * Delete a batch of descriptors whose expiration deadline has passed.  The caller must remove the
+     * files associated with the descriptors.
+     *
+     * @param now the current time.
+     * @param maxCount the maximum number of descriptors to delete.
+     * @param result the descriptors which are deleted for each conversation.
+     * @return the number of descriptors which are deleted.
+     */
+    int deleteExpiredDescriptors(long now, int maxCount, @NonNull Map<Conversation, List<DescriptorId>> result) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "deleteExpiredDescriptors: now=" + now + " maxCount=" + maxCount);
+        }
+
+        final Map<Long, List<DescriptorId>> expired = new HashMap<>();
+        int count = 0;
+        try (Transaction transaction = newTransaction()) {
+            final QueryBuilder query = new QueryBuilder("descriptor.id, descriptor.cid, descriptor.sequenceId,"
+                    + " twout.twincodeId, c.subject FROM descriptor"
+                    + " LEFT JOIN twincodeOutbound AS twout ON twout.id = descriptor.twincodeOutbound"
+                    + " LEFT JOIN conversation AS c ON c.id = descriptor.cid");
+            query.where(EXPIRE_CONDITION);
+            query.filterBefore(EXPIRE_DEADLINE, now);
+            query.limit(maxCount);
+
+            final Map<Long, Long> subjects = new HashMap<>();
+            final List<Long> orphans = new ArrayList<>();
+            try (DatabaseCursor cursor = mDatabase.execQuery(query)) {
+                while (cursor.moveToNext()) {
+                    final long id = cursor.getLong(0);
+                    final long cid = cursor.getLong(1);
+                    final long sequenceId = cursor.getLong(2);
+                    final UUID twincodeOutboundId = cursor.getUUID(3);
+                    count++;
+                    if (twincodeOutboundId == null || cursor.isNull(4)) {
+                        orphans.add(id);
+                        continue;
+                    }
+                    List<DescriptorId> list = expired.get(cid);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        expired.put(cid, list);
+                        subjects.put(cid, cursor.getLong(4));
+                    }
+                    list.add(new DescriptorId(id, twincodeOutboundId, sequenceId));
+                }
+            }
+
+            for (Map.Entry<Long, List<DescriptorId>> entry : expired.entrySet()) {
+                deleteDescriptorList(transaction, subjects.get(entry.getKey()), entry.getValue());
+            }
+            if (!orphans.isEmpty()) {
+                transaction.deleteWithList(Tables.DESCRIPTOR, orphans);
+            }
+            transaction.commit();
+
+        } catch (Exception exception) {
+            mService.onDatabaseException(exception);
+            return 0;
+        }
+
+        for (Map.Entry<Long, List<DescriptorId>> entry : expired.entrySet()) {
+            final Conversation conversation = loadConversationWithId(entry.getKey());
+            if (conversation != null) {
+                result.put(conversation, entry.getValue());
+            }
         }
+        return count;
     }
 
     /**
@@ -2748,9 +3285,9 @@ public class ConversationServiceProvider extends DatabaseServiceProvider impleme
         } else {
             query.append(" INNER JOIN twincodeOutbound AS twout ON d.twincodeOutbound=twout.id");
             query.filterLong("d.sequenceId", descriptorId.sequenceId);
-            query.filterUUID("twout.twincodeId", descriptorId.twincodeOutboundId);
+            query.filterBinaryUUID("twout.twincodeId", descriptorId.twincodeOutboundId);
         }
-        try (DatabaseCursor cursor = mDatabase.rawQuery(query.getQuery(), query.getParams())) {
+        try (DatabaseCursor cursor = mDatabase.execQuery(query)) {
             while (cursor.moveToNext()) {
                 final TwincodeOutbound twincodeOutbound = mDatabase.loadTwincodeOutbound(cursor, 0);
                 final AnnotationType type = toAnnotationType(cursor.getInt(9));
@@ -66,6 +66,13 @@ import androidx.annotation.Nullable;
  * <p>
  * While the list of conversations with opened P2P connection is not empty, a job is scheduled
  * every 5 second to look at idle P2P connection and close them.
+ * <p>
+ * 3. Priorities
+ * The operations are ordered by priority class (invocations, synchronize, interactive operations, files).
+ * Waiting conversations are ordered by the priority class of their first operation and then by a virtual
+ * start time (start-time fair queuing): a conversation that was served with a large amount of data gets
+ * a later start time for its next operations so that it does not delay the other conversations.
+ * The number of active conversations is decreased when P2P connections fail and increased when they succeed.
  */
 public class ConversationServiceScheduler implements JobService.Observer {
 
@@ -74,9 +81,14 @@ public class ConversationServiceScheduler implements JobService.Observer {
     private static final boolean DEBUG = false;
 
     // Limit the number of P2P conversation that can be opened at a time.
-    // If we are running in foreground, a higher limit is used.
+    // If we are running in foreground, a higher limit is used.  The limit is adjusted between
+    // MIN_ACTIVE_CONVERSATIONS and the maximum according to the P2P connections that succeed or fail.
     private static final int MAX_FOREGROUND_ACTIVE_CONVERSATIONS = 16;
     private static final int MAX_BACKGROUND_ACTIVE_CONVERSATIONS = 8;
+    private static final int MIN_ACTIVE_CONVERSATIONS = 2;
+
+    // Weight of the priority classes for the fair queuing between conversations.
+    private static final int[] PRIORITY_WEIGHTS = { 8, 8, 4, 1 };
 
     private static final int MAX_FOREGROUND_IDLE_TIME = 120 * 1000; // ms
     private static final int MAX_BACKGROUND_IDLE_TIME = 5 * 1000; // ms
@@ -100,6 +112,11 @@ public class ConversationServiceScheduler implements JobService.Observer {
     private JobService.Job mScheduleJob;
     private boolean mIsReschedulePending;
     private int mCurrentLimit;
+    private int mAdaptiveLimit;
+    private int mActivePeers;
+    private final Set<ConversationConnection> mOpenedConnections;
+    private final Map<DatabaseIdentifier, Long> mFinishTags;
+    private long mVirtualTime;
 
     ConversationServiceScheduler(@NonNull TwinlifeImpl twinlifeImpl, @NonNull ConversationServiceImpl conversationService,
                                  @NonNull ConversationServiceProvider serviceProvider, @NonNull ScheduledExecutorService executor) {
@@ -118,6 +135,11 @@ public class ConversationServiceScheduler implements JobService.Observer {
         mNextIdleCheckTime = 0;
         mIsReschedulePending = false;
         mCurrentLimit = 0;
+        mAdaptiveLimit = MAX_FOREGROUND_ACTIVE_CONVERSATIONS;
+        mActivePeers = 0;
+        mOpenedConnections = new HashSet<>();
+        mFinishTags = new HashMap<>();
+        mVirtualTime = 0;
 
         // We want to be informed when we enter in background.
         mJobService.setObserver(this);
@@ -136,6 +158,7 @@ public class ConversationServiceScheduler implements JobService.Observer {
             Log.d(LOG_TAG, "onEnterBackground");
         }
 
+        final int limit = getActiveConversationLimit();
         boolean schedule = false;
         synchronized (this) {
             if (mDeferrableOperations == null) {
@@ -152,8 +175,7 @@ public class ConversationServiceScheduler implements JobService.Observer {
 
                 OperationList operations = mConversationId2Operations.get(conversationId);
                 if (operations == null) {
-                    operations = new OperationList(conversationImpl);
-                    mConversationId2Operations.put(conversationId, operations);
+                    operations = createOperationList(conversationImpl);
                 } else {
                     // Temporarily remove the operations from the waiting list because adding an item may re-order the list.
                     if (!isActive) {
@@ -164,7 +186,7 @@ public class ConversationServiceScheduler implements JobService.Observer {
                 if (!isActive) {
                     mWaitingOperations.add(operations);
                 }
-                schedule = isActive || mActiveOperations.size() < MAX_BACKGROUND_ACTIVE_CONVERSATIONS;
+                schedule = isActive || mActiveOperations.size() < limit;
             }
             mDeferrableOperations = null;
         }
@@ -193,6 +215,10 @@ public class ConversationServiceScheduler implements JobService.Observer {
         if (DEBUG) {
             Log.d(LOG_TAG, "onActivePeers count=" + count);
         }
+
+        synchronized (this) {
+            mActivePeers = count;
+        }
     }
 
     public void loadOperations() {
@@ -440,13 +466,59 @@ public class ConversationServiceScheduler implements JobService.Observer {
 
         int limit = mJobService.isForeground() ? MAX_FOREGROUND_ACTIVE_CONVERSATIONS : MAX_BACKGROUND_ACTIVE_CONVERSATIONS;
 
-        if (INFO && limit != mCurrentLimit) {
-            Log.i(LOG_TAG, "getActiveConversationLimit set to " + limit);
+        synchronized (this) {
+            // Give up some room to the P2P connections that are not used by the conversations (audio/video calls).
+            final int otherPeers = Math.max(0, mActivePeers - mActiveConnections.size());
+            limit = Math.max(MIN_ACTIVE_CONVERSATIONS, Math.min(limit, mAdaptiveLimit) - otherPeers);
+
+            if (INFO && limit != mCurrentLimit) {
+                Log.i(LOG_TAG, "getActiveConversationLimit set to " + limit);
+            }
+            mCurrentLimit = limit;
         }
-        mCurrentLimit = limit;
         return limit;
     }
 
+    /**
+     * Create the list of operations for a conversation that has no pending operation.  The list starts
+     * at the current virtual time or after the service that the conversation received recently.
+     *
+     * @param conversationImpl the conversation.
+     * @return the new operation list.
+     */
+    @NonNull
+    private OperationList createOperationList(@NonNull ConversationImpl conversationImpl) {
+
+        final OperationList operations = new OperationList(conversationImpl);
+        final Long finishTag = mFinishTags.get(conversationImpl.getDatabaseId());
+        operations.setStartTag(finishTag == null ? mVirtualTime : Math.max(mVirtualTime, finishTag));
+        mConversationId2Operations.put(conversationImpl.getDatabaseId(), operations);
+        return operations;
+    }
+
+    /**
+     * The operations of the conversation become active: advance the virtual time and compute the
+     * virtual finish time of the conversation from the estimated size of its operations and the weight
+     * of their priority class.
+     *
+     * @param operations the operations being activated.
+     */
+    private void serveOperations(@NonNull OperationList operations) {
+
+        final long startTag = Math.max(mVirtualTime, operations.getStartTag());
+        final long cost = operations.getNotificationContent().estimatedSize / PRIORITY_WEIGHTS[operations.getPriority()];
+        mVirtualTime = startTag;
+        mFinishTags.put(operations.getConversationId(), startTag + Math.max(cost, 1));
+
+        // Drop the conversations which are not ahead of the virtual time: they start at the virtual time.
+        final Iterator<Long> iterator = mFinishTags.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() <= mVirtualTime) {
+                iterator.remove();
+            }
+        }
+    }
+
     /**
      * Schedule the operations associated with the conversation.
      * <p>
@@ -750,6 +822,7 @@ public class ConversationServiceScheduler implements JobService.Observer {
             if (!mActiveOperations.contains(operations)) {
                 operations.clearDeadline();
                 mActiveOperations.add(operations);
+                serveOperations(operations);
             }
 
             notificationContent = operations.getNotificationContent();
@@ -783,10 +856,11 @@ public class ConversationServiceScheduler implements JobService.Observer {
             // Operations for the conversation are now active: move them from waiting to active list.
             OperationList operations = mConversationId2Operations.get(conversationId);
             if (operations != null) {
+                mWaitingOperations.remove(operations);
                 if (!mActiveOperations.contains(operations)) {
                     mActiveOperations.add(operations);
+                    serveOperations(operations);
                 }
-                mWaitingOperations.remove(operations);
                 operations.clearDeadline();
             }
 
@@ -801,13 +875,17 @@ public class ConversationServiceScheduler implements JobService.Observer {
                             mDeferrableOperations = null;
                         }
                         if (operations == null) {
-                            operations = new OperationList(conversationImpl);
-                            mConversationId2Operations.put(conversationId, operations);
+                            operations = createOperationList(conversationImpl);
                         }
                         operations.addOperations(deferredList);
                     }
                 }
                 connection.touch();
+
+                // The P2P connection succeeded, we can try to open more conversations.
+                if (mOpenedConnections.add(connection) && mAdaptiveLimit < MAX_FOREGROUND_ACTIVE_CONVERSATIONS) {
+                    mAdaptiveLimit++;
+                }
                 if (operations != null && !operations.isEmpty()) {
                     operation = operations.getFirstOperation();
                     if (operation.getRequestId() != Operation.NO_REQUEST_ID) {
@@ -860,7 +938,12 @@ public class ConversationServiceScheduler implements JobService.Observer {
                 Log.i(LOG_TAG, "The conversation " + conversationId + " was not active");
             }
 
+            // The P2P connection failed before being opened and operations are still pending: open less conversations.
             operations = mConversationId2Operations.get(conversationId);
+            if (!mOpenedConnections.remove(connection) && operations != null && !operations.isEmpty()
+                    && mAdaptiveLimit > MIN_ACTIVE_CONVERSATIONS) {
+                mAdaptiveLimit--;
+            }
             if (operations != null) {
                 mActiveOperations.remove(operations);
                 mWaitingOperations.remove(operations);
@@ -877,6 +960,8 @@ public class ConversationServiceScheduler implements JobService.Observer {
                     } else {
                         delay = conversationImpl.getDelay();
                     }
+                    final Long finishTag = mFinishTags.get(conversationId);
+                    operations.setStartTag(finishTag == null ? mVirtualTime : Math.max(mVirtualTime, finishTag));
                     operations.setDeadline(System.currentTimeMillis() + delay);
                     mWaitingOperations.add(operations);
                 } else {
@@ -984,19 +1069,19 @@ public class ConversationServiceScheduler implements JobService.Observer {
         final boolean canExecute;
         final DatabaseIdentifier conversationId = conversationImpl.getDatabaseId();
         final long now = System.currentTimeMillis();
+        final int limit = getActiveConversationLimit();
         synchronized (this) {
             final boolean isActive;
             operations = mConversationId2Operations.get(conversationId);
             if (operations == null) {
-                operations = new OperationList(conversationImpl);
-                mConversationId2Operations.put(conversationId, operations);
+                operations = createOperationList(conversationImpl);
 
                 // If we are connected, we can proceed with execution of this first operation.
                 canExecute = operation.canExecute(conversationImpl);
                 isActive = false;
 
             } else {
-                isActive = mWaitingOperations.contains(operations);
+                isActive = mActiveOperations.contains(operations);
                 if (isActive) {
                     // We can execute if we are connected and this is a first operation.
                     canExecute = operations.isEmpty() && operation.canExecute(conversationImpl);
@@ -1022,7 +1107,7 @@ public class ConversationServiceScheduler implements JobService.Observer {
                 mWaitingOperations.add(operations);
             }
 
-            schedule = schedule && (isActive || mActiveOperations.size() < MAX_FOREGROUND_ACTIVE_CONVERSATIONS);
+            schedule = schedule && (isActive || mActiveOperations.size() < limit);
         }
 
         if (canExecute) {
@@ -1115,6 +1200,37 @@ public class ConversationServiceScheduler implements JobService.Observer {
         }
     }
 
+    /**
+     * Give the descriptor loaded by a push object operation to the operations which push the same descriptor
+     * to the other group members: the descriptor is loaded once and its payload is serialized once.
+     *
+     * @param operation the operation which loaded the descriptor.
+     * @param sharedPayload the payload to share.
+     * @return true if the payload is shared with other operations.
+     */
+    boolean sharePushObject(@NonNull PushObjectOperation operation, @NonNull SharedPayload sharedPayload) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "sharePushObject: operation=" + operation);
+        }
+
+        boolean shared = false;
+        synchronized (this) {
+            for (OperationList operations : mConversationId2Operations.values()) {
+                final Iterable<Operation> list = operations.iterator();
+                if (list == null) {
+                    continue;
+                }
+                for (Operation pending : list) {
+                    if (pending != operation && pending instanceof PushObjectOperation
+                            && ((PushObjectOperation) pending).share(sharedPayload)) {
+                        shared = true;
+                    }
+                }
+            }
+        }
+        return shared;
+    }
+
     /**
      * Returns YES if the conversation has pending operations.
      *
@@ -1259,6 +1375,8 @@ public class ConversationServiceScheduler implements JobService.Observer {
         if (connection != null) {
             synchronized (this) {
                 mActiveConnections.remove(connection);
+                mOpenedConnections.remove(connection);
+                mFinishTags.remove(conversationImpl.getDatabaseId());
             }
         }
     }
@@ -1309,6 +1427,9 @@ public class ConversationServiceScheduler implements JobService.Observer {
             mActiveOperations.clear();
             mWaitingOperations.clear();
             mConversationId2Operations.clear();
+            mOpenedConnections.clear();
+            mFinishTags.clear();
+            mVirtualTime = 0;
         }
     }
 }
@@ -18,7 +18,6 @@ import org.twinlife.twinlife.DatabaseIdentifier;
 public class FileOperation extends Operation {
 
     private static final long ESTIMATED_SIZE = Operation.ESTIMATED_SIZE + 16 + 8 + 8;
-    private static final long DATA_WINDOW_SIZE = 256 * 1024;
 
     static final long NOT_INITIALIZED = -1L;
 
@@ -62,7 +61,7 @@ public class FileOperation extends Operation {
         }
     }
 
-    boolean isReadyToSend(long length) {
+    boolean isReadyToSend(long length, long window) {
 
         // Check if we have sent all our data chunks.
         if (mSentOffset >= length) {
@@ -76,9 +75,9 @@ public class FileOperation extends Operation {
             return false;
         }
 
-        // Compute the chunk size that is not yet acknowledged and don't send if we exceed the data window (1Mb).
+        // Compute the chunk size that is not yet acknowledged and don't send if we exceed the data window.
         final long sentNotAckwnoledged = mSentOffset - mChunkStart;
-        return sentNotAckwnoledged >= 0 && sentNotAckwnoledged < DATA_WINDOW_SIZE;
+        return sentNotAckwnoledged >= 0 && sentNotAckwnoledged < window;
     }
 
     long getEstimatedSize() {
@@ -0,0 +1,187 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.conversation;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.twinlife.twinlife.ConversationService.FileTransferStats;
+
+/**
+ * Congestion controller for the file transfer on a conversation connection.
+ * <p>
+ * The controller is driven by the OnPushFileChunkIQ acknowledgements:
+ * - the echoed sender timestamp gives an RTT sample used to compute the smoothed RTT and RTT variance
+ *   (RFC 6298) as well as the min RTT over the last MIN_RTT_WINDOW ms,
+ * - the number of bytes acknowledged since the previous ack gives a delivery rate sample and the max
+ *   delivery rate over the last BANDWIDTH_SAMPLES acks is the bottleneck bandwidth estimate.
+ * <p>
+ * The send window is the bandwidth-delay product (bandwidth * min RTT) with a gain of 2 to probe for
+ * more bandwidth, and a gain of 1 when the smoothed RTT shows a queue building up on the path.  The chunk
+ * size is a fraction of the window so that several chunks are always in flight.  Until we have samples,
+ * the window is INITIAL_WINDOW and the chunk size is selected from the RTT measured by the synchronize IQ.
+ */
+final class FileTransferController {
+    private static final String LOG_TAG = "FileTransferController";
+    private static final boolean DEBUG = false;
+
+    static final int MIN_CHUNK_SIZE = 16 * 1024;
+    // Must stay below 128K because thumbnails are sent with 2 * chunk size and WebRTC drops IQs above 256K.
+    static final int MAX_CHUNK_SIZE = 120 * 1024;
+    static final long INITIAL_WINDOW = 256 * 1024;
+    static final long MIN_WINDOW = 64 * 1024;
+    static final long MAX_WINDOW = 8 * 1024 * 1024;
+
+    private static final int MAX_RTT_SAMPLE = 60000;
+    private static final long MIN_RTT_WINDOW = 10000;
+    private static final int BANDWIDTH_SAMPLES = 10;
+    private static final long MAX_ACK_INTERVAL = 2000;
+
+    private int mSmoothedRTT;
+    private int mRTTVariance;
+    private int mMinRTT;
+    private long mMinRTTTime;
+    private long mLastAckTime;
+    private final long[] mBandwidthSamples = new long[BANDWIDTH_SAMPLES];
+    private int mBandwidthIndex;
+    private long mBandwidth;
+    private long mGoodput;
+    private long mWindow = INITIAL_WINDOW;
+    private int mChunkSize = ConversationConnection.CHUNK_LOW_RTT;
+
+    /**
+     * Record an RTT sample measured outside of the file transfer (synchronize IQ).
+     *
+     * @param rtt the RTT in ms.
+     */
+    void onRTTSample(int rtt) {
+
+        onRTTSample(rtt, System.currentTimeMillis());
+    }
+
+    synchronized void onRTTSample(int rtt, long now) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "onRTTSample: rtt=" + rtt + " now=" + now);
+        }
+
+        if (rtt < 0 || rtt > MAX_RTT_SAMPLE) {
+            return;
+        }
+
+        updateRTT(rtt, now);
+        update();
+    }
+
+    /**
+     * Record the acknowledgement of a data chunk.
+     *
+     * @param senderTimestamp the timestamp of the acknowledged PushFileChunkIQ (set when it left the send queue).
+     * @param ackedBytes the number of bytes acknowledged since the previous ack of the file.
+     */
+    void onAck(long senderTimestamp, long ackedBytes) {
+
+        onAck(senderTimestamp, ackedBytes, System.currentTimeMillis());
+    }
+
+    synchronized void onAck(long senderTimestamp, long ackedBytes, long now) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "onAck: senderTimestamp=" + senderTimestamp + " ackedBytes=" + ackedBytes + " now=" + now);
+        }
+
+        final long rtt = now - senderTimestamp;
+        if (rtt >= 0 && rtt <= MAX_RTT_SAMPLE) {
+            updateRTT((int) rtt, now);
+        }
+
+        // Delivery rate from the bytes acknowledged since the previous ack (ignore the first ack after an idle period).
+        final long interval = now - mLastAckTime;
+        if (ackedBytes > 0 && interval <= MAX_ACK_INTERVAL) {
+            final long rate = (ackedBytes * 1000L) / Math.max(interval, 1);
+            mBandwidthSamples[mBandwidthIndex] = rate;
+            mBandwidthIndex = (mBandwidthIndex + 1) % BANDWIDTH_SAMPLES;
+            long bandwidth = 0;
+            for (long sample : mBandwidthSamples) {
+                if (sample > bandwidth) {
+                    bandwidth = sample;
+                }
+            }
+            mBandwidth = bandwidth;
+            mGoodput = mGoodput == 0 ? rate : (7 * mGoodput + rate) / 8;
+        }
+        mLastAckTime = now;
+        update();
+    }
+
+    /**
+     * Get the number of bytes that can be sent and not acknowledged.
+     *
+     * @return the send window in bytes.
+     */
+    synchronized long getWindow() {
+
+        return mWindow;
+    }
+
+    synchronized int getChunkSize() {
+
+        return mChunkSize;
+    }
+
+    @NonNull
+    synchronized FileTransferStats getStats() {
+
+        return new FileTransferStats(mWindow, mChunkSize, mGoodput, mBandwidth, mSmoothedRTT, mRTTVariance, mMinRTT);
+    }
+
+    //
+    // Private Methods
+    //
+
+    private void updateRTT(int rtt, long now) {
+
+        if (mSmoothedRTT == 0) {
+            mSmoothedRTT = rtt;
+            mRTTVariance = rtt / 2;
+        } else {
+            mRTTVariance = (3 * mRTTVariance + Math.abs(mSmoothedRTT - rtt)) / 4;
+            mSmoothedRTT = (7 * mSmoothedRTT + rtt) / 8;
+        }
+
+        if (mMinRTT == 0 || rtt <= mMinRTT || now - mMinRTTTime > MIN_RTT_WINDOW) {
+            mMinRTT = Math.max(rtt, 1);
+            mMinRTTTime = now;
+        }
+    }
+
+    private void update() {
+
+        if (mBandwidth == 0) {
+            mWindow = INITIAL_WINDOW;
+            if (mSmoothedRTT > ConversationConnection.NETWORK_HIGH_RTT) {
+                mChunkSize = ConversationConnection.CHUNK_HIGH_RTT;
+            } else if (mSmoothedRTT > ConversationConnection.NETWORK_NORMAL_RTT) {
+                mChunkSize = ConversationConnection.CHUNK_NORMAL_RTT;
+            } else {
+                mChunkSize = ConversationConnection.CHUNK_LOW_RTT;
+            }
+            return;
+        }
+
+        // A smoothed RTT well above the min RTT means we are filling a queue: stop probing.
+        final long bdp = (mBandwidth * mMinRTT) / 1000L;
+        final boolean queueing = mSmoothedRTT > mMinRTT + 4 * mRTTVariance && mSmoothedRTT > 2 * mMinRTT;
+        final long window = queueing ? bdp : 2 * bdp;
+        mWindow = Math.max(MIN_WINDOW, Math.min(MAX_WINDOW, window));
+
+        // Keep at least 4 chunks in flight, use 4K multiples.
+        final long chunkSize = (mWindow / 4) & ~0x0FFFL;
+        mChunkSize = (int) Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize));
+    }
+}
@@ -32,6 +32,7 @@ import org.twinlife.twinlife.database.Transaction;
 import org.twinlife.twinlife.util.BinaryDecoder;
 import org.twinlife.twinlife.util.EventMonitor;
 import org.twinlife.twinlife.util.Logger;
+import org.twinlife.twinlife.util.Utils;
 
 import java.io.ByteArrayInputStream;
 import java.util.HashMap;
@@ -210,7 +211,7 @@ class MigrateConversation {
         return mDatabase.longQuery("SELECT r.id"
                 + " FROM twincodeOutbound AS twout"
                 + " INNER JOIN repository AS r ON r.twincodeOutbound=twout.id"
-                + " WHERE twout.twincodeId=?", new String[]{twincodeOutboundId.toString()});
+                + " WHERE twout.twincodeId=?", new Object[]{ Utils.toBytes(twincodeOutboundId) });
     }
 
     private void prepareObjectMap() throws DatabaseException {
@@ -28,6 +28,12 @@ public class Operation implements Comparable<Operation> {
     static final long NO_REQUEST_ID = -1L;
     public static final long ESTIMATED_SIZE = 256; // 16 + 4 + 4 + 4 + 16 + 8;
 
+    // Priority classes used to order the operations of a conversation and the conversations between them.
+    static final int PRIORITY_INVOKE = 0;
+    static final int PRIORITY_SYNCHRONIZE = 1;
+    static final int PRIORITY_INTERACTIVE = 2;
+    static final int PRIORITY_FILE = 3;
+
     public enum Type {
         RESET_CONVERSATION,
         SYNCHRONIZE_CONVERSATION,
@@ -162,6 +168,34 @@ public class Operation implements Comparable<Operation> {
         return ESTIMATED_SIZE;
     }
 
+    /**
+     * Get the priority class of the operation:
+     * - the twincode invocations don't need the P2P connection and are executed first,
+     * - the synchronize operation must be executed first when the P2P connection is opened,
+     * - the messages, updates and group operations are interactive,
+     * - the files are sent last so that a large transfer does not delay the interactive operations.
+     *
+     * @return the priority class, lower values are executed first.
+     */
+    int getPriority() {
+
+        switch (mType) {
+            case INVOKE_JOIN_GROUP:
+            case INVOKE_LEAVE_GROUP:
+            case INVOKE_ADD_MEMBER:
+                return PRIORITY_INVOKE;
+
+            case SYNCHRONIZE_CONVERSATION:
+                return PRIORITY_SYNCHRONIZE;
+
+            case PUSH_FILE:
+                return PRIORITY_FILE;
+
+            default:
+                return PRIORITY_INTERACTIVE;
+        }
+    }
+
     /**
      * Check if this operation is implemented by using a twincode invocation.
      * In that case, there is no need to setup a WebRTC data-channel.
@@ -252,32 +286,13 @@ public class Operation implements Comparable<Operation> {
     @Override
     public int compareTo(@NonNull Operation operation2) {
 
-        Type type2 = operation2.getType();
-        if (mType == type2) {
-
-            // Order by operation id when types are identical.
-            return Long.compare(getId(), operation2.getId());
-        }
-
-        // Put invoke operations first (before synchronize).
-        if (mType == Type.INVOKE_ADD_MEMBER || mType == Type.INVOKE_JOIN_GROUP || mType == Type.INVOKE_LEAVE_GROUP) {
-            return -1;
-        }
-        if (type2 == Type.INVOKE_ADD_MEMBER || type2 == Type.INVOKE_JOIN_GROUP || type2 == Type.INVOKE_LEAVE_GROUP) {
-            return 1;
-        }
-        if (mType == Type.SYNCHRONIZE_CONVERSATION) {
-            return -1;
-        }
-        if (type2 == Type.SYNCHRONIZE_CONVERSATION) {
-            return 1;
-        }
-        if (type2 == Type.PUSH_FILE) {
+        // Order by priority class and then by operation id so that operations of the same class are
+        // executed in the order they were created (the comparison must not depend on the request id).
+        int result = Integer.compare(getPriority(), operation2.getPriority());
+        if (result != 0) {
 
-            return -1;
+            return result;
         }
-
-        // Types are different but of equivalent, order by operation id.
         return Long.compare(getId(), operation2.getId());
     }
 
@@ -45,6 +45,9 @@ class OperationList implements Comparable<OperationList> {
 
     private long mDeadline;
 
+    // Virtual start time given by the scheduler for the fair queuing between conversations.
+    private long mStartTag;
+
     OperationList(@NonNull DatabaseIdentifier conversationId) {
 
         mConversationId = conversationId;
@@ -137,6 +140,26 @@ class OperationList implements Comparable<OperationList> {
         mDeadline = 0;
     }
 
+    long getStartTag() {
+
+        return mStartTag;
+    }
+
+    void setStartTag(long startTag) {
+
+        mStartTag = startTag;
+    }
+
+    /**
+     * Get the priority class of the first operation.
+     *
+     * @return the priority class or PRIORITY_FILE when the operations are not known.
+     */
+    int getPriority() {
+
+        return mOperations == null || mOperations.isEmpty() ? Operation.PRIORITY_FILE : mOperations.first().getPriority();
+    }
+
     Iterable<Operation> iterator() {
 
         return mOperations;
@@ -324,7 +347,19 @@ class OperationList implements Comparable<OperationList> {
             return 1;
         }
 
-        int result = Long.compare(mOperations.first().getTimestamp(), list.mOperations.first().getTimestamp());
+        // Serve the conversations with interactive operations first and then the conversations which
+        // received the less service.
+        int result = Integer.compare(getPriority(), list.getPriority());
+        if (result != 0) {
+
+            return result;
+        }
+        result = Long.compare(mStartTag, list.mStartTag);
+        if (result != 0) {
+
+            return result;
+        }
+        result = Long.compare(mOperations.first().getTimestamp(), list.mOperations.first().getTimestamp());
         if (result != 0) {
 
             return result;
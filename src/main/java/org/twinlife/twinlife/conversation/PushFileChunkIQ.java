@@ -18,7 +18,10 @@ import org.twinlife.twinlife.Decoder;
 import org.twinlife.twinlife.Encoder;
 import org.twinlife.twinlife.SerializerException;
 import org.twinlife.twinlife.SerializerFactory;
+import org.twinlife.twinlife.util.BinaryEncoder;
+import org.twinlife.twinlife.util.BinaryPacketBuffer;
 import org.twinlife.twinlife.util.BinaryPacketIQ;
+import org.twinlife.twinlife.util.SendingFileInfo;
 
 import java.util.UUID;
 
@@ -48,6 +51,10 @@ import java.util.UUID;
  * }
  *
  * </pre>
+ * <p>
+ * When the IQ is created without a chunk but with a size, only the header is serialized and the
+ * chunk bytes are expected to follow: this is used by serializeWithChunk() to read the file chunk
+ * in place after the header.
  */
 class PushFileChunkIQ extends BinaryPacketIQ {
 
@@ -78,6 +85,59 @@ class PushFileChunkIQ extends BinaryPacketIQ {
         this.size = size;
     }
 
+    /**
+     * Serialize the IQ for the data channel and read the file chunk directly after the IQ header.
+     * The packet is built in a single array of the exact size so that it is given to the data
+     * channel without further copy.
+     *
+     * @param serializerFactory the serializer factory.
+     * @param sendingFileInfo the file being sent, positioned on the chunk start.
+     * @param withLeadingPadding when true, emit the leading padding and use the legacy encoder.
+     * @return the serialized packet or null if the file chunk could not be read.
+     * @throws SerializerException when the serialization failed.
+     */
+    @Nullable
+    byte[] serializeWithChunk(@NonNull SerializerFactory serializerFactory, @NonNull SendingFileInfo sendingFileInfo,
+                              boolean withLeadingPadding) throws SerializerException {
+
+        final byte[] packet;
+        final int headerLength;
+        final BinaryPacketBuffer buffer = BinaryPacketBuffer.acquire();
+        try {
+            serializeWithPadding(serializerFactory, buffer, withLeadingPadding);
+            headerLength = buffer.size();
+            packet = new byte[headerLength + size];
+            buffer.copyTo(0, packet, 0, headerLength);
+        } finally {
+            buffer.release();
+        }
+
+        try {
+            if (sendingFileInfo.read(packet, headerLength, size) != size) {
+
+                return null;
+            }
+        } catch (Exception exception) {
+
+            return null;
+        }
+        return packet;
+    }
+
+    /**
+     * Get the position of the timestamp in the packet built by serializeWithChunk() so that it can be
+     * updated when the packet leaves the send queue.
+     *
+     * @param packetLength the packet length.
+     * @return the timestamp position in the packet.
+     */
+    int getTimestampOffset(int packetLength) {
+
+        // The timestamp is followed by the chunk start, the chunk enum, the chunk length and the chunk data.
+        return packetLength - size - BinaryEncoder.getLongSize(size) - 1
+                - BinaryEncoder.getLongSize(chunkStart) - BinaryEncoder.getLongSize(timestamp);
+    }
+
     @NonNull
     static BinaryPacketIQSerializer createSerializer(@NonNull UUID schemaId, int schemaVersion) {
 
@@ -139,6 +199,10 @@ class PushFileChunkIQ extends BinaryPacketIQ {
             if (pushFileChunkIQ.chunk != null) {
                 encoder.writeEnum(1);
                 encoder.writeBytes(pushFileChunkIQ.chunk, pushFileChunkIQ.startPos, pushFileChunkIQ.size);
+            } else if (pushFileChunkIQ.size > 0) {
+                // Header only: the chunk bytes are appended by serializeWithChunk().
+                encoder.writeEnum(1);
+                encoder.writeInt(pushFileChunkIQ.size);
             } else {
                 encoder.writeEnum(0);
             }
@@ -116,7 +116,7 @@ class PushFileOperation extends FileOperation {
             // a dedicated schemaId (there is be no ack for these IQs).  When the PushFileIQ is received
             // it will have a nil thumbnail but it was received before and we will get back the OnPushFileIQ
             // that valides the correct reception of the thumbnail+PushFileIQ.  We use 2xbestChunkSize
-            // to send chunks in the range [32, 64, 128K] depending on the RTT.  We must not exceed 256K
+            // to send chunks in the range [32K, 240K] depending on the send window.  We must not exceed 256K
             // otherwise WebRTC will not send the IQ.
             final int chunkSize = 2 * connection.getBestChunkSize();
             if (thumbnail != null && thumbnail.length > chunkSize && connection.isSupported(MAJOR_VERSION_2, MINOR_VERSION_19)) {
@@ -217,25 +217,27 @@ class PushFileOperation extends FileOperation {
 
             } else {
                 final long requestId = getRequestId();
-                int chunkSize = connection.getBestChunkSize();
+                final int chunkSize = connection.getBestChunkSize();
+                final long window = connection.getSendWindow();
 
-                while (isReadyToSend(fileDescriptorImpl.getLength())) {
-                    long offset = mSentOffset;
-                    byte[] chunk = connection.readChunk(filesDir, fileDescriptorImpl, offset, chunkSize);
-                    if (chunk == null) {
+                while (isReadyToSend(fileDescriptorImpl.getLength(), window)) {
+                    final long offset = mSentOffset;
+                    final int size = (int) Math.min(chunkSize, fileDescriptorImpl.getLength() - offset);
+                    final long now = System.currentTimeMillis();
+
+                    // Build the packet header and read the file chunk in place after it.
+                    final PushFileChunkIQ pushFileChunkIQ = new PushFileChunkIQ(PushFileChunkIQ.IQ_PUSH_FILE_CHUNK_SERIALIZER,
+                            requestId, fileDescriptorImpl.getDescriptorId(), now, offset, 0, null, size);
+                    final byte[] packet = size > 0 ? connection.readChunk(filesDir, fileDescriptorImpl, pushFileChunkIQ) : null;
+                    if (packet == null) {
                         // File was removed, send a delete descriptor operation (current operation is deleted).
                         connection.deleteFileDescriptor(fileDescriptorImpl, this);
                         return ErrorCode.QUEUED;
                     }
 
-                    final long now = System.currentTimeMillis();
-                    final PushFileChunkIQ pushFileChunkIQ = new PushFileChunkIQ(PushFileChunkIQ.IQ_PUSH_FILE_CHUNK_SERIALIZER,
-                            requestId, fileDescriptorImpl.getDescriptorId(), now, offset, 0, chunk, chunk.length);
-
-                    offset = offset + chunk.length;
-                    mSentOffset = offset;
-
-                    connection.sendPacket(PeerConnectionService.StatType.IQ_SET_PUSH_FILE_CHUNK, pushFileChunkIQ);
+                    mSentOffset = offset + size;
+                    connection.sendMessage(PeerConnectionService.StatType.IQ_SET_PUSH_FILE_CHUNK, packet,
+                            pushFileChunkIQ.getTimestampOffset(packet.length));
                 }
                 return ErrorCode.QUEUED;
             }
@@ -10,6 +10,7 @@
 package org.twinlife.twinlife.conversation;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import org.twinlife.twinlife.BuildConfig;
 import org.twinlife.twinlife.ConversationService.DescriptorId;
@@ -17,6 +18,7 @@ import org.twinlife.twinlife.Decoder;
 import org.twinlife.twinlife.Encoder;
 import org.twinlife.twinlife.SerializerException;
 import org.twinlife.twinlife.SerializerFactory;
+import org.twinlife.twinlife.util.BinaryCompactEncoder;
 import org.twinlife.twinlife.util.BinaryPacketIQ;
 
 import java.util.UUID;
@@ -62,12 +64,31 @@ class PushObjectIQ extends BinaryPacketIQ {
 
     @NonNull
     final ObjectDescriptorImpl objectDescriptorImpl;
+    @Nullable
+    final SharedPayload sharedPayload;
 
     PushObjectIQ(@NonNull BinaryPacketIQSerializer serializer, long requestId, @NonNull ObjectDescriptorImpl objectDescriptorImpl) {
 
         super(serializer, requestId);
 
         this.objectDescriptorImpl = objectDescriptorImpl;
+        this.sharedPayload = null;
+    }
+
+    /**
+     * Create the PushObjectIQ for a group member: the descriptor payload is serialized once and shared
+     * by the IQs sent to the other members.
+     *
+     * @param serializer the serializer.
+     * @param requestId the request id.
+     * @param sharedPayload the payload shared by the group members.
+     */
+    PushObjectIQ(@NonNull BinaryPacketIQSerializer serializer, long requestId, @NonNull SharedPayload sharedPayload) {
+
+        super(serializer, requestId);
+
+        this.objectDescriptorImpl = (ObjectDescriptorImpl) sharedPayload.getDescriptor();
+        this.sharedPayload = sharedPayload;
     }
 
     @NonNull
@@ -118,7 +139,18 @@ class PushObjectIQ extends BinaryPacketIQ {
 
             PushObjectIQ pushObjectIQ = (PushObjectIQ) object;
 
-            ObjectDescriptorImpl objectDescriptor = pushObjectIQ.objectDescriptorImpl;
+            final SharedPayload sharedPayload = pushObjectIQ.sharedPayload;
+            if (sharedPayload != null) {
+                final byte[] payload = sharedPayload.get(encoder instanceof BinaryCompactEncoder,
+                        (Encoder payloadEncoder) -> serializePayload(payloadEncoder, pushObjectIQ.objectDescriptorImpl));
+                encoder.writeFixed(payload, 0, payload.length);
+            } else {
+                serializePayload(encoder, pushObjectIQ.objectDescriptorImpl);
+            }
+        }
+
+        private static void serializePayload(@NonNull Encoder encoder, @NonNull ObjectDescriptorImpl objectDescriptor) throws SerializerException {
+
             encoder.writeUUID(objectDescriptor.getTwincodeOutboundId());
             encoder.writeLong(objectDescriptor.getSequenceId());
             encoder.writeOptionalUUID(objectDescriptor.getSendTo());
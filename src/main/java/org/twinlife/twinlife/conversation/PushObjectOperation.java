@@ -56,6 +56,8 @@ public class PushObjectOperation extends Operation {
 
     @Nullable
     private volatile ObjectDescriptorImpl mObjectDescriptorImpl;
+    @Nullable
+    private volatile SharedPayload mSharedPayload;
 
     PushObjectOperation(@NonNull ConversationImpl conversationImpl,
                         @NonNull ObjectDescriptorImpl objectDescriptorImpl) {
@@ -65,6 +67,21 @@ public class PushObjectOperation extends Operation {
         mObjectDescriptorImpl = objectDescriptorImpl;
     }
 
+    /**
+     * Create the operation to push the descriptor to a group member with the payload shared by the members.
+     *
+     * @param conversationImpl the group member conversation.
+     * @param sharedPayload the payload shared by the group members.
+     */
+    PushObjectOperation(@NonNull ConversationImpl conversationImpl,
+                        @NonNull SharedPayload sharedPayload) {
+
+        super(Operation.Type.PUSH_OBJECT, conversationImpl, sharedPayload.getDescriptor());
+
+        mObjectDescriptorImpl = (ObjectDescriptorImpl) sharedPayload.getDescriptor();
+        mSharedPayload = sharedPayload;
+    }
+
     PushObjectOperation(long id, @NonNull DatabaseIdentifier conversationId, long creationDate, long descriptorId) {
         super(id, Operation.Type.PUSH_OBJECT, conversationId, creationDate, descriptorId);
     }
@@ -74,6 +91,22 @@ public class PushObjectOperation extends Operation {
         return mObjectDescriptorImpl;
     }
 
+    /**
+     * Share the descriptor loaded by another group member operation.
+     *
+     * @param sharedPayload the payload shared by the group members.
+     * @return true if the operation will use the shared payload.
+     */
+    boolean share(@NonNull SharedPayload sharedPayload) {
+
+        if (mObjectDescriptorImpl != null || sharedPayload.getDescriptor().getDatabaseId() != getDescriptorId()) {
+            return false;
+        }
+        mSharedPayload = sharedPayload;
+        mObjectDescriptorImpl = (ObjectDescriptorImpl) sharedPayload.getDescriptor();
+        return true;
+    }
+
     @Override
     public ErrorCode execute(@NonNull ConversationConnection connection) throws SerializerException {
         if (DEBUG) {
@@ -88,6 +121,14 @@ public class PushObjectOperation extends Operation {
             }
             objectDescriptorImpl = (ObjectDescriptorImpl) descriptorImpl;
             mObjectDescriptorImpl = objectDescriptorImpl;
+
+            // Give the descriptor to the operations which push it to the other group members.
+            if (connection.getConversation() instanceof GroupMemberConversationImpl) {
+                final SharedPayload sharedPayload = new SharedPayload(objectDescriptorImpl);
+                if (connection.sharePushObject(this, sharedPayload)) {
+                    mSharedPayload = sharedPayload;
+                }
+            }
         }
 
         if (!connection.preparePush(objectDescriptorImpl)) {
@@ -97,7 +138,13 @@ public class PushObjectOperation extends Operation {
         final long requestId = connection.newRequestId();
         updateRequestId(requestId);
         if (connection.isSupported(MAJOR_VERSION_2, MINOR_VERSION_12)) {
-            final PushObjectIQ pushObjectIQ = new PushObjectIQ(PushObjectIQ.IQ_PUSH_OBJECT_SERIALIZER, requestId, objectDescriptorImpl);
+            final SharedPayload sharedPayload = mSharedPayload;
+            final PushObjectIQ pushObjectIQ;
+            if (sharedPayload != null) {
+                pushObjectIQ = new PushObjectIQ(PushObjectIQ.IQ_PUSH_OBJECT_SERIALIZER, requestId, sharedPayload);
+            } else {
+                pushObjectIQ = new PushObjectIQ(PushObjectIQ.IQ_PUSH_OBJECT_SERIALIZER, requestId, objectDescriptorImpl);
+            }
 
             connection.sendPacket(PeerConnectionService.StatType.IQ_SET_PUSH_OBJECT, pushObjectIQ);
             return ErrorCode.QUEUED;
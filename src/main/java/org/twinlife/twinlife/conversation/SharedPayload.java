@@ -0,0 +1,89 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.conversation;
+
+import androidx.annotation.NonNull;
+
+import org.twinlife.twinlife.Encoder;
+import org.twinlife.twinlife.SerializerException;
+import org.twinlife.twinlife.util.BinaryPacketBuffer;
+
+/**
+ * Serialized payload of a descriptor which is pushed to the members of a group.
+ * <p>
+ * The operations which push the same descriptor to the group members share the payload: it is serialized
+ * once for each encoding (compact and legacy with leading padding) and each IQ only writes its own header
+ * (schema, request id) before copying the payload.  The payload is serialized again when the descriptor
+ * is sent for the first time (sent timestamp) or when it is edited (updated timestamp).
+ */
+final class SharedPayload {
+
+    interface Writer {
+        void write(@NonNull Encoder encoder) throws SerializerException;
+    }
+
+    @NonNull
+    private final DescriptorImpl mDescriptorImpl;
+    private long mSentTimestamp;
+    private long mUpdatedTimestamp;
+    private byte[] mCompact;
+    private byte[] mLegacy;
+
+    SharedPayload(@NonNull DescriptorImpl descriptorImpl) {
+
+        mDescriptorImpl = descriptorImpl;
+    }
+
+    @NonNull
+    DescriptorImpl getDescriptor() {
+
+        return mDescriptorImpl;
+    }
+
+    /**
+     * Get the payload for the encoding, serialize it if necessary.
+     *
+     * @param compact true for the compact encoding.
+     * @param writer the payload writer.
+     * @return the serialized payload.
+     * @throws SerializerException when the serialization failed.
+     */
+    @NonNull
+    synchronized byte[] get(boolean compact, @NonNull Writer writer) throws SerializerException {
+
+        // Read the timestamps before serializing so that a concurrent update is detected on the next call.
+        final long sentTimestamp = mDescriptorImpl.getSentTimestamp();
+        final long updatedTimestamp = mDescriptorImpl.getUpdatedTimestamp();
+        if (sentTimestamp != mSentTimestamp || updatedTimestamp != mUpdatedTimestamp) {
+            mCompact = null;
+            mLegacy = null;
+            mSentTimestamp = sentTimestamp;
+            mUpdatedTimestamp = updatedTimestamp;
+        }
+
+        byte[] result = compact ? mCompact : mLegacy;
+        if (result != null) {
+            return result;
+        }
+
+        final BinaryPacketBuffer buffer = BinaryPacketBuffer.acquire();
+        try {
+            writer.write(compact ? buffer.getCompactEncoder() : buffer.getEncoder());
+            result = buffer.toByteArray();
+        } finally {
+            buffer.release();
+        }
+        if (compact) {
+            mCompact = result;
+        } else {
+            mLegacy = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.crypto;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the parsed signing and encryption keys of the twincodeKeys table,
+ * indexed by the twincode database id.
+ * <p>
+ * The CryptoKey instances hold native resources and they are shared by the KeyInfo instances returned by the
+ * CryptoServiceProvider: each KeyInfo holds a reference on the entry and the keys are disposed when the entry
+ * is evicted and the last KeyInfo is disposed.
+ * <p>
+ * An entry loaded from the database is inserted only if no eviction occurred since the load was started:
+ * this protects the cache against a concurrent update of the twincode keys.
+ */
+final class CryptoKeyCache {
+
+    static final class Entry {
+        final int flags;
+        final long modificationDate;
+        @Nullable
+        final CryptoKey signingKey;
+        @Nullable
+        final CryptoKey encryptionKey;
+        private int mRefCount;
+        private boolean mEvicted;
+
+        Entry(int flags, long modificationDate, @Nullable byte[] signingKey, @Nullable byte[] encryptionKey) {
+
+            this.flags = flags;
+            this.modificationDate = modificationDate;
+
+            final CryptoKey.Kind signKind = KeyInfo.toCryptoKind(flags, false);
+            final CryptoKey.Kind encryptKind = KeyInfo.toCryptoKind(flags, true);
+            if ((flags & KeyInfo.KEY_PRIVATE_FLAG) != 0) {
+                this.signingKey = signingKey == null ? null : CryptoKey.importPrivateKey(signKind, signingKey, false);
+                this.encryptionKey = encryptionKey == null ? null : CryptoKey.importPrivateKey(encryptKind, encryptionKey, false);
+            } else {
+                this.signingKey = signingKey == null ? null : CryptoKey.importPublicKey(signKind, signingKey, false);
+                this.encryptionKey = encryptionKey == null ? null : CryptoKey.importPublicKey(encryptKind, encryptionKey, false);
+            }
+        }
+
+        synchronized boolean acquire() {
+
+            if (mEvicted) {
+                return false;
+            }
+            mRefCount++;
+            return true;
+        }
+
+        void release() {
+
+            final boolean dispose;
+            synchronized (this) {
+                mRefCount--;
+                dispose = mEvicted && mRefCount == 0;
+            }
+            if (dispose) {
+                dispose();
+            }
+        }
+
+        void evict() {
+
+            final boolean dispose;
+            synchronized (this) {
+                dispose = !mEvicted && mRefCount == 0;
+                mEvicted = true;
+            }
+            if (dispose) {
+                dispose();
+            }
+        }
+
+        private void dispose() {
+
+            if (encryptionKey != null) {
+                encryptionKey.dispose();
+            }
+            if (signingKey != null) {
+                signingKey.dispose();
+            }
+        }
+    }
+
+    private final LinkedHashMap<Long, Entry> mEntries;
+    private long mGeneration;
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    CryptoKeyCache(int maxSize) {
+
+        mEntries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+
+                if (size() <= maxSize) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                mEvictionCount++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Get the generation to give to put() before loading the keys from the database.
+     *
+     * @return the current generation.
+     */
+    synchronized long getGeneration() {
+
+        return mGeneration;
+    }
+
+    /**
+     * Get the keys of the twincode.  The caller must release() the entry.
+     *
+     * @param id the twincode database id.
+     * @return the keys or null if they are not in the cache.
+     */
+    @Nullable
+    synchronized Entry get(long id) {
+
+        final Entry entry = mEntries.get(id);
+        if (entry == null || !entry.acquire()) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return entry;
+    }
+
+    /**
+     * Insert the keys loaded from the database.  The entry is not inserted if some keys were evicted
+     * since getGeneration() was called and it will be disposed when the caller releases it.
+     *
+     * @param id the twincode database id.
+     * @param generation the generation returned by getGeneration() before loading the keys.
+     * @param entry the keys.
+     * @return the entry acquired for the caller.
+     */
+    @NonNull
+    synchronized Entry put(long id, long generation, @NonNull Entry entry) {
+
+        entry.acquire();
+        if (generation != mGeneration) {
+            entry.evict();
+            return entry;
+        }
+
+        final Entry previous = mEntries.put(id, entry);
+        if (previous != null && previous != entry) {
+            previous.evict();
+        }
+        return entry;
+    }
+
+    synchronized void evict(long id) {
+
+        mGeneration++;
+        final Entry entry = mEntries.remove(id);
+        if (entry != null) {
+            entry.evict();
+            mEvictionCount++;
+        }
+    }
+
+    synchronized void clear() {
+
+        mGeneration++;
+        for (Entry entry : mEntries.values()) {
+            entry.evict();
+        }
+        mEntries.clear();
+    }
+
+    synchronized int size() {
+
+        return mEntries.size();
+    }
+
+    synchronized long getHitCount() {
+
+        return mHitCount;
+    }
+
+    synchronized long getMissCount() {
+
+        return mMissCount;
+    }
+
+    synchronized long getEvictionCount() {
+
+        return mEvictionCount;
+    }
+}
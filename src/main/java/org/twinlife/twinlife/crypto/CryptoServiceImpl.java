@@ -86,6 +86,30 @@ public class CryptoServiceImpl extends BaseServiceImpl<CryptoService.ServiceObse
         setConfigured(true);
     }
 
+    @Override
+    public void onSignOut() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "onSignOut");
+        }
+
+        super.onSignOut();
+
+        mServiceProvider.clearNonceReservations();
+        mServiceProvider.clearKeys();
+    }
+
+    @Override
+    @NonNull
+    public ServiceStats getServiceStats() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "getServiceStats");
+        }
+
+        final ServiceStats result = super.getServiceStats();
+        mServiceProvider.getKeyCacheStats(result);
+        return result;
+    }
+
     //
     // Implement CryptoService interface
     //
@@ -922,6 +946,19 @@ public class CryptoServiceImpl extends BaseServiceImpl<CryptoService.ServiceObse
     // Internal methods.
     //
 
+    /**
+     * Internal method to drop the parsed keys of a twincode after its keys are changed or deleted.
+     *
+     * @param twincodeId the twincode database id.
+     */
+    public void evictKeys(long twincodeId) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "evictKeys: twincodeId=" + twincodeId);
+        }
+
+        mServiceProvider.evictKeys(twincodeId);
+    }
+
     private static final int ENCRYPT_VERSION_ECDSA = 1;
     private static final int ENCRYPT_VERSION_X25519 = 2;
     private static final int SIGNATURE_VERSION_ECDSA = 1;
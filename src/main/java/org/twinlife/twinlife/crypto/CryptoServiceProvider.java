@@ -1,5 +1,5 @@
 /*
- *  Copyright (c) 2024 twinlife SA.
+ *  Copyright (c) 2024-2025 twinlife SA.
  *  SPDX-License-Identifier: AGPL-3.0-only
  *
  *  Contributors:
@@ -14,9 +14,12 @@ import androidx.annotation.Nullable;
 import android.util.Log;
 
 import org.twinlife.twinlife.BaseService.ErrorCode;
+import org.twinlife.twinlife.BaseService.ServiceStats;
 import org.twinlife.twinlife.CryptoService;
 import org.twinlife.twinlife.DatabaseCursor;
 import org.twinlife.twinlife.DatabaseException;
+import org.twinlife.twinlife.DatabaseObject;
+import org.twinlife.twinlife.DatabaseStatement;
 import org.twinlife.twinlife.DatabaseTable;
 import org.twinlife.twinlife.ImageId;
 import org.twinlife.twinlife.SessionKeyPair;
@@ -29,9 +32,12 @@ import org.twinlife.twinlife.database.Transaction;
 import org.twinlife.twinlife.image.ImageInfo;
 import org.twinlife.twinlife.twincode.outbound.TwincodeOutboundImpl;
 import org.twinlife.twinlife.util.Logger;
+import org.twinlife.twinlife.util.Utils;
 
 import java.security.SecureRandom;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 class CryptoServiceProvider extends DatabaseServiceProvider {
@@ -54,6 +60,33 @@ class CryptoServiceProvider extends DatabaseServiceProvider {
     // Create the first secret to be exchanged when upgrading a non-encrypted relation to an encrypted one.
     static final int CREATE_FIRST_SECRET = 0x04;
 
+    // Number of nonce sequences reserved in the database for a twincode key when we encrypt.
+    static final long NONCE_RESERVATION_SIZE = 1024;
+
+    // Max number of twincode keys kept in the CryptoKeyCache.
+    private static final int KEY_CACHE_SIZE = 256;
+
+    private static final String TWINCODE_KEY_WITH_SECRET = "SELECT k.flags, k.modificationDate, k.signingKey,"
+            + " k.encryptionKey, k.nonceSequence, s.id, s.flags, s.secret1, s.secret2"
+            + " FROM twincodeKeys AS k"
+            + " LEFT JOIN secretKeys AS s ON k.id = s.id AND s.peerTwincodeId=?"
+            + " WHERE k.id=?";
+
+    /**
+     * A block of nonce sequences [next, limit) reserved for a twincode key.  The database nonceSequence
+     * is updated to `limit` before the first sequence of the block is used so that a sequence is never
+     * used twice, even after a crash (we only lose the sequences which are not used).
+     */
+    private static final class NonceReservation {
+        long next;
+        final long limit;
+
+        NonceReservation(long next, long limit) {
+            this.next = next;
+            this.limit = limit;
+        }
+    }
+
     /**
      * twincodeKeys table:
      * id INTEGER: local database identifier (primary key) == twincode outbound id
@@ -102,6 +135,8 @@ class CryptoServiceProvider extends DatabaseServiceProvider {
                     + ")";
 
     private final SecureRandom mRandom;
+    private final Map<Long, NonceReservation> mNonceReservations = new HashMap<>();
+    private final CryptoKeyCache mKeyCache = new CryptoKeyCache(KEY_CACHE_SIZE);
 
     CryptoServiceProvider(@NonNull CryptoServiceImpl service,
                           @NonNull DatabaseServiceImpl database) {
@@ -166,8 +201,19 @@ class CryptoServiceProvider extends DatabaseServiceProvider {
             Log.d(LOG_TAG, "loadPeerEncryptionKey: twincodeId=" + twincodeId);
         }
 
-        final String[] params = { twincodeId.toString() };
-        try (DatabaseCursor cursor = mDatabase.rawQuery("SELECT k.flags, k.modificationDate, k.signingKey,"
+        // Avoid the database when the twincode and its keys are in the caches.
+        final DatabaseObject object = mDatabase.getCache(twincodeId);
+        if (object instanceof TwincodeOutbound) {
+            final TwincodeOutbound twincodeOutbound = (TwincodeOutbound) object;
+            final CryptoKeyCache.Entry keys = mKeyCache.get(twincodeOutbound.getDatabaseId().getId());
+            if (keys != null) {
+                return new KeyInfo(twincodeOutbound, keys, 0, 0, null);
+            }
+        }
+
+        final long generation = mKeyCache.getGeneration();
+        final Object[] params = { Utils.toBytes(twincodeId) };
+        try (DatabaseCursor cursor = mDatabase.queryWithArgs("SELECT k.flags, k.modificationDate, k.signingKey,"
                 + " k.encryptionKey,"
                 + " twout.id, twout.twincodeId, twout.modificationDate, twout.name,"
                 + " twout.avatarId, twout.description, twout.capabilities, twout.attributes, twout.flags"
@@ -188,8 +234,8 @@ class CryptoServiceProvider extends DatabaseServiceProvider {
                 return null;
             }
 
-            return new KeyInfo(twincodeOutbound, modificationDate, flags,
-                    signingKey, encryptionKey, 0, 0, null);
+            return new KeyInfo(twincodeOutbound, getKeys(twincodeOutbound.getDatabaseId().getId(), generation,
+                    flags, modificationDate, signingKey, encryptionKey), 0, 0, null);
 
         } catch (DatabaseException exception) {
             mService.onDatabaseException(exception);
@@ -210,6 +256,12 @@ class CryptoServiceProvider extends DatabaseServiceProvider {
         }
 
         final long id = twincodeOutbound.getDatabaseId().getId();
+        final CryptoKeyCache.Entry keys = mKeyCache.get(id);
+        if (keys != null) {
+            return new KeyInfo(twincodeOutbound, keys, 0, 0, null);
+        }
+
+        final long generation = mKeyCache.getGeneration();
         final String[] params = { Long.toString(id) };
         try (DatabaseCursor cursor = mDatabase.rawQuery("SELECT k.flags, k.modificationDate, k.signingKey,"
                 + " k.encryptionKey FROM twincodeKeys AS k WHERE k.id=?", params)) {
@@ -222,8 +274,8 @@ class CryptoServiceProvider extends DatabaseServiceProvider {
             long modificationDate = cursor.getLong(1);
             byte[] signingKey = cursor.getBlob(2);
             byte[] encryptionKey = cursor.getBlob(3);
-            return new KeyInfo(twincodeOutbound, modificationDate, flags,
-                    signingKey, encryptionKey, 0, 0, null);
+            return new KeyInfo(twincodeOutbound, getKeys(id, generation, flags, modificationDate, signingKey, encryptionKey),
+                    0, 0, null);
 
         } catch (DatabaseException exception) {
             mService.onDatabaseException(exception);
@@ -259,18 +311,14 @@ class CryptoServiceProvider extends DatabaseServiceProvider {
 
         final long id = twincodeOutbound.getDatabaseId().getId();
         final long peerId = peerTwincodeOutbound.getDatabaseId().getId();
-        final String[] params = { Long.toString(peerId), Long.toString(id) };
         while (true) {
             KeyInfo result;
             long nonceSequence;
             boolean createSecret = false;
             int secretFlags;
             Long secretId;
-            try (DatabaseCursor cursor = mDatabase.rawQuery("SELECT k.flags, k.modificationDate, k.signingKey,"
-                    + " k.encryptionKey, k.nonceSequence, s.id, s.flags, s.secret1, s.secret2"
-                    + " FROM twincodeKeys AS k"
-                    + " LEFT JOIN secretKeys AS s ON k.id = s.id AND s.peerTwincodeId=?"
-                    + " WHERE k.id=?", params)) {
+            final long generation = mKeyCache.getGeneration();
+            try (DatabaseCursor cursor = queryTwincodeKeyWithSecret(id, peerId)) {
                 if (!cursor.moveToFirst()) {
 
                     return null;
@@ -350,8 +398,17 @@ class CryptoServiceProvider extends DatabaseServiceProvider {
                     useSecret = null;
                 }
 
-                result = new KeyInfo(twincodeOutbound, modificationDate, flags,
-                        signingKey, encryptionKey, nonceSequence, keyIndex, useSecret);
+                // Use the nonce sequences that we have reserved for this key: the database nonceSequence
+                // must not be below the reservation limit, otherwise the key was replaced.
+                final CryptoKeyCache.Entry keys = getKeys(id, generation, flags, modificationDate, signingKey, encryptionKey);
+                if (useSequenceCount > 0 && !createSecret) {
+                    final Long sequence = allocateNonce(id, nonceSequence, useSequenceCount);
+                    if (sequence != null) {
+                        return new KeyInfo(twincodeOutbound, keys, sequence, keyIndex, useSecret);
+                    }
+                }
+
+                result = new KeyInfo(twincodeOutbound, keys, nonceSequence, keyIndex, useSecret);
 
             } catch (DatabaseException exception) {
                 mService.onDatabaseException(exception);
@@ -361,12 +418,13 @@ class CryptoServiceProvider extends DatabaseServiceProvider {
                 return result;
             }
 
-            // Update the nonceSequence
+            // Update the nonceSequence and reserve a block of sequences for the next encryptions.
+            final long reserveCount = useSequenceCount > 0 ? Math.max(useSequenceCount, NONCE_RESERVATION_SIZE) : 0;
             try (Transaction transaction = newTransaction()) {
                 final long now = System.currentTimeMillis();
                 final ContentValues values = new ContentValues();
                 final String[] updateParams = { Long.toString(id), Long.toString(nonceSequence) };
-                values.put(Columns.NONCE_SEQUENCE, nonceSequence + useSequenceCount);
+                values.put(Columns.NONCE_SEQUENCE, nonceSequence + reserveCount);
                 values.put(Columns.MODIFICATION_DATE, now);
                 if (transaction.update(Tables.TWINCODE_KEYS, values, "id=? AND nonceSequence=?", updateParams) > 0) {
 
@@ -414,14 +472,64 @@ class CryptoServiceProvider extends DatabaseServiceProvider {
                         }
                     }
                     transaction.commit();
+                    if (reserveCount > useSequenceCount) {
+                        synchronized (mNonceReservations) {
+                            mNonceReservations.put(id, new NonceReservation(nonceSequence + useSequenceCount,
+                                    nonceSequence + reserveCount));
+                        }
+                    }
                     return result;
                 }
 
             } catch (Exception exception) {
+                result.dispose();
                 mService.onDatabaseException(exception);
                 return null;
             }
+            result.dispose();
+        }
+    }
+
+    /**
+     * Forget the nonce sequences reserved for the twincode keys.  The sequences which are not used are lost.
+     */
+    void clearNonceReservations() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "clearNonceReservations");
+        }
+
+        synchronized (mNonceReservations) {
+            mNonceReservations.clear();
+        }
+    }
+
+    /**
+     * Remove the parsed keys of the twincode from the cache after they are changed or deleted.
+     *
+     * @param twincodeId the twincode database id.
+     */
+    void evictKeys(long twincodeId) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "evictKeys: twincodeId=" + twincodeId);
+        }
+
+        mKeyCache.evict(twincodeId);
+    }
+
+    void clearKeys() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "clearKeys");
         }
+
+        mKeyCache.clear();
+    }
+
+    void getKeyCacheStats(@NonNull ServiceStats stats) {
+
+        stats.cacheSize = mKeyCache.size();
+        stats.cacheHitCount = mKeyCache.getHitCount();
+        stats.cacheMissCount = mKeyCache.getMissCount();
+        stats.cacheEvictionCount = mKeyCache.getEvictionCount();
     }
 
     /**
@@ -890,4 +998,82 @@ class CryptoServiceProvider extends DatabaseServiceProvider {
             return mService.onDatabaseException(exception);
         }
     }
+
+    //
+    // Private Methods
+    //
+
+    /**
+     * Query the twincode keys with the secrets shared with the peer twincode.  The query is executed
+     * for each encrypted message: the key and id parameters are bound as integers.
+     *
+     * @param id the twincode database id.
+     * @param peerId the peer twincode database id.
+     * @return the cursor on the keys and secrets.
+     */
+    @NonNull
+    private DatabaseCursor queryTwincodeKeyWithSecret(long id, long peerId) throws DatabaseException {
+
+        try (DatabaseStatement statement = mDatabase.compileStatement(TWINCODE_KEY_WITH_SECRET)) {
+            statement.bindLong(1, peerId);
+            statement.bindLong(2, id);
+            return statement.query();
+        }
+    }
+
+    /**
+     * Get the parsed keys from the cache or parse the keys loaded from the database and add them to the cache.
+     *
+     * @param id the twincode database id.
+     * @param generation the cache generation before the keys were loaded.
+     * @param flags the key flags.
+     * @param modificationDate the key modification date.
+     * @param signingKey the raw signing key.
+     * @param encryptionKey the raw encryption key.
+     * @return the keys which must be released.
+     */
+    @NonNull
+    private CryptoKeyCache.Entry getKeys(long id, long generation, int flags, long modificationDate,
+                                         @Nullable byte[] signingKey, @Nullable byte[] encryptionKey) {
+
+        // The modificationDate is not checked because it is changed when the nonceSequence is updated.
+        final CryptoKeyCache.Entry keys = mKeyCache.get(id);
+        if (keys != null && keys.flags == flags) {
+            return keys;
+        }
+        if (keys != null) {
+            keys.release();
+        }
+
+        return mKeyCache.put(id, generation, new CryptoKeyCache.Entry(flags, modificationDate, signingKey, encryptionKey));
+    }
+
+    /**
+     * Allocate a nonce sequence from the block reserved for the twincode key.
+     *
+     * @param id the twincode key id.
+     * @param nonceSequence the nonceSequence stored in the database for the key.
+     * @param count the number of sequences to allocate.
+     * @return the first sequence allocated or null if a new block must be reserved.
+     */
+    @Nullable
+    private Long allocateNonce(long id, long nonceSequence, long count) {
+
+        synchronized (mNonceReservations) {
+            final NonceReservation reservation = mNonceReservations.get(id);
+            if (reservation == null) {
+                return null;
+            }
+
+            // The twincode key was replaced or the block is exhausted.
+            if (nonceSequence < reservation.limit || reservation.next + count > reservation.limit) {
+                mNonceReservations.remove(id);
+                return null;
+            }
+
+            final long result = reservation.next;
+            reservation.next += count;
+            return result;
+        }
+    }
 }
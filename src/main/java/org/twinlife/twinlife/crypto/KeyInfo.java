@@ -28,6 +28,8 @@ class KeyInfo {
     private final long mModificationDate;
     private final int mFlags;
     private final int mKeyIndex;
+    @NonNull
+    private final CryptoKeyCache.Entry mKeys;
     @Nullable
     private final CryptoKey mEncryptionKey;
     @Nullable
@@ -48,28 +50,26 @@ class KeyInfo {
         }
     }
 
-    KeyInfo(@NonNull TwincodeOutbound twincodeOutbound, long modificationDate, int flags,
-            @Nullable byte[] signingKey, @Nullable byte[] encryptionKey,
+    /**
+     * Create the key info with the keys acquired from the CryptoKeyCache: they are released by dispose().
+     */
+    KeyInfo(@NonNull TwincodeOutbound twincodeOutbound, @NonNull CryptoKeyCache.Entry keys,
             long nonceSequence, int keyIndex, byte[] secret) {
         if (DEBUG) {
-            Log.d(LOG_TAG, "KeyInfo: twincodeOutbound=" + twincodeOutbound + " flags=" + flags);
+            Log.d(LOG_TAG, "KeyInfo: twincodeOutbound=" + twincodeOutbound + " flags=" + keys.flags);
         }
 
         mTwincodeOutbound = twincodeOutbound;
-        mSignKind = toCryptoKind(flags, false);
-        mEncryptKind = toCryptoKind(flags, true);
-        mFlags = flags;
+        mSignKind = toCryptoKind(keys.flags, false);
+        mEncryptKind = toCryptoKind(keys.flags, true);
+        mFlags = keys.flags;
         mSecret = secret;
         mKeyIndex = keyIndex;
-        mModificationDate = modificationDate;
+        mModificationDate = keys.modificationDate;
         mNonceSequence = nonceSequence;
-        if ((flags & KEY_PRIVATE_FLAG) != 0) {
-            mSigningKey = signingKey == null ? null : CryptoKey.importPrivateKey(mSignKind, signingKey, false);
-            mEncryptionKey = encryptionKey == null ? null : CryptoKey.importPrivateKey(mEncryptKind, encryptionKey, false);
-        } else {
-            mSigningKey = signingKey == null ? null : CryptoKey.importPublicKey(mSignKind, signingKey, false);
-            mEncryptionKey = encryptionKey == null ? null : CryptoKey.importPublicKey(mEncryptKind, encryptionKey, false);
-        }
+        mKeys = keys;
+        mSigningKey = keys.signingKey;
+        mEncryptionKey = keys.encryptionKey;
     }
 
     //
@@ -163,12 +163,7 @@ class KeyInfo {
 
     void dispose() {
 
-        if (mEncryptionKey != null) {
-            mEncryptionKey.dispose();
-        }
-        if (mSigningKey != null) {
-            mSigningKey.dispose();
-        }
+        mKeys.release();
     }
 
     @Override
@@ -170,7 +170,7 @@ class SessionECKeyPair implements SessionKeyPair {
                 }
                 return new Pair<>(BaseService.ErrorCode.ENCRYPT_ERROR, null);
             }
-            return new Pair<>(BaseService.ErrorCode.SUCCESS, new Sdp(result, len, sdp.isCompressed(), 1));
+            return new Pair<>(BaseService.ErrorCode.SUCCESS, new Sdp(result, len, sdp.isCompressed(), sdp.getDictionary(), 1));
 
         } catch (Exception exception) {
             Log.e(LOG_TAG, "encrypt exception", exception);
@@ -238,7 +238,7 @@ class SessionECKeyPair implements SessionKeyPair {
                 return new Pair<>(BaseService.ErrorCode.DECRYPT_ERROR, null);
             }
 
-            return new Pair<>(BaseService.ErrorCode.SUCCESS, new Sdp(data, len, sdp.isCompressed(), 0));
+            return new Pair<>(BaseService.ErrorCode.SUCCESS, new Sdp(data, len, sdp.isCompressed(), sdp.getDictionary(), 0));
 
         } catch (SerializerException serializerException) {
             return new Pair<>(BaseService.ErrorCode.BAD_ENCRYPTION_FORMAT, null);
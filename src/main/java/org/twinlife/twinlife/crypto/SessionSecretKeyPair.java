@@ -180,7 +180,7 @@ class SessionSecretKeyPair implements SessionKeyPair {
                 }
                 return new Pair<>(BaseService.ErrorCode.ENCRYPT_ERROR, null);
             }
-            return new Pair<>(BaseService.ErrorCode.SUCCESS, new Sdp(result, len, sdp.isCompressed(), getKeyIndex()));
+            return new Pair<>(BaseService.ErrorCode.SUCCESS, new Sdp(result, len, sdp.isCompressed(), sdp.getDictionary(), getKeyIndex()));
 
         } catch (Exception exception) {
             if (Logger.ERROR) {
@@ -246,7 +246,7 @@ class SessionSecretKeyPair implements SessionKeyPair {
                 return new Pair<>(BaseService.ErrorCode.DECRYPT_ERROR, null);
             }
 
-            return new Pair<>(BaseService.ErrorCode.SUCCESS, new Sdp(data, len, sdp.isCompressed(), 0));
+            return new Pair<>(BaseService.ErrorCode.SUCCESS, new Sdp(data, len, sdp.isCompressed(), sdp.getDictionary(), 0));
 
         } catch (SerializerException serializerException) {
             return new Pair<>(BaseService.ErrorCode.BAD_ENCRYPTION_FORMAT, null);
@@ -1,5 +1,5 @@
 /*
- *  Copyright (c) 2023-2024 twinlife SA.
+ *  Copyright (c) 2023-2025 twinlife SA.
  *  SPDX-License-Identifier: AGPL-3.0-only
  *
  *  Contributors:
@@ -93,10 +93,10 @@ class DatabaseCheck {
                 long peerTwincodeId = cursor.getLong(3);
                 long twincodeId = cursor.getLong(4);
                 long repoPeerTwincodeId = cursor.getLong(5);
-                String rSchemaId = cursor.getString(6);
+                String rSchemaId = String.valueOf(cursor.getUUID(6));
                 int flags = cursor.getInt(7);
                 long subject2Id = cursor.getLong(8);
-                String r2SchemaId = cursor.getString(9);
+                String r2SchemaId = String.valueOf(cursor.getUUID(9));
 
                 content.append(String.format(Locale.ENGLISH,
                         "| %4d | %4d | %4d | %4d | %4d | %4d | %6.6s |  %03x | %5d |  %6.6s |\n",
@@ -141,7 +141,7 @@ class DatabaseCheck {
                 long subjectId = cursor.getLong(2);
                 long peerTwincode = cursor.getLong(3);
                 int flags = cursor.getInt(4);
-                String twincodeId = cursor.getString(5);
+                String twincodeId = String.valueOf(cursor.getUUID(5));
                 int descriptorCount = cursor.getInt(6);
                 int opCount = cursor.getInt(7);
 
@@ -220,7 +220,7 @@ class DatabaseCheck {
                 }
                 long subjectId = cursor.getLong(0);
                 long ownerId = cursor.getLong(1);
-                String schemaId = cursor.getString(2);
+                String schemaId = String.valueOf(cursor.getUUID(2));
                 int flags = cursor.getInt(3);
                 long twincodeId = cursor.getLong(4);
 
@@ -261,7 +261,7 @@ class DatabaseCheck {
                 }
                 long subjectId = cursor.getLong(0);
                 long ownerId = cursor.getLong(1);
-                String schemaId = cursor.getString(2);
+                String schemaId = String.valueOf(cursor.getUUID(2));
                 int flags = cursor.getInt(3);
                 long twincodeId = cursor.getLong(4);
                 long peerTwincodeId = cursor.getLong(5);
@@ -304,7 +304,7 @@ class DatabaseCheck {
                 }
                 long subjectId = cursor.getLong(0);
                 long ownerId = cursor.getLong(1);
-                String schemaId = cursor.getString(2);
+                String schemaId = String.valueOf(cursor.getUUID(2));
                 long twincodeInId = cursor.getLong(3);
                 long twincodeId = cursor.getLong(4);
                 long peerTwincodeId = cursor.getLong(5);
@@ -338,7 +338,7 @@ class DatabaseCheck {
                     content.append("|  TID |   UUID |  IMG | FLGS |    CREATE DATE |         MODIF |       REFRESH |\n");
                 }
                 long tid = cursor.getLong(0);
-                String twincodeId = cursor.getString(1);
+                String twincodeId = String.valueOf(cursor.getUUID(1));
                 long avatarId = cursor.getLong(2);
                 int flags = cursor.getInt(3);
                 long creationDate = cursor.getLong(4);
@@ -441,7 +441,7 @@ class DatabaseCheck {
                 }
                 long tid = cursor.getLong(0);
                 long twincodeId = cursor.getLong(1);
-                String twincodeInId = cursor.getString(2);
+                String twincodeInId = String.valueOf(cursor.getUUID(2));
                 String factoryId = cursor.getString(3);
                 long creationDate = cursor.getLong(4);
                 long modificationDate = cursor.getLong(5);
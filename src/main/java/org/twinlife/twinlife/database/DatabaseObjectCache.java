@@ -0,0 +1,254 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.database;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.twinlife.twinlife.DatabaseIdentifier;
+import org.twinlife.twinlife.DatabaseObject;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bounded cache of database objects.
+ * <p>
+ * The objects are kept in a segmented LRU: a new object enters the probation segment and it is moved to the
+ * protected segment when it is used again.  The protected segment holds 80% of the entries and its LRU
+ * entries are moved back to the probation segment, the LRU entries of the probation segment are evicted.
+ * Loading a long list of objects once (contact list, group members) only flushes the probation segment.
+ * <p>
+ * An evicted object is still referenced by a weak reference: as long as the application holds the object
+ * (a conversation, a group member, a twincode used by a pending operation), get() returns the same
+ * instance and moves it back in the LRU.  This keeps the single instance guarantee of the DatabaseServiceImpl:
+ * a new instance is only created after the previous one was garbage collected.
+ */
+final class DatabaseObjectCache {
+
+    private static final class WeakEntry extends WeakReference<DatabaseObject> {
+        @NonNull
+        final DatabaseIdentifier identifier;
+        @NonNull
+        final UUID objectId;
+
+        WeakEntry(@NonNull DatabaseIdentifier identifier, @NonNull DatabaseObject object,
+                  @NonNull ReferenceQueue<DatabaseObject> queue) {
+            super(object, queue);
+
+            this.identifier = identifier;
+            this.objectId = object.getId();
+        }
+    }
+
+    private final int mProtectedSize;
+    private final int mProbationSize;
+    private final LinkedHashMap<DatabaseIdentifier, DatabaseObject> mProbation;
+    private final LinkedHashMap<DatabaseIdentifier, DatabaseObject> mProtected;
+    private final HashMap<DatabaseIdentifier, WeakEntry> mEvicted;
+    private final HashMap<UUID, DatabaseIdentifier> mIdCache;
+    private final ReferenceQueue<DatabaseObject> mQueue;
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+    private long mCollectedCount;
+
+    DatabaseObjectCache(int maxSize) {
+
+        mProtectedSize = Math.max(1, (maxSize * 8) / 10);
+        mProbationSize = Math.max(1, maxSize - mProtectedSize);
+        mProbation = new LinkedHashMap<>(16, 0.75f, true);
+        mProtected = new LinkedHashMap<>(16, 0.75f, true);
+        mEvicted = new HashMap<>();
+        mIdCache = new HashMap<>();
+        mQueue = new ReferenceQueue<>();
+    }
+
+    @Nullable
+    synchronized DatabaseObject get(@NonNull DatabaseIdentifier identifier) {
+
+        DatabaseObject object = mProtected.get(identifier);
+        if (object != null) {
+            mHitCount++;
+            return object;
+        }
+
+        object = mProbation.remove(identifier);
+        if (object == null) {
+            final WeakEntry entry = mEvicted.remove(identifier);
+            object = entry != null ? entry.get() : null;
+            if (object == null) {
+                mMissCount++;
+                return null;
+            }
+        }
+
+        // Used again: move to the protected segment.
+        mHitCount++;
+        mProtected.put(identifier, object);
+        balance();
+        return object;
+    }
+
+    @Nullable
+    synchronized DatabaseObject get(@NonNull UUID objectId) {
+
+        final DatabaseIdentifier identifier = mIdCache.get(objectId);
+        if (identifier == null) {
+            mMissCount++;
+            return null;
+        }
+        return get(identifier);
+    }
+
+    synchronized void put(@NonNull DatabaseObject object) {
+
+        expunge();
+
+        final DatabaseIdentifier identifier = object.getDatabaseId();
+        mEvicted.remove(identifier);
+        if (mProtected.containsKey(identifier)) {
+            mProtected.put(identifier, object);
+        } else {
+            mProbation.put(identifier, object);
+        }
+        mIdCache.put(object.getId(), identifier);
+        balance();
+    }
+
+    @Nullable
+    synchronized DatabaseObject remove(@NonNull DatabaseIdentifier identifier) {
+
+        DatabaseObject object = mProtected.remove(identifier);
+        if (object == null) {
+            object = mProbation.remove(identifier);
+        }
+        final WeakEntry entry = mEvicted.remove(identifier);
+        if (object == null && entry != null) {
+            object = entry.get();
+        }
+        if (object != null) {
+            mIdCache.remove(object.getId());
+        }
+        return object;
+    }
+
+    synchronized void remove(@NonNull UUID objectId) {
+
+        final DatabaseIdentifier identifier = mIdCache.remove(objectId);
+        if (identifier != null) {
+            mProtected.remove(identifier);
+            mProbation.remove(identifier);
+            mEvicted.remove(identifier);
+        }
+    }
+
+    synchronized void removeSchema(@NonNull UUID schemaId) {
+
+        removeSchema(mProtected, schemaId);
+        removeSchema(mProbation, schemaId);
+        final Iterator<Map.Entry<DatabaseIdentifier, WeakEntry>> iterator = mEvicted.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<DatabaseIdentifier, WeakEntry> entry = iterator.next();
+            if (schemaId.equals(entry.getKey().getSchemaId())) {
+                iterator.remove();
+                mIdCache.remove(entry.getValue().objectId);
+            }
+        }
+    }
+
+    synchronized int size() {
+
+        return mProtected.size() + mProbation.size();
+    }
+
+    synchronized int evictedSize() {
+
+        expunge();
+        return mEvicted.size();
+    }
+
+    synchronized long getHitCount() {
+
+        return mHitCount;
+    }
+
+    synchronized long getMissCount() {
+
+        return mMissCount;
+    }
+
+    synchronized long getEvictionCount() {
+
+        return mEvictionCount;
+    }
+
+    synchronized long getCollectedCount() {
+
+        return mCollectedCount;
+    }
+
+    //
+    // Private Methods
+    //
+
+    private void removeSchema(@NonNull LinkedHashMap<DatabaseIdentifier, DatabaseObject> map, @NonNull UUID schemaId) {
+
+        final Iterator<Map.Entry<DatabaseIdentifier, DatabaseObject>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<DatabaseIdentifier, DatabaseObject> entry = iterator.next();
+            if (schemaId.equals(entry.getKey().getSchemaId())) {
+                iterator.remove();
+                mIdCache.remove(entry.getValue().getId());
+            }
+        }
+    }
+
+    private void balance() {
+
+        while (mProtected.size() > mProtectedSize) {
+            final Iterator<Map.Entry<DatabaseIdentifier, DatabaseObject>> iterator = mProtected.entrySet().iterator();
+            final Map.Entry<DatabaseIdentifier, DatabaseObject> entry = iterator.next();
+            iterator.remove();
+            mProbation.put(entry.getKey(), entry.getValue());
+        }
+
+        while (mProbation.size() > mProbationSize) {
+            final Iterator<Map.Entry<DatabaseIdentifier, DatabaseObject>> iterator = mProbation.entrySet().iterator();
+            final Map.Entry<DatabaseIdentifier, DatabaseObject> entry = iterator.next();
+            iterator.remove();
+            mEvicted.put(entry.getKey(), new WeakEntry(entry.getKey(), entry.getValue(), mQueue));
+            mEvictionCount++;
+        }
+    }
+
+    /**
+     * Drop the entries of objects which are now garbage collected.
+     */
+    private void expunge() {
+
+        WeakEntry entry;
+        while ((entry = (WeakEntry) mQueue.poll()) != null) {
+            // The entry could have been replaced by a new object with the same identifier.
+            if (mEvicted.get(entry.identifier) == entry) {
+                mEvicted.remove(entry.identifier);
+                mCollectedCount++;
+
+                if (entry.identifier.equals(mIdCache.get(entry.objectId))) {
+                    mIdCache.remove(entry.objectId);
+                }
+            }
+        }
+    }
+}
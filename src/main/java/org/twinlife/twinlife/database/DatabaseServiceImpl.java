@@ -1,5 +1,5 @@
 /*
- *  Copyright (c) 2023-2024 twinlife SA.
+ *  Copyright (c) 2023-2025 twinlife SA.
  *  SPDX-License-Identifier: AGPL-3.0-only
  *
  *  Contributors:
@@ -14,6 +14,7 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import org.twinlife.twinlife.BaseService.ServiceStats;
 import org.twinlife.twinlife.BaseServiceProvider;
 import org.twinlife.twinlife.BuildConfig;
 import org.twinlife.twinlife.Database;
@@ -21,6 +22,7 @@ import org.twinlife.twinlife.DatabaseCursor;
 import org.twinlife.twinlife.DatabaseException;
 import org.twinlife.twinlife.DatabaseIdentifier;
 import org.twinlife.twinlife.DatabaseObject;
+import org.twinlife.twinlife.DatabaseStatement;
 import org.twinlife.twinlife.DatabaseTable;
 import org.twinlife.twinlife.ExportedImageId;
 import org.twinlife.twinlife.ImageId;
@@ -31,16 +33,14 @@ import org.twinlife.twinlife.util.EventMonitor;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * The database service that gives access to the database to other services.  There is only one instance
  * which is shared by every service (RepositoryService, TwincodeXXXService, ...).
  * - it maintains a cache of database objects to make sure we have single instance of RepositoryObject,
- *   TwincodeInbound and TwincodeOutbound,
+ *   TwincodeInbound and TwincodeOutbound (the cache is bounded, see DatabaseObjectCache),
  * - it provides helper operations to load twincodes from the database (used by several services),
  * - it provides raw query (SELECT only) methods,
  * - updating the database must be made by the Transaction class by calling `newTransaction()`,
@@ -58,26 +58,77 @@ public class DatabaseServiceImpl implements BaseServiceProvider {
     private static final String SEQUENCE_TABLE_CREATE = "CREATE TABLE IF NOT EXISTS sequence"
             + " (name TEXT PRIMARY KEY NOT NULL, id INTEGER NOT NULL);";
 
+    // Max number of objects strongly held by the cache, evicted objects remain in the cache while they are used.
+    private static final int CACHE_SIZE = 2000;
+
+    // Twincode lookups executed with typed parameters (see Database.compileStatement()).
+    private static final String TWINCODE_INBOUND_BY_UUID = "SELECT"
+            + " ti.id, ti.twincodeId, ti.factoryId, ti.twincodeOutbound, ti.modificationDate, ti.capabilities, ti.attributes"
+            + " FROM twincodeInbound AS ti"
+            + " WHERE ti.twincodeId = ?";
+    private static final String TWINCODE_OUTBOUND_SELECT = "SELECT"
+            + " twout.id, twout.twincodeId, twout.modificationDate, twout.name,"
+            + " twout.avatarId, twout.description, twout.capabilities, twout.attributes, twout.flags"
+            + " FROM twincodeOutbound AS twout";
+    private static final String TWINCODE_OUTBOUND_BY_UUID = TWINCODE_OUTBOUND_SELECT + " WHERE twout.twincodeId = ?";
+    static final String TWINCODE_OUTBOUND_BY_ID = TWINCODE_OUTBOUND_SELECT + " WHERE twout.id = ?";
+
     /**
      * Tables from V7 to V19:
      *  "CREATE TABLE IF NOT EXISTS conversationId (key TEXT PRIMARY KEY NOT NULL, id INTEGER);";
      */
 
+    /**
+     * Identifiers reserved from the sequence table for a database table.  The instance is also the lock
+     * used to allocate identifiers for that table.
+     * <p>
+     * The size of the block reserved in the sequence table grows when blocks are consumed quickly
+     * (bulk inserts, migration, group operations) and it shrinks back when allocations are rare.
+     */
     static final class Allocator {
+        static final int MIN_INCREMENT = 10;
+        static final int MAX_INCREMENT = 1000;
+        private static final long FAST_RESERVE_DELAY = 1000; // ms
+        private static final long SLOW_RESERVE_DELAY = 60000; // ms
+
         long next;
         long last;
+        private int mIncrement;
+        private long mReserveTime;
+        long allocationCount;
+        long reserveCount;
 
         Allocator() {
             this.next = 0;
             this.last = 0;
+            this.mIncrement = MIN_INCREMENT;
+        }
+
+        /**
+         * Get the number of identifiers to reserve in the sequence table.
+         *
+         * @param now the current time.
+         * @return the block size to reserve.
+         */
+        long nextIncrement(long now) {
+
+            final long delay = now - mReserveTime;
+            if (delay < FAST_RESERVE_DELAY) {
+                mIncrement = Math.min(2 * mIncrement, MAX_INCREMENT);
+            } else if (delay > SLOW_RESERVE_DELAY) {
+                mIncrement = Math.max(mIncrement / 2, MIN_INCREMENT);
+            }
+            mReserveTime = now;
+            reserveCount++;
+            return mIncrement;
         }
     }
-    private final ConcurrentHashMap<DatabaseIdentifier, DatabaseObject> mCache;
-    private final ConcurrentHashMap<UUID, DatabaseIdentifier> mIdCache;
+    private final DatabaseObjectCache mCache;
     private final Allocator[] mAllocateIds;
     private final ArrayList<DatabaseServiceProvider> mServiceProviders;
     private final ReentrantLock mLock;
     private Database mDatabase;
+    private volatile boolean mHasJsonSet;
     private TwincodeObjectFactory<TwincodeInbound> mTwincodeInboundFactory;
     private TwincodeObjectFactory<TwincodeOutbound> mTwincodeOutboundFactory;
     private RepositoryObjectLoader mRepositoryObjectLoader;
@@ -92,8 +143,7 @@ public class DatabaseServiceImpl implements BaseServiceProvider {
         }
 
         mServiceProviders = new ArrayList<>();
-        mCache = new ConcurrentHashMap<>();
-        mIdCache = new ConcurrentHashMap<>();
+        mCache = new DatabaseObjectCache(CACHE_SIZE);
         mLock = new ReentrantLock(true);
         DatabaseTable[] kinds = DatabaseTable.values();
         mAllocateIds = new Allocator[kinds.length];
@@ -211,6 +261,29 @@ public class DatabaseServiceImpl implements BaseServiceProvider {
             }
         }
 
+        // Convert the UUID columns to the 16 bytes binary form before the services are migrated because
+        // they lookup these columns with binary parameters.  Before V20, the tables are created and
+        // populated with the binary form by the services.
+        if (oldVersion >= 20 && oldVersion < 29) {
+            final long startTime = EventMonitor.start();
+            try (Transaction transaction = new Transaction(this)) {
+                transaction.convertUUIDColumn(Tables.TWINCODE_OUTBOUND, Columns.TWINCODE_ID);
+                transaction.convertUUIDColumn(Tables.TWINCODE_INBOUND, Columns.TWINCODE_ID);
+                transaction.convertUUIDColumn(Tables.REPOSITORY, Columns.UUID);
+                transaction.convertUUIDColumn(Tables.REPOSITORY, Columns.SCHEMA_ID);
+                transaction.commit();
+                if (BuildConfig.ENABLE_EVENT_MONITOR) {
+                    EventMonitor.event("Database upgrade: binary UUID", startTime);
+                }
+
+            } catch (DatabaseException dbException) {
+                throw dbException;
+
+            } catch (Exception exception) {
+                throw new DatabaseException(exception);
+            }
+        }
+
         // Migrate each service in a specific order and commit transaction after each service migration.
         // If we are interrupted in the middle, the service must be prepared to re-do or do nothing at
         // a next application restart.
@@ -240,6 +313,7 @@ public class DatabaseServiceImpl implements BaseServiceProvider {
         }
 
         mDatabase = database;
+        mHasJsonSet = checkJsonSet();
         for (DatabaseServiceProvider serviceProvider : mServiceProviders) {
             try {
                 serviceProvider.onOpen();
@@ -250,6 +324,36 @@ public class DatabaseServiceImpl implements BaseServiceProvider {
         configureDatabase(database);
     }
 
+    /**
+     * Check if json_each() can be used by QueryBuilder.filterInSet().
+     *
+     * @return true if json_each() is available.
+     */
+    public boolean hasJsonSet() {
+
+        return mHasJsonSet;
+    }
+
+    /**
+     * Give back to the sequence table the identifiers which are reserved and were not used.
+     * This is called before closing the database.
+     */
+    public void releaseIds() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "releaseIds");
+        }
+
+        try (Transaction transaction = newTransaction()) {
+            for (DatabaseTable kind : DatabaseTable.values()) {
+                transaction.releaseIds(kind);
+            }
+            transaction.commit();
+
+        } catch (Exception exception) {
+            Log.e(LOG_TAG, "Database exception", exception);
+        }
+    }
+
     /**
      * Sync the database by running the WAL checkpoint and switch to DELETE journal mode.
      */
@@ -269,6 +373,27 @@ public class DatabaseServiceImpl implements BaseServiceProvider {
         }
     }
 
+    /**
+     * Check that SQLite provides the json_each() table-valued function used by QueryBuilder.filterInSet().
+     * It is missing when SQLite is compiled without the JSON1 extension.
+     *
+     * @return true if json_each() is available.
+     */
+    private boolean checkJsonSet() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "checkJsonSet");
+        }
+
+        try {
+            mDatabase.longQuery("SELECT COUNT(*) FROM json_each('[1]')", null);
+            return true;
+
+        } catch (DatabaseException exception) {
+            Log.e(LOG_TAG, "json_each() is not supported: " + exception.getMessage());
+            return false;
+        }
+    }
+
     private void configureDatabase(@NonNull Database database) {
         if (DEBUG) {
             Log.d(LOG_TAG, "configureDatabase database=" + database);
@@ -343,11 +468,7 @@ public class DatabaseServiceImpl implements BaseServiceProvider {
             Log.d(LOG_TAG, "getCache: identifier=" + identifier);
         }
 
-        final DatabaseIdentifier id = mIdCache.get(identifier);
-        if (id == null) {
-            return null;
-        }
-        return mCache.get(id);
+        return mCache.get(identifier);
     }
 
     /**
@@ -360,10 +481,7 @@ public class DatabaseServiceImpl implements BaseServiceProvider {
             Log.d(LOG_TAG, "putCache: object=" + object);
         }
 
-        final DatabaseIdentifier id = object.getDatabaseId();
-        final UUID objectId = object.getId();
-        mCache.put(id, object);
-        mIdCache.put(objectId, id);
+        mCache.put(object);
     }
 
     /**
@@ -376,10 +494,7 @@ public class DatabaseServiceImpl implements BaseServiceProvider {
             Log.d(LOG_TAG, "evictCache: identifier=" + identifier);
         }
 
-        final DatabaseObject object = mCache.remove(identifier);
-        if (object != null) {
-            mIdCache.remove(object.getId());
-        }
+        mCache.remove(identifier);
     }
 
     /**
@@ -393,10 +508,7 @@ public class DatabaseServiceImpl implements BaseServiceProvider {
         }
 
         if (objectId != null) {
-            final DatabaseIdentifier identifier = mIdCache.remove(objectId);
-            if (identifier != null) {
-                mCache.remove(identifier);
-            }
+            mCache.remove(objectId);
         }
     }
 
@@ -405,12 +517,33 @@ public class DatabaseServiceImpl implements BaseServiceProvider {
             Log.d(LOG_TAG, "evictCacheWithSchemaId: schemaId=" + schemaId);
         }
 
-        final Set<DatabaseIdentifier> keys = mCache.keySet();
-        for (DatabaseIdentifier id : keys) {
-            if (schemaId.equals(id.getSchemaId())) {
-                mCache.remove(id);
+        mCache.removeSchema(schemaId);
+    }
+
+    /**
+     * Get the database object cache statistics.
+     *
+     * @return the cache statistics.
+     */
+    @NonNull
+    public ServiceStats getServiceStats() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "getServiceStats");
+        }
+
+        final ServiceStats result = new ServiceStats();
+        result.cacheSize = mCache.size();
+        result.cacheEvictedSize = mCache.evictedSize();
+        result.cacheHitCount = mCache.getHitCount();
+        result.cacheMissCount = mCache.getMissCount();
+        result.cacheEvictionCount = mCache.getEvictionCount();
+        for (Allocator allocator : mAllocateIds) {
+            synchronized (allocator) {
+                result.idAllocationCount += allocator.allocationCount;
+                result.idReserveCount += allocator.reserveCount;
             }
         }
+        return result;
     }
 
     public DatabaseCursor rawQuery(@NonNull String sql, String[] args) throws DatabaseException {
@@ -421,13 +554,57 @@ public class DatabaseServiceImpl implements BaseServiceProvider {
         return mDatabase.rawQuery(sql, args);
     }
 
+    /**
+     * Execute the query with typed parameters: Long, Integer, byte[] (blob, binary UUID) and String.
+     *
+     * @param sql the query.
+     * @param args the parameters.
+     * @return the cursor on the result.
+     */
+    @NonNull
+    public DatabaseCursor queryWithArgs(@NonNull String sql, @NonNull Object[] args) throws DatabaseException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "queryWithArgs: sql=" + sql);
+        }
+
+        try (DatabaseStatement statement = mDatabase.compileStatement(sql)) {
+            for (int i = 0; i < args.length; i++) {
+                final Object value = args[i];
+                if (value == null) {
+                    statement.bindNull(i + 1);
+                } else if (value instanceof Long || value instanceof Integer) {
+                    statement.bindLong(i + 1, ((Number) value).longValue());
+                } else if (value instanceof byte[]) {
+                    statement.bindBlob(i + 1, (byte[]) value);
+                } else {
+                    statement.bindString(i + 1, value.toString());
+                }
+            }
+            return statement.query();
+        }
+    }
+
+    @NonNull
+    public DatabaseStatement compileStatement(@NonNull String sql) throws DatabaseException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "compileStatement: sql=" + sql);
+        }
+
+        return mDatabase.compileStatement(sql);
+    }
+
     public DatabaseCursor execQuery(@NonNull QueryBuilder query) throws DatabaseException {
         if (DEBUG) {
             Log.d(LOG_TAG, "execQuery: query=" + query);
         }
 
-        final String sql = query.getQuery();
-        return mDatabase.rawQuery(sql, query.getParams());
+        final DatabaseStatement statement = mDatabase.compileStatement(query.getQuery());
+        try {
+            query.bind(statement);
+            return statement.query();
+        } finally {
+            statement.close();
+        }
     }
 
     @Nullable
@@ -461,22 +638,19 @@ public class DatabaseServiceImpl implements BaseServiceProvider {
             Log.d(LOG_TAG, "loadTwincodeInbound: twincodeInboundId=" + twincodeInboundId);
         }
 
-        final DatabaseIdentifier id = mIdCache.get(twincodeInboundId);
-        if (id != null) {
-            final DatabaseObject obj = mCache.get(id);
-            if (obj instanceof TwincodeInbound) {
-                return (TwincodeInbound) obj;
-            }
+        final DatabaseObject obj = mCache.get(twincodeInboundId);
+        if (obj instanceof TwincodeInbound) {
+            return (TwincodeInbound) obj;
         }
 
-        try (DatabaseCursor cursor = mDatabase.rawQuery("SELECT"
-                + " ti.id, ti.twincodeId, ti.factoryId, ti.twincodeOutbound, ti.modificationDate, ti.capabilities, ti.attributes"
-                + " FROM twincodeInbound AS ti"
-                + " WHERE ti.twincodeId = ?", new String[]{ twincodeInboundId.toString() })) {
-            if (cursor.moveToNext()) {
-                return loadTwincodeInbound(cursor, 0);
-            } else {
-                return null;
+        try (DatabaseStatement statement = mDatabase.compileStatement(TWINCODE_INBOUND_BY_UUID)) {
+            statement.bindUUID(1, twincodeInboundId);
+            try (DatabaseCursor cursor = statement.query()) {
+                if (cursor.moveToNext()) {
+                    return loadTwincodeInbound(cursor, 0);
+                } else {
+                    return null;
+                }
             }
         }
     }
@@ -487,23 +661,19 @@ public class DatabaseServiceImpl implements BaseServiceProvider {
             Log.d(LOG_TAG, "loadTwincodeOutbound: twincodeOutboundId=" + twincodeOutboundId);
         }
 
-        final DatabaseIdentifier id = mIdCache.get(twincodeOutboundId);
-        if (id != null) {
-            final DatabaseObject obj = mCache.get(id);
-            if (obj instanceof TwincodeOutbound) {
-                return (TwincodeOutbound) obj;
-            }
+        final DatabaseObject obj = mCache.get(twincodeOutboundId);
+        if (obj instanceof TwincodeOutbound) {
+            return (TwincodeOutbound) obj;
         }
 
-        try (DatabaseCursor cursor = mDatabase.rawQuery("SELECT"
-                + " twout.id, twout.twincodeId, twout.modificationDate, twout.name,"
-                + " twout.avatarId, twout.description, twout.capabilities, twout.attributes, twout.flags"
-                + " FROM twincodeOutbound AS twout"
-                + " WHERE twout.twincodeId = ?", new String[]{ twincodeOutboundId.toString() })) {
-            if (cursor.moveToNext()) {
-                return loadTwincodeOutbound(cursor, 0);
-            } else {
-                return null;
+        try (DatabaseStatement statement = mDatabase.compileStatement(TWINCODE_OUTBOUND_BY_UUID)) {
+            statement.bindUUID(1, twincodeOutboundId);
+            try (DatabaseCursor cursor = statement.query()) {
+                if (cursor.moveToNext()) {
+                    return loadTwincodeOutbound(cursor, 0);
+                } else {
+                    return null;
+                }
             }
         }
     }
@@ -520,15 +690,14 @@ public class DatabaseServiceImpl implements BaseServiceProvider {
             return (TwincodeOutbound) obj;
         }
 
-        try (DatabaseCursor cursor = mDatabase.rawQuery("SELECT"
-                + " twout.id, twout.twincodeId, twout.modificationDate, twout.name,"
-                + " twout.avatarId, twout.description, twout.capabilities, twout.attributes, twout.flags"
-                + " FROM twincodeOutbound AS twout"
-                + " WHERE twout.id = ?", new String[]{ Long.toString(twincodeOutboundId) })) {
-            if (cursor.moveToNext()) {
-                return loadTwincodeOutbound(cursor, 0);
-            } else {
-                return null;
+        try (DatabaseStatement statement = mDatabase.compileStatement(TWINCODE_OUTBOUND_BY_ID)) {
+            statement.bindLong(1, twincodeOutboundId);
+            try (DatabaseCursor cursor = statement.query()) {
+                if (cursor.moveToNext()) {
+                    return loadTwincodeOutbound(cursor, 0);
+                } else {
+                    return null;
+                }
             }
         }
     }
@@ -11,11 +11,14 @@ package org.twinlife.twinlife.database;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import org.twinlife.twinlife.DatabaseStatement;
 import org.twinlife.twinlife.RepositoryObject;
 import org.twinlife.twinlife.TwincodeOutbound;
+import org.twinlife.twinlife.util.Utils;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -25,8 +28,12 @@ import java.util.UUID;
  */
 public class QueryBuilder {
 
+    // Max number of ids given to filterIn() by filterInSet(): SQLite before 3.32 is limited to 999 parameters
+    // and the query has other parameters.
+    static final int MAX_IN_PARAMETERS = 500;
+
     private final StringBuilder mQuery;
-    private final List<String> mParams;
+    private final List<Object> mParams;
     private boolean mHasWhere;
 
     public QueryBuilder(@NonNull String fields) {
@@ -41,9 +48,23 @@ public class QueryBuilder {
         return mQuery.toString();
     }
 
-    @NonNull
-    public String[] getParams() {
-        return mParams.toArray(new String[0]);
+    /**
+     * Bind the parameters on the statement: the integer parameters are bound as integers
+     * and the binary UUID parameters as blobs.
+     *
+     * @param statement the statement compiled for getQuery().
+     */
+    void bind(@NonNull DatabaseStatement statement) {
+        for (int i = 0; i < mParams.size(); i++) {
+            final Object param = mParams.get(i);
+            if (param instanceof Long) {
+                statement.bindLong(i + 1, (Long) param);
+            } else if (param instanceof byte[]) {
+                statement.bindBlob(i + 1, (byte[]) param);
+            } else {
+                statement.bindString(i + 1, param.toString());
+            }
+        }
     }
 
     public void append(@NonNull String sql) {
@@ -68,7 +89,7 @@ public class QueryBuilder {
         if (timestamp != null) {
             inWhere();
             mQuery.append(field).append("<?");
-            mParams.add(Long.toString(timestamp));
+            mParams.add(timestamp);
         }
     }
 
@@ -76,7 +97,7 @@ public class QueryBuilder {
         if (owner != null) {
             inWhere();
             mQuery.append(field).append("=?");
-            mParams.add(Long.toString(owner.getDatabaseId().getId()));
+            mParams.add(owner.getDatabaseId().getId());
         }
     }
 
@@ -97,11 +118,45 @@ public class QueryBuilder {
         }
     }
 
+    // The FTS5 trigram tokenizer needs at least 3 characters to use the index.
+    private static final int MIN_MATCH_LENGTH = 3;
+
+    /**
+     * Check if filterMatch() can be used to search the text with the same result as filterName():
+     * the text must have at least 3 characters and it must not contain the '_' LIKE wildcard.
+     *
+     * @param text the text to search.
+     * @return true if the text can be searched with the FTS5 index.
+     */
+    public static boolean canMatch(@NonNull String text) {
+
+        return text.codePointCount(0, text.length()) >= MIN_MATCH_LENGTH && text.indexOf('_') < 0;
+    }
+
+    /**
+     * Add a full-text search condition on an FTS5 table which uses the trigram tokenizer.  The search text is
+     * quoted as a single phrase so that it cannot be interpreted as an FTS5 query expression and it matches
+     * the rows which contain it as a substring, like filterName().
+     *
+     * @param table the FTS5 table name.
+     * @param text the text to search.
+     * @return false if the text cannot be searched with the index (see canMatch()).
+     */
+    public boolean filterMatch(@NonNull String table, @NonNull String text) {
+        if (!canMatch(text)) {
+            return false;
+        }
+        inWhere();
+        mQuery.append(table).append(" MATCH ?");
+        mParams.add('"' + text.replace("\"", "\"\"") + '"');
+        return true;
+    }
+
     public void filterTwincode(@NonNull String field, @Nullable TwincodeOutbound twincodeOutbound) {
         if (twincodeOutbound != null) {
             inWhere();
             mQuery.append(field).append("=?");
-            mParams.add(Long.toString(twincodeOutbound.getDatabaseId().getId()));
+            mParams.add(twincodeOutbound.getDatabaseId().getId());
         }
     }
 
@@ -113,11 +168,25 @@ public class QueryBuilder {
         }
     }
 
+    /**
+     * Filter on a UUID column which is stored in the 16 bytes binary form.
+     *
+     * @param field the column.
+     * @param uuid the UUID to search or null.
+     */
+    public void filterBinaryUUID(@NonNull String field, @Nullable UUID uuid) {
+        if (uuid != null) {
+            inWhere();
+            mQuery.append(field).append("=?");
+            mParams.add(Utils.toBytes(uuid));
+        }
+    }
+
     public void filterInt(@NonNull String field, @Nullable Integer value) {
         if (value != null) {
             inWhere();
             mQuery.append(field).append("=?");
-            mParams.add(Integer.toString(value));
+            mParams.add((long) value);
         }
     }
 
@@ -125,7 +194,7 @@ public class QueryBuilder {
         if (value != null) {
             inWhere();
             mQuery.append(field).append("=?");
-            mParams.add(Long.toString(value));
+            mParams.add(value);
         }
     }
 
@@ -133,10 +202,16 @@ public class QueryBuilder {
         if (value != null) {
             inWhere();
             mQuery.append(field).append("!=?");
-            mParams.add(Long.toString(value));
+            mParams.add(value);
         }
     }
 
+    /**
+     * Filter on a list of values.  A UUID is used in its binary form: the column must be a binary UUID column.
+     *
+     * @param field the column.
+     * @param list the values to search.
+     */
     public void filterIn(@NonNull String field, @NonNull Collection<?> list) {
         inWhere();
         mQuery.append(field).append(" IN (");
@@ -147,11 +222,77 @@ public class QueryBuilder {
             }
             needSep = true;
             mQuery.append("?");
-            mParams.add(value.toString());
+            if (value instanceof Long) {
+                mParams.add(value);
+            } else if (value instanceof Integer) {
+                mParams.add(((Integer) value).longValue());
+            } else if (value instanceof UUID) {
+                mParams.add(Utils.toBytes((UUID) value));
+            } else {
+                mParams.add(value.toString());
+            }
         }
         mQuery.append(")");
     }
 
+    /**
+     * Filter on a set of ids.  When json_each() is available, the ids are given in a single parameter as a
+     * JSON array which is expanded by the json_each() table-valued function: the SQL does not depend on the
+     * number of ids so that the query plan and the compiled SQL are re-used, and a large set does not reach
+     * the SQLite limit on the number of parameters.  Otherwise, filterIn() is used and the caller must split
+     * the set with splitSet().
+     *
+     * @param field the column.
+     * @param ids the ids to search.
+     * @param jsonSet true if json_each() is available (see DatabaseServiceImpl.hasJsonSet()).
+     */
+    public void filterInSet(@NonNull String field, @NonNull Collection<Long> ids, boolean jsonSet) {
+        if (!jsonSet) {
+            filterIn(field, ids);
+            return;
+        }
+
+        inWhere();
+        mQuery.append(field).append(" IN (SELECT value FROM json_each(?))");
+        final StringBuilder json = new StringBuilder(ids.size() * 8 + 2);
+        json.append('[');
+        for (Long id : ids) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append(id.longValue());
+        }
+        json.append(']');
+        mParams.add(json.toString());
+    }
+
+    /**
+     * Split the set of ids for filterInSet(): the set is not split when json_each() is available,
+     * otherwise each part has at most MAX_IN_PARAMETERS ids so that filterIn() stays under the
+     * SQLite limit on the number of parameters.
+     *
+     * @param ids the ids to search.
+     * @param jsonSet true if json_each() is available.
+     * @return the list of id sets, each one is used by its own query.
+     */
+    @NonNull
+    public static List<Collection<Long>> splitSet(@NonNull Collection<Long> ids, boolean jsonSet) {
+        if (jsonSet || ids.size() <= MAX_IN_PARAMETERS) {
+            return Collections.singletonList(ids);
+        }
+
+        final List<Collection<Long>> result = new ArrayList<>((ids.size() + MAX_IN_PARAMETERS - 1) / MAX_IN_PARAMETERS);
+        List<Long> part = null;
+        for (Long id : ids) {
+            if (part == null || part.size() == MAX_IN_PARAMETERS) {
+                part = new ArrayList<>(MAX_IN_PARAMETERS);
+                result.add(part);
+            }
+            part.add(id);
+        }
+        return result;
+    }
+
     public void groupBy(@NonNull String field) {
         mQuery.append(" GROUP BY ").append(field);
     }
@@ -162,7 +303,12 @@ public class QueryBuilder {
 
     public void limit(long count) {
         mQuery.append(" LIMIT ?");
-        mParams.add(Long.toString(count));
+        mParams.add(count);
+    }
+
+    public void offset(long count) {
+        mQuery.append(" OFFSET ?");
+        mParams.add(count);
     }
 
     public void filter(@NonNull String filter, @NonNull String param) {
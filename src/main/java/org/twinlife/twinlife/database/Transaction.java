@@ -1,5 +1,5 @@
 /*
- *  Copyright (c) 2023-2024 twinlife SA.
+ *  Copyright (c) 2023-2025 twinlife SA.
  *  SPDX-License-Identifier: AGPL-3.0-only
  *
  *  Contributors:
@@ -31,6 +31,7 @@ import org.twinlife.twinlife.TwincodeOutboundService;
 import org.twinlife.twinlife.crypto.CryptoServiceImpl;
 import org.twinlife.twinlife.twincode.inbound.TwincodeInboundImpl;
 import org.twinlife.twinlife.twincode.outbound.TwincodeOutboundImpl;
+import org.twinlife.twinlife.util.Utils;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -57,6 +58,9 @@ public class Transaction implements Closeable {
     private static final String LOG_TAG = "Transaction";
     private static final boolean DEBUG = false;
 
+    // Number of rows converted and committed together by convertUUIDColumn().
+    private static final int UUID_BATCH_SIZE = 256;
+
     private final DatabaseServiceImpl mDatabaseService;
     private final Database mDatabase;
     private boolean mActive;
@@ -116,7 +120,7 @@ public class Transaction implements Closeable {
         return mDatabase.update(tablename, values, "id=?", new String[] { Long.toString(id) });
     }
 
-    public void execSQLWithArgs(@NonNull String sql, String[] args) throws DatabaseException {
+    public void execSQLWithArgs(@NonNull String sql, Object[] args) throws DatabaseException {
 
         start();
         mDatabase.execSQLWithArgs(sql, args);
@@ -180,6 +184,53 @@ public class Transaction implements Closeable {
         mDatabase.execSQL("DROP TABLE IF EXISTS " + name);
     }
 
+    /**
+     * Convert the UUID column of the table from the TEXT form to the 16 bytes binary form.  The rows are
+     * converted by batches and each batch is committed: if the upgrade is interrupted, the next upgrade
+     * only converts the rows which are still in the TEXT form.  A value which is not a valid UUID is not changed.
+     *
+     * @param table the table name (it must have an `id` primary key).
+     * @param column the UUID column.
+     * @return the number of rows converted.
+     */
+    public int convertUUIDColumn(@NonNull String table, @NonNull String column) throws DatabaseException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "convertUUIDColumn: table=" + table + " column=" + column);
+        }
+
+        final String sql = "SELECT id, " + column + " FROM " + table
+                + " WHERE id > ? AND typeof(" + column + ")='text' ORDER BY id LIMIT " + UUID_BATCH_SIZE;
+        final List<Long> ids = new ArrayList<>(UUID_BATCH_SIZE);
+        final List<UUID> values = new ArrayList<>(UUID_BATCH_SIZE);
+        final ContentValues update = new ContentValues();
+        long lastId = Long.MIN_VALUE;
+        int count = 0;
+        while (true) {
+            try (DatabaseCursor cursor = mDatabase.rawQuery(sql, new String[]{ Long.toString(lastId) })) {
+                while (cursor.moveToNext()) {
+                    ids.add(cursor.getLong(0));
+                    values.add(cursor.getUUID(1));
+                }
+            }
+            if (ids.isEmpty()) {
+                return count;
+            }
+
+            for (int i = 0; i < ids.size(); i++) {
+                final UUID value = values.get(i);
+                if (value != null) {
+                    update.put(column, Utils.toBytes(value));
+                    updateWithId(table, update, ids.get(i));
+                    count++;
+                }
+            }
+            commit();
+            lastId = ids.get(ids.size() - 1);
+            ids.clear();
+            values.clear();
+        }
+    }
+
     public void commit() throws DatabaseException {
 
         if (mActive) {
@@ -194,11 +245,11 @@ public class Transaction implements Closeable {
 
         if (mActive) {
             if (mUsedAllocators != null) {
-                synchronized (mDatabaseService) {
-                    // Force a reload of the allocators because the transaction was aborted
-                    // and we have allocated some ids, which means the sequence table was
-                    // not updated either.
-                    for (DatabaseServiceImpl.Allocator allocator : mUsedAllocators) {
+                // Force a reload of the allocators because the transaction was aborted
+                // and we have allocated some ids, which means the sequence table was
+                // not updated either.
+                for (DatabaseServiceImpl.Allocator allocator : mUsedAllocators) {
+                    synchronized (allocator) {
                         allocator.next = 0;
                         allocator.last = 0;
                     }
@@ -239,13 +290,14 @@ public class Transaction implements Closeable {
             mUsedAllocators.add(allocator);
         }
         start();
-        synchronized (mDatabaseService) {
+        synchronized (allocator) {
+            allocator.allocationCount++;
             if (allocator.next < allocator.last) {
                 return allocator.next++;
             }
 
             final String name = Tables.getTable(kind);
-            final long increment = 10;
+            final long increment = allocator.nextIncrement(System.currentTimeMillis());
             final String maxQuery = kind != DatabaseTable.SEQUENCE ? "SELECT MAX(id) FROM " + name : null;
             while (true) {
                 if (allocator.next == 0) {
@@ -304,6 +356,34 @@ public class Transaction implements Closeable {
         }
     }
 
+    /**
+     * Give back to the sequence table the identifiers which are reserved for the table and were not used.
+     *
+     * @param kind the type of table
+     */
+    void releaseIds(@NonNull DatabaseTable kind) throws DatabaseException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "releaseIds: kind=" + kind);
+        }
+
+        final DatabaseServiceImpl.Allocator allocator = mDatabaseService.getAllocator(kind);
+        synchronized (allocator) {
+            if (allocator.next > 0 && allocator.next < allocator.last) {
+                final ContentValues values = new ContentValues();
+                values.put(Columns.ID, allocator.next);
+                start();
+                mDatabase.update(Tables.SEQUENCE, values, "name=? AND id=?", new String[]{
+                        Tables.getTable(kind),
+                        Long.toString(allocator.last)
+                });
+            }
+
+            // Reload the allocator from the sequence table if it is used again.
+            allocator.next = 0;
+            allocator.last = 0;
+        }
+    }
+
     /**
      * Delete the object from its associated database table and remove it from the cache.
      *
@@ -260,11 +260,11 @@ public class ImageServiceImpl extends BaseServiceImpl<BaseService.ServiceObserve
         serializerFactory.addSerializer(IQ_ON_PUT_IMAGE_SERIALIZER);
 
         // Register the binary IQ handlers for the responses.
-        connection.addPacketListener(IQ_ON_CREATE_IMAGE_SERIALIZER, this::onCreateImage);
-        connection.addPacketListener(IQ_ON_GET_IMAGE_SERIALIZER, this::onGetImage);
-        connection.addPacketListener(IQ_ON_COPY_IMAGE_SERIALIZER, this::onCopyImage);
-        connection.addPacketListener(IQ_ON_DELETE_IMAGE_SERIALIZER, this::onDeleteImage);
-        connection.addPacketListener(IQ_ON_PUT_IMAGE_SERIALIZER, this::onPutImage);
+        connection.addPacketListener(BaseServiceId.IMAGE_SERVICE_ID, IQ_ON_CREATE_IMAGE_SERIALIZER, this::onCreateImage);
+        connection.addPacketListener(BaseServiceId.IMAGE_SERVICE_ID, IQ_ON_GET_IMAGE_SERIALIZER, this::onGetImage);
+        connection.addPacketListener(BaseServiceId.IMAGE_SERVICE_ID, IQ_ON_COPY_IMAGE_SERIALIZER, this::onCopyImage);
+        connection.addPacketListener(BaseServiceId.IMAGE_SERVICE_ID, IQ_ON_DELETE_IMAGE_SERIALIZER, this::onDeleteImage);
+        connection.addPacketListener(BaseServiceId.IMAGE_SERVICE_ID, IQ_ON_PUT_IMAGE_SERIALIZER, this::onPutImage);
     }
 
     //
@@ -34,6 +34,7 @@ import org.twinlife.twinlife.Hostname;
 import org.twinlife.twinlife.JobService;
 import org.twinlife.twinlife.ManagementService;
 import org.twinlife.twinlife.PackageInfo;
+import org.twinlife.twinlife.PeerConnectionService;
 import org.twinlife.twinlife.SNIProxyDescriptor;
 import org.twinlife.twinlife.TurnServer;
 import org.twinlife.twinlife.TwinlifeAssertPoint;
@@ -207,11 +208,11 @@ public class ManagementServiceImpl extends BaseServiceImpl<ManagementService.Ser
         mSerializerFactory.addSerializer(IQ_ON_FEEDBACK_SERIALIZER);
 
         // Register the binary IQ handlers for the responses.
-        connection.addPacketListener(IQ_ON_VALIDATE_CONFIGURATION_SERIALIZER, this::onValidateConfigurationIQ);
-        connection.addPacketListener(IQ_ON_UPDATE_CONFIGURATION_SERIALIZER, this::onUpdateConfigurationIQ);
-        connection.addPacketListener(IQ_ON_SET_PUSH_TOKEN_SERIALIZER, this::onSetPushNotificationTokenIQ);
-        connection.addPacketListener(IQ_ON_LOG_EVENT_SERIALIZER, this::onLogEventIQ);
-        connection.addPacketListener(IQ_ON_FEEDBACK_SERIALIZER, this::onFeedbackIQ);
+        connection.addPacketListener(BaseServiceId.MANAGEMENT_SERVICE_ID, IQ_ON_VALIDATE_CONFIGURATION_SERIALIZER, this::onValidateConfigurationIQ);
+        connection.addPacketListener(BaseServiceId.MANAGEMENT_SERVICE_ID, IQ_ON_UPDATE_CONFIGURATION_SERIALIZER, this::onUpdateConfigurationIQ);
+        connection.addPacketListener(BaseServiceId.MANAGEMENT_SERVICE_ID, IQ_ON_SET_PUSH_TOKEN_SERIALIZER, this::onSetPushNotificationTokenIQ);
+        connection.addPacketListener(BaseServiceId.MANAGEMENT_SERVICE_ID, IQ_ON_LOG_EVENT_SERIALIZER, this::onLogEventIQ);
+        connection.addPacketListener(BaseServiceId.MANAGEMENT_SERVICE_ID, IQ_ON_FEEDBACK_SERIALIZER, this::onFeedbackIQ);
     }
 
     @Nullable
@@ -769,6 +770,65 @@ public class ManagementServiceImpl extends BaseServiceImpl<ManagementService.Ser
                 sb.append(Long.valueOf(info.sendErrorCount));
                 sb.append(":");
                 sb.append(Long.valueOf(info.sendTimeoutCount));
+                if (info.sendTimeoutCount > 0 || info.maxPendingRequestCount > 0) {
+                    sb.append(":");
+                    sb.append(Long.valueOf(info.maxPendingRequestCount));
+                    sb.append(":");
+                    sb.append(Long.valueOf(info.timeoutLatencyAverage));
+                    sb.append(":");
+                    sb.append(Long.valueOf(info.timeoutLatencyMax));
+                }
+            }
+            if (info.cacheHitCount > 0 || info.cacheMissCount > 0) {
+                sb.append("\n");
+                sb.append(stat.getKey());
+                sb.append(" cache: ");
+                sb.append(Long.valueOf(info.cacheSize));
+                sb.append(":");
+                sb.append(Long.valueOf(info.cacheEvictedSize));
+                sb.append(":");
+                sb.append(Long.valueOf(info.cacheHitCount));
+                sb.append(":");
+                sb.append(Long.valueOf(info.cacheMissCount));
+                sb.append(":");
+                sb.append(Long.valueOf(info.cacheEvictionCount));
+            }
+            if (info.idAllocationCount > 0) {
+                sb.append("\n");
+                sb.append(stat.getKey());
+                sb.append(" ids: ");
+                sb.append(Long.valueOf(info.idAllocationCount));
+                sb.append(":");
+                sb.append(Long.valueOf(info.idReserveCount));
+            }
+        }
+        for (Connection.DispatchStats stat : mConnection.getDispatchStats()) {
+            if (stat.packetCount > 0) {
+                sb.append("\nLane ");
+                sb.append(stat.name);
+                sb.append(": ");
+                sb.append(Long.valueOf(stat.packetCount));
+                sb.append(":");
+                sb.append(Integer.valueOf(stat.maxQueueDepth));
+                sb.append(":");
+                sb.append(Long.valueOf(stat.averageLatency));
+                sb.append(":");
+                sb.append(Long.valueOf(stat.maxLatency));
+            }
+        }
+        final PeerConnectionService peerConnectionService = mTwinlifeImpl.getPeerConnectionService();
+        if (peerConnectionService != null) {
+            for (PeerConnectionService.ExecutorStats stat : peerConnectionService.getExecutorStats()) {
+                if (stat.taskCount > 0) {
+                    sb.append("\nPeer lane ");
+                    sb.append(Integer.valueOf(stat.lane));
+                    sb.append(": ");
+                    sb.append(Long.valueOf(stat.taskCount));
+                    sb.append(":");
+                    sb.append(Integer.valueOf(stat.queueDepth));
+                    sb.append(":");
+                    sb.append(Integer.valueOf(stat.peerConnections));
+                }
             }
         }
         sb.append("\n");
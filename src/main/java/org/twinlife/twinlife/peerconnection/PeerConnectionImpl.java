@@ -37,6 +37,8 @@ import org.twinlife.twinlife.TransportCandidateList;
 import org.twinlife.twinlife.TwinlifeImpl;
 import org.twinlife.twinlife.calls.PeerCallServiceImpl;
 import org.twinlife.twinlife.TransportCandidate;
+import org.twinlife.twinlife.util.BinaryEncoder;
+import org.twinlife.twinlife.util.BinaryPacketBuffer;
 import org.twinlife.twinlife.util.BinaryPacketIQ;
 import org.twinlife.twinlife.util.EventMonitor;
 import org.twinlife.twinlife.util.Utils;
@@ -66,8 +68,10 @@ import org.webrtc.MediaStreamTrack.MediaType;
 
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -253,6 +257,30 @@ class PeerConnectionImpl implements PeerConnection.Observer, DataChannel.Observe
     // It is no longer used after 2024-10-01 (twinme 27.0) since framing and leading padding is not used.
     private static final int MAX_FRAME_SIZE = 128 * 1024;
 
+    // Flow control on the outgoing data channel: stop sending when more than SEND_HIGH_WATERMARK bytes
+    // are buffered by the data channel and resume when the buffered amount drops below SEND_LOW_WATERMARK.
+    private static final long SEND_HIGH_WATERMARK = 1024 * 1024;
+    private static final long SEND_LOW_WATERMARK = 256 * 1024;
+
+    /**
+     * A message waiting in the send queue with its frames.
+     */
+    private static final class OutboundMessage {
+        @NonNull
+        final StatType statType;
+        @NonNull
+        final List<byte[]> frames;
+        final int timestampOffset;
+        int nextFrame;
+
+        OutboundMessage(@NonNull StatType statType, @NonNull List<byte[]> frames, int timestampOffset) {
+
+            this.statType = statType;
+            this.frames = frames;
+            this.timestampOffset = timestampOffset;
+        }
+    }
+
     /*
      * <pre>
      *
@@ -433,6 +461,11 @@ class PeerConnectionImpl implements PeerConnection.Observer, DataChannel.Observe
     private boolean mLeadingPadding;
     private String mInDataChannelExtension;
     private DataChannel mOutDataChannel;
+    private final ArrayDeque<OutboundMessage> mSendControlQueue = new ArrayDeque<>();
+    private final ArrayDeque<OutboundMessage> mSendBulkQueue = new ArrayDeque<>();
+    @Nullable
+    private OutboundMessage mSendCurrent;
+    private volatile boolean mSendBlocked;
     private DataChannel.State mDataChannelState = DataChannel.State.CLOSED;
 
     private long mStartTimestamp = 0;
@@ -684,7 +717,15 @@ class PeerConnectionImpl implements PeerConnection.Observer, DataChannel.Observe
             Log.d(LOG_TAG, "sendMessage: bytes=" + Arrays.toString(bytes));
         }
 
-        mPeerConnectionExecutor.execute(() -> sendMessageInternal(statType, bytes, mLeadingPadding));
+        mPeerConnectionExecutor.execute(() -> sendMessageInternal(statType, bytes, mLeadingPadding, -1));
+    }
+
+    void sendMessage(@NonNull StatType statType, @NonNull byte[] bytes, int timestampOffset) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "sendMessage: bytes.length=" + bytes.length + " timestampOffset=" + timestampOffset);
+        }
+
+        mPeerConnectionExecutor.execute(() -> sendMessageInternal(statType, bytes, mLeadingPadding, timestampOffset));
     }
 
     public void sendPacket(@NonNull StatType statType, @NonNull BinaryPacketIQ iq) {
@@ -693,13 +734,24 @@ class PeerConnectionImpl implements PeerConnection.Observer, DataChannel.Observe
         }
 
         mPeerConnectionExecutor.execute(() -> {
+            final boolean leadingPadding = mLeadingPadding;
+            final BinaryPacketBuffer buffer = BinaryPacketBuffer.acquire();
             try {
-                final byte[] bytes = iq.serializeWithPadding(mTwinlifeImpl.getSerializerFactory(), mLeadingPadding);
-                sendMessageInternal(statType, bytes, mLeadingPadding);
+                iq.serializeWithPadding(mTwinlifeImpl.getSerializerFactory(), buffer, leadingPadding);
+
+                // Large packets are split in frames directly from the encode buffer.
+                if (leadingPadding && buffer.size() > MAX_FRAME_SIZE) {
+                    queueMessageInternal(new OutboundMessage(statType,
+                            buildFrames(buffer.getArray(), buffer.getArrayOffset(), buffer.size()), -1));
+                } else if (!sendDirectInternal(statType, buffer, leadingPadding)) {
+                    sendMessageInternal(statType, buffer.toByteArray(), leadingPadding, -1);
+                }
 
             } catch (SerializerException exception) {
                 Log.e(LOG_TAG, "Serialize exception", exception);
                 incrementStat(StatType.SERIALIZE_ERROR);
+            } finally {
+                buffer.release();
             }
         });
     }
@@ -798,19 +850,27 @@ class PeerConnectionImpl implements PeerConnection.Observer, DataChannel.Observe
         // We avoid the creation and initialization of audio threads, audio devices, codecs and WebRTC media engine.
         // However, if the media aware peer connection factory is available, we are going to use it.
         mWithMedia = mOffer.audio | mOffer.video | mOffer.videoBell;
-        final PeerConnectionFactory peerConnectionFactory = mPeerConnectionServiceImpl.getPeerConnectionFactory(mWithMedia);
         mStartTimestamp = SystemClock.elapsedRealtime();
         mDataChannelObserver = observer;
 
         rtcConfiguration.tcpCandidatePolicy = mWithMedia ? PeerConnection.TcpCandidatePolicy.DISABLED : PeerConnection.TcpCandidatePolicy.ENABLED;
-        mPeerConnection = peerConnectionFactory.createPeerConnection(rtcConfiguration, this);
+
+        // The factory is shared with the peer connections of other lanes: hold the service lock until the
+        // use counter is incremented so that the factory is not released by a concurrent dispose().
+        final PeerConnectionFactory peerConnectionFactory;
+        synchronized (mPeerConnectionServiceImpl) {
+            peerConnectionFactory = mPeerConnectionServiceImpl.getPeerConnectionFactory(mWithMedia);
+            mPeerConnection = peerConnectionFactory.createPeerConnection(rtcConfiguration, this);
+            if (mPeerConnection != null) {
+                peerConnectionFactory.incrementUseCounter();
+            }
+        }
         if (mPeerConnection == null) {
 
             return ErrorCode.WEBRTC_ERROR;
         }
 
         mPeerConnectionFactory = peerConnectionFactory;
-        peerConnectionFactory.incrementUseCounter();
 
         if (mSessionDescription != null) {
             SessionDescription updatedSessionDescription = updateCodecs(mSessionDescription);
@@ -1159,70 +1219,189 @@ class PeerConnectionImpl implements PeerConnection.Observer, DataChannel.Observe
         }
     }
 
-    private void sendMessageInternal(@NonNull StatType statType, @NonNull byte[] bytes, boolean leadingPadding) {
+    private void sendMessageInternal(@NonNull StatType statType, @NonNull byte[] bytes, boolean leadingPadding,
+                                     int timestampOffset) {
         if (DEBUG) {
-            Log.d(LOG_TAG, "sendMessageInternal: bytes=" + Arrays.toString(bytes) + " leadingPadding=" + leadingPadding);
+            Log.d(LOG_TAG, "sendMessageInternal: bytes=" + Arrays.toString(bytes) + " leadingPadding=" + leadingPadding
+                    + " timestampOffset=" + timestampOffset);
         }
 
-        if (mOutDataChannel != null) {
-            if (leadingPadding) {
-                if (bytes.length <= MAX_FRAME_SIZE) {
-                    bytes[0] = OP_BINARY | (byte) (FLAG_FIN << 4);
-                    boolean result = mOutDataChannel.send(bytes, true);
-                    if (!result) {
-                        mStatCounters[StatType.SEND_ERROR.ordinal()]++;
-                        if (mStatCounters[StatType.FIRST_SEND_ERROR.ordinal()] == 0) {
-                            mStatCounters[StatType.FIRST_SEND_ERROR.ordinal()] = statType.ordinal() + 1;
-                            mStatCounters[StatType.FIRST_SEND_ERROR_TIME.ordinal()] = SystemClock.elapsedRealtime() - mConnectedTimestamp;
-                        }
-                    } else {
-                        mStatCounters[statType.ordinal()]++;
-                    }
-                } else {
-                    byte[] frame = new byte[MAX_FRAME_SIZE];
-                    System.arraycopy(bytes, 0, frame, 0, MAX_FRAME_SIZE);
-                    frame[0] = OP_BINARY;
-                    boolean result = mOutDataChannel.send(frame, true);
-                    if (!result) {
-                        mStatCounters[StatType.SEND_ERROR.ordinal()]++;
-                    } else {
-                        mStatCounters[statType.ordinal()]++;
-                    }
-                    int start = MAX_FRAME_SIZE;
-                    while (start < bytes.length) {
-                        int length = Math.min(MAX_FRAME_SIZE - 1, bytes.length - start);
-                        if (length < MAX_FRAME_SIZE - 1) {
-                            frame = new byte[length + 1];
-                        }
+        final List<byte[]> frames;
+        if (!leadingPadding) {
+            frames = Collections.singletonList(bytes);
+        } else if (bytes.length <= MAX_FRAME_SIZE) {
+            bytes[0] = OP_BINARY | (byte) (FLAG_FIN << 4);
+            frames = Collections.singletonList(bytes);
+        } else {
+            frames = buildFrames(bytes, 0, bytes.length);
+        }
+        queueMessageInternal(new OutboundMessage(statType, frames, timestampOffset));
+    }
 
-                        if (start + length < bytes.length) {
-                            frame[0] = OP_CONTINUATION;
-                        } else {
-                            frame[0] = OP_CONTINUATION | (byte) (FLAG_FIN << 4);
-                        }
-                        System.arraycopy(bytes, start, frame, 1, length);
-                        result = mOutDataChannel.send(frame, true);
-                        if (!result) {
-                            mStatCounters[StatType.SEND_ERROR.ordinal()]++;
-                        }
-                        start += length;
-                    }
-                }
-            } else {
-                boolean result = mOutDataChannel.send(bytes, true);
-                if (!result) {
-                    mStatCounters[StatType.SEND_ERROR.ordinal()]++;
-                    if (mStatCounters[StatType.FIRST_SEND_ERROR.ordinal()] == 0) {
-                        mStatCounters[StatType.FIRST_SEND_ERROR.ordinal()] = statType.ordinal() + 1;
-                        mStatCounters[StatType.FIRST_SEND_ERROR_TIME.ordinal()] = SystemClock.elapsedRealtime() - mConnectedTimestamp;
-                    }
-                } else {
-                    mStatCounters[statType.ordinal()]++;
-                }
+    /**
+     * Send a single frame message from the encode buffer when nothing is waiting in the send queue.
+     * The data channel copies the content during the send() and the message is neither copied
+     * in an exact size array nor wrapped in an OutboundMessage.
+     *
+     * @param statType the stat counter to increment.
+     * @param buffer the encode buffer holding the message.
+     * @param leadingPadding true when the message starts with the frame header byte.
+     * @return true if the message was sent and false if it must be queued.
+     */
+    private boolean sendDirectInternal(@NonNull StatType statType, @NonNull BinaryPacketBuffer buffer, boolean leadingPadding) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "sendDirectInternal: statType=" + statType + " size=" + buffer.size());
+        }
+
+        final DataChannel dataChannel = mOutDataChannel;
+        if (dataChannel == null || mSendCurrent != null || mSendBlocked || !mSendControlQueue.isEmpty()
+                || !mSendBulkQueue.isEmpty() || dataChannel.bufferedAmount() > SEND_HIGH_WATERMARK) {
+
+            return false;
+        }
+
+        final byte[] data = buffer.getArray();
+        final int offset = buffer.getArrayOffset();
+        if (leadingPadding) {
+            data[offset] = OP_BINARY | (byte) (FLAG_FIN << 4);
+        }
+        recordSendInternal(statType, dataChannel.send(new Buffer(ByteBuffer.wrap(data, offset, buffer.size()), true)));
+        return true;
+    }
+
+    /**
+     * Update the stat counters after sending the first frame of a message.
+     *
+     * @param statType the stat counter to increment.
+     * @param result the data channel send() result.
+     */
+    private void recordSendInternal(@NonNull StatType statType, boolean result) {
+
+        if (!result) {
+            mStatCounters[StatType.SEND_ERROR.ordinal()]++;
+            if (mStatCounters[StatType.FIRST_SEND_ERROR.ordinal()] == 0) {
+                mStatCounters[StatType.FIRST_SEND_ERROR.ordinal()] = statType.ordinal() + 1;
+                mStatCounters[StatType.FIRST_SEND_ERROR_TIME.ordinal()] = SystemClock.elapsedRealtime() - mConnectedTimestamp;
             }
         } else {
+            mStatCounters[statType.ordinal()]++;
+        }
+    }
+
+    /**
+     * Split a message which is bigger than MAX_FRAME_SIZE in several frames.
+     * The first frame contains the leading padding byte of the message and the next frames
+     * start with the continuation opcode.
+     *
+     * @param bytes the array holding the message.
+     * @param offset the start of the message in the array.
+     * @param length the message length.
+     * @return the list of frames to send.
+     */
+    @NonNull
+    private static List<byte[]> buildFrames(@NonNull byte[] bytes, int offset, int length) {
+
+        final List<byte[]> frames = new ArrayList<>(1 + length / (MAX_FRAME_SIZE - 1));
+        byte[] frame = new byte[MAX_FRAME_SIZE];
+        System.arraycopy(bytes, offset, frame, 0, MAX_FRAME_SIZE);
+        frame[0] = OP_BINARY;
+        frames.add(frame);
+
+        int start = MAX_FRAME_SIZE;
+        while (start < length) {
+            int frameLength = Math.min(MAX_FRAME_SIZE - 1, length - start);
+            frame = new byte[frameLength + 1];
+            if (start + frameLength < length) {
+                frame[0] = OP_CONTINUATION;
+            } else {
+                frame[0] = OP_CONTINUATION | (byte) (FLAG_FIN << 4);
+            }
+            System.arraycopy(bytes, offset + start, frame, 1, frameLength);
+            frames.add(frame);
+            start += frameLength;
+        }
+        return frames;
+    }
+
+    /**
+     * Queue the message for sending.  Bulk file chunks are queued after the control messages
+     * (acks, updates, typing) so that a large file transfer does not delay them.
+     *
+     * @param message the message to send.
+     */
+    private void queueMessageInternal(@NonNull OutboundMessage message) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "queueMessageInternal: statType=" + message.statType + " frames=" + message.frames.size());
+        }
+
+        if (mOutDataChannel == null) {
             mStatCounters[StatType.SEND_ERROR.ordinal()]++;
             Log.e(LOG_TAG, "There is no data channel");
+            return;
+        }
+
+        if (message.statType == StatType.IQ_SET_PUSH_FILE_CHUNK) {
+            mSendBulkQueue.add(message);
+        } else {
+            mSendControlQueue.add(message);
+        }
+        flushSendQueueInternal();
+    }
+
+    /**
+     * Send the queued frames until the data channel buffers more than SEND_HIGH_WATERMARK bytes.
+     * The frames of a message are always sent before starting another message.
+     */
+    private void flushSendQueueInternal() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "flushSendQueueInternal: control=" + mSendControlQueue.size() + " bulk=" + mSendBulkQueue.size());
+        }
+
+        final DataChannel dataChannel = mOutDataChannel;
+        if (dataChannel == null) {
+
+            return;
+        }
+
+        while (true) {
+            if (mSendCurrent == null) {
+                mSendCurrent = mSendControlQueue.poll();
+                if (mSendCurrent == null) {
+                    mSendCurrent = mSendBulkQueue.poll();
+                    if (mSendCurrent == null) {
+                        mSendBlocked = false;
+                        return;
+                    }
+                }
+            }
+
+            if (dataChannel.bufferedAmount() > SEND_HIGH_WATERMARK) {
+                mSendBlocked = true;
+
+                // Check again in case the data channel was drained before we marked the queue as blocked.
+                if (dataChannel.bufferedAmount() > SEND_LOW_WATERMARK) {
+                    return;
+                }
+                mSendBlocked = false;
+            }
+
+            final OutboundMessage message = mSendCurrent;
+
+            // Stamp the send time when the message leaves the queue so that the peer echoes it in the
+            // acknowledgement and the RTT sample does not include the time spent in the queue.
+            if (message.nextFrame == 0 && message.timestampOffset > 0 && message.timestampOffset < MAX_FRAME_SIZE) {
+                BinaryEncoder.rewriteLong(message.frames.get(0), message.timestampOffset, System.currentTimeMillis());
+            }
+            final boolean result = dataChannel.send(message.frames.get(message.nextFrame), true);
+            if (message.nextFrame == 0) {
+                recordSendInternal(message.statType, result);
+            } else if (!result) {
+                mStatCounters[StatType.SEND_ERROR.ordinal()]++;
+            }
+            message.nextFrame++;
+            if (message.nextFrame >= message.frames.size()) {
+                mSendCurrent = null;
+            }
         }
     }
 
@@ -1695,7 +1874,7 @@ class PeerConnectionImpl implements PeerConnection.Observer, DataChannel.Observe
             sessionDescription = updateCodecs(sessionDescription);
         }
 
-        final Sdp sdp = new Sdp(sessionDescription.description);
+        final Sdp sdp = new Sdp(sessionDescription.description, PeerCallServiceImpl.getSdpDictionary(mPeerOffer));
         if (mInitialized) {
             final SdpType sdpType = sessionDescription.type == SessionDescription.Type.ANSWER ? SdpType.ANSWER : SdpType.OFFER;
             mPeerConnectionServiceImpl.sessionUpdate(this, sdp, sdpType, this::onSendServer);
@@ -1906,6 +2085,25 @@ class PeerConnectionImpl implements PeerConnection.Observer, DataChannel.Observe
         if (DEBUG) {
             Log.d(LOG_TAG, "onBufferedAmountChange:id=" + mId + " previousAmount=" + previousAmount);
         }
+
+        // Called from the WebRTC signaling thread: the data channel is closed and disposed by the executor
+        // so we must look at it and resume sending the queued messages from the executor only.
+        if (mSendBlocked) {
+            mPeerConnectionExecutor.execute(this::onBufferedAmountChangeInternal);
+        }
+    }
+
+    private void onBufferedAmountChangeInternal() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "onBufferedAmountChangeInternal:id=" + mId);
+        }
+
+        // Resume sending the queued messages when the data channel has drained enough.
+        final DataChannel dataChannel = mOutDataChannel;
+        if (mSendBlocked && dataChannel != null && dataChannel.bufferedAmount() <= SEND_LOW_WATERMARK) {
+            mSendBlocked = false;
+            flushSendQueueInternal();
+        }
     }
 
     @Override
@@ -1987,6 +2185,10 @@ class PeerConnectionImpl implements PeerConnection.Observer, DataChannel.Observe
 
         mAudioTrack = null;
 
+        mSendControlQueue.clear();
+        mSendBulkQueue.clear();
+        mSendCurrent = null;
+        mSendBlocked = false;
         if (mInDataChannel != null) {
             mInDataChannel.unregisterObserver();
             mInDataChannel.dispose();
@@ -0,0 +1,151 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.peerconnection;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.twinlife.twinlife.PeerConnectionService.ExecutorStats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * Serial executor lanes for the peer connections.
+ * <p>
+ * Each peer connection is pinned to one lane when it is created and all its operations (SDP, ICE candidates,
+ * data-channel send and receive) are executed on the lane thread: the operations of a peer connection are
+ * executed in order while different peer connections progress in parallel.  A new peer connection is pinned
+ * to the lane which has the less peer connections.  The first lane is also used by the service for the
+ * camera operations.
+ */
+final class PeerConnectionLanes {
+    private static final String LOG_TAG = "PeerConnectionLanes";
+    private static final boolean DEBUG = false;
+
+    static final int MAX_LANES = 8;
+    private static final int DEFAULT_MAX_LANES = 4;
+
+    @NonNull
+    private final ScheduledThreadPoolExecutor[] mLanes;
+    @NonNull
+    private final int[] mSessionCounts;
+    private final Map<UUID, Integer> mSessionLanes = new HashMap<>();
+
+    /**
+     * Get the default number of lanes for the device.
+     *
+     * @return the number of lanes.
+     */
+    static int getDefaultLaneCount() {
+
+        return Math.max(1, Math.min(DEFAULT_MAX_LANES, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    PeerConnectionLanes(int count) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "PeerConnectionLanes: count=" + count);
+        }
+
+        count = Math.max(1, Math.min(MAX_LANES, count));
+        mLanes = new ScheduledThreadPoolExecutor[count];
+        mSessionCounts = new int[count];
+        for (int i = 0; i < count; i++) {
+            final String name = count == 1 ? "twinlife-peer-connection" : "twinlife-peer-connection-" + i;
+            mLanes[i] = new ScheduledThreadPoolExecutor(1, (Runnable runnable) -> new Thread(runnable, name));
+        }
+    }
+
+    /**
+     * Get the lane used by the service for operations which are not associated with a peer connection.
+     *
+     * @return the service lane.
+     */
+    @NonNull
+    ScheduledExecutorService getServiceLane() {
+
+        return mLanes[0];
+    }
+
+    /**
+     * Pin the peer connection to the lane which has the less peer connections.
+     *
+     * @param sessionId the peer connection session id.
+     * @return the lane to use for the peer connection.
+     */
+    @NonNull
+    synchronized ScheduledExecutorService acquire(@NonNull UUID sessionId) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "acquire: sessionId=" + sessionId);
+        }
+
+        final Integer current = mSessionLanes.get(sessionId);
+        if (current != null) {
+            return mLanes[current];
+        }
+
+        int lane = 0;
+        for (int i = 1; i < mLanes.length; i++) {
+            if (mSessionCounts[i] < mSessionCounts[lane]) {
+                lane = i;
+            }
+        }
+        mSessionCounts[lane]++;
+        mSessionLanes.put(sessionId, lane);
+        return mLanes[lane];
+    }
+
+    /**
+     * Release the lane used by the peer connection.
+     *
+     * @param sessionId the peer connection session id.
+     */
+    synchronized void release(@NonNull UUID sessionId) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "release: sessionId=" + sessionId);
+        }
+
+        final Integer lane = mSessionLanes.remove(sessionId);
+        if (lane != null) {
+            mSessionCounts[lane]--;
+        }
+    }
+
+    /**
+     * Get the queue depth and the number of peer connections of each lane.
+     *
+     * @return the list of lane stats.
+     */
+    @NonNull
+    synchronized List<ExecutorStats> getStats() {
+
+        final List<ExecutorStats> result = new ArrayList<>(mLanes.length);
+        for (int i = 0; i < mLanes.length; i++) {
+            final ScheduledThreadPoolExecutor lane = mLanes[i];
+            result.add(new ExecutorStats(i, lane.getQueue().size(), mSessionCounts[i], lane.getCompletedTaskCount()));
+        }
+        return result;
+    }
+
+    void shutdownNow() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "shutdownNow");
+        }
+
+        for (ScheduledThreadPoolExecutor lane : mLanes) {
+            lane.shutdownNow();
+        }
+    }
+}
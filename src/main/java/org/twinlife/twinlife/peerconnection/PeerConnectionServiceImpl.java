@@ -79,9 +79,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadFactory;
 
 public class PeerConnectionServiceImpl extends BaseServiceImpl<PeerConnectionService.ServiceObserver> implements PeerConnectionService, CameraEventsHandler, PeerSignalingListener {
     private static final String LOG_TAG = "PeerConnectionServic...";
@@ -99,15 +96,8 @@ public class PeerConnectionServiceImpl extends BaseServiceImpl<PeerConnectionSer
     private static final int MAX_VIDEO_FRAME_RATE = 30;
     private static final int MIN_VIDEO_FRAME_RATE = 10;
 
-    private static class PeerConnectionThreadFactory implements ThreadFactory {
-
-        public Thread newThread(@NonNull Runnable runnable) {
-
-            return new Thread(runnable, "twinlife-peer-connection");
-        }
-    }
-
-    private final ScheduledExecutorService mPeerConnectionExecutor;
+    @Nullable
+    private PeerConnectionLanes mPeerConnectionLanes;
     private final ConcurrentHashMap<UUID, PeerConnectionImpl> mPeerConnectionImpls = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<UUID, ConnectionState> mPeerStates = new ConcurrentHashMap<>();
     private final PeerConnection.RTCConfiguration mPeerConnectionConfiguration;
@@ -154,7 +144,6 @@ public class PeerConnectionServiceImpl extends BaseServiceImpl<PeerConnectionSer
         PeerConnectionServiceConfiguration peerConnectionServiceConfiguration = new PeerConnectionServiceConfiguration();
         peerConnectionServiceConfiguration.acceptIncomingCalls = false;
         setServiceConfiguration(peerConnectionServiceConfiguration);
-        mPeerConnectionExecutor = Executors.newSingleThreadScheduledExecutor(new PeerConnectionThreadFactory());
         mCryptoService = twinlifeImpl.getCryptoService();
         mPeerCallServiceImpl = mTwinlifeImpl.getPeerCallServiceImpl();
 
@@ -199,6 +188,7 @@ public class PeerConnectionServiceImpl extends BaseServiceImpl<PeerConnectionSer
             PeerConnectionServiceConfiguration serviceConfiguration = (PeerConnectionServiceConfiguration) baseServiceConfiguration;
 
             peerServiceConfiguration.acceptIncomingCalls = serviceConfiguration.acceptIncomingCalls;
+            peerServiceConfiguration.executorLanes = serviceConfiguration.executorLanes;
         }
 
         setServiceConfiguration(peerServiceConfiguration);
@@ -240,7 +230,13 @@ public class PeerConnectionServiceImpl extends BaseServiceImpl<PeerConnectionSer
             Log.d(LOG_TAG, "onDestroy");
         }
 
-        mPeerConnectionExecutor.shutdownNow();
+        final PeerConnectionLanes lanes;
+        synchronized (this) {
+            lanes = mPeerConnectionLanes;
+        }
+        if (lanes != null) {
+            lanes.shutdownNow();
+        }
     }
 
     @Override
@@ -306,6 +302,16 @@ public class PeerConnectionServiceImpl extends BaseServiceImpl<PeerConnectionSer
         return !mPeerStates.isEmpty();
     }
 
+    @Override
+    @NonNull
+    public List<ExecutorStats> getExecutorStats() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "getExecutorStats");
+        }
+
+        return getLanes().getStats();
+    }
+
     @Nullable
     public EglBase.Context getEGLContext() {
         if (DEBUG) {
@@ -582,7 +588,7 @@ public class PeerConnectionServiceImpl extends BaseServiceImpl<PeerConnectionSer
 
         final PeerConnectionImpl peerConnectionImpl;
         synchronized (this) {
-            peerConnectionImpl = new PeerConnectionImpl(mPeerConnectionExecutor, this, sessionId, sessionKeyPair, peerId, offer,
+            peerConnectionImpl = new PeerConnectionImpl(getLanes().acquire(sessionId), this, sessionId, sessionKeyPair, peerId, offer,
                     offerToReceive, notificationContent, observer);
             mPeerConnectionImpls.put(sessionId, peerConnectionImpl);
             mPeerStates.put(sessionId, ConnectionState.INIT);
@@ -766,7 +772,7 @@ public class PeerConnectionServiceImpl extends BaseServiceImpl<PeerConnectionSer
             return;
         }
 
-        mPeerConnectionExecutor.execute(() -> switchCameraInternal(front, complete));
+        getLanes().getServiceLane().execute(() -> switchCameraInternal(front, complete));
     }
 
     @Override
@@ -805,7 +811,7 @@ public class PeerConnectionServiceImpl extends BaseServiceImpl<PeerConnectionSer
             return;
         }
 
-        mPeerConnectionExecutor.execute(() -> setZoomInternal(progress));
+        getLanes().getServiceLane().execute(() -> setZoomInternal(progress));
     }
 
     private boolean isZoomSupported() {
@@ -844,6 +850,27 @@ public class PeerConnectionServiceImpl extends BaseServiceImpl<PeerConnectionSer
         peerConnectionImpl.sendMessage(statType, bytes);
     }
 
+    @Override
+    public void sendMessage(@NonNull UUID peerConnectionId, @NonNull StatType statType, @NonNull byte[] bytes, int timestampOffset) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "sendMessage: peerConnectionId=" + peerConnectionId + " statType=" + statType
+                    + " bytes.length=" + bytes.length + " timestampOffset=" + timestampOffset);
+        }
+
+        if (!isServiceReady()) {
+
+            return;
+        }
+
+        final PeerConnectionImpl peerConnectionImpl = mPeerConnectionImpls.get(peerConnectionId);
+        if (peerConnectionImpl == null) {
+
+            return;
+        }
+
+        peerConnectionImpl.sendMessage(statType, bytes, timestampOffset);
+    }
+
     public void sendPacket(@NonNull UUID peerConnectionId, @NonNull StatType statType, @NonNull BinaryPacketIQ iq) {
         if (DEBUG) {
             Log.d(LOG_TAG, "sendPacket: peerConnectionId=" + peerConnectionId + " statType=" + statType + " iq=" + iq);
@@ -942,7 +969,7 @@ public class PeerConnectionServiceImpl extends BaseServiceImpl<PeerConnectionSer
                 return ErrorCode.SUCCESS;
             }
             // Note: at this step, if the SDP is encrypted, we cannot decrypt it until createIncomingPeerConnection() is called.
-            peerConnectionImpl = new PeerConnectionImpl(mPeerConnectionExecutor, this, sessionId,
+            peerConnectionImpl = new PeerConnectionImpl(getLanes().acquire(sessionId), this, sessionId,
                     from, offer, offerToReceive, sdp);
             mPeerConnectionImpls.put(sessionId, peerConnectionImpl);
             mPeerStates.put(sessionId, ConnectionState.INIT);
@@ -1322,7 +1349,7 @@ public class PeerConnectionServiceImpl extends BaseServiceImpl<PeerConnectionSer
         }
     }
 
-    void setPeerConstraints(int maxReceivedFrameSize, int maxReceivedFrameRate) {
+    synchronized void setPeerConstraints(int maxReceivedFrameSize, int maxReceivedFrameRate) {
         if (DEBUG) {
             Log.d(LOG_TAG, this + "setPeerConstraints: maxReceivedFrameSize=" + maxReceivedFrameSize + " maxReceivedFrameRate=" + maxReceivedFrameRate);
         }
@@ -1386,6 +1413,9 @@ public class PeerConnectionServiceImpl extends BaseServiceImpl<PeerConnectionSer
         final EglBase eglBase;
         synchronized (this) {
             mPeerStates.remove(peerConnectionId);
+            if (mPeerConnectionLanes != null) {
+                mPeerConnectionLanes.release(peerConnectionId);
+            }
             if (mNetworkLock != null) {
                 if (mPeerStates.isEmpty()) {
                     mNetworkLock.release();
@@ -1433,8 +1463,16 @@ public class PeerConnectionServiceImpl extends BaseServiceImpl<PeerConnectionSer
         }
     }
 
+    /**
+     * Get the peer connection factory.  The factory is shared by the peer connections of every lane and
+     * the caller must hold the service lock until it has created its peer connection and incremented the
+     * factory use counter so that dispose() does not release the factory.
+     *
+     * @param withMedia true to get the factory with the audio and video support.
+     * @return the peer connection factory.
+     */
     @NonNull
-    PeerConnectionFactory getPeerConnectionFactory(boolean withMedia) {
+    synchronized PeerConnectionFactory getPeerConnectionFactory(boolean withMedia) {
         if (DEBUG) {
             Log.d(LOG_TAG, "getPeerConnectionFactory");
         }
@@ -1689,6 +1727,22 @@ public class PeerConnectionServiceImpl extends BaseServiceImpl<PeerConnectionSer
         return null;
     }
 
+    /**
+     * Get the executor lanes, they are created with the configured number of lanes on the first use.
+     *
+     * @return the peer connection lanes.
+     */
+    @NonNull
+    private synchronized PeerConnectionLanes getLanes() {
+
+        if (mPeerConnectionLanes == null) {
+            final PeerConnectionServiceConfiguration configuration = (PeerConnectionServiceConfiguration) getServiceConfiguration();
+            final int count = configuration.executorLanes > 0 ? configuration.executorLanes : PeerConnectionLanes.getDefaultLaneCount();
+            mPeerConnectionLanes = new PeerConnectionLanes(count);
+        }
+        return mPeerConnectionLanes;
+    }
+
     private void switchCameraInternal(boolean front, @NonNull Consumer<Boolean> complete) {
         if (DEBUG) {
             Log.d(LOG_TAG, this + "switchCameraInternal front: " + front);
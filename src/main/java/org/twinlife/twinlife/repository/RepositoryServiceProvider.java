@@ -67,8 +67,8 @@ public class RepositoryServiceProvider extends DatabaseServiceProvider implement
     /**
      * repository table:
      * id INTEGER: local database identifier (primary key)
-     * uuid TEXT UNIQUE NOT NULL: object id
-     * schemaId TEXT: the object schema id
+     * uuid BLOB UNIQUE NOT NULL: object id (16 bytes UUID, TEXT before V29)
+     * schemaId BLOB: the object schema id (16 bytes UUID, TEXT before V29)
      * schemaVersion INTEGER: the object schema version
      * creationDate INTEGER NOT NULL: object creation date
      * twincodeInbound INTEGER: the optional twincode inbound local database identifier
@@ -86,7 +86,7 @@ public class RepositoryServiceProvider extends DatabaseServiceProvider implement
      */
     private static final String REPOSITORY_CREATE_TABLE =
             "CREATE TABLE IF NOT EXISTS repository (id INTEGER PRIMARY KEY,"
-                    + " uuid TEXT UNIQUE NOT NULL, schemaId TEXT, schemaVersion INTEGER DEFAULT 0, creationDate INTEGER NOT NULL,"
+                    + " uuid BLOB UNIQUE NOT NULL, schemaId BLOB, schemaVersion INTEGER DEFAULT 0, creationDate INTEGER NOT NULL,"
                     + " twincodeInbound INTEGER, twincodeOutbound INTEGER, peerTwincodeOutbound INTEGER, owner INTEGER,"
                     + " name TEXT, description TEXT, modificationDate INTEGER NOT NULL, attributes BLOB, flags INTEGER,"
                     + " stats BLOB"
@@ -293,9 +293,9 @@ public class RepositoryServiceProvider extends DatabaseServiceProvider implement
         if (objectId == null) {
             query.filterLong("r.id", dbId);
         } else {
-            query.filterUUID("r.uuid", objectId);
+            query.filterBinaryUUID("r.uuid", objectId);
         }
-        query.filterUUID("r.schemaId", schemaId);
+        query.filterBinaryUUID("r.schemaId", schemaId);
         try (DatabaseCursor cursor = mDatabase.execQuery(query)) {
 
             while (cursor.moveToNext()) {
@@ -349,7 +349,7 @@ public class RepositoryServiceProvider extends DatabaseServiceProvider implement
         if ((mode & RepositoryObjectFactory.USE_PEER_OUTBOUND) != 0) {
             query.append(" LEFT JOIN twincodeOutbound AS po on r.peerTwincodeOutbound = po.id");
         }
-        query.filterUUID("r.schemaId", schemaId);
+        query.filterBinaryUUID("r.schemaId", schemaId);
         if (filter != null) {
             query.filterOwner("r.owner", filter.owner);
             query.filterTwincode("po.id", filter.twincodeOutbound);
@@ -399,13 +399,13 @@ public class RepositoryServiceProvider extends DatabaseServiceProvider implement
                     + " INNER JOIN repository AS r ON r.twincodeInbound = ti.id"
                     + " LEFT JOIN twincodeOutbound AS twout ON r.twincodeOutbound = twout.id"
                     + " LEFT JOIN twincodeOutbound AS po ON r.peerTwincodeOutbound = po.id");
-            query.filterUUID("ti.twincodeId", id);
+            query.filterBinaryUUID("ti.twincodeId", id);
         } else {
             query.append(" FROM repository AS r"
                     + " LEFT JOIN twincodeInbound AS ti ON r.twincodeInbound = ti.id"
                     + " LEFT JOIN twincodeOutbound AS twout ON r.twincodeOutbound = twout.id"
                     + " LEFT JOIN twincodeOutbound AS po ON r.peerTwincodeOutbound = po.id");
-            query.filterUUID("r.uuid", id);
+            query.filterBinaryUUID("r.uuid", id);
         }
 
         final List<UUID> schemas = new ArrayList<>(factories.length);
@@ -442,7 +442,7 @@ public class RepositoryServiceProvider extends DatabaseServiceProvider implement
 
         try {
             final Long result = mDatabase.longQuery("SELECT COUNT(*) FROM repository WHERE schemaId=?",
-                    new String[]{schemaId.toString()});
+                    new Object[]{ Utils.toBytes(schemaId) });
             return result != null && result > 0;
 
         } catch (Exception exception) {
@@ -467,9 +467,10 @@ public class RepositoryServiceProvider extends DatabaseServiceProvider implement
         final RepositoryObjectFactoryImpl<RepositoryObject> factory = getFactory(schemaId);
         final Map<DatabaseIdentifier, Pair<ObjectStatImpl, Integer>> result = new HashMap<>();
         if (factory != null) {
-            try (final DatabaseCursor cursor = mDatabase.rawQuery("SELECT r.id, r.stats, po.flags FROM repository AS r"
-                    + " LEFT JOIN twincodeOutbound AS po ON r.peerTwincodeOutbound = po.id"
-                    + " WHERE r.schemaId=?", new String[]{schemaId.toString()})) {
+            final QueryBuilder query = new QueryBuilder("r.id, r.stats, po.flags FROM repository AS r"
+                    + " LEFT JOIN twincodeOutbound AS po ON r.peerTwincodeOutbound = po.id");
+            query.filterBinaryUUID("r.schemaId", schemaId);
+            try (final DatabaseCursor cursor = mDatabase.execQuery(query)) {
                 while (cursor.moveToNext()) {
                     final long databaseId = cursor.getLong(0);
                     final ObjectStatImpl stat = extractObjectStatImpl(databaseId, cursor.getBlob(1));
@@ -578,9 +579,8 @@ public class RepositoryServiceProvider extends DatabaseServiceProvider implement
         final UUID schemaId = factory.getSchemaId();
         try (Transaction transaction = newTransaction()) {
 
-            ContentValues values = new ContentValues();
-            values.put(Columns.OWNER, newOwner.getDatabaseId().getId());
-            transaction.update(Tables.REPOSITORY, values, "schemaId=? AND owner IS NULL", new String[] { schemaId.toString() });
+            transaction.execSQLWithArgs("UPDATE repository SET owner=? WHERE schemaId=? AND owner IS NULL",
+                    new Object[] { newOwner.getDatabaseId().getId(), Utils.toBytes(schemaId) });
             transaction.commit();
             mDatabase.evictCacheWithSchemaId(schemaId);
 
@@ -838,8 +838,8 @@ public class RepositoryServiceProvider extends DatabaseServiceProvider implement
         final DatabaseIdentifier identifier = object.getDatabaseId();
         final ContentValues values = new ContentValues();
         values.put(Columns.ID, identifier.getId());
-        values.put(Columns.UUID, object.getId().toString());
-        values.put(Columns.SCHEMA_ID, identifier.getSchemaId().toString());
+        values.put(Columns.UUID, Utils.toBytes(object.getId()));
+        values.put(Columns.SCHEMA_ID, Utils.toBytes(identifier.getSchemaId()));
         values.put(Columns.SCHEMA_VERSION, identifier.getSchemaVersion());
         values.put(Columns.NAME, object.getName());
         values.put(Columns.DESCRIPTION, object.getDescription());
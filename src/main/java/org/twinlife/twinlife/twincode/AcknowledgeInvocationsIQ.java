@@ -0,0 +1,150 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.twincode;
+
+import androidx.annotation.NonNull;
+
+import org.twinlife.twinlife.BaseService.ErrorCode;
+import org.twinlife.twinlife.Decoder;
+import org.twinlife.twinlife.Encoder;
+import org.twinlife.twinlife.SerializerException;
+import org.twinlife.twinlife.SerializerFactory;
+import org.twinlife.twinlife.util.BinaryPacketIQ;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Acknowledge several invocations in a single IQ.
+ * <p>
+ * Schema version 1
+ * <pre>
+ * {
+ *  "schemaId":"e1e7808a-2a60-4481-90e0-67a941376117",
+ *  "schemaVersion":"1",
+ *
+ *  "type":"record",
+ *  "name":"AcknowledgeInvocationsIQ",
+ *  "namespace":"org.twinlife.schemas.image",
+ *  "super":"org.twinlife.schemas.BinaryPacketIQ"
+ *  "fields": [
+ *     {"name":"count", "type":"int"},
+ *     {"name":"invocations", [
+ *       {"name":"invocationId", "type":"uuid"}
+ *       {"name":"errorCode", "type":"enum"}
+ *     ]}
+ *  ]
+ * }
+ * </pre>
+ */
+public class AcknowledgeInvocationsIQ extends BinaryPacketIQ {
+
+    public static final class Acknowledge {
+        @NonNull
+        public final UUID invocationId;
+        @NonNull
+        public final ErrorCode errorCode;
+
+        public Acknowledge(@NonNull UUID invocationId, @NonNull ErrorCode errorCode) {
+
+            this.invocationId = invocationId;
+            this.errorCode = errorCode;
+        }
+    }
+
+    static class AcknowledgeInvocationsIQSerializer extends BinaryPacketIQSerializer {
+
+        AcknowledgeInvocationsIQSerializer(@NonNull UUID schemaId, int schemaVersion) {
+
+            super(schemaId, schemaVersion, AcknowledgeInvocationsIQ.class);
+        }
+
+        @Override
+        public void serialize(@NonNull SerializerFactory serializerFactory, @NonNull Encoder encoder,
+                              @NonNull Object object) throws SerializerException {
+
+            super.serialize(serializerFactory, encoder, object);
+
+            AcknowledgeInvocationsIQ acknowledgeInvocationsIQ = (AcknowledgeInvocationsIQ) object;
+
+            encoder.writeInt(acknowledgeInvocationsIQ.acknowledges.size());
+            for (Acknowledge acknowledge : acknowledgeInvocationsIQ.acknowledges) {
+                encoder.writeUUID(acknowledge.invocationId);
+                encoder.writeEnum(ErrorCode.fromErrorCode(acknowledge.errorCode));
+            }
+        }
+
+        @Override
+        @NonNull
+        public Object deserialize(@NonNull SerializerFactory serializerFactory,
+                                  @NonNull Decoder decoder) throws SerializerException {
+
+            BinaryPacketIQ serviceRequestIQ = (BinaryPacketIQ) super.deserialize(serializerFactory, decoder);
+
+            int count = decoder.readInt();
+            List<Acknowledge> acknowledges = new ArrayList<>(count);
+            while (count > 0) {
+                count--;
+                UUID invocationId = decoder.readUUID();
+                ErrorCode errorCode = ErrorCode.toErrorCode(decoder.readEnum());
+                acknowledges.add(new Acknowledge(invocationId, errorCode));
+            }
+
+            return new AcknowledgeInvocationsIQ(this, serviceRequestIQ.getRequestId(), acknowledges);
+        }
+    }
+
+    @NonNull
+    public static BinaryPacketIQSerializer createSerializer(@NonNull UUID schemaId, int schemaVersion) {
+
+        return new AcknowledgeInvocationsIQSerializer(schemaId, schemaVersion);
+    }
+
+    @NonNull
+    private final List<Acknowledge> acknowledges;
+
+    @NonNull
+    public List<Acknowledge> getAcknowledges() {
+
+        return acknowledges;
+    }
+
+    //
+    // Override Object methods
+    //
+
+    @Override
+    protected void appendTo(@NonNull StringBuilder stringBuilder) {
+
+        super.appendTo(stringBuilder);
+
+        stringBuilder.append(" count=");
+        stringBuilder.append(acknowledges.size());
+    }
+
+    @NonNull
+    public String toString() {
+
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("AcknowledgeInvocationsIQ[");
+        appendTo(stringBuilder);
+        stringBuilder.append("]");
+
+        return stringBuilder.toString();
+    }
+
+    public AcknowledgeInvocationsIQ(@NonNull BinaryPacketIQSerializer serializer, long requestId,
+                                    @NonNull List<Acknowledge> acknowledges) {
+
+        super(serializer, requestId);
+
+        this.acknowledges = acknowledges;
+    }
+}
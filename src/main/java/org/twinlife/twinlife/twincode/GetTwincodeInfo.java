@@ -0,0 +1,33 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.twincode;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.twinlife.twinlife.BaseService.AttributeNameValue;
+
+import java.util.List;
+import java.util.UUID;
+
+public class GetTwincodeInfo {
+
+    public final UUID twincodeOutboundId;
+    public final long modificationDate;
+    public final List<AttributeNameValue> attributes;
+    public final byte[] signature;
+
+    public GetTwincodeInfo(@NonNull UUID twincodeOutboundId, long modificationDate,
+                           @NonNull List<AttributeNameValue> attributes, @Nullable byte[] signature) {
+        this.twincodeOutboundId = twincodeOutboundId;
+        this.modificationDate = modificationDate;
+        this.attributes = attributes;
+        this.signature = signature;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.twincode;
+
+import androidx.annotation.NonNull;
+
+import org.twinlife.twinlife.BuildConfig;
+import org.twinlife.twinlife.Decoder;
+import org.twinlife.twinlife.Encoder;
+import org.twinlife.twinlife.SerializerException;
+import org.twinlife.twinlife.SerializerFactory;
+import org.twinlife.twinlife.util.BinaryPacketIQ;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Get several twincodes in a single request IQ.
+ * <p>
+ * Schema version 1
+ * <pre>
+ * {
+ *  "schemaId":"c6c403ec-1e11-46df-ab98-2560d2b7a695",
+ *  "schemaVersion":"1",
+ *
+ *  "type":"record",
+ *  "name":"GetTwincodesIQ",
+ *  "namespace":"org.twinlife.schemas.image",
+ *  "super":"org.twinlife.schemas.BinaryPacketIQ"
+ *  "fields": [
+ *     {"name":"twincodes", [
+ *      {"name":"twincode", "type": "uuid"}
+ *     ]}
+ *   ]
+ * }
+ * </pre>
+ */
+public class GetTwincodesIQ extends BinaryPacketIQ {
+
+    static class GetTwincodesIQSerializer extends BinaryPacketIQSerializer {
+
+        GetTwincodesIQSerializer(UUID schemaId, int schemaVersion) {
+
+            super(schemaId, schemaVersion, GetTwincodesIQ.class);
+        }
+
+        @Override
+        public void serialize(@NonNull SerializerFactory serializerFactory, @NonNull Encoder encoder,
+                              @NonNull Object object) throws SerializerException {
+
+            super.serialize(serializerFactory, encoder, object);
+
+            GetTwincodesIQ getTwincodesIQ = (GetTwincodesIQ) object;
+
+            encoder.writeInt(getTwincodesIQ.twincodeList.size());
+            for (UUID twincodeId : getTwincodesIQ.twincodeList) {
+                encoder.writeUUID(twincodeId);
+            }
+        }
+
+        @Override
+        @NonNull
+        public Object deserialize(@NonNull SerializerFactory serializerFactory,
+                                  @NonNull Decoder decoder) throws SerializerException {
+
+            BinaryPacketIQ serviceRequestIQ = (BinaryPacketIQ) super.deserialize(serializerFactory, decoder);
+
+            int count = decoder.readInt();
+            List<UUID> twincodeList = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                twincodeList.add(decoder.readUUID());
+            }
+
+            return new GetTwincodesIQ(this, serviceRequestIQ.getRequestId(), twincodeList);
+        }
+    }
+
+    public static BinaryPacketIQSerializer createSerializer(UUID schemaId, int schemaVersion) {
+
+        return new GetTwincodesIQSerializer(schemaId, schemaVersion);
+    }
+
+    @NonNull
+    private final List<UUID> twincodeList;
+
+    public GetTwincodesIQ(@NonNull BinaryPacketIQSerializer serializer, long requestId,
+                          @NonNull List<UUID> twincodeList) {
+
+        super(serializer, requestId);
+
+        this.twincodeList = twincodeList;
+    }
+
+    @NonNull
+    public List<UUID> getTwincodeList() {
+
+        return twincodeList;
+    }
+
+    //
+    // Override Object methods
+    //
+
+    @Override
+    protected void appendTo(@NonNull StringBuilder stringBuilder) {
+
+        super.appendTo(stringBuilder);
+
+        stringBuilder.append(" twincodes=");
+        stringBuilder.append(twincodeList.size());
+    }
+
+    @NonNull
+    public String toString() {
+
+        if (BuildConfig.ENABLE_DUMP) {
+            StringBuilder stringBuilder = new StringBuilder();
+            stringBuilder.append("GetTwincodesIQ\n");
+            appendTo(stringBuilder);
+
+            return stringBuilder.toString();
+        } else {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.twincode;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.twinlife.twinlife.BaseService.AttributeNameValue;
+import org.twinlife.twinlife.BuildConfig;
+import org.twinlife.twinlife.Decoder;
+import org.twinlife.twinlife.Encoder;
+import org.twinlife.twinlife.SerializerException;
+import org.twinlife.twinlife.SerializerFactory;
+import org.twinlife.twinlife.util.BinaryPacketIQ;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Get several twincodes response IQ.
+ * <p>
+ * Every twincode of the GetTwincodesIQ is either in the unknown list or in the twincode list.
+ * <p>
+ * Schema version 1
+ * <pre>
+ * {
+ *  "schemaId":"abe8ed62-1769-4027-a02a-bb67e30558b0",
+ *  "schemaVersion":"1",
+ *
+ *  "type":"record",
+ *  "name":"OnGetTwincodesIQ",
+ *  "namespace":"org.twinlife.schemas.image",
+ *  "super":"org.twinlife.schemas.BinaryPacketIQ"
+ *  "fields": [
+ *     {"name":"unknownTwincodes", [
+ *      {"name":"twincode", "type": "uuid"}
+ *     ]},
+ *     {"name":"twincodes", [
+ *      {"name":"twincode", "type": "uuid"}
+ *      {"name":"modificationDate", "type":"long"},
+ *      {"name":"attributeCount", "type":"int"},
+ *      {"name":"attributes", [
+ *        {"name":"name", "type": "string"}
+ *        {"name":"type", ["long", "string", "uuid"]}
+ *        {"name":"value", "type": ["long", "string", "uuid"]}
+ *      ]}
+ *      {"name": "signature": [null, "type":"bytes"]}
+ *    ]}
+ * }
+ * </pre>
+ */
+public class OnGetTwincodesIQ extends BinaryPacketIQ {
+
+    static class OnGetTwincodesIQSerializer extends BinaryPacketIQSerializer {
+
+        OnGetTwincodesIQSerializer(UUID schemaId, int schemaVersion) {
+
+            super(schemaId, schemaVersion, OnGetTwincodesIQ.class);
+        }
+
+        @Override
+        public void serialize(@NonNull SerializerFactory serializerFactory, @NonNull Encoder encoder,
+                              @NonNull Object object) throws SerializerException {
+
+            super.serialize(serializerFactory, encoder, object);
+
+            OnGetTwincodesIQ onGetTwincodesIQ = (OnGetTwincodesIQ) object;
+
+            encoder.writeInt(onGetTwincodesIQ.unknownTwincodeList.size());
+            for (UUID twincodeId : onGetTwincodesIQ.unknownTwincodeList) {
+                encoder.writeUUID(twincodeId);
+            }
+
+            encoder.writeInt(onGetTwincodesIQ.twincodeList.size());
+            for (GetTwincodeInfo twincode : onGetTwincodesIQ.twincodeList) {
+                encoder.writeUUID(twincode.twincodeOutboundId);
+                encoder.writeLong(twincode.modificationDate);
+                serialize(encoder, twincode.attributes);
+                encoder.writeOptionalBytes(twincode.signature);
+            }
+        }
+
+        @Override
+        @NonNull
+        public Object deserialize(@NonNull SerializerFactory serializerFactory,
+                                  @NonNull Decoder decoder) throws SerializerException {
+
+            BinaryPacketIQ serviceRequestIQ = (BinaryPacketIQ) super.deserialize(serializerFactory, decoder);
+
+            int unknownCount = decoder.readInt();
+            List<UUID> unknownTwincodeList = new ArrayList<>(unknownCount);
+            for (int i = 0; i < unknownCount; i++) {
+                unknownTwincodeList.add(decoder.readUUID());
+            }
+
+            int count = decoder.readInt();
+            List<GetTwincodeInfo> twincodeList = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                UUID twincodeId = decoder.readUUID();
+                long modificationDate = decoder.readLong();
+                List<AttributeNameValue> attributes = deserializeAttributeList(decoder);
+                byte[] signature = decoder.readOptionalBytes(null);
+                twincodeList.add(new GetTwincodeInfo(twincodeId, modificationDate, attributes, signature));
+            }
+
+            return new OnGetTwincodesIQ(this, serviceRequestIQ.getRequestId(), unknownTwincodeList, twincodeList);
+        }
+    }
+
+    public static BinaryPacketIQSerializer createSerializer(UUID schemaId, int schemaVersion) {
+
+        return new OnGetTwincodesIQSerializer(schemaId, schemaVersion);
+    }
+
+    @NonNull
+    private final List<UUID> unknownTwincodeList;
+    @NonNull
+    private final List<GetTwincodeInfo> twincodeList;
+
+    public OnGetTwincodesIQ(@NonNull BinaryPacketIQSerializer serializer, long requestId,
+                            @NonNull List<UUID> unknownTwincodeList, @NonNull List<GetTwincodeInfo> twincodeList) {
+
+        super(serializer, requestId);
+
+        this.unknownTwincodeList = unknownTwincodeList;
+        this.twincodeList = twincodeList;
+    }
+
+    @NonNull
+    public List<UUID> getUnknownTwincodeList() {
+
+        return unknownTwincodeList;
+    }
+
+    @NonNull
+    public List<GetTwincodeInfo> getTwincodeList() {
+
+        return twincodeList;
+    }
+
+    //
+    // Override Object methods
+    //
+
+    @Override
+    protected void appendTo(@NonNull StringBuilder stringBuilder) {
+
+        super.appendTo(stringBuilder);
+
+        stringBuilder.append(" unknown=");
+        stringBuilder.append(unknownTwincodeList.size());
+        stringBuilder.append(" twincodes=");
+        stringBuilder.append(twincodeList.size());
+    }
+
+    @NonNull
+    public String toString() {
+
+        if (BuildConfig.ENABLE_DUMP) {
+            StringBuilder stringBuilder = new StringBuilder();
+            stringBuilder.append("OnGetTwincodesIQ\n");
+            appendTo(stringBuilder);
+
+            return stringBuilder.toString();
+        } else {
+            return "";
+        }
+    }
+}
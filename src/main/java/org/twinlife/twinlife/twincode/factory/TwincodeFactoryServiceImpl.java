@@ -102,8 +102,8 @@ public class TwincodeFactoryServiceImpl extends BaseServiceImpl<TwincodeFactoryS
         setServiceConfiguration(new TwincodeFactoryServiceConfiguration());
 
         // Register the binary IQ handlers for the responses.
-        connection.addPacketListener(IQ_ON_CREATE_TWINCODE_SERIALIZER, this::onCreateTwincode);
-        connection.addPacketListener(IQ_ON_DELETE_TWINCODE_SERIALIZER, this::onDeleteTwincode);
+        connection.addPacketListener(BaseServiceId.TWINCODE_FACTORY_SERVICE_ID, IQ_ON_CREATE_TWINCODE_SERIALIZER, this::onCreateTwincode);
+        connection.addPacketListener(BaseServiceId.TWINCODE_FACTORY_SERVICE_ID, IQ_ON_DELETE_TWINCODE_SERIALIZER, this::onDeleteTwincode);
     }
 
     //
@@ -297,6 +297,7 @@ public class TwincodeFactoryServiceImpl extends BaseServiceImpl<TwincodeFactoryS
                     long outboundId = cursor.getLong(2);
                     UUID twincodeOutboundId = cursor.getUUID(3);
                     transaction.deleteWithId(Tables.TWINCODE_KEYS, outboundId);
+                    mCryptoService.evictKeys(outboundId);
                     transaction.deleteWithId(Tables.SECRET_KEYS, outboundId);
                     transaction.deleteWithId(Tables.TWINCODE_OUTBOUND, outboundId);
                     mDatabaseService.evictCacheWithObjectId(twincodeOutboundId);
@@ -28,6 +28,7 @@ import org.twinlife.twinlife.TwincodeInvocation;
 import org.twinlife.twinlife.TwincodeOutbound;
 import org.twinlife.twinlife.TwinlifeImpl;
 import org.twinlife.twinlife.twincode.AcknowledgeInvocationIQ;
+import org.twinlife.twinlife.twincode.AcknowledgeInvocationsIQ;
 import org.twinlife.twinlife.twincode.GetTwincodeIQ;
 import org.twinlife.twinlife.twincode.InvokeTwincodeIQ;
 import org.twinlife.twinlife.twincode.OnGetTwincodeIQ;
@@ -42,6 +43,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 public class TwincodeInboundServiceImpl extends BaseServiceImpl<BaseService.ServiceObserver> implements TwincodeInboundService {
     private static final String LOG_TAG = "TwincodeInboundServi...";
@@ -55,6 +59,8 @@ public class TwincodeInboundServiceImpl extends BaseServiceImpl<BaseService.Serv
     private static final UUID ON_TRIGGER_PENDING_INVOCATIONS_SCHEMA_ID = UUID.fromString("b70ac369-54c9-4f42-8217-59e6f52bb8fc");
     private static final UUID ACKNOWLEDGE_INVOCATION_SCHEMA_ID = UUID.fromString("eee63e5e-8af1-41e9-9a1b-79806a0056a2");
     private static final UUID ON_ACKNOWLEDGE_INVOCATION_SCHEMA_ID = UUID.fromString("5d57d54b-2d03-4ad7-9a77-75b9b3373715");
+    private static final UUID ACKNOWLEDGE_INVOCATIONS_SCHEMA_ID = UUID.fromString("e1e7808a-2a60-4481-90e0-67a941376117");
+    private static final UUID ON_ACKNOWLEDGE_INVOCATIONS_SCHEMA_ID = UUID.fromString("4ac98cf9-9d42-4395-aa0e-8ada8001ddc8");
     private static final UUID INVOKE_TWINCODE_SCHEMA_ID = UUID.fromString("c74e79e6-5157-4fb4-bad8-2de545711fa0");
     // private static final UUID ON_INVOKE_TWINCODE_SCHEMA_ID = UUID.fromString("35d11e72-84d7-4a3b-badd-9367ef8c9e43");
     private static final UUID BIND_TWINCODE_SCHEMA_ID = UUID.fromString("afa1a19e-2af9-409d-8502-4a77e29b1d91");
@@ -70,6 +76,8 @@ public class TwincodeInboundServiceImpl extends BaseServiceImpl<BaseService.Serv
     public static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_ON_TRIGGER_PENDING_INVOCATIONS_SERIALIZER = BinaryPacketIQ.createDefaultSerializer(ON_TRIGGER_PENDING_INVOCATIONS_SCHEMA_ID, 1);
     public static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_ACKNOWLEDGE_INVOCATION_SERIALIZER = AcknowledgeInvocationIQ.createSerializer_2(ACKNOWLEDGE_INVOCATION_SCHEMA_ID, 2);
     public static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_ON_ACKNOWLEDGE_INVOCATION_SERIALIZER = BinaryPacketIQ.createDefaultSerializer(ON_ACKNOWLEDGE_INVOCATION_SCHEMA_ID, 1);
+    public static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_ACKNOWLEDGE_INVOCATIONS_SERIALIZER = AcknowledgeInvocationsIQ.createSerializer(ACKNOWLEDGE_INVOCATIONS_SCHEMA_ID, 1);
+    public static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_ON_ACKNOWLEDGE_INVOCATIONS_SERIALIZER = BinaryPacketIQ.createDefaultSerializer(ON_ACKNOWLEDGE_INVOCATIONS_SCHEMA_ID, 1);
     public static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_INVOKE_TWINCODE_SERIALIZER = InvokeTwincodeIQ.createSerializer(INVOKE_TWINCODE_SCHEMA_ID, 2);
     // public static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_ON_INVOKE_TWINCODE_SERIALIZER = InvocationIQ.createSerializer(ON_INVOKE_TWINCODE_SCHEMA_ID, 1);
     public static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_BIND_TWINCODE_SERIALIZER = GetTwincodeIQ.createSerializer(BIND_TWINCODE_SCHEMA_ID, 1);
@@ -77,24 +85,30 @@ public class TwincodeInboundServiceImpl extends BaseServiceImpl<BaseService.Serv
     public static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_ON_BIND_TWINCODE_SERIALIZER = BinaryPacketIQ.createDefaultSerializer(ON_BIND_TWINCODE_SCHEMA_ID, 1);
     public static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_ON_UNBIND_TWINCODE_SERIALIZER = BinaryPacketIQ.createDefaultSerializer(ON_UNBIND_TWINCODE_SCHEMA_ID, 1);
 
+    private static final int DECRYPT_THREAD_COUNT = 2;
+    private static final int MAX_ACKNOWLEDGE_BATCH = 64;
+
     // Record a list of invocations being processed for a specific twincode inbound id.
     // We want to process only one invocation at a time for a given twincode and we record
-    // in `waitingInvocations` the list of invocations to process.
+    // in `waitingInvocations` the list of invocations to process.  The invocations are executed
+    // in the order they are received (the `invocationList` order) even when they are decrypted
+    // out of order.
     // A list of code blocks is recorded in case the `waitInvocationsForTwincode()` wants
     // to execute some code and it will be executed when every invocation for that twincode
     // has been processed.
-    private static class PendingInvocation {
+    static class PendingInvocation {
         final UUID twincodeId;
-        final WeakReference<RepositoryObject> subject;
+        @Nullable
+        WeakReference<RepositoryObject> subject;
         final List<UUID> invocationList;
         @Nullable
         List<Runnable> waitingRunnables;
         @Nullable
         List<TwincodeInvocation> waitingInvocations;
 
-        PendingInvocation(@NonNull UUID twincodeId, @NonNull UUID invocationId, @NonNull RepositoryObject subject) {
+        PendingInvocation(@NonNull UUID twincodeId, @NonNull UUID invocationId) {
             this.twincodeId = twincodeId;
-            this.subject = new WeakReference<>(subject);
+            this.subject = null;
             this.invocationList = new ArrayList<>();
             this.invocationList.add(invocationId);
             this.waitingRunnables = null;
@@ -112,6 +126,36 @@ public class TwincodeInboundServiceImpl extends BaseServiceImpl<BaseService.Serv
             waitingInvocations.add(invocation);
             return true;
         }
+
+        @Nullable
+        public TwincodeInvocation finish(@NonNull UUID invocationId) {
+            // Remove the invocation which was executed and get the next one if it is ready to be executed.
+            this.invocationList.remove(invocationId);
+            return next();
+        }
+
+        @Nullable
+        public TwincodeInvocation next() {
+            // Get the invocation that is now first in `invocationList` if it is ready to be executed.
+            if (this.invocationList.isEmpty() || waitingInvocations == null) {
+                return null;
+            }
+            final UUID invocationId = this.invocationList.get(0);
+            for (int i = 0; i < waitingInvocations.size(); i++) {
+                if (invocationId.equals(waitingInvocations.get(i).invocationId)) {
+                    return waitingInvocations.remove(i);
+                }
+            }
+            return null;
+        }
+    }
+
+    static class DecryptThreadFactory implements ThreadFactory {
+
+        public Thread newThread(@NonNull Runnable runnable) {
+
+            return new Thread(runnable, "twinlife-decrypt");
+        }
     }
 
     private static class PendingRequest {
@@ -171,11 +215,64 @@ public class TwincodeInboundServiceImpl extends BaseServiceImpl<BaseService.Serv
         }
     }
 
+    private static final class AcknowledgePendingRequest extends PendingRequest {
+        @NonNull
+        final List<AcknowledgeInvocationsIQ.Acknowledge> acknowledges;
+
+        AcknowledgePendingRequest(@NonNull List<AcknowledgeInvocationsIQ.Acknowledge> acknowledges) {
+            this.acknowledges = acknowledges;
+        }
+    }
+
+    // Record the acknowledges of a batch that timed out and which are sent again one by one.
+    // When all of them are acknowledged by the server, the server is not able to handle the batch IQ
+    // and the batch is not used until the next sign in.
+    static final class AcknowledgeRetry {
+        private int pendingCount;
+        private boolean failed;
+
+        AcknowledgeRetry(int count) {
+            this.pendingCount = count;
+        }
+
+        /**
+         * One acknowledge was received by the server.
+         *
+         * @return true when this was the last acknowledge and every acknowledge was received.
+         */
+        synchronized boolean succeeded() {
+            pendingCount--;
+            return pendingCount == 0 && !failed;
+        }
+
+        /**
+         * One acknowledge failed: the batch timeout is not caused by the server.
+         */
+        synchronized void failed() {
+            pendingCount--;
+            failed = true;
+        }
+    }
+
+    private static final class AcknowledgeRetryPendingRequest extends PendingRequest {
+        @NonNull
+        final AcknowledgeRetry retry;
+
+        AcknowledgeRetryPendingRequest(@NonNull AcknowledgeRetry retry) {
+            this.retry = retry;
+        }
+    }
+
     private final TwincodeInboundServiceProvider mServiceProvider;
     private final HashMap<Long, PendingRequest> mPendingRequests = new HashMap<>();
     private final CryptoService mCryptoService;
     private final HashMap<String, InvocationListener> mInvocationListeners = new HashMap<>();
     private final HashMap<UUID, PendingInvocation> mPendingInvocations = new HashMap<>();
+    private final HashMap<UUID, PendingInvocation> mPendingTwincodes = new HashMap<>();
+    private final List<AcknowledgeInvocationsIQ.Acknowledge> mPendingAcknowledges = new ArrayList<>();
+    private boolean mAcknowledgeScheduled;
+    private volatile boolean mBatchAcknowledge = true;
+    private final ExecutorService mDecryptExecutor;
 
     public TwincodeInboundServiceImpl(@NonNull TwinlifeImpl twinlifeImpl, @NonNull Connection connection) {
 
@@ -184,16 +281,18 @@ public class TwincodeInboundServiceImpl extends BaseServiceImpl<BaseService.Serv
         setServiceConfiguration(new TwincodeInboundServiceConfiguration());
 
         // Register the binary IQ handlers for the invoke twincode event.
-        connection.addPacketListener(IQ_INVOKE_TWINCODE_SERIALIZER, this::onInvokeTwincode);
-        connection.addPacketListener(IQ_ON_GET_TWINCODE_SERIALIZER, this::onGetTwincode);
-        connection.addPacketListener(IQ_ON_UPDATE_TWINCODE_SERIALIZER, this::onUpdateTwincode);
-        connection.addPacketListener(IQ_ON_TRIGGER_PENDING_INVOCATIONS_SERIALIZER, this::onTriggerPendingInvocations);
-        connection.addPacketListener(IQ_ON_ACKNOWLEDGE_INVOCATION_SERIALIZER, this::onAcknowledgeInvocation);
-        connection.addPacketListener(IQ_ON_BIND_TWINCODE_SERIALIZER, this::onBindTwincode);
-        connection.addPacketListener(IQ_ON_UNBIND_TWINCODE_SERIALIZER, this::onUnbindTwincode);
+        connection.addPacketListener(BaseServiceId.TWINCODE_INBOUND_SERVICE_ID, IQ_INVOKE_TWINCODE_SERIALIZER, this::onInvokeTwincode);
+        connection.addPacketListener(BaseServiceId.TWINCODE_INBOUND_SERVICE_ID, IQ_ON_GET_TWINCODE_SERIALIZER, this::onGetTwincode);
+        connection.addPacketListener(BaseServiceId.TWINCODE_INBOUND_SERVICE_ID, IQ_ON_UPDATE_TWINCODE_SERIALIZER, this::onUpdateTwincode);
+        connection.addPacketListener(BaseServiceId.TWINCODE_INBOUND_SERVICE_ID, IQ_ON_TRIGGER_PENDING_INVOCATIONS_SERIALIZER, this::onTriggerPendingInvocations);
+        connection.addPacketListener(BaseServiceId.TWINCODE_INBOUND_SERVICE_ID, IQ_ON_ACKNOWLEDGE_INVOCATION_SERIALIZER, this::onAcknowledgeInvocation);
+        connection.addPacketListener(BaseServiceId.TWINCODE_INBOUND_SERVICE_ID, IQ_ON_ACKNOWLEDGE_INVOCATIONS_SERIALIZER, this::onAcknowledgeInvocations);
+        connection.addPacketListener(BaseServiceId.TWINCODE_INBOUND_SERVICE_ID, IQ_ON_BIND_TWINCODE_SERIALIZER, this::onBindTwincode);
+        connection.addPacketListener(BaseServiceId.TWINCODE_INBOUND_SERVICE_ID, IQ_ON_UNBIND_TWINCODE_SERIALIZER, this::onUnbindTwincode);
 
         mServiceProvider = new TwincodeInboundServiceProvider(this, twinlifeImpl.getDatabaseService());
         mCryptoService = twinlifeImpl.getCryptoService();
+        mDecryptExecutor = Executors.newFixedThreadPool(DECRYPT_THREAD_COUNT, new DecryptThreadFactory());
     }
 
     //
@@ -219,6 +318,18 @@ public class TwincodeInboundServiceImpl extends BaseServiceImpl<BaseService.Serv
         setConfigured(true);
     }
 
+    @Override
+    public void onSignIn() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "onSignIn");
+        }
+
+        super.onSignIn();
+
+        // The server may have been upgraded while we were disconnected: try the batch again.
+        mBatchAcknowledge = true;
+    }
+
     @Override
     public void onSignOut() {
         if (DEBUG) {
@@ -232,6 +343,17 @@ public class TwincodeInboundServiceImpl extends BaseServiceImpl<BaseService.Serv
         }
     }
 
+    @Override
+    public void onDestroy() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "onDestroy");
+        }
+
+        super.onDestroy();
+
+        mDecryptExecutor.shutdownNow();
+    }
+
     //
     // Implement TwincodeInboundService interface
     //
@@ -355,8 +477,7 @@ public class TwincodeInboundServiceImpl extends BaseServiceImpl<BaseService.Serv
             errorCode = ErrorCode.EXPIRED;
         }
 
-        final AcknowledgeInvocationIQ invocationIQ = new AcknowledgeInvocationIQ(IQ_ACKNOWLEDGE_INVOCATION_SERIALIZER, newRequestId(), invocationId, errorCode);
-        sendDataPacket(invocationIQ, DEFAULT_REQUEST_TIMEOUT);
+        queueAcknowledge(invocationId, errorCode);
 
         finishInvocation(invocationId);
     }
@@ -394,21 +515,16 @@ public class TwincodeInboundServiceImpl extends BaseServiceImpl<BaseService.Serv
             Log.d(LOG_TAG, "waitInvocations twincodeId=" + twincodeId);
         }
 
-        // If we have pending invocations, check if there is one for the given twincode inbound.
-        // When found, the code block is appended to the waiting list and will be executed when
-        // all invocations are processed.  The number of invocations received is in most cases
-        // zero or one and rarely exceeds 5.
+        // If we have pending invocations for the given twincode inbound, the code block is appended
+        // to the waiting list and will be executed when all invocations are processed.
         synchronized (mPendingInvocations) {
-            if (!mPendingInvocations.isEmpty()) {
-                for (PendingInvocation checkInvocation : mPendingInvocations.values()) {
-                    if (twincodeId.equals(checkInvocation.twincodeId)) {
-                        if (checkInvocation.waitingRunnables == null) {
-                            checkInvocation.waitingRunnables = new ArrayList<>();
-                        }
-                        checkInvocation.waitingRunnables.add(complete);
-                        return;
-                    }
+            final PendingInvocation pendingInvocation = mPendingTwincodes.get(twincodeId);
+            if (pendingInvocation != null) {
+                if (pendingInvocation.waitingRunnables == null) {
+                    pendingInvocation.waitingRunnables = new ArrayList<>();
                 }
+                pendingInvocation.waitingRunnables.add(complete);
+                return;
             }
         }
 
@@ -441,13 +557,12 @@ public class TwincodeInboundServiceImpl extends BaseServiceImpl<BaseService.Serv
             if (pendingInvocation == null) {
                 return;
             }
-            pendingInvocation.invocationList.remove(invocationId);
+            twincodeInvocation = pendingInvocation.finish(invocationId);
 
-            if (pendingInvocation.waitingInvocations == null || pendingInvocation.waitingInvocations.isEmpty()) {
-                twincodeInvocation = null;
-                waitingRunnables = pendingInvocation.invocationList.isEmpty() ? pendingInvocation.waitingRunnables : null;
+            if (pendingInvocation.invocationList.isEmpty()) {
+                mPendingTwincodes.remove(pendingInvocation.twincodeId);
+                waitingRunnables = pendingInvocation.waitingRunnables;
             } else {
-                twincodeInvocation = pendingInvocation.waitingInvocations.remove(0);
                 waitingRunnables = null;
             }
         }
@@ -566,27 +681,27 @@ public class TwincodeInboundServiceImpl extends BaseServiceImpl<BaseService.Serv
         final RepositoryService repositoryService = mTwinlifeImpl.getRepositoryService();
         final UUID twincodeId = onInvokeTwincodeIQ.getTwincodeId();
 
-        PendingInvocation pendingInvocation;
+        final PendingInvocation pendingInvocation;
         RepositoryObject subject = null;
         synchronized (mPendingInvocations) {
             // Check if the invocation is already being processed.
             // This occurs if we disconnect and re-connect before having time to process the invocation.
-            pendingInvocation = mPendingInvocations.get(invocationId);
-            if (pendingInvocation != null) {
+            if (mPendingInvocations.containsKey(invocationId)) {
                 return;
             }
 
-            // Check for another invocation on the same twincode (this is rare but it happens
-            // and must be handled for waitInvocationsForTwincode).
-            for (PendingInvocation checkInvocation : mPendingInvocations.values()) {
-                if (twincodeId.equals(checkInvocation.twincodeId)) {
-                    pendingInvocation = checkInvocation;
-                    pendingInvocation.invocationList.add(invocationId);
-                    subject = pendingInvocation.subject.get();
-                    mPendingInvocations.put(invocationId, pendingInvocation);
-                    break;
-                }
+            // Check for another invocation on the same twincode: this is rare except after
+            // triggerPendingInvocations() and must be handled for waitInvocationsForTwincode.
+            PendingInvocation checkInvocation = mPendingTwincodes.get(twincodeId);
+            if (checkInvocation == null) {
+                checkInvocation = new PendingInvocation(twincodeId, invocationId);
+                mPendingTwincodes.put(twincodeId, checkInvocation);
+            } else {
+                checkInvocation.invocationList.add(invocationId);
+                subject = checkInvocation.subject == null ? null : checkInvocation.subject.get();
             }
+            pendingInvocation = checkInvocation;
+            mPendingInvocations.put(invocationId, pendingInvocation);
         }
 
         // And if we know the subject, no need to look again in the database.
@@ -594,49 +709,63 @@ public class TwincodeInboundServiceImpl extends BaseServiceImpl<BaseService.Serv
             subject = repositoryService.findObject(twincodeId);
             if (subject == null || subject.getTwincodeOutbound() == null) {
                 // Send the ITEM_NOT_FOUND error so that the server is aware we don't recognize the twincode inbound anymore.
-                final AcknowledgeInvocationIQ invocationIQ = new AcknowledgeInvocationIQ(IQ_ACKNOWLEDGE_INVOCATION_SERIALIZER,
-                        newRequestId(), invocationId, ErrorCode.ITEM_NOT_FOUND);
-                sendDataPacket(invocationIQ, DEFAULT_REQUEST_TIMEOUT);
+                queueAcknowledge(invocationId, ErrorCode.ITEM_NOT_FOUND);
 
                 // Finish manually this invocation.
                 finishInvocation(invocationId);
                 return;
             }
+            synchronized (mPendingInvocations) {
+                pendingInvocation.subject = new WeakReference<>(subject);
+            }
         }
 
         final byte[] data = onInvokeTwincodeIQ.getData();
-        final TwincodeInvocation invocation;
         if (data != null) {
             final TwincodeOutbound twincodeOutbound = subject.getTwincodeOutbound();
             if (twincodeOutbound == null) {
                 acknowledgeInvocation(invocationId, ErrorCode.ITEM_NOT_FOUND);
                 return;
             }
-            final CryptoService.DecipherResult cipherResult = mCryptoService.decrypt(twincodeOutbound, data);
-            if (cipherResult.errorCode != ErrorCode.SUCCESS) {
-                acknowledgeInvocation(invocationId, cipherResult.errorCode);
-                return;
-            }
-            invocation = new TwincodeInvocation(onInvokeTwincodeIQ.getInvocationId(), subject, onInvokeTwincodeIQ.getActionName(),
-                    cipherResult.attributes, cipherResult.peerTwincodeId, cipherResult.keyIndex, cipherResult.secretKey,
-                    cipherResult.publicKey, cipherResult.trustMethod);
+
+            // Decrypt outside of the service dispatch lane so that a burst of invocations is not
+            // serialized on the decryption: the execution order is restored by the PendingInvocation.
+            final RepositoryObject invocationSubject = subject;
+            mDecryptExecutor.execute(() -> decryptInvocation(pendingInvocation, onInvokeTwincodeIQ, invocationSubject,
+                    twincodeOutbound, data));
         } else {
-            invocation = new TwincodeInvocation(onInvokeTwincodeIQ.getInvocationId(), subject, onInvokeTwincodeIQ.getActionName(),
-                    onInvokeTwincodeIQ.getAttributes(), null, 0, null, null, TrustMethod.NONE);
+            dispatchInvocation(pendingInvocation, new TwincodeInvocation(invocationId, subject, onInvokeTwincodeIQ.getActionName(),
+                    onInvokeTwincodeIQ.getAttributes(), null, 0, null, null, TrustMethod.NONE));
+        }
+    }
+
+    private void decryptInvocation(@NonNull PendingInvocation pendingInvocation, @NonNull InvokeTwincodeIQ invokeTwincodeIQ,
+                                   @NonNull RepositoryObject subject, @NonNull TwincodeOutbound twincodeOutbound,
+                                   @NonNull byte[] data) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "decryptInvocation: invokeTwincodeIQ=" + invokeTwincodeIQ);
+        }
+
+        final UUID invocationId = invokeTwincodeIQ.getInvocationId();
+        final CryptoService.DecipherResult cipherResult = mCryptoService.decrypt(twincodeOutbound, data);
+        if (cipherResult.errorCode != ErrorCode.SUCCESS) {
+            acknowledgeInvocation(invocationId, cipherResult.errorCode);
+            return;
+        }
+
+        dispatchInvocation(pendingInvocation, new TwincodeInvocation(invocationId, subject, invokeTwincodeIQ.getActionName(),
+                cipherResult.attributes, cipherResult.peerTwincodeId, cipherResult.keyIndex, cipherResult.secretKey,
+                cipherResult.publicKey, cipherResult.trustMethod));
+    }
+
+    private void dispatchInvocation(@NonNull PendingInvocation pendingInvocation, @NonNull TwincodeInvocation invocation) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "dispatchInvocation: invocation=" + invocation);
         }
 
-        // This twincode is having its first invocation, remember it.
         final boolean queued;
-        if (pendingInvocation == null) {
-            pendingInvocation = new PendingInvocation(twincodeId, invocationId, subject);
-            synchronized (mPendingInvocations) {
-                mPendingInvocations.put(invocationId, pendingInvocation);
-            }
-            queued = false;
-        } else {
-            synchronized (mPendingInvocations) {
-                queued = pendingInvocation.queue(invocation);
-            }
+        synchronized (mPendingInvocations) {
+            queued = pendingInvocation.queue(invocation);
         }
         if (!queued) {
             executeInvocation(invocation);
@@ -669,12 +798,116 @@ public class TwincodeInboundServiceImpl extends BaseServiceImpl<BaseService.Serv
         });
     }
 
+    private void queueAcknowledge(@NonNull UUID invocationId, @NonNull ErrorCode errorCode) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "queueAcknowledge: invocationId=" + invocationId + " errorCode=" + errorCode);
+        }
+
+        if (!mBatchAcknowledge) {
+            sendAcknowledge(invocationId, errorCode, null);
+            return;
+        }
+
+        // The acknowledges are sent by the twinlife executor after the invocations it has already
+        // queued are handled: a burst of invocations is acknowledged with a few packets.
+        final boolean flush;
+        final boolean schedule;
+        synchronized (mPendingAcknowledges) {
+            mPendingAcknowledges.add(new AcknowledgeInvocationsIQ.Acknowledge(invocationId, errorCode));
+            flush = mPendingAcknowledges.size() >= MAX_ACKNOWLEDGE_BATCH;
+            schedule = !flush && !mAcknowledgeScheduled;
+            if (schedule) {
+                mAcknowledgeScheduled = true;
+            }
+        }
+        if (flush) {
+            flushAcknowledges();
+        } else if (schedule) {
+            mTwinlifeExecutor.execute(this::flushAcknowledges);
+        }
+    }
+
+    private void flushAcknowledges() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "flushAcknowledges");
+        }
+
+        final List<AcknowledgeInvocationsIQ.Acknowledge> acknowledges;
+        synchronized (mPendingAcknowledges) {
+            mAcknowledgeScheduled = false;
+            if (mPendingAcknowledges.isEmpty()) {
+                return;
+            }
+            acknowledges = new ArrayList<>(mPendingAcknowledges);
+            mPendingAcknowledges.clear();
+        }
+
+        if (acknowledges.size() == 1 || !mBatchAcknowledge) {
+            for (AcknowledgeInvocationsIQ.Acknowledge acknowledge : acknowledges) {
+                sendAcknowledge(acknowledge.invocationId, acknowledge.errorCode, null);
+            }
+            return;
+        }
+
+        final long requestId = newRequestId();
+        synchronized (mPendingRequests) {
+            mPendingRequests.put(requestId, new AcknowledgePendingRequest(acknowledges));
+        }
+
+        final AcknowledgeInvocationsIQ acknowledgeInvocationsIQ = new AcknowledgeInvocationsIQ(IQ_ACKNOWLEDGE_INVOCATIONS_SERIALIZER,
+                requestId, acknowledges);
+        sendDataPacket(acknowledgeInvocationsIQ, DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    private void sendAcknowledge(@NonNull UUID invocationId, @NonNull ErrorCode errorCode,
+                                 @Nullable AcknowledgeRetry retry) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "sendAcknowledge: invocationId=" + invocationId + " errorCode=" + errorCode);
+        }
+
+        final long requestId = newRequestId();
+        if (retry != null) {
+            synchronized (mPendingRequests) {
+                mPendingRequests.put(requestId, new AcknowledgeRetryPendingRequest(retry));
+            }
+        }
+
+        final AcknowledgeInvocationIQ invocationIQ = new AcknowledgeInvocationIQ(IQ_ACKNOWLEDGE_INVOCATION_SERIALIZER,
+                requestId, invocationId, errorCode);
+        sendDataPacket(invocationIQ, DEFAULT_REQUEST_TIMEOUT);
+    }
+
     private void onAcknowledgeInvocation(@NonNull BinaryPacketIQ iq) {
         if (DEBUG) {
             Log.d(LOG_TAG, "onAcknowledgeInvocation: iq=" + iq);
         }
 
-        receivedIQ(iq.getRequestId());
+        final long requestId = iq.getRequestId();
+        receivedIQ(requestId);
+
+        final PendingRequest request;
+        synchronized (mPendingRequests) {
+            request = mPendingRequests.remove(requestId);
+        }
+
+        // The acknowledges of a batch that timed out are received one by one: the server does not answer
+        // the batch IQ, use one IQ per invocation until the next sign in.
+        if (request instanceof AcknowledgeRetryPendingRequest && ((AcknowledgeRetryPendingRequest) request).retry.succeeded()) {
+            mBatchAcknowledge = false;
+        }
+    }
+
+    private void onAcknowledgeInvocations(@NonNull BinaryPacketIQ iq) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "onAcknowledgeInvocations: iq=" + iq);
+        }
+
+        final long requestId = iq.getRequestId();
+        receivedIQ(requestId);
+
+        synchronized (mPendingRequests) {
+            mPendingRequests.remove(requestId);
+        }
     }
 
     private void onTriggerPendingInvocations(@NonNull BinaryPacketIQ iq) {
@@ -732,6 +965,32 @@ public class TwincodeInboundServiceImpl extends BaseServiceImpl<BaseService.Serv
                 mServiceProvider.deleteObject(updatePendingRequest.twincodeInbound);
             }
             updatePendingRequest.complete.onGet(iq.getErrorCode(), null);
+        } else if (request instanceof AcknowledgePendingRequest) {
+            final AcknowledgePendingRequest acknowledgePendingRequest = (AcknowledgePendingRequest) request;
+
+            // The acknowledges are lost when we are disconnected (the server will send the invocations again).
+            // A server which does not know the batch IQ rejects it with BAD_REQUEST or FEATURE_NOT_IMPLEMENTED:
+            // use one IQ per invocation until the next sign in.  When the batch times out while we are connected,
+            // the acknowledges are sent again one by one and the batch is disabled if they all succeed.
+            // For other errors, only this batch is sent again.
+            final ErrorCode errorCode = iq.getErrorCode();
+            if (errorCode != ErrorCode.TWINLIFE_OFFLINE || isSignIn()) {
+                if (errorCode == ErrorCode.BAD_REQUEST || errorCode == ErrorCode.FEATURE_NOT_IMPLEMENTED) {
+                    mBatchAcknowledge = false;
+                }
+                final AcknowledgeRetry retry;
+                if (errorCode == ErrorCode.TWINLIFE_OFFLINE) {
+                    retry = new AcknowledgeRetry(acknowledgePendingRequest.acknowledges.size());
+                } else {
+                    retry = null;
+                }
+                for (AcknowledgeInvocationsIQ.Acknowledge acknowledge : acknowledgePendingRequest.acknowledges) {
+                    sendAcknowledge(acknowledge.invocationId, acknowledge.errorCode, retry);
+                }
+            }
+
+        } else if (request instanceof AcknowledgeRetryPendingRequest) {
+            ((AcknowledgeRetryPendingRequest) request).retry.failed();
         }
     }
 }
@@ -1,5 +1,5 @@
 /*
- *  Copyright (c) 2014-2021 twinlife SA.
+ *  Copyright (c) 2014-2025 twinlife SA.
  *  SPDX-License-Identifier: AGPL-3.0-only
  *
  *  Contributors:
@@ -30,6 +30,7 @@ import org.twinlife.twinlife.database.DatabaseServiceProvider;
 import org.twinlife.twinlife.database.Tables;
 import org.twinlife.twinlife.database.Transaction;
 import org.twinlife.twinlife.database.TwincodeObjectFactory;
+import org.twinlife.twinlife.util.Utils;
 
 import java.util.List;
 import java.util.UUID;
@@ -43,7 +44,7 @@ class TwincodeInboundServiceProvider extends DatabaseServiceProvider implements
     /**
      * twincodeInbound table:
      * id INTEGER: local database identifier (primary key)
-     * twincodeId TEXT UNIQUE NOT NULL: twincode inbound id
+     * twincodeId BLOB UNIQUE NOT NULL: twincode inbound id (16 bytes UUID, TEXT before V29)
      * factoryId TEXT: the factory that created this twincode.
      * twincodeOutbound INTEGER: the associated twincode outbound.
      * capabilities TEXT: capabilities attribute
@@ -54,7 +55,7 @@ class TwincodeInboundServiceProvider extends DatabaseServiceProvider implements
      */
     private static final String TWINCODE_INBOUND_CREATE_TABLE =
             "CREATE TABLE IF NOT EXISTS twincodeInbound (id INTEGER PRIMARY KEY,"
-                    + " twincodeId TEXT UNIQUE NOT NULL, factoryId TEXT, twincodeOutbound INTEGER,"
+                    + " twincodeId BLOB UNIQUE NOT NULL, factoryId TEXT, twincodeOutbound INTEGER,"
                     + " capabilities TEXT,"
                     + " modificationDate INTEGER NOT NULL, attributes BLOB)";
 
@@ -172,7 +173,7 @@ class TwincodeInboundServiceProvider extends DatabaseServiceProvider implements
 
         ContentValues values = new ContentValues();
         values.put(Columns.ID, identifier.getId());
-        values.put(Columns.TWINCODE_ID, twincodeId.toString());
+        values.put(Columns.TWINCODE_ID, Utils.toBytes(twincodeId));
         values.put(Columns.CAPABILITIES, twincodeInbound.getCapabilities());
         values.put(Columns.MODIFICATION_DATE, modificationDate);
         if (twincodeInbound.getTwincodeFactoryId() != null) {
@@ -264,22 +265,21 @@ class TwincodeInboundServiceProvider extends DatabaseServiceProvider implements
         }
 
         try (Transaction transaction = newTransaction()) {
-            try (DatabaseCursor cursor = mDatabase.rawQuery("SELECT"
+            final Long id = mDatabase.longQuery("SELECT"
                     + " ti.id"
                     + " FROM twincodeInbound AS ti"
-                    + " WHERE ti.twincodeId = ?", new String[]{ twincodeId.toString() })) {
-                if (cursor.moveToNext()) {
-                    final DatabaseObject object = mDatabase.getCache(new DatabaseIdentifier(this, cursor.getLong(0)));
-                    if (object instanceof TwincodeInbound) {
-                        return (TwincodeInbound) object;
-                    }
-                    return mDatabase.loadTwincodeInbound(twincodeId);
-                } else {
-                    final TwincodeInbound result = transaction.storeTwincodeInbound(twincodeId, twincodeOutbound, null,
-                            attributes, 0, modificationDate);
-                    transaction.commit();
-                    return result;
+                    + " WHERE ti.twincodeId = ?", new Object[]{ Utils.toBytes(twincodeId) });
+            if (id != null) {
+                final DatabaseObject object = mDatabase.getCache(new DatabaseIdentifier(this, id));
+                if (object instanceof TwincodeInbound) {
+                    return (TwincodeInbound) object;
                 }
+                return mDatabase.loadTwincodeInbound(twincodeId);
+            } else {
+                final TwincodeInbound result = transaction.storeTwincodeInbound(twincodeId, twincodeOutbound, null,
+                        attributes, 0, modificationDate);
+                transaction.commit();
+                return result;
             }
         } catch (Exception exception) {
             mService.onDatabaseException(exception);
@@ -0,0 +1,282 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.twincode.outbound;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.twinlife.twinlife.BaseService.ErrorCode;
+import org.twinlife.twinlife.Consumer;
+import org.twinlife.twinlife.TwincodeOutbound;
+import org.twinlife.twinlife.twincode.GetTwincodeInfo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Coalesce the twincodes fetched from the server by the twincode outbound service.
+ * <p>
+ * - a twincode which is already being fetched is not requested again: the caller waits for the pending fetch
+ *   and the longest refresh period of the callers is used to import the twincode,
+ * - when nothing is queued or being fetched, the twincode is requested immediately with a GetTwincodeIQ,
+ * - otherwise the twincode is queued and the queue is sent FETCH_TWINCODE_DELAY ms later with GetTwincodesIQ
+ *   by groups of MAX_FETCH_TWINCODES, and each response is imported in a single transaction,
+ * - when the server does not know the GetTwincodesIQ, the twincodes are fetched with one GetTwincodeIQ each
+ *   until the next sign in.
+ */
+final class TwincodeFetcher {
+    private static final String LOG_TAG = "TwincodeFetcher";
+    private static final boolean DEBUG = false;
+
+    static final long FETCH_TWINCODE_DELAY = 20; // ms
+    static final int MAX_FETCH_TWINCODES = 64;
+
+    /**
+     * Operations provided by the twincode outbound service to send the requests and save the twincodes.
+     */
+    interface Transport {
+
+        void schedule(@NonNull Runnable runnable, long delay);
+
+        void sendGetTwincodes(@NonNull List<UUID> twincodeIds);
+
+        void sendGetTwincode(@NonNull UUID twincodeId);
+
+        @Nullable
+        Map<UUID, TwincodeOutbound> importTwincodes(@NonNull List<GetTwincodeInfo> twincodes,
+                                                    @NonNull Map<UUID, Long> refreshPeriods);
+
+        void evictTwincode(@NonNull UUID twincodeId);
+    }
+
+    // A twincode being fetched from the server with the list of completion handlers waiting for it.
+    private static final class FetchTwincode {
+        long refreshPeriod;
+        @NonNull
+        final List<Consumer<TwincodeOutbound>> completes;
+
+        FetchTwincode(long refreshPeriod, @NonNull Consumer<TwincodeOutbound> complete) {
+            this.refreshPeriod = refreshPeriod;
+            this.completes = new ArrayList<>();
+            this.completes.add(complete);
+        }
+    }
+
+    @NonNull
+    private final Transport mTransport;
+    private final HashMap<UUID, FetchTwincode> mFetchTwincodes = new HashMap<>();
+    private final List<UUID> mFetchQueue = new ArrayList<>();
+    private boolean mFetchScheduled;
+    private volatile boolean mBatchFetch = true;
+
+    TwincodeFetcher(@NonNull Transport transport) {
+
+        mTransport = transport;
+    }
+
+    /**
+     * Fetch the twincode from the server and call the complete handler when it is received.
+     *
+     * @param twincodeId the twincode to fetch.
+     * @param refreshPeriod the refresh period to import the twincode.
+     * @param complete the handler called with the twincode.
+     */
+    void fetch(@NonNull UUID twincodeId, long refreshPeriod, @NonNull Consumer<TwincodeOutbound> complete) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "fetch: twincodeId=" + twincodeId + " refreshPeriod=" + refreshPeriod);
+        }
+
+        final boolean sendNow;
+        synchronized (mFetchTwincodes) {
+            final FetchTwincode fetchTwincode = mFetchTwincodes.get(twincodeId);
+            if (fetchTwincode != null) {
+                fetchTwincode.completes.add(complete);
+                fetchTwincode.refreshPeriod = Math.max(fetchTwincode.refreshPeriod, refreshPeriod);
+                return;
+            }
+
+            sendNow = mFetchTwincodes.isEmpty();
+            mFetchTwincodes.put(twincodeId, new FetchTwincode(refreshPeriod, complete));
+            if (!sendNow) {
+                mFetchQueue.add(twincodeId);
+                if (!mFetchScheduled) {
+                    mFetchScheduled = true;
+                    mTransport.schedule(this::sendQueue, FETCH_TWINCODE_DELAY);
+                }
+            }
+        }
+        if (sendNow) {
+            mTransport.sendGetTwincode(twincodeId);
+        }
+    }
+
+    /**
+     * Send the queued twincodes.
+     */
+    void sendQueue() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "sendQueue");
+        }
+
+        final List<UUID> twincodeIds;
+        synchronized (mFetchTwincodes) {
+            mFetchScheduled = false;
+            if (mFetchQueue.isEmpty()) {
+                return;
+            }
+            twincodeIds = new ArrayList<>(mFetchQueue);
+            mFetchQueue.clear();
+        }
+
+        if (twincodeIds.size() == 1 || !mBatchFetch) {
+            for (UUID twincodeId : twincodeIds) {
+                mTransport.sendGetTwincode(twincodeId);
+            }
+            return;
+        }
+
+        for (int start = 0; start < twincodeIds.size(); start += MAX_FETCH_TWINCODES) {
+            mTransport.sendGetTwincodes(new ArrayList<>(twincodeIds.subList(start, Math.min(twincodeIds.size(), start + MAX_FETCH_TWINCODES))));
+        }
+    }
+
+    /**
+     * Get the refresh period to import the twincode being fetched.
+     *
+     * @param twincodeId the twincode.
+     * @return the refresh period or null if the twincode is not being fetched.
+     */
+    @Nullable
+    Long getRefreshPeriod(@NonNull UUID twincodeId) {
+
+        synchronized (mFetchTwincodes) {
+            final FetchTwincode fetchTwincode = mFetchTwincodes.get(twincodeId);
+            return fetchTwincode == null ? null : fetchTwincode.refreshPeriod;
+        }
+    }
+
+    /**
+     * Import the twincodes received for a GetTwincodesIQ and call the complete handlers.
+     *
+     * @param twincodeIds the twincodes which were requested.
+     * @param twincodes the twincodes returned by the server.
+     * @param unknownTwincodeIds the twincodes which are not known by the server.
+     */
+    void onGetTwincodes(@NonNull List<UUID> twincodeIds, @NonNull List<GetTwincodeInfo> twincodes,
+                        @NonNull List<UUID> unknownTwincodeIds) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "onGetTwincodes: twincodeIds=" + twincodeIds.size() + " twincodes=" + twincodes.size());
+        }
+
+        final Map<UUID, Long> refreshPeriods = new HashMap<>();
+        synchronized (mFetchTwincodes) {
+            for (UUID twincodeId : twincodeIds) {
+                final FetchTwincode fetchTwincode = mFetchTwincodes.get(twincodeId);
+                if (fetchTwincode != null) {
+                    refreshPeriods.put(twincodeId, fetchTwincode.refreshPeriod);
+                }
+            }
+        }
+
+        // Save every twincode in a single transaction.
+        final Map<UUID, TwincodeOutbound> result = mTransport.importTwincodes(twincodes, refreshPeriods);
+        for (UUID twincodeId : unknownTwincodeIds) {
+            if (refreshPeriods.containsKey(twincodeId)) {
+                mTransport.evictTwincode(twincodeId);
+            }
+        }
+        for (UUID twincodeId : twincodeIds) {
+            final TwincodeOutbound twincodeOutbound = result == null ? null : result.get(twincodeId);
+            if (twincodeOutbound != null) {
+                finish(twincodeId, ErrorCode.SUCCESS, twincodeOutbound);
+            } else if (result == null) {
+                finish(twincodeId, ErrorCode.NO_STORAGE_SPACE, null);
+            } else {
+                finish(twincodeId, ErrorCode.ITEM_NOT_FOUND, null);
+            }
+        }
+    }
+
+    /**
+     * Handle the error returned for a GetTwincodesIQ.
+     *
+     * @param twincodeIds the twincodes which were requested.
+     * @param errorCode the error code.
+     * @param signIn whether the service is signed in.
+     */
+    void onGetTwincodesError(@NonNull List<UUID> twincodeIds, @NonNull ErrorCode errorCode, boolean signIn) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "onGetTwincodesError: twincodeIds=" + twincodeIds.size() + " errorCode=" + errorCode);
+        }
+
+        // When we are disconnected, report the error to every twincode.
+        if (errorCode == ErrorCode.TWINLIFE_OFFLINE && !signIn) {
+            for (UUID twincodeId : twincodeIds) {
+                finish(twincodeId, errorCode, null);
+            }
+            return;
+        }
+
+        // A server which does not know the GetTwincodesIQ rejects it with BAD_REQUEST or FEATURE_NOT_IMPLEMENTED:
+        // use one GetTwincodeIQ per twincode until the next sign in.  For other errors, only this batch is sent again.
+        if (errorCode == ErrorCode.BAD_REQUEST || errorCode == ErrorCode.FEATURE_NOT_IMPLEMENTED) {
+            mBatchFetch = false;
+        }
+        for (UUID twincodeId : twincodeIds) {
+            mTransport.sendGetTwincode(twincodeId);
+        }
+    }
+
+    /**
+     * Call the complete handlers waiting for the twincode.
+     *
+     * @param twincodeId the twincode.
+     * @param errorCode the error code.
+     * @param twincodeOutbound the twincode or null.
+     */
+    void finish(@NonNull UUID twincodeId, @NonNull ErrorCode errorCode, @Nullable TwincodeOutbound twincodeOutbound) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "finish: twincodeId=" + twincodeId + " errorCode=" + errorCode);
+        }
+
+        final FetchTwincode fetchTwincode;
+        synchronized (mFetchTwincodes) {
+            fetchTwincode = mFetchTwincodes.remove(twincodeId);
+        }
+        if (fetchTwincode != null) {
+            for (Consumer<TwincodeOutbound> complete : fetchTwincode.completes) {
+                complete.onGet(errorCode, twincodeOutbound);
+            }
+        }
+    }
+
+    /**
+     * Use the GetTwincodesIQ again: the server may have been upgraded while we were disconnected.
+     */
+    void onSignIn() {
+
+        mBatchFetch = true;
+    }
+
+    /**
+     * Forget the twincodes being fetched.
+     */
+    void clear() {
+
+        synchronized (mFetchTwincodes) {
+            mFetchTwincodes.clear();
+            mFetchQueue.clear();
+        }
+    }
+}
@@ -35,10 +35,13 @@ import org.twinlife.twinlife.crypto.CryptoServiceImpl;
 import org.twinlife.twinlife.twincode.CreateInvitationCodeIQ;
 import org.twinlife.twinlife.twincode.GetInvitationCodeIQ;
 import org.twinlife.twinlife.twincode.GetTwincodeIQ;
+import org.twinlife.twinlife.twincode.GetTwincodeInfo;
+import org.twinlife.twinlife.twincode.GetTwincodesIQ;
 import org.twinlife.twinlife.twincode.InvokeTwincodeIQ;
 import org.twinlife.twinlife.twincode.OnCreateInvitationCodeIQ;
 import org.twinlife.twinlife.twincode.OnGetInvitationCodeIQ;
 import org.twinlife.twinlife.twincode.OnGetTwincodeIQ;
+import org.twinlife.twinlife.twincode.OnGetTwincodesIQ;
 import org.twinlife.twinlife.twincode.OnRefreshTwincodeIQ;
 import org.twinlife.twinlife.twincode.OnUpdateTwincodeIQ;
 import org.twinlife.twinlife.twincode.RefreshTwincodeIQ;
@@ -53,7 +56,9 @@ import org.twinlife.twinlife.util.SerializerFactoryImpl;
 import org.twinlife.twinlife.util.Utils;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -78,6 +83,8 @@ public class TwincodeOutboundServiceImpl extends BaseServiceImpl<TwincodeOutboun
     private static final UUID ON_CREATE_INVITATION_CODE_SCHEMA_ID = UUID.fromString("93cf2a0c-82cb-43ea-98c6-43563807fadf");
     private static final UUID GET_INVITATION_CODE_SCHEMA_ID = UUID.fromString("95335487-91fa-4cdc-939b-e047a068e94d");
     private static final UUID ON_GET_INVITATION_CODE_SCHEMA_ID = UUID.fromString("a16cf169-81dd-4a47-8787-5856f409e017");
+    private static final UUID GET_TWINCODES_SCHEMA_ID = UUID.fromString("c6c403ec-1e11-46df-ab98-2560d2b7a695");
+    private static final UUID ON_GET_TWINCODES_SCHEMA_ID = UUID.fromString("abe8ed62-1769-4027-a02a-bb67e30558b0");
 
     private static final BinaryPacketIQSerializer IQ_GET_TWINCODE_SERIALIZER = GetTwincodeIQ.createSerializer(GET_TWINCODE_SCHEMA_ID, 2);
     private static final BinaryPacketIQSerializer IQ_ON_GET_TWINCODE_SERIALIZER = OnGetTwincodeIQ.createSerializer(ON_GET_TWINCODE_SCHEMA_ID, 2);
@@ -91,6 +98,8 @@ public class TwincodeOutboundServiceImpl extends BaseServiceImpl<TwincodeOutboun
     private static final BinaryPacketIQSerializer IQ_ON_CREATE_INVITATION_CODE_SERIALIZER = OnCreateInvitationCodeIQ.createSerializer(ON_CREATE_INVITATION_CODE_SCHEMA_ID, 1);
     private static final BinaryPacketIQSerializer IQ_GET_INVITATION_CODE_SERIALIZER = GetInvitationCodeIQ.createSerializer(GET_INVITATION_CODE_SCHEMA_ID, 1);
     private static final BinaryPacketIQSerializer IQ_ON_GET_INVITATION_CODE_SERIALIZER = OnGetInvitationCodeIQ.createSerializer(ON_GET_INVITATION_CODE_SCHEMA_ID, 1);
+    public static final BinaryPacketIQSerializer IQ_GET_TWINCODES_SERIALIZER = GetTwincodesIQ.createSerializer(GET_TWINCODES_SCHEMA_ID, 1);
+    public static final BinaryPacketIQSerializer IQ_ON_GET_TWINCODES_SERIALIZER = OnGetTwincodesIQ.createSerializer(ON_GET_TWINCODES_SCHEMA_ID, 1);
 
     private static class PendingRequest {
     }
@@ -99,6 +108,7 @@ public class TwincodeOutboundServiceImpl extends BaseServiceImpl<TwincodeOutboun
         @NonNull
         final UUID twincodeId;
         final long refreshPeriod;
+        final boolean fetch;
         @NonNull
         final Consumer<TwincodeOutbound> complete;
         @Nullable
@@ -113,6 +123,7 @@ public class TwincodeOutboundServiceImpl extends BaseServiceImpl<TwincodeOutboun
                                   @NonNull Consumer<TwincodeOutbound> complete) {
             this.twincodeId = twincodeId;
             this.refreshPeriod = refreshPeriod;
+            this.fetch = true;
             this.complete = complete;
             this.pubKey = null;
             this.secretKey = null;
@@ -125,6 +136,7 @@ public class TwincodeOutboundServiceImpl extends BaseServiceImpl<TwincodeOutboun
                                   @NonNull Consumer<TwincodeOutbound> complete) {
             this.twincodeId = twincodeId;
             this.refreshPeriod = TwincodeOutboundService.REFRESH_PERIOD;
+            this.fetch = false;
             this.complete = complete;
             this.pubKey = pubKey;
             this.secretKey = secretKey;
@@ -133,6 +145,50 @@ public class TwincodeOutboundServiceImpl extends BaseServiceImpl<TwincodeOutboun
         }
     }
 
+    private static final class GetTwincodesPendingRequest extends PendingRequest {
+        @NonNull
+        final List<UUID> twincodeIds;
+
+        GetTwincodesPendingRequest(@NonNull List<UUID> twincodeIds) {
+            this.twincodeIds = twincodeIds;
+        }
+    }
+
+    // Collect the twincodes for getTwincodes() and report the result when they are all received.
+    private static final class GetTwincodesCollector implements Consumer<TwincodeOutbound> {
+        @NonNull
+        final Map<UUID, TwincodeOutbound> twincodes;
+        @NonNull
+        final Consumer<Map<UUID, TwincodeOutbound>> complete;
+        @NonNull
+        ErrorCode errorCode;
+        int remaining;
+
+        GetTwincodesCollector(@NonNull Map<UUID, TwincodeOutbound> twincodes, int remaining,
+                              @NonNull Consumer<Map<UUID, TwincodeOutbound>> complete) {
+            this.twincodes = twincodes;
+            this.complete = complete;
+            this.errorCode = ErrorCode.SUCCESS;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public void onGet(@NonNull ErrorCode status, @Nullable TwincodeOutbound twincodeOutbound) {
+            synchronized (this) {
+                if (twincodeOutbound != null) {
+                    twincodes.put(twincodeOutbound.getId(), twincodeOutbound);
+                } else if (status != ErrorCode.ITEM_NOT_FOUND && status != ErrorCode.SUCCESS) {
+                    errorCode = status;
+                }
+                remaining--;
+                if (remaining > 0) {
+                    return;
+                }
+            }
+            complete.onGet(errorCode, twincodes);
+        }
+    }
+
     private static final class RefreshTwincodePendingRequest extends PendingRequest {
         @NonNull
         final TwincodeOutboundImpl twincodeOutbound;
@@ -218,6 +274,7 @@ public class TwincodeOutboundServiceImpl extends BaseServiceImpl<TwincodeOutboun
     private final TwincodeOutboundServiceProvider mServiceProvider;
     private final String mServiceJid;
     private final HashMap<Long, PendingRequest> mPendingRequests = new HashMap<>();
+    private final TwincodeFetcher mFetcher;
     private final CryptoServiceImpl mCryptoService;
     private JobService.Job mRefreshJob;
     private long mPreviousRefreshDate = 0;
@@ -238,18 +295,54 @@ public class TwincodeOutboundServiceImpl extends BaseServiceImpl<TwincodeOutboun
         serializerFactory.addSerializer(IQ_ON_CREATE_INVITATION_CODE_SERIALIZER);
         serializerFactory.addSerializer(IQ_GET_INVITATION_CODE_SERIALIZER);
         serializerFactory.addSerializer(IQ_ON_GET_INVITATION_CODE_SERIALIZER);
+        serializerFactory.addSerializer(IQ_GET_TWINCODES_SERIALIZER);
+        serializerFactory.addSerializer(IQ_ON_GET_TWINCODES_SERIALIZER);
 
         // Register the binary IQ handlers for the responses.
-        connection.addPacketListener(IQ_ON_GET_TWINCODE_SERIALIZER, this::onGetTwincode);
-        connection.addPacketListener(IQ_ON_UPDATE_TWINCODE_SERIALIZER, this::onUpdateTwincode);
-        connection.addPacketListener(IQ_ON_REFRESH_TWINCODE_SERIALIZER, this::onRefreshTwincode);
-        connection.addPacketListener(IQ_ON_INVOKE_TWINCODE_SERIALIZER, this::onInvokeTwincode);
-        connection.addPacketListener(IQ_ON_CREATE_INVITATION_CODE_SERIALIZER, this::onCreateInvitationCode);
-        connection.addPacketListener(IQ_ON_GET_INVITATION_CODE_SERIALIZER, this::onGetInvitationCode);
-
-        mServiceProvider = new TwincodeOutboundServiceProvider(this, twinlifeImpl.getDatabaseService());
-        mServiceJid = TWINLIFE_SERVICE + "." + connection.getDomain();
+        connection.addPacketListener(BaseServiceId.TWINCODE_OUTBOUND_SERVICE_ID, IQ_ON_GET_TWINCODE_SERIALIZER, this::onGetTwincode);
+        connection.addPacketListener(BaseServiceId.TWINCODE_OUTBOUND_SERVICE_ID, IQ_ON_UPDATE_TWINCODE_SERIALIZER, this::onUpdateTwincode);
+        connection.addPacketListener(BaseServiceId.TWINCODE_OUTBOUND_SERVICE_ID, IQ_ON_REFRESH_TWINCODE_SERIALIZER, this::onRefreshTwincode);
+        connection.addPacketListener(BaseServiceId.TWINCODE_OUTBOUND_SERVICE_ID, IQ_ON_INVOKE_TWINCODE_SERIALIZER, this::onInvokeTwincode);
+        connection.addPacketListener(BaseServiceId.TWINCODE_OUTBOUND_SERVICE_ID, IQ_ON_CREATE_INVITATION_CODE_SERIALIZER, this::onCreateInvitationCode);
+        connection.addPacketListener(BaseServiceId.TWINCODE_OUTBOUND_SERVICE_ID, IQ_ON_GET_INVITATION_CODE_SERIALIZER, this::onGetInvitationCode);
+        connection.addPacketListener(BaseServiceId.TWINCODE_OUTBOUND_SERVICE_ID, IQ_ON_GET_TWINCODES_SERIALIZER, this::onGetTwincodes);
+
         mCryptoService = twinlifeImpl.getCryptoService();
+        mServiceProvider = new TwincodeOutboundServiceProvider(this, twinlifeImpl.getDatabaseService(), mCryptoService);
+        mServiceJid = TWINLIFE_SERVICE + "." + connection.getDomain();
+        mFetcher = new TwincodeFetcher(new TwincodeFetcher.Transport() {
+            @Override
+            public void schedule(@NonNull Runnable runnable, long delay) {
+
+                mJobService.scheduleIn("fetch twincodes", runnable, delay, JobService.Priority.CONNECT);
+            }
+
+            @Override
+            public void sendGetTwincodes(@NonNull List<UUID> twincodeIds) {
+
+                TwincodeOutboundServiceImpl.this.sendGetTwincodes(twincodeIds);
+            }
+
+            @Override
+            public void sendGetTwincode(@NonNull UUID twincodeId) {
+
+                TwincodeOutboundServiceImpl.this.sendGetTwincode(twincodeId);
+            }
+
+            @Override
+            @Nullable
+            public Map<UUID, TwincodeOutbound> importTwincodes(@NonNull List<GetTwincodeInfo> twincodes,
+                                                               @NonNull Map<UUID, Long> refreshPeriods) {
+
+                return mServiceProvider.importTwincodes(twincodes, refreshPeriods);
+            }
+
+            @Override
+            public void evictTwincode(@NonNull UUID twincodeId) {
+
+                TwincodeOutboundServiceImpl.this.evictTwincode(twincodeId);
+            }
+        });
     }
 
     //
@@ -286,6 +379,17 @@ public class TwincodeOutboundServiceImpl extends BaseServiceImpl<TwincodeOutboun
         updateRefreshJob();
     }
 
+    @Override
+    public void onSignIn() {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "onSignIn");
+        }
+
+        super.onSignIn();
+
+        mFetcher.onSignIn();
+    }
+
     @Override
     public void onSignOut() {
         if (DEBUG) {
@@ -301,6 +405,7 @@ public class TwincodeOutboundServiceImpl extends BaseServiceImpl<TwincodeOutboun
         synchronized (mPendingRequests) {
             mPendingRequests.clear();
         }
+        mFetcher.clear();
     }
 
     @Override
@@ -338,13 +443,40 @@ public class TwincodeOutboundServiceImpl extends BaseServiceImpl<TwincodeOutboun
             return;
         }
 
-        final long requestId = newRequestId();
-        synchronized (mPendingRequests) {
-            mPendingRequests.put(requestId, new GetTwincodePendingRequest(twincodeOutboundId, refreshPeriod, complete));
+        mFetcher.fetch(twincodeOutboundId, refreshPeriod, complete);
+    }
+
+    @Override
+    public void getTwincodes(@NonNull Collection<UUID> twincodeOutboundIds, long refreshPeriod,
+                             @NonNull Consumer<Map<UUID, TwincodeOutbound>> complete) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "getTwincodes: twincodeOutboundIds=" + twincodeOutboundIds.size() + " refreshPeriod=" + refreshPeriod);
         }
 
-        final GetTwincodeIQ getTwincodeIQ = new GetTwincodeIQ(IQ_GET_TWINCODE_SERIALIZER, requestId, twincodeOutboundId);
-        sendDataPacket(getTwincodeIQ, DEFAULT_REQUEST_TIMEOUT);
+        if (!isServiceOn()) {
+            complete.onGet(ErrorCode.SERVICE_UNAVAILABLE, null);
+            return;
+        }
+
+        final Map<UUID, TwincodeOutbound> twincodes = new HashMap<>();
+        final List<UUID> fetchList = new ArrayList<>();
+        for (UUID twincodeOutboundId : new HashSet<>(twincodeOutboundIds)) {
+            final TwincodeOutbound twincodeOutbound = mServiceProvider.loadTwincode(twincodeOutboundId);
+            if (twincodeOutbound != null && twincodeOutbound.isKnown()) {
+                twincodes.put(twincodeOutboundId, twincodeOutbound);
+            } else {
+                fetchList.add(twincodeOutboundId);
+            }
+        }
+        if (fetchList.isEmpty()) {
+            complete.onGet(ErrorCode.SUCCESS, twincodes);
+            return;
+        }
+
+        final GetTwincodesCollector collector = new GetTwincodesCollector(twincodes, fetchList.size(), complete);
+        for (UUID twincodeOutboundId : fetchList) {
+            mFetcher.fetch(twincodeOutboundId, refreshPeriod, collector);
+        }
     }
 
     @Override
@@ -1019,8 +1151,12 @@ public class TwincodeOutboundServiceImpl extends BaseServiceImpl<TwincodeOutboun
                 pubKey = result.publicSigningKey;
                 encryptKey = result.publicEncryptionKey;
             }
+
+            // Use the refresh period of the callers which joined the fetch after the request was sent.
+            final Long fetchRefreshPeriod = getRequest.fetch ? mFetcher.getRefreshPeriod(getRequest.twincodeId) : null;
+            final long refreshPeriod = fetchRefreshPeriod != null ? fetchRefreshPeriod : getRequest.refreshPeriod;
             final TwincodeOutbound twincodeOutbound = mServiceProvider.importTwincode(getRequest.twincodeId, attributes,
-                    pubKey, encryptKey, getRequest.keyIndex, getRequest.secretKey, getRequest.trusted, modificationDate, getRequest.refreshPeriod);
+                    pubKey, encryptKey, getRequest.keyIndex, getRequest.secretKey, getRequest.trusted, modificationDate, refreshPeriod);
 
             getRequest.complete.onGet(twincodeOutbound != null ? ErrorCode.SUCCESS : ErrorCode.NO_STORAGE_SPACE, twincodeOutbound);
         } else {
@@ -1041,6 +1177,36 @@ public class TwincodeOutboundServiceImpl extends BaseServiceImpl<TwincodeOutboun
         }
     }
 
+    /**
+     * Response received after GetTwincodesIQ operation.
+     *
+     * @param iq the GetTwincodesIQ response.
+     */
+    private void onGetTwincodes(@NonNull BinaryPacketIQ iq) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "onGetTwincodes: iq=" + iq);
+        }
+
+        if (!(iq instanceof OnGetTwincodesIQ)) {
+            return;
+        }
+
+        final long requestId = iq.getRequestId();
+        receivedIQ(requestId);
+
+        // Get the pending request or terminate.
+        final GetTwincodesPendingRequest request;
+        synchronized (mPendingRequests) {
+            request = (GetTwincodesPendingRequest) mPendingRequests.remove(requestId);
+        }
+        if (request == null) {
+            return;
+        }
+
+        final OnGetTwincodesIQ onGetTwincodesIQ = (OnGetTwincodesIQ) iq;
+        mFetcher.onGetTwincodes(request.twincodeIds, onGetTwincodesIQ.getTwincodeList(), onGetTwincodesIQ.getUnknownTwincodeList());
+    }
+
     /**
      * Response received after UpdateTwincodeIQ operation.
      *
@@ -1248,6 +1414,40 @@ public class TwincodeOutboundServiceImpl extends BaseServiceImpl<TwincodeOutboun
         request.complete.onGet(twincodeOutbound != null ? ErrorCode.SUCCESS : ErrorCode.NO_STORAGE_SPACE, new Pair<>(twincodeOutbound, publicKey));
     }
 
+    private void sendGetTwincodes(@NonNull List<UUID> twincodeIds) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "sendGetTwincodes: twincodeIds=" + twincodeIds.size());
+        }
+
+        final long requestId = newRequestId();
+        synchronized (mPendingRequests) {
+            mPendingRequests.put(requestId, new GetTwincodesPendingRequest(twincodeIds));
+        }
+
+        final GetTwincodesIQ getTwincodesIQ = new GetTwincodesIQ(IQ_GET_TWINCODES_SERIALIZER, requestId, twincodeIds);
+        sendDataPacket(getTwincodesIQ, DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    private void sendGetTwincode(@NonNull UUID twincodeOutboundId) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "sendGetTwincode: twincodeOutboundId=" + twincodeOutboundId);
+        }
+
+        final Long refreshPeriod = mFetcher.getRefreshPeriod(twincodeOutboundId);
+        if (refreshPeriod == null) {
+            return;
+        }
+
+        final long requestId = newRequestId();
+        synchronized (mPendingRequests) {
+            mPendingRequests.put(requestId, new GetTwincodePendingRequest(twincodeOutboundId, refreshPeriod,
+                    (ErrorCode errorCode, TwincodeOutbound twincodeOutbound) -> mFetcher.finish(twincodeOutboundId, errorCode, twincodeOutbound)));
+        }
+
+        final GetTwincodeIQ getTwincodeIQ = new GetTwincodeIQ(IQ_GET_TWINCODE_SERIALIZER, requestId, twincodeOutboundId);
+        sendDataPacket(getTwincodeIQ, DEFAULT_REQUEST_TIMEOUT);
+    }
+
     private void refreshTwincodes() {
         if (DEBUG) {
             Log.d(LOG_TAG, "refreshTwincodes");
@@ -1312,6 +1512,11 @@ public class TwincodeOutboundServiceImpl extends BaseServiceImpl<TwincodeOutboun
             }
             updateRequest.complete.onGet(iq.getErrorCode(), null);
 
+        } else if (request instanceof GetTwincodesPendingRequest) {
+            final GetTwincodesPendingRequest getRequest = (GetTwincodesPendingRequest) request;
+
+            mFetcher.onGetTwincodesError(getRequest.twincodeIds, iq.getErrorCode(), isSignIn());
+
         } else if (request instanceof RefreshTwincodesPendingRequest) {
             updateRefreshJob();
 
@@ -1,5 +1,5 @@
 /*
- *  Copyright (c) 2014-2024 twinlife SA.
+ *  Copyright (c) 2014-2025 twinlife SA.
  *  SPDX-License-Identifier: AGPL-3.0-only
  *
  *  Contributors:
@@ -29,6 +29,7 @@ import org.twinlife.twinlife.ImageId;
 import org.twinlife.twinlife.TrustMethod;
 import org.twinlife.twinlife.Twincode;
 import org.twinlife.twinlife.TwincodeOutbound;
+import org.twinlife.twinlife.crypto.CryptoServiceImpl;
 import org.twinlife.twinlife.database.Columns;
 import org.twinlife.twinlife.database.DatabaseDump;
 import org.twinlife.twinlife.database.DatabaseServiceImpl;
@@ -37,10 +38,12 @@ import org.twinlife.twinlife.database.Tables;
 import org.twinlife.twinlife.database.Transaction;
 import org.twinlife.twinlife.database.TwincodeObjectFactory;
 import org.twinlife.twinlife.database.TwincodesCleaner;
+import org.twinlife.twinlife.twincode.GetTwincodeInfo;
 import org.twinlife.twinlife.util.BinaryCompactDecoder;
 import org.twinlife.twinlife.util.BinaryCompactEncoder;
 import org.twinlife.twinlife.util.EventMonitor;
 import org.twinlife.twinlife.util.Logger;
+import org.twinlife.twinlife.util.Utils;
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
@@ -62,7 +65,7 @@ class TwincodeOutboundServiceProvider extends DatabaseServiceProvider implements
     /**
      * twincodeOutbound table:
      * id INTEGER: local database identifier (primary key)
-     * twincodeId TEXT UNIQUE NOT NULL: twincode outbound id
+     * twincodeId BLOB UNIQUE NOT NULL: twincode outbound id (16 bytes UUID, TEXT before V29)
      * creationDate INTEGER: twincode creation date
      * modificationDate INTEGER: twincode modification date
      * name TEXT: name attribute
@@ -79,7 +82,7 @@ class TwincodeOutboundServiceProvider extends DatabaseServiceProvider implements
      */
     private static final String TWINCODE_OUTBOUND_CREATE_TABLE =
             "CREATE TABLE IF NOT EXISTS twincodeOutbound (id INTEGER PRIMARY KEY,"
-                    + " twincodeId TEXT UNIQUE NOT NULL, creationDate INTEGER NOT NULL, modificationDate INTEGER NOT NULL,"
+                    + " twincodeId BLOB UNIQUE NOT NULL, creationDate INTEGER NOT NULL, modificationDate INTEGER NOT NULL,"
                     + " name TEXT, avatarId INTEGER, capabilities TEXT, description TEXT, attributes BLOB,"
                     + " refreshPeriod INTEGER DEFAULT 3600000, refreshDate INTEGER DEFAULT 0,"
                     + " refreshTimestamp INTEGER, flags INTEGER NOT NULL"
@@ -106,13 +109,18 @@ class TwincodeOutboundServiceProvider extends DatabaseServiceProvider implements
     private static final String ALTER_TWINCODE_OUTBOUND_ADD_REFRESH_TIMESTAMP =
             "ALTER TABLE twincodeOutboundTwincodeOutbound ADD COLUMN refreshTimestamp INTEGER";
 
+    @NonNull
+    private final CryptoServiceImpl mCryptoService;
+
     TwincodeOutboundServiceProvider(@NonNull TwincodeOutboundServiceImpl service,
-                                    @NonNull DatabaseServiceImpl database) {
+                                    @NonNull DatabaseServiceImpl database,
+                                    @NonNull CryptoServiceImpl cryptoService) {
         super(service, database, TWINCODE_OUTBOUND_CREATE_TABLE, DatabaseTable.TABLE_TWINCODE_OUTBOUND);
         if (DEBUG) {
             Log.d(LOG_TAG, "TwincodeOutboundServiceProvider: service=" + service);
         }
 
+        mCryptoService = cryptoService;
         database.setTwincodeOutboundFactory(this);
     }
 
@@ -264,7 +272,7 @@ class TwincodeOutboundServiceProvider extends DatabaseServiceProvider implements
         }
         ContentValues values = new ContentValues();
         values.put(Columns.ID, identifier.getId());
-        values.put(Columns.TWINCODE_ID, twincodeId.toString());
+        values.put(Columns.TWINCODE_ID, Utils.toBytes(twincodeId));
         values.put(Columns.REFRESH_PERIOD, refreshPeriod);
         values.put(Columns.NAME, twincodeOutbound.getName());
         values.put(Columns.DESCRIPTION, twincodeOutbound.getDescription());
@@ -310,6 +318,7 @@ class TwincodeOutboundServiceProvider extends DatabaseServiceProvider implements
 
         //  Also delete the twincode keys and every secret we could have with that twincode.
         transaction.deleteWithId(Tables.TWINCODE_KEYS, twincodeId);
+        mCryptoService.evictKeys(twincodeId);
         transaction.delete(Tables.SECRET_KEYS, "id=? OR peerTwincodeId=?", new Object[] { Long.toString(twincodeId), Long.toString(twincodeId) });
         transaction.deleteObject(twincodeOutbound);
         if (avatarId != null) {
@@ -394,52 +403,61 @@ class TwincodeOutboundServiceProvider extends DatabaseServiceProvider implements
         }
 
         try (Transaction transaction = newTransaction()) {
-            Long id = mDatabase.longQuery("SELECT"
-                    + " twout.id"
-                    + " FROM twincodeOutbound AS twout"
-                    + " WHERE twout.twincodeId = ?", new String[]{ twincodeId.toString() });
-            int flags;
-            if (pubSigningKey == null) {
-                flags = 0;
-            } else {
-                flags = TwincodeOutboundImpl.FLAG_SIGNED | TwincodeOutboundImpl.FLAG_VERIFIED
-                        | TwincodeOutboundImpl.toFlags(trust);
+            final List<Runnable> commitActions = new ArrayList<>();
+            final TwincodeOutbound twincodeOutbound = internalImportTwincode(transaction, twincodeId, attributes,
+                    pubSigningKey, pubEncryptionKey, keyIndex, secretKey, trust, modificationDate, refreshPeriod, commitActions);
+            if (twincodeOutbound == null) {
+                return null;
             }
-            if (id != null) {
-                DatabaseObject object = mDatabase.getCache(new DatabaseIdentifier(this, id));
-                if (object == null) {
-                    object = mDatabase.loadTwincodeOutbound(id);
-                }
-                if (!(object instanceof TwincodeOutboundImpl)) {
-                    return null;
-                }
+            transaction.commit();
+            for (Runnable action : commitActions) {
+                action.run();
+            }
+            return twincodeOutbound;
 
-                TwincodeOutboundImpl twincodeOutbound = (TwincodeOutboundImpl) object;
-                if (!twincodeOutbound.isKnown() || flags != twincodeOutbound.getFlags() || secretKey != null) {
-                    final boolean isOwner = twincodeOutbound.isOwner();
-                    if (isOwner) {
-                        // Keep the existing flags if we are owner of the twincode and don't store the public key!
-                        flags = twincodeOutbound.getFlags();
-                    }
-                    flags = flags & ~(TwincodeOutboundImpl.FLAG_NEED_FETCH);
-                    internalUpdateTwincode(transaction, twincodeOutbound, flags, attributes, null, modificationDate);
-                    if (pubSigningKey != null && !isOwner) {
-                        transaction.storePublicKey(twincodeOutbound, pubSigningKey, pubEncryptionKey, keyIndex, secretKey);
-                    }
-                    transaction.commit();
-                    twincodeOutbound.setFlags(flags);
+        } catch (Exception exception) {
+            mService.onDatabaseException(exception);
+            return null;
+        }
+    }
+
+    /**
+     * Import a list of twincodes received from the server in a single transaction.  The twincodes
+     * are not signed and each twincode uses the refresh period defined in the `refreshPeriods` map.
+     *
+     * @param twincodes the twincodes to insert/update.
+     * @param refreshPeriods the refresh period (in ms) of each twincode.
+     * @return the twincodes indexed by their id or null if there was a database error.
+     */
+    @Nullable
+    Map<UUID, TwincodeOutbound> importTwincodes(@NonNull List<GetTwincodeInfo> twincodes,
+                                                @NonNull Map<UUID, Long> refreshPeriods) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "importTwincodes: twincodes=" + twincodes.size());
+        }
+
+        final Map<UUID, TwincodeOutbound> result = new HashMap<>();
+        try (Transaction transaction = newTransaction()) {
+            final List<Runnable> commitActions = new ArrayList<>();
+            for (GetTwincodeInfo twincode : twincodes) {
+                final Long refreshPeriod = refreshPeriods.get(twincode.twincodeOutboundId);
+                if (refreshPeriod == null) {
+                    continue;
                 }
-                return twincodeOutbound;
 
-            } else {
-                TwincodeOutbound twincodeOutbound = transaction.storeTwincodeOutbound(twincodeId, attributes, flags,
-                        modificationDate, refreshPeriod, 0, 0);
-                if (pubSigningKey != null) {
-                    transaction.storePublicKey(twincodeOutbound, pubSigningKey, pubEncryptionKey, keyIndex, secretKey);
+                final TwincodeOutbound twincodeOutbound = internalImportTwincode(transaction, twincode.twincodeOutboundId,
+                        twincode.attributes, null, null, 0, null, TrustMethod.NONE, twincode.modificationDate,
+                        refreshPeriod, commitActions);
+                if (twincodeOutbound != null) {
+                    result.put(twincode.twincodeOutboundId, twincodeOutbound);
                 }
-                transaction.commit();
-                return twincodeOutbound;
             }
+            transaction.commit();
+            for (Runnable action : commitActions) {
+                action.run();
+            }
+            return result;
+
         } catch (Exception exception) {
             mService.onDatabaseException(exception);
             return null;
@@ -777,6 +795,66 @@ class TwincodeOutboundServiceProvider extends DatabaseServiceProvider implements
         }
     }
 
+    /**
+     * Insert or update the twincode within the transaction.  The actions that must be made only when
+     * the transaction is committed are added to the `commitActions` list.
+     */
+    @Nullable
+    private TwincodeOutbound internalImportTwincode(@NonNull Transaction transaction, @NonNull UUID twincodeId,
+                                                    @NonNull List<AttributeNameValue> attributes,
+                                                    @Nullable byte[] pubSigningKey, @Nullable byte[] pubEncryptionKey,
+                                                    int keyIndex, @Nullable byte[] secretKey, @NonNull TrustMethod trust,
+                                                    long modificationDate, long refreshPeriod,
+                                                    @NonNull List<Runnable> commitActions) throws DatabaseException {
+
+        Long id = mDatabase.longQuery("SELECT"
+                + " twout.id"
+                + " FROM twincodeOutbound AS twout"
+                + " WHERE twout.twincodeId = ?", new Object[]{ Utils.toBytes(twincodeId) });
+        int flags;
+        if (pubSigningKey == null) {
+            flags = 0;
+        } else {
+            flags = TwincodeOutboundImpl.FLAG_SIGNED | TwincodeOutboundImpl.FLAG_VERIFIED
+                    | TwincodeOutboundImpl.toFlags(trust);
+        }
+        if (id != null) {
+            DatabaseObject object = mDatabase.getCache(new DatabaseIdentifier(this, id));
+            if (object == null) {
+                object = mDatabase.loadTwincodeOutbound(id);
+            }
+            if (!(object instanceof TwincodeOutboundImpl)) {
+                return null;
+            }
+
+            TwincodeOutboundImpl twincodeOutbound = (TwincodeOutboundImpl) object;
+            if (!twincodeOutbound.isKnown() || flags != twincodeOutbound.getFlags() || secretKey != null) {
+                final boolean isOwner = twincodeOutbound.isOwner();
+                if (isOwner) {
+                    // Keep the existing flags if we are owner of the twincode and don't store the public key!
+                    flags = twincodeOutbound.getFlags();
+                }
+                flags = flags & ~(TwincodeOutboundImpl.FLAG_NEED_FETCH);
+                internalUpdateTwincode(transaction, twincodeOutbound, flags, attributes, null, modificationDate);
+                final int newFlags = flags;
+                commitActions.add(() -> twincodeOutbound.setFlags(newFlags));
+                if (pubSigningKey != null && !isOwner) {
+                    transaction.storePublicKey(twincodeOutbound, pubSigningKey, pubEncryptionKey, keyIndex, secretKey);
+                    commitActions.add(() -> mCryptoService.evictKeys(id));
+                }
+            }
+            return twincodeOutbound;
+
+        } else {
+            TwincodeOutbound twincodeOutbound = transaction.storeTwincodeOutbound(twincodeId, attributes, flags,
+                    modificationDate, refreshPeriod, 0, 0);
+            if (pubSigningKey != null) {
+                transaction.storePublicKey(twincodeOutbound, pubSigningKey, pubEncryptionKey, keyIndex, secretKey);
+            }
+            return twincodeOutbound;
+        }
+    }
+
     private void internalUpdateTwincode(@NonNull Transaction transaction,
                                         @NonNull TwincodeOutboundImpl twincodeOutboundImpl,
                                         int flags,
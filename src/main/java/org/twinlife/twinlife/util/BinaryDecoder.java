@@ -283,40 +283,53 @@ public class BinaryDecoder implements Decoder {
             Log.d(LOG_TAG, "readAttributes");
         }
 
-        int count = readInt();
+        return readAttributes(this);
+    }
+
+    /**
+     * Read the attributes by using the decoder primitives (shared by the decoder implementations).
+     *
+     * @param decoder the decoder to use.
+     * @return the list of attributes or null.
+     * @throws SerializerException when the attribute list is invalid.
+     */
+    @Nullable
+    static List<BaseService.AttributeNameValue> readAttributes(@NonNull Decoder decoder) throws SerializerException {
+
+        int count = decoder.readInt();
         if (count == 0) {
             return null;
         }
 
         List<BaseService.AttributeNameValue> attributes = new ArrayList<>(count);
         for (int i = 0; i < count; i++) {
-            String name = readString();
+            String name = decoder.readString();
             BaseService.AttributeNameValue attr;
-            int value = readEnum();
+            int value = decoder.readEnum();
             switch (value) {
                 case 0:
                     attr = new BaseService.AttributeNameVoidValue(name);
                     break;
 
                 case 1:
-                    attr = new BaseService.AttributeNameBooleanValue(name, readBoolean());
+                    attr = new BaseService.AttributeNameBooleanValue(name, decoder.readBoolean());
                     break;
 
                 case 2:
-                    attr = new BaseService.AttributeNameLongValue(name, readLong());
+                    attr = new BaseService.AttributeNameLongValue(name, decoder.readLong());
                     break;
 
                 case 3:
-                    attr = new BaseService.AttributeNameStringValue(name, readString());
+                    attr = new BaseService.AttributeNameStringValue(name, decoder.readString());
                     break;
 
                 case 4:
-                    attr = new BaseService.AttributeNameUUIDValue(name, readUUID());
+                    attr = new BaseService.AttributeNameUUIDValue(name, decoder.readUUID());
                     break;
 
                 case 5:
                 {
-                    List<BaseService.AttributeNameValue> list = readAttributes();
+                    List<BaseService.AttributeNameValue> list = readAttributes(decoder);
                     if (list == null) {
                         list = new ArrayList<>();
                     }
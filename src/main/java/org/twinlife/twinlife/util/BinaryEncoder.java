@@ -340,6 +340,48 @@ public class BinaryEncoder implements Encoder {
         }
     }
 
+    /**
+     * Get the number of bytes used by writeLong() to encode the value.
+     *
+     * @param value the long value.
+     * @return the encoded size in bytes.
+     */
+    public static int getLongSize(long value) {
+
+        long lValue = (value << 1) ^ (value >> 63);
+        int size = 1;
+        while ((lValue & ~0x7FL) != 0) {
+            lValue >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Replace the long value encoded at the given position by writeLong() with a new value.
+     * The value is replaced only when both encodings have the same size.
+     *
+     * @param data the array holding the encoded value.
+     * @param offset the position of the encoded value.
+     * @param value the new value.
+     * @return true if the value was replaced.
+     */
+    public static boolean rewriteLong(@NonNull byte[] data, int offset, long value) {
+
+        int length = 1;
+        while (offset + length <= data.length && (data[offset + length - 1] & 0x80) != 0) {
+            length++;
+        }
+        if (offset + length > data.length || length != getLongSize(value)) {
+
+            return false;
+        }
+
+        final byte[] buffer = new byte[10];
+        System.arraycopy(buffer, 0, data, offset, encodeLong(value, buffer));
+        return true;
+    }
+
     //
     // Private Methods
     //
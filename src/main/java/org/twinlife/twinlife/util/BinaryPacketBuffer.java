@@ -0,0 +1,265 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.util;
+
+import androidx.annotation.NonNull;
+
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Growable encode buffer used to serialize binary packets without allocating a new
+ * ByteArrayOutputStream, a new encoder and an intermediate byte[] for each packet.
+ * <p>
+ * A per-thread instance is obtained with acquire() and must be given back with release()
+ * once the serialized content has been consumed.  The buffer can also wrap a caller-owned
+ * ByteBuffer or byte array slice: in that case it does not grow and the serialization fails
+ * if the packet does not fit.
+ * <p>
+ * The buffer is not thread safe: it is intended to be used by the thread that acquired it.
+ */
+public final class BinaryPacketBuffer extends OutputStream {
+
+    // Don't keep a pooled buffer bigger than this size (large file chunks are not retained).
+    private static final int MAX_RETAINED_SIZE = 128 * 1024;
+
+    private static final ThreadLocal<BinaryPacketBuffer> sThreadBuffer = new ThreadLocal<>();
+
+    @NonNull
+    private ByteBuffer mBuffer;
+    private final int mStart;
+    private final boolean mGrowable;
+    private boolean mInUse;
+    private BinaryEncoder mEncoder;
+    private BinaryCompactEncoder mCompactEncoder;
+
+    /**
+     * Get the buffer associated with the current thread.  If that buffer is already used
+     * (nested serialization), a new temporary buffer is returned.
+     *
+     * @return the buffer to serialize a packet.
+     */
+    @NonNull
+    public static BinaryPacketBuffer acquire() {
+
+        BinaryPacketBuffer buffer = sThreadBuffer.get();
+        if (buffer == null) {
+            buffer = new BinaryPacketBuffer(ByteBuffer.allocate(BinaryPacketIQ.SERIALIZER_BUFFER_DEFAULT_SIZE), true);
+            sThreadBuffer.set(buffer);
+        } else if (buffer.mInUse) {
+            buffer = new BinaryPacketBuffer(ByteBuffer.allocate(BinaryPacketIQ.SERIALIZER_BUFFER_DEFAULT_SIZE), true);
+        }
+        buffer.mInUse = true;
+        buffer.mBuffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Wrap the caller-owned byte buffer to serialize at its current position.
+     *
+     * @param target the target buffer.
+     * @return the encode buffer writing in the target.
+     */
+    @NonNull
+    public static BinaryPacketBuffer wrap(@NonNull ByteBuffer target) {
+
+        return new BinaryPacketBuffer(target, false);
+    }
+
+    /**
+     * Wrap the caller-owned byte array slice.
+     *
+     * @param data the byte array.
+     * @param offset the start offset in the array.
+     * @param length the max length available in the array.
+     * @return the encode buffer writing in the array slice.
+     */
+    @NonNull
+    public static BinaryPacketBuffer wrap(@NonNull byte[] data, int offset, int length) {
+
+        return new BinaryPacketBuffer(ByteBuffer.wrap(data, offset, length), false);
+    }
+
+    private BinaryPacketBuffer(@NonNull ByteBuffer buffer, boolean growable) {
+
+        mBuffer = buffer;
+        mStart = buffer.position();
+        mGrowable = growable;
+    }
+
+    /**
+     * Give back the buffer after its content was used.
+     */
+    public void release() {
+
+        if (mGrowable) {
+            mInUse = false;
+            if (mBuffer.capacity() > MAX_RETAINED_SIZE) {
+                mBuffer = ByteBuffer.allocate(BinaryPacketIQ.SERIALIZER_BUFFER_DEFAULT_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Clear the content to serialize a new packet.
+     */
+    public void reset() {
+
+        mBuffer.position(mStart);
+    }
+
+    /**
+     * Make sure the buffer can hold the given number of bytes without being re-allocated.
+     * This is a hint and it is ignored for a caller-owned buffer.
+     *
+     * @param length the number of bytes we expect to write.
+     */
+    public void reserve(int length) {
+
+        if (mGrowable && mBuffer.remaining() < length) {
+            ensureCapacity(length);
+        }
+    }
+
+    @NonNull
+    public BinaryEncoder getEncoder() {
+
+        if (mEncoder == null) {
+            mEncoder = new BinaryEncoder(this);
+        }
+        return mEncoder;
+    }
+
+    @NonNull
+    public BinaryEncoder getCompactEncoder() {
+
+        if (mCompactEncoder == null) {
+            mCompactEncoder = new BinaryCompactEncoder(this);
+        }
+        return mCompactEncoder;
+    }
+
+    /**
+     * Get the number of bytes written in the buffer.
+     *
+     * @return the number of serialized bytes.
+     */
+    public int size() {
+
+        return mBuffer.position() - mStart;
+    }
+
+    /**
+     * Get the backing array holding the serialized content.  The content starts at
+     * getArrayOffset() and its length is given by size().  The array must not be
+     * kept after release().
+     *
+     * @return the backing array.
+     */
+    @NonNull
+    public byte[] getArray() {
+
+        return mBuffer.array();
+    }
+
+    public int getArrayOffset() {
+
+        return mBuffer.arrayOffset() + mStart;
+    }
+
+    /**
+     * Get a read-only view on the serialized content (no copy).
+     *
+     * @return the byte buffer slice.
+     */
+    @NonNull
+    public ByteBuffer asByteBuffer() {
+
+        final ByteBuffer result = mBuffer.duplicate();
+        result.flip();
+        result.position(mStart);
+        return result.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Copy the serialized content to a new byte array having the exact size.
+     *
+     * @return the serialized content.
+     */
+    @NonNull
+    public byte[] toByteArray() {
+
+        final byte[] result = new byte[size()];
+        copyTo(0, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * Copy a part of the serialized content in the target array.
+     *
+     * @param position the position in the serialized content.
+     * @param target the target array.
+     * @param offset the offset in the target array.
+     * @param length the number of bytes to copy.
+     */
+    public void copyTo(int position, @NonNull byte[] target, int offset, int length) {
+
+        if (mBuffer.hasArray()) {
+            System.arraycopy(mBuffer.array(), mBuffer.arrayOffset() + mStart + position, target, offset, length);
+        } else {
+            final ByteBuffer content = mBuffer.duplicate();
+            content.position(mStart + position);
+            content.get(target, offset, length);
+        }
+    }
+
+    //
+    // OutputStream methods
+    //
+
+    @Override
+    public void write(int value) {
+
+        if (!mBuffer.hasRemaining()) {
+            ensureCapacity(1);
+        }
+        mBuffer.put((byte) value);
+    }
+
+    @Override
+    public void write(@NonNull byte[] data, int offset, int length) {
+
+        if (mBuffer.remaining() < length) {
+            ensureCapacity(length);
+        }
+        mBuffer.put(data, offset, length);
+    }
+
+    //
+    // Private methods
+    //
+
+    private void ensureCapacity(int length) {
+
+        if (!mGrowable) {
+            throw new BufferOverflowException();
+        }
+
+        final int needed = mBuffer.position() + length;
+        int capacity = mBuffer.capacity();
+        while (capacity < needed) {
+            capacity = capacity << 1;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(capacity);
+        mBuffer.flip();
+        buffer.put(mBuffer);
+        mBuffer = buffer;
+    }
+}
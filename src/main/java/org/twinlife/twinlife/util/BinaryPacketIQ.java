@@ -1,5 +1,5 @@
 /*
- *  Copyright (c) 2020-2023 twinlife SA.
+ *  Copyright (c) 2020-2025 twinlife SA.
  *  SPDX-License-Identifier: AGPL-3.0-only
  *
  *  Contributors:
@@ -20,7 +20,7 @@ import org.twinlife.twinlife.Serializer;
 import org.twinlife.twinlife.SerializerException;
 import org.twinlife.twinlife.SerializerFactory;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -108,32 +108,103 @@ public class BinaryPacketIQ {
     }
 
     public byte[] serializeCompact(SerializerFactory serializerFactory) throws SerializerException {
-        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(getBufferSize());
-        final BinaryEncoder binaryEncoder = new BinaryCompactEncoder(outputStream);
-
-        mSerializer.serialize(serializerFactory, binaryEncoder, this);
-        return outputStream.toByteArray();
+        final BinaryPacketBuffer buffer = BinaryPacketBuffer.acquire();
+        try {
+            buffer.reserve(getBufferSize());
+            mSerializer.serialize(serializerFactory, buffer.getCompactEncoder(), this);
+            return buffer.toByteArray();
+        } finally {
+            buffer.release();
+        }
     }
 
     public byte[] serialize(SerializerFactory serializerFactory) throws SerializerException {
-        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(getBufferSize());
-        final BinaryEncoder binaryEncoder = new BinaryEncoder(outputStream);
-
-        mSerializer.serialize(serializerFactory, binaryEncoder, this);
-        return outputStream.toByteArray();
+        final BinaryPacketBuffer buffer = BinaryPacketBuffer.acquire();
+        try {
+            buffer.reserve(getBufferSize());
+            mSerializer.serialize(serializerFactory, buffer.getEncoder(), this);
+            return buffer.toByteArray();
+        } finally {
+            buffer.release();
+        }
     }
 
     public byte[] serializeWithPadding(SerializerFactory serializerFactory, boolean withLeadingPadding) throws SerializerException {
-        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(getBufferSize());
+        final BinaryPacketBuffer buffer = BinaryPacketBuffer.acquire();
+        try {
+            buffer.reserve(getBufferSize());
+            serializeWithPadding(serializerFactory, buffer, withLeadingPadding);
+            return buffer.toByteArray();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Serialize the packet in compact form by appending it to the encode buffer.
+     *
+     * @param serializerFactory the serializer factory.
+     * @param buffer the encode buffer (pooled or caller-owned).
+     * @throws SerializerException when the serialization failed or the buffer is too small.
+     */
+    public void serializeCompact(@NonNull SerializerFactory serializerFactory, @NonNull BinaryPacketBuffer buffer) throws SerializerException {
+
+        mSerializer.serialize(serializerFactory, buffer.getCompactEncoder(), this);
+    }
+
+    /**
+     * Serialize the packet for the data channel by appending it to the encode buffer.
+     *
+     * @param serializerFactory the serializer factory.
+     * @param buffer the encode buffer (pooled or caller-owned).
+     * @param withLeadingPadding when true, emit the leading padding and use the legacy encoder.
+     * @throws SerializerException when the serialization failed or the buffer is too small.
+     */
+    public void serializeWithPadding(@NonNull SerializerFactory serializerFactory, @NonNull BinaryPacketBuffer buffer,
+                                     boolean withLeadingPadding) throws SerializerException {
+
         final BinaryEncoder binaryEncoder;
         if (withLeadingPadding) {
-            binaryEncoder = new BinaryEncoder(outputStream);
+            binaryEncoder = buffer.getEncoder();
             binaryEncoder.writeFixed(PeerConnectionService.LEADING_PADDING, 0, PeerConnectionService.LEADING_PADDING.length);
         } else {
-            binaryEncoder = new BinaryCompactEncoder(outputStream);
+            binaryEncoder = buffer.getCompactEncoder();
         }
         mSerializer.serialize(serializerFactory, binaryEncoder, this);
-        return outputStream.toByteArray();
+    }
+
+    /**
+     * Serialize the packet in compact form directly in the caller-owned byte buffer.
+     * The buffer position is moved after the serialized packet.
+     *
+     * @param serializerFactory the serializer factory.
+     * @param target the target buffer.
+     * @return the number of bytes written.
+     * @throws SerializerException when the serialization failed or the target buffer is too small.
+     */
+    public int serializeCompact(@NonNull SerializerFactory serializerFactory, @NonNull ByteBuffer target) throws SerializerException {
+
+        final BinaryPacketBuffer buffer = BinaryPacketBuffer.wrap(target);
+        serializeCompact(serializerFactory, buffer);
+        return buffer.size();
+    }
+
+    /**
+     * Serialize the packet in compact form directly in the caller-owned byte array slice.
+     *
+     * @param serializerFactory the serializer factory.
+     * @param target the target array.
+     * @param offset the offset where the packet is written.
+     * @param length the space available in the target array.
+     * @return the number of bytes written.
+     * @throws SerializerException when the serialization failed or the target slice is too small.
+     */
+    public int serializeCompact(@NonNull SerializerFactory serializerFactory, @NonNull byte[] target,
+                                int offset, int length) throws SerializerException {
+
+        final BinaryPacketBuffer buffer = BinaryPacketBuffer.wrap(target, offset, length);
+        serializeCompact(serializerFactory, buffer);
+        return buffer.size();
     }
 
     protected void appendTo(@NonNull StringBuilder stringBuilder) {
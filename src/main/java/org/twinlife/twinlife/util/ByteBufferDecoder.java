@@ -0,0 +1,383 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import android.util.Log;
+
+import org.twinlife.twinlife.BaseService;
+import org.twinlife.twinlife.Decoder;
+import org.twinlife.twinlife.SerializerException;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Decoder reading directly from a ByteBuffer with absolute indexing.
+ * <p>
+ * It decodes the same format as BinaryDecoder (legacy mode) and BinaryCompactDecoder (compact mode)
+ * but it avoids the InputStream layer and the byte per byte virtual read() calls.  Strings are created
+ * from the buffer backing array when there is one and ASCII only strings are decoded without going
+ * through the UTF-8 charset decoder.
+ * <p>
+ * When zero copy is enabled, readBytes() returns a slice of the source buffer: the caller must not use
+ * the array() of the returned buffer and must not keep it after the source buffer is released.  The
+ * position of the source buffer is not modified.
+ */
+public class ByteBufferDecoder implements Decoder {
+    private static final String LOG_TAG = "ByteBufferDecoder";
+    private static final boolean DEBUG = false;
+
+    @NonNull
+    private final ByteBuffer mBuffer;
+    @Nullable
+    private final byte[] mArray;
+    private final int mArrayOffset;
+    private final int mLimit;
+    private final boolean mCompact;
+    private final boolean mZeroCopy;
+    private int mPosition;
+
+    public ByteBufferDecoder(@NonNull ByteBuffer buffer, boolean compact) {
+
+        this(buffer, compact, false);
+    }
+
+    public ByteBufferDecoder(@NonNull ByteBuffer buffer, boolean compact, boolean zeroCopy) {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "ByteBufferDecoder: buffer=" + buffer + " compact=" + compact + " zeroCopy=" + zeroCopy);
+        }
+
+        mBuffer = buffer;
+        mCompact = compact;
+        mZeroCopy = zeroCopy;
+        mPosition = buffer.position();
+        mLimit = buffer.limit();
+        if (buffer.hasArray()) {
+            mArray = buffer.array();
+            mArrayOffset = buffer.arrayOffset();
+        } else {
+            mArray = null;
+            mArrayOffset = 0;
+        }
+    }
+
+    /**
+     * Get the current read position in the source buffer.
+     *
+     * @return the absolute position of the next byte to read.
+     */
+    public int getPosition() {
+
+        return mPosition;
+    }
+
+    @Override
+    public boolean isEof() {
+
+        return mPosition >= mLimit;
+    }
+
+    @Override
+    public boolean readBoolean() throws SerializerException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "readBoolean");
+        }
+
+        return readByte() != 0;
+    }
+
+    @Override
+    public int readInt() throws SerializerException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "readInt");
+        }
+
+        int value = 0;
+        int shift = 0;
+        do {
+            final int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+
+                return (value >>> 1) ^ -(value & 1);
+            }
+            shift += 7;
+        } while (shift < 32);
+
+        throw new SerializerException();
+    }
+
+    @Override
+    public long readLong() throws SerializerException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "readLong");
+        }
+
+        long value = 0;
+        int shift = 0;
+        do {
+            final int b = readByte();
+            value |= (b & 0x7FL) << shift;
+            if ((b & 0x80) == 0) {
+
+                return (value >>> 1) ^ -(value & 1);
+            }
+            shift += 7;
+        } while (shift < 64);
+
+        throw new SerializerException();
+    }
+
+    @Override
+    @NonNull
+    public UUID readUUID() throws SerializerException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "readUUID");
+        }
+
+        if (mCompact) {
+            checkAvailable(16);
+            final long leastSignificantBits = getFixedLong(mPosition);
+            final long mostSignificantBits = getFixedLong(mPosition + 8);
+            mPosition += 16;
+
+            return new UUID(mostSignificantBits, leastSignificantBits);
+        } else {
+            final long leastSignificantBits = readLong();
+            final long mostSignificantBits = readLong();
+
+            return new UUID(mostSignificantBits, leastSignificantBits);
+        }
+    }
+
+    @Override
+    @Nullable
+    public UUID readOptionalUUID() throws SerializerException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "readOptionalUUID");
+        }
+
+        if (readBoolean()) {
+            return readUUID();
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public double readDouble() throws SerializerException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "readDouble");
+        }
+
+        checkAvailable(8);
+        final long value = getFixedLong(mPosition);
+        mPosition += 8;
+
+        return Double.longBitsToDouble(value);
+    }
+
+    @Override
+    public int readEnum() throws SerializerException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "readEnum");
+        }
+
+        return readInt();
+    }
+
+    @Override
+    @NonNull
+    @SuppressWarnings("deprecation")
+    public String readString() throws SerializerException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "readString");
+        }
+
+        final int length = readInt();
+        if (length <= 0) {
+            return "";
+        }
+
+        checkAvailable(length);
+        final int start = mPosition;
+        mPosition += length;
+        if (mArray != null) {
+            final int offset = mArrayOffset + start;
+            if (isAscii(mArray, offset, length)) {
+                // ASCII only: build the string from the bytes without the UTF-8 decoder.
+                return new String(mArray, 0, offset, length);
+            }
+            return new String(mArray, offset, length, Utf8.UTF8);
+        }
+
+        final byte[] data = new byte[length];
+        getBytes(start, data, 0, length);
+        return Utf8.create(data, length);
+    }
+
+    @Override
+    @Nullable
+    public String readOptionalString() throws SerializerException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "readOptionalString");
+        }
+
+        if (readInt() == 1) {
+            return readString();
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    @NonNull
+    public ByteBuffer readBytes(@Nullable ByteBuffer buffer) throws SerializerException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "readBytes: buffer=" + buffer);
+        }
+
+        final int length = readInt();
+        if (length < 0) {
+            throw new SerializerException();
+        }
+        checkAvailable(length);
+
+        if (mZeroCopy) {
+            final ByteBuffer slice = mBuffer.duplicate();
+            slice.limit(mPosition + length);
+            slice.position(mPosition);
+            mPosition += length;
+
+            return slice.slice();
+        }
+
+        final ByteBuffer lBuffer;
+        if (buffer != null && length <= buffer.capacity()) {
+            lBuffer = buffer;
+            lBuffer.clear();
+        } else {
+            lBuffer = ByteBuffer.allocate(length);
+        }
+        getBytes(mPosition, lBuffer.array(), lBuffer.arrayOffset(), length);
+        lBuffer.limit(length);
+        mPosition += length;
+
+        return lBuffer;
+    }
+
+    @Override
+    @Nullable
+    public byte[] readOptionalBytes(@Nullable ByteBuffer buffer) throws SerializerException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "readOptionalBytes: buffer=" + buffer);
+        }
+
+        if (readInt() != 1) {
+            return null;
+        }
+
+        // The caller needs a byte[]: always copy even in zero copy mode.
+        final int length = readInt();
+        if (length < 0) {
+            throw new SerializerException();
+        }
+        checkAvailable(length);
+        final byte[] result = new byte[length];
+        getBytes(mPosition, result, 0, length);
+        mPosition += length;
+
+        return result;
+    }
+
+    @Override
+    public void readFixed(@NonNull byte[] bytes, int start, int length) throws SerializerException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "readFixed: start=" + start + " length=" + length);
+        }
+
+        checkAvailable(length);
+        getBytes(mPosition, bytes, start, length);
+        mPosition += length;
+    }
+
+    @Override
+    @Nullable
+    public List<BaseService.AttributeNameValue> readAttributes() throws SerializerException {
+        if (DEBUG) {
+            Log.d(LOG_TAG, "readAttributes");
+        }
+
+        return BinaryDecoder.readAttributes(this);
+    }
+
+    //
+    // Private Methods
+    //
+
+    private int readByte() throws SerializerException {
+
+        if (mPosition >= mLimit) {
+            throw new SerializerException();
+        }
+        if (mArray != null) {
+            return mArray[mArrayOffset + mPosition++] & 0xFF;
+        } else {
+            return mBuffer.get(mPosition++) & 0xFF;
+        }
+    }
+
+    private void checkAvailable(int length) throws SerializerException {
+
+        if (length > mLimit - mPosition) {
+            throw new SerializerException();
+        }
+    }
+
+    private long getFixedLong(int position) {
+
+        long value = 0;
+        if (mArray != null) {
+            final int offset = mArrayOffset + position;
+            for (int i = 7; i >= 0; i--) {
+                value = (value << 8) | (mArray[offset + i] & 0xFFL);
+            }
+        } else {
+            for (int i = 7; i >= 0; i--) {
+                value = (value << 8) | (mBuffer.get(position + i) & 0xFFL);
+            }
+        }
+        return value;
+    }
+
+    private void getBytes(int position, @NonNull byte[] target, int offset, int length) {
+
+        if (mArray != null) {
+            System.arraycopy(mArray, mArrayOffset + position, target, offset, length);
+        } else {
+            final ByteBuffer source = mBuffer.duplicate();
+            source.position(position);
+            source.get(target, offset, length);
+        }
+    }
+
+    private static boolean isAscii(@NonNull byte[] data, int offset, int length) {
+
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (data[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
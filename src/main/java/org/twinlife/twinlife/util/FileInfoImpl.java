@@ -59,6 +59,11 @@ public class FileInfoImpl {
         return mFileId;
     }
 
+    public long getRemoteOffset() {
+
+        return mRemoteOffset;
+    }
+
     public void setRemoteOffset(long value) {
 
         mRemoteOffset = value;
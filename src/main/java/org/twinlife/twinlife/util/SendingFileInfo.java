@@ -1,5 +1,5 @@
 /*
- *  Copyright (c) 2020-2021 twinlife SA.
+ *  Copyright (c) 2020-2025 twinlife SA.
  *  SPDX-License-Identifier: AGPL-3.0-only
  *
  *  Contributors:
@@ -13,12 +13,17 @@ import androidx.annotation.NonNull;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 
 /**
- * A file that is being sent.  The file input stream remains open while we are sending it.
- * The SHA256 signature is computed while we read the input stream.
+ * A file that is being sent.  The file channel remains open while we are sending it.
+ * The SHA256 signature is computed while we read the file.
  * The signature is returned by getDigest() when the complete file was transferred.
+ * <p>
+ * Data is read from the file channel directly in the caller's array so that a file chunk
+ * can be read in place after the header of the packet that transports it.
  */
 public class SendingFileInfo {
     private static final String LOG_TAG = "SendingFileInfo";
@@ -29,6 +34,8 @@ public class SendingFileInfo {
     private final MessageDigest mDigest;
     @NonNull
     private final FileInputStream mInputStream;
+    @NonNull
+    private final FileChannel mChannel;
     private long mPosition;
 
     public SendingFileInfo(@NonNull File file, @NonNull FileInfoImpl fileInfo) throws Exception {
@@ -36,24 +43,22 @@ public class SendingFileInfo {
         mFileInfo = fileInfo;
         mDigest = MessageDigest.getInstance("SHA-256");
         mInputStream = new FileInputStream(file);
+        mChannel = mInputStream.getChannel();
         mPosition = 0;
 
         // Position to the correct position reading the file and computing its checksum.
         if (fileInfo.mRemoteOffset > 0) {
-            byte[] data = new byte[32 * 1024];
+            final byte[] data = new byte[64 * 1024];
 
             while (mPosition < fileInfo.mRemoteOffset) {
-                long remain = fileInfo.mRemoteOffset - mPosition;
-                if (remain < data.length) {
-                    data = new byte[(int)remain];
-                }
-                int size = read(data);
+                final int length = (int) Math.min(data.length, fileInfo.mRemoteOffset - mPosition);
+                int size = read(data, 0, length);
                 if (size <= 0) {
                     break;
                 }
-                if (size != data.length) {
+                if (size != length) {
                     if (Logger.ERROR) {
-                        Logger.error(LOG_TAG, "Read block too short missing ",(data.length - size), " bytes");
+                        Logger.error(LOG_TAG, "Read block too short missing ",(length - size), " bytes");
                     }
                     break;
                 }
@@ -118,9 +123,31 @@ public class SendingFileInfo {
      */
     public int read(@NonNull byte[] data) throws Exception {
 
-        int size = mInputStream.read(data, 0, data.length);
+        return read(data, 0, data.length);
+    }
+
+    /**
+     * Read a block of data from the file channel in the array slice and update the digest.
+     * The slice is filled completely unless the end of file is reached.
+     *
+     * @param data the array where the block is read.
+     * @param offset the offset in the array.
+     * @param length the number of bytes to read.
+     * @return the number of bytes read.
+     * @throws Exception if there is a problem reading or computing the digest.
+     */
+    public int read(@NonNull byte[] data, int offset, int length) throws Exception {
+
+        final ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+        while (buffer.hasRemaining()) {
+            if (mChannel.read(buffer) < 0) {
+                break;
+            }
+        }
+
+        final int size = buffer.position() - offset;
         if (size > 0) {
-            mDigest.update(data, 0, size);
+            mDigest.update(data, offset, size);
             mPosition = mPosition + size;
         } else if (Logger.ERROR) {
             Logger.error(LOG_TAG, "Read returned ", size, " for ", mFileInfo);
@@ -340,19 +340,7 @@ public class Utils {
             }
 
             // UUID encoded in base64
-            final byte[] data = Base64.decode(value + "==", Base64.URL_SAFE);
-            if (data.length != 16) {
-                return null;
-            }
-            long msb = 0;
-            long lsb = 0;
-            for (int i=0; i<8; i++) {
-                msb = (msb << 8) | (data[i] & 0xff);
-            }
-            for (int i=8; i<16; i++) {
-                lsb = (lsb << 8) | (data[i] & 0xff);
-            }
-            return new UUID(msb, lsb);
+            return toUUID(Base64.decode(value + "==", Base64.URL_SAFE));
 
         } catch (Exception ignore) {
 
@@ -361,13 +349,36 @@ public class Utils {
     }
 
     /**
-     * Convert the UUID to a base64 string.
+     * Convert the 16 bytes binary form of the UUID (as stored in the database) to a UUID.
+     *
+     * @param data the binary UUID.
+     * @return the UUID or null.
+     */
+    @Nullable
+    public static UUID toUUID(@Nullable byte[] data) {
+        if (data == null || data.length != 16) {
+            return null;
+        }
+
+        long msb = 0;
+        long lsb = 0;
+        for (int i=0; i<8; i++) {
+            msb = (msb << 8) | (data[i] & 0xff);
+        }
+        for (int i=8; i<16; i++) {
+            lsb = (lsb << 8) | (data[i] & 0xff);
+        }
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * Get the 16 bytes binary form of the UUID (most significant byte first).
      *
      * @param value the UUID to convert.
-     * @return the URL base64 string.
+     * @return the binary UUID.
      */
     @NonNull
-    public static String toString(@NonNull UUID value) {
+    public static byte[] toBytes(@NonNull UUID value) {
         final byte[] data = new byte[16];
 
         long val = value.getMostSignificantBits();
@@ -390,6 +401,18 @@ public class Utils {
         data[10] = (byte) ((val >> 40) & 0x0FF);
         data[9] = (byte) ((val >> 48) & 0x0FF);
         data[8] = (byte) ((val >> 56) & 0x0FF);
+        return data;
+    }
+
+    /**
+     * Convert the UUID to a base64 string.
+     *
+     * @param value the UUID to convert.
+     * @return the URL base64 string.
+     */
+    @NonNull
+    public static String toString(@NonNull UUID value) {
+        final byte[] data = toBytes(value);
 
         // Encoder and drop the two last '=' which are not necessary.
         return Base64.encodeBytes(data, 0, data.length, Base64.DONT_BREAK_LINES | Base64.URL_SAFE).substring(0, 22);
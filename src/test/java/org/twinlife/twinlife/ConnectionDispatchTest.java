@@ -0,0 +1,211 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.jupiter.api.Test;
+import org.libwebsockets.ConnectionStats;
+import org.libwebsockets.ErrorCategory;
+import org.twinlife.twinlife.BaseService.BaseServiceId;
+import org.twinlife.twinlife.BaseService.ErrorCode;
+import org.twinlife.twinlife.util.BinaryErrorPacketIQ;
+import org.twinlife.twinlife.util.BinaryPacketIQ;
+import org.twinlife.twinlife.util.SerializerFactoryImpl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConnectionDispatchTest {
+
+    private static final BinaryPacketIQ.BinaryPacketIQSerializer IQ_ON_TEST_SERIALIZER
+            = BinaryPacketIQ.createDefaultSerializer(UUID.fromString("3b1e02a5-6a0d-4e5c-9d8e-1c5f0f0a2b61"), 1);
+
+    /**
+     * A connection without network: the test injects the packets as if they were received from the server.
+     */
+    private static final class TestConnection extends Connection {
+
+        TestConnection(@NonNull SerializerFactory serializerFactory) {
+            super(new ConnectionListener() {
+                @Override
+                public void onConnect() {
+                }
+
+                @Override
+                public void onDisconnect(@NonNull ErrorCategory errorCategory) {
+                }
+            }, serializerFactory, null);
+        }
+
+        void receive(@NonNull byte[] packet) {
+
+            onBinaryMessageInternal(ByteBuffer.wrap(packet));
+        }
+
+        @Override
+        public boolean isConnected() {
+
+            return true;
+        }
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public void service(int timeout) {
+        }
+
+        @Override
+        public void wakeupWorker() {
+        }
+
+        @Override
+        public boolean sendDataPacket(byte[] packet) {
+
+            return true;
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        @Nullable
+        public ConnectionStats getConnectStats() {
+
+            return null;
+        }
+
+        @Override
+        public void destroy() {
+
+            mReaderExecutorService.shutdownNow();
+        }
+
+        @Override
+        @NonNull
+        public String getDomain() {
+
+            return "test.twinlife";
+        }
+
+        @Override
+        @NonNull
+        public ConnectionStatus getConnectionStatus() {
+
+            return ConnectionStatus.CONNECTED;
+        }
+
+        @Override
+        public void onNetworkDisconnect() {
+        }
+    }
+
+    @Test
+    public void testErrorAfterResponse() throws Exception {
+
+        final SerializerFactoryImpl serializerFactory = new SerializerFactoryImpl();
+        final TestConnection connection = new TestConnection(serializerFactory);
+        connection.setDispatchMode(Connection.DispatchMode.PER_SERVICE);
+        final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(4);
+
+        // The first response handler is slow: the error received after it must wait on the service lane.
+        connection.addPacketListener(BaseServiceId.TWINCODE_OUTBOUND_SERVICE_ID, IQ_ON_TEST_SERIALIZER, (BinaryPacketIQ iq) -> {
+            if (iq.getRequestId() == 1) {
+                try {
+                    assertTrue(blocked.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            events.add("response " + iq.getRequestId());
+            done.countDown();
+        });
+
+        // Request 2 and 3 were sent by the outbound service, request 4 is not known.
+        connection.addPacketListener(BinaryErrorPacketIQ.IQ_ON_ERROR_SERIALIZER,
+                (BinaryPacketIQ iq) -> iq.getRequestId() <= 3 ? BaseServiceId.TWINCODE_OUTBOUND_SERVICE_ID : null,
+                (BinaryPacketIQ iq) -> {
+                    events.add("error " + iq.getRequestId());
+                    done.countDown();
+                });
+
+        connection.receive(new BinaryPacketIQ(IQ_ON_TEST_SERIALIZER, 1).serializeCompact(serializerFactory));
+        connection.receive(new BinaryErrorPacketIQ(2, ErrorCode.ITEM_NOT_FOUND).serializeCompact(serializerFactory));
+        connection.receive(new BinaryPacketIQ(IQ_ON_TEST_SERIALIZER, 3).serializeCompact(serializerFactory));
+        connection.receive(new BinaryErrorPacketIQ(4, ErrorCode.ITEM_NOT_FOUND).serializeCompact(serializerFactory));
+
+        // The error without owner goes on the default lane and is not blocked by the outbound service.
+        for (int i = 0; i < 100 && !events.contains("error 4"); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(Collections.singletonList("error 4"), new ArrayList<>(events));
+
+        blocked.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("error 4", events.get(0));
+        assertEquals("response 1", events.get(1));
+        assertEquals("error 2", events.get(2));
+        assertEquals("response 3", events.get(3));
+
+        connection.destroy();
+    }
+
+    @Test
+    public void testHandlerError() throws Exception {
+
+        final SerializerFactoryImpl serializerFactory = new SerializerFactoryImpl();
+        final TestConnection connection = new TestConnection(serializerFactory);
+        final List<Long> events = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done = new CountDownLatch(3);
+
+        // The handler of the first packet throws an Error: the lane must continue with the next packets.
+        connection.addPacketListener(BaseServiceId.TWINCODE_OUTBOUND_SERVICE_ID, IQ_ON_TEST_SERIALIZER, (BinaryPacketIQ iq) -> {
+            events.add(iq.getRequestId());
+            done.countDown();
+            if (iq.getRequestId() == 1) {
+                throw new OutOfMemoryError("test");
+            }
+        });
+
+        connection.receive(new BinaryPacketIQ(IQ_ON_TEST_SERIALIZER, 1).serializeCompact(serializerFactory));
+        assertTrue(waitFor(() -> events.size() == 1));
+        connection.receive(new BinaryPacketIQ(IQ_ON_TEST_SERIALIZER, 2).serializeCompact(serializerFactory));
+        connection.receive(new BinaryPacketIQ(IQ_ON_TEST_SERIALIZER, 3).serializeCompact(serializerFactory));
+
+        // The default SERIAL mode executes the packets in the order they are received.
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1L, 2L, 3L), new ArrayList<>(events));
+
+        connection.destroy();
+    }
+
+    private static boolean waitFor(@NonNull BooleanSupplier condition) throws InterruptedException {
+
+        for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(10);
+        }
+        return condition.getAsBoolean();
+    }
+}
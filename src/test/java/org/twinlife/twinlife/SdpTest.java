@@ -1,5 +1,5 @@
 /*
- *  Copyright (c) 2022-2024 twinlife SA.
+ *  Copyright (c) 2022-2025 twinlife SA.
  *  SPDX-License-Identifier: AGPL-3.0-only
  *
  *  Contributors:
@@ -22,6 +22,7 @@ import java.util.UUID;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class SdpTest {
@@ -195,6 +196,116 @@ public class SdpTest {
         }
     }
 
+    @Test
+    public void testDictionaryCompress() {
+        String content = getSDP("sdp-android-filtered.txt");
+        assertNotNull(content);
+
+        Sdp sdp = new Sdp(content, Sdp.DICTIONARY_V1);
+        assertTrue(sdp.isCompressed());
+        assertEquals(Sdp.DICTIONARY_V1, sdp.getDictionary());
+        assertEquals(content, sdp.getSdp());
+
+        // SDP received from the peer.
+        Sdp received = new Sdp(sdp.getData(), sdp.getLength(), true, Sdp.DICTIONARY_V1, 0);
+        assertEquals(content, received.getSdp());
+
+        // The dictionary is necessary and it must be known.
+        received = new Sdp(sdp.getData(), sdp.getLength(), true, Sdp.DICTIONARY_NONE, 0);
+        assertNull(received.getSdp());
+        received = new Sdp(sdp.getData(), sdp.getLength(), true, 15, 0);
+        assertNull(received.getSdp());
+
+        // An unknown dictionary falls back to the legacy compression.
+        sdp = new Sdp(content, 15);
+        assertTrue(sdp.isCompressed());
+        assertEquals(Sdp.DICTIONARY_NONE, sdp.getDictionary());
+        assertEquals(content, sdp.getSdp());
+
+        // Small SDP are compressed only when the result is smaller.
+        content = "a=mid:0\r\nx=" + UUID.randomUUID() + UUID.randomUUID();
+        sdp = new Sdp(content, Sdp.DICTIONARY_V1);
+        assertTrue(sdp.getLength() <= content.length());
+        assertEquals(content, sdp.getSdp());
+    }
+
+    private void benchmarkSDP(@NonNull String name, @NonNull String content, @NonNull long[] totals) {
+
+        Sdp legacy = null;
+        Sdp dictionary = null;
+        long t1 = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            legacy = new Sdp(content);
+        }
+        t1 = System.nanoTime() - t1;
+
+        long t2 = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            dictionary = new Sdp(content, Sdp.DICTIONARY_V1);
+        }
+        t2 = System.nanoTime() - t2;
+
+        long t3 = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(content, dictionary.getSdp());
+        }
+        t3 = System.nanoTime() - t3;
+        assertEquals(content, legacy.getSdp());
+
+        totals[0] += content.length();
+        totals[1] += legacy.getLength();
+        totals[2] += dictionary.getLength();
+        System.out.println("SDP " + name + " size " + content.length() + " legacy " + legacy.getLength()
+                + " dictionary " + dictionary.getLength() + " compress " + (t1 / 1000) + "/" + (t2 / 1000)
+                + " ns decompress " + (t3 / 1000) + " ns");
+    }
+
+    @Test
+    public void testDictionaryBenchmark() {
+        // SDPs from which the dictionary was written: the gain on them is optimistic.
+        final String[] trainingCorpus = {
+                "sdp-firefox.txt", "sdp-firefox-result.txt", "sdp-firefox-filtered.txt",
+                "sdp-safari-video.txt", "sdp-safari-video-result.txt",
+                "sdp-safari-audio.txt", "sdp-safari-audio-result.txt",
+                "sdp-android-filtered.txt", "sdp-android-audio-filtered.txt"
+        };
+
+        // SDPs that were not used to write the dictionary.
+        final String[] heldOutCorpus = {
+                "sdp-heldout-jsep-offer.txt", "sdp-heldout-jsep-answer.txt", "sdp-heldout-datachannel.txt"
+        };
+
+        final long[] totals = new long[3];
+        for (String name : trainingCorpus) {
+            String content = getSDP(name);
+            assertNotNull(content);
+            benchmarkSDP(name, content, totals);
+        }
+        System.out.println("SDP training corpus size " + totals[0] + " legacy " + totals[1] + " dictionary " + totals[2]);
+        assertTrue(totals[2] < totals[1]);
+
+        final long[] heldOutTotals = new long[3];
+        for (String name : heldOutCorpus) {
+            String content = getSDP(name);
+            assertNotNull(content);
+            benchmarkSDP(name, content, heldOutTotals);
+        }
+        System.out.println("SDP held-out corpus size " + heldOutTotals[0] + " legacy " + heldOutTotals[1]
+                + " dictionary " + heldOutTotals[2]);
+        assertTrue(heldOutTotals[2] < heldOutTotals[1]);
+
+        // Transport-info with the candidates packed by the TransportCandidateList: the dictionary is not useful.
+        for (String[] ref : new String[][] { C_Ref, T_Ref }) {
+            TransportCandidateList candidates = new TransportCandidateList();
+            for (int i = 0; i < ref.length; i++) {
+                candidates.addCandidate(i, "data", ref[i]);
+            }
+            final String content = candidates.buildSdp(1).getSdp();
+            assertNotNull(content);
+            benchmarkSDP("transport-info " + ref.length, content, new long[3]);
+        }
+    }
+
     private void saveTestSDP(@NonNull String name, @NonNull String sdp) throws Exception {
         File file = new File(name);
         try (FileOutputStream outputStream = new FileOutputStream(file)) {
@@ -0,0 +1,210 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.accountMigration;
+
+import androidx.annotation.NonNull;
+
+import org.junit.jupiter.api.Test;
+import org.twinlife.twinlife.util.FileInfoImpl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DatabaseBlockTransferTest {
+
+    private static final int BLOCK_SIZE = DatabaseBlockTransfer.BLOCK_SIZE;
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    // 5 blocks and a half.
+    private static final int FILE_SIZE = 5 * BLOCK_SIZE + BLOCK_SIZE / 2;
+
+    @NonNull
+    private static File createFile(@NonNull byte[] content) throws Exception {
+
+        final File file = File.createTempFile("database", ".db");
+        file.deleteOnExit();
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content);
+        }
+        return file;
+    }
+
+    @NonNull
+    private static byte[] createContent() {
+
+        final byte[] content = new byte[FILE_SIZE];
+        new Random(1).nextBytes(content);
+        return content;
+    }
+
+    /**
+     * Run the sender side against the peer file: query the hashes, send the blocks that differ,
+     * write them in the peer file and check the final digest.
+     */
+    private static long transfer(@NonNull File source, @NonNull File peer) throws Exception {
+
+        final DatabaseBlockTransfer transfer = new DatabaseBlockTransfer(source,
+                new FileInfoImpl(1, source.getName(), source.length(), 0));
+        long sent = 0;
+        try (RandomAccessFile output = new RandomAccessFile(peer, "rw")) {
+            while (!transfer.isComplete()) {
+                if (transfer.needQuery()) {
+                    final int firstBlock = transfer.getQueryFirstBlock();
+                    final int count = transfer.startQuery();
+                    assertFalse(transfer.needQuery());
+                    transfer.onBlockHashes(firstBlock, DatabaseBlockTransfer.computeBlockHashes(peer, BLOCK_SIZE, firstBlock, count));
+                }
+                while (transfer.hasData()) {
+                    final long position = transfer.getPosition();
+                    final byte[] chunk = transfer.readChunk(CHUNK_SIZE);
+                    assertTrue(chunk.length <= CHUNK_SIZE);
+                    output.seek(position);
+                    output.write(chunk);
+                    sent += chunk.length;
+                }
+            }
+            output.setLength(source.length());
+        }
+
+        assertEquals(source.length(), sent + transfer.getSkipped());
+        final byte[] digest = transfer.getDigest(12L);
+        assertTrue(transfer.isDigestRequest(12L));
+        assertFalse(transfer.isComplete());
+        assertArrayEquals(DatabaseBlockTransfer.computeDigest(source), digest);
+        assertArrayEquals(digest, DatabaseBlockTransfer.computeDigest(peer));
+        transfer.cancel();
+        return sent;
+    }
+
+    @Test
+    public void testBlockHashes() throws Exception {
+
+        final byte[] content = createContent();
+        final File file = createFile(content);
+
+        final List<byte[]> hashes = DatabaseBlockTransfer.computeBlockHashes(file, BLOCK_SIZE, 0, 8);
+        assertEquals(8, hashes.size());
+        for (int i = 0; i < 6; i++) {
+            assertNotNull(hashes.get(i));
+            assertEquals(32, hashes.get(i).length);
+        }
+
+        // Blocks beyond the end of file have no hash.
+        assertNull(hashes.get(6));
+        assertNull(hashes.get(7));
+
+        // The hash of a range starting on another block is the same.
+        final List<byte[]> range = DatabaseBlockTransfer.computeBlockHashes(file, BLOCK_SIZE, 3, 3);
+        assertArrayEquals(hashes.get(3), range.get(0));
+        assertArrayEquals(hashes.get(5), range.get(2));
+
+        // Invalid queries and a missing file give null hashes.
+        for (List<byte[]> invalid : new List[] {
+                DatabaseBlockTransfer.computeBlockHashes(file, BLOCK_SIZE * 2, 0, 2),
+                DatabaseBlockTransfer.computeBlockHashes(file, BLOCK_SIZE, -1, 2),
+                DatabaseBlockTransfer.computeBlockHashes(new File(file.getPath() + ".missing"), BLOCK_SIZE, 0, 2) }) {
+            assertEquals(2, invalid.size());
+            assertNull(invalid.get(0));
+            assertNull(invalid.get(1));
+        }
+        assertEquals(DatabaseBlockTransfer.MAX_BLOCKS_PER_QUERY,
+                DatabaseBlockTransfer.computeBlockHashes(file, BLOCK_SIZE, 0, 1000).size());
+    }
+
+    @Test
+    public void testNewFile() throws Exception {
+
+        final File source = createFile(createContent());
+        final File peer = File.createTempFile("peer", ".db");
+        peer.deleteOnExit();
+        assertTrue(peer.delete());
+
+        // The peer has nothing: all blocks are sent.
+        assertEquals(FILE_SIZE, transfer(source, peer));
+    }
+
+    @Test
+    public void testSameFile() throws Exception {
+
+        final byte[] content = createContent();
+        final File source = createFile(content);
+        final File peer = createFile(content);
+
+        // The peer has everything: nothing is sent.
+        assertEquals(0, transfer(source, peer));
+    }
+
+    @Test
+    public void testModifiedFile() throws Exception {
+
+        final byte[] content = createContent();
+        final File peer = createFile(content);
+
+        // Change one byte in block 1 and in the last (partial) block, and grow the file by one block.
+        final byte[] modified = new byte[FILE_SIZE + BLOCK_SIZE];
+        System.arraycopy(content, 0, modified, 0, FILE_SIZE);
+        modified[BLOCK_SIZE + 10] ^= 1;
+        modified[FILE_SIZE - 1] ^= 1;
+        final File source = createFile(modified);
+
+        // Blocks 1 and 5 are sent as well as the half block 6.
+        assertEquals(2 * BLOCK_SIZE + BLOCK_SIZE / 2, transfer(source, peer));
+
+        // A second attempt has nothing to send.
+        assertEquals(0, transfer(source, peer));
+    }
+
+    @Test
+    public void testTruncatedFile() throws Exception {
+
+        final byte[] content = createContent();
+        final File source = createFile(content);
+        final File peer = createFile(content);
+        try (RandomAccessFile output = new RandomAccessFile(peer, "rw")) {
+            output.setLength(2 * BLOCK_SIZE + 100);
+        }
+
+        // Block 2 is partial on the peer, blocks 3 to 5 are missing.
+        assertEquals(FILE_SIZE - 2 * BLOCK_SIZE, transfer(source, peer));
+        assertArrayEquals(content, Files.readAllBytes(peer.toPath()));
+    }
+
+    @Test
+    public void testUnexpectedHashes() throws Exception {
+
+        final File source = createFile(createContent());
+        final DatabaseBlockTransfer transfer = new DatabaseBlockTransfer(source,
+                new FileInfoImpl(1, source.getName(), source.length(), 0));
+
+        // Hashes that were not queried are ignored.
+        final List<byte[]> hashes = DatabaseBlockTransfer.computeBlockHashes(source, BLOCK_SIZE, 0, 6);
+        assertEquals(0, transfer.onBlockHashes(0, hashes));
+        assertFalse(transfer.hasData());
+
+        assertEquals(0, transfer.getQueryFirstBlock());
+        assertEquals(6, transfer.startQuery());
+        assertEquals(0, transfer.onBlockHashes(2, hashes));
+        assertEquals(FILE_SIZE, transfer.onBlockHashes(0, hashes));
+        assertEquals(FILE_SIZE, transfer.getSkipped());
+        assertFalse(transfer.hasData());
+        assertTrue(transfer.isComplete());
+        transfer.cancel();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.conversation;
+
+import androidx.annotation.NonNull;
+
+import org.junit.jupiter.api.Test;
+import org.twinlife.twinlife.ConversationService.FileTransferStats;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileTransferControllerTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    private long mNow = START;
+
+    /**
+     * Simulate the acks of a transfer: one ack every `interval` ms for `ackedBytes` with the given RTT.
+     */
+    private void ack(@NonNull FileTransferController controller, int count, long interval, long ackedBytes, int rtt) {
+
+        for (int i = 0; i < count; i++) {
+            mNow += interval;
+            controller.onAck(mNow - rtt, ackedBytes, mNow);
+        }
+    }
+
+    @Test
+    public void testInitialWindow() {
+
+        final FileTransferController controller = new FileTransferController();
+        assertEquals(FileTransferController.INITIAL_WINDOW, controller.getWindow());
+        assertEquals(ConversationConnection.CHUNK_LOW_RTT, controller.getChunkSize());
+
+        // Without bandwidth samples, the chunk size is selected from the RTT.
+        controller.onRTTSample(1500, mNow);
+        assertEquals(FileTransferController.INITIAL_WINDOW, controller.getWindow());
+        assertEquals(ConversationConnection.CHUNK_HIGH_RTT, controller.getChunkSize());
+
+        // The first ack gives an RTT but no delivery rate.
+        final FileTransferController other = new FileTransferController();
+        other.onRTTSample(600, mNow);
+        assertEquals(ConversationConnection.CHUNK_NORMAL_RTT, other.getChunkSize());
+        mNow += 10000;
+        other.onAck(mNow - 600, 64 * 1024, mNow);
+        assertEquals(FileTransferController.INITIAL_WINDOW, other.getWindow());
+    }
+
+    @Test
+    public void testGrowWindow() {
+
+        final FileTransferController controller = new FileTransferController();
+        controller.onRTTSample(50, mNow);
+
+        // 100K every 10ms: 10M/s with a 50ms RTT gives a BDP of 500K and a window of 2 * BDP.
+        ack(controller, 20, 10, 100 * 1000, 50);
+
+        final FileTransferStats stats = controller.getStats();
+        assertEquals(10 * 1000 * 1000, stats.getBandwidth());
+        assertEquals(50, stats.getMinRTT());
+        assertEquals(2 * 500 * 1000, controller.getWindow());
+        assertEquals(FileTransferController.MAX_CHUNK_SIZE, controller.getChunkSize());
+
+        // A faster path is limited to MAX_WINDOW.
+        ack(controller, 20, 10, 10 * 1000 * 1000, 50);
+        assertEquals(FileTransferController.MAX_WINDOW, controller.getWindow());
+    }
+
+    @Test
+    public void testShrinkWhenQueueing() {
+
+        final FileTransferController controller = new FileTransferController();
+        controller.onRTTSample(50, mNow);
+        ack(controller, 20, 10, 100 * 1000, 50);
+        final long window = controller.getWindow();
+
+        // The RTT goes well above the min RTT: the path is queueing and the window drops to the BDP.
+        ack(controller, 40, 10, 100 * 1000, 400);
+        final FileTransferStats stats = controller.getStats();
+        assertEquals(50, stats.getMinRTT());
+        assertTrue(stats.getSmoothedRTT() > 2 * stats.getMinRTT());
+        assertEquals(window / 2, controller.getWindow());
+
+        // The RTT goes back to the min RTT: probe again with 2 * BDP.
+        ack(controller, 60, 10, 100 * 1000, 50);
+        assertEquals(window, controller.getWindow());
+    }
+
+    @Test
+    public void testShrinkWhenBandwidthDrops() {
+
+        final FileTransferController controller = new FileTransferController();
+        controller.onRTTSample(50, mNow);
+        ack(controller, 20, 10, 100 * 1000, 50);
+        final long window = controller.getWindow();
+
+        // The max filter keeps the old bandwidth for less than 10 samples.
+        ack(controller, 5, 10, 10 * 1000, 50);
+        assertEquals(window, controller.getWindow());
+
+        // 10K every 10ms: 1M/s with a 50ms RTT gives a window of 100K and 24K chunks.
+        ack(controller, 10, 10, 10 * 1000, 50);
+        assertEquals(2 * 50 * 1000, controller.getWindow());
+        assertEquals(24 * 1024, controller.getChunkSize());
+
+        // A very slow path is limited to MIN_WINDOW.
+        ack(controller, 10, 100, 1000, 50);
+        assertEquals(FileTransferController.MIN_WINDOW, controller.getWindow());
+        assertEquals(FileTransferController.MIN_CHUNK_SIZE, controller.getChunkSize());
+    }
+
+    @Test
+    public void testIgnoreIdleAndInvalidSamples() {
+
+        final FileTransferController controller = new FileTransferController();
+        controller.onRTTSample(50, mNow);
+        ack(controller, 20, 10, 100 * 1000, 50);
+        final FileTransferStats stats = controller.getStats();
+
+        // An ack after an idle period gives no delivery rate and an excessive RTT is ignored.
+        mNow += 5000;
+        controller.onAck(mNow - 50, 1000, mNow);
+        mNow += 10;
+        controller.onAck(mNow - 120000, 0, mNow);
+        controller.onAck(mNow + 10, 0, mNow);
+        assertEquals(stats.getBandwidth(), controller.getStats().getBandwidth());
+        assertEquals(stats.getSmoothedRTT(), controller.getStats().getSmoothedRTT());
+    }
+}
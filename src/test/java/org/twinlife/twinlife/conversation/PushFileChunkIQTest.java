@@ -0,0 +1,154 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.conversation;
+
+import androidx.annotation.NonNull;
+
+import org.junit.jupiter.api.Test;
+import org.twinlife.twinlife.ConversationService.DescriptorId;
+import org.twinlife.twinlife.util.BinaryEncoder;
+import org.twinlife.twinlife.util.FileInfoImpl;
+import org.twinlife.twinlife.util.Measure;
+import org.twinlife.twinlife.util.SendingFileInfo;
+import org.twinlife.twinlife.util.SerializerFactoryImpl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PushFileChunkIQTest {
+
+    private static final int FILE_SIZE = 8 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final SerializerFactoryImpl mSerializerFactory = new SerializerFactoryImpl();
+    private final DescriptorId mDescriptorId = new DescriptorId(0, UUID.randomUUID(), 1);
+
+    @NonNull
+    private static File createFile() throws Exception {
+
+        final File file = File.createTempFile("chunk", ".bin");
+        file.deleteOnExit();
+        final byte[] data = new byte[FILE_SIZE];
+        new Random(1).nextBytes(data);
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(data);
+        }
+        return file;
+    }
+
+    @NonNull
+    private SendingFileInfo open(@NonNull File file) throws Exception {
+
+        return new SendingFileInfo(file, new FileInfoImpl(1, file.getName(), FILE_SIZE, 0));
+    }
+
+    @NonNull
+    private byte[] readChunkPacket(@NonNull SendingFileInfo sendingFileInfo, long offset, int size, boolean padding) throws Exception {
+
+        final byte[] chunk = new byte[size];
+        sendingFileInfo.read(chunk);
+        final PushFileChunkIQ iq = new PushFileChunkIQ(PushFileChunkIQ.IQ_PUSH_FILE_CHUNK_SERIALIZER, 1L,
+                mDescriptorId, 0L, offset, 0, chunk, size);
+        return iq.serializeWithPadding(mSerializerFactory, padding);
+    }
+
+    @NonNull
+    private byte[] serializeChunkPacket(@NonNull SendingFileInfo sendingFileInfo, long offset, int size, boolean padding) throws Exception {
+
+        final PushFileChunkIQ iq = new PushFileChunkIQ(PushFileChunkIQ.IQ_PUSH_FILE_CHUNK_SERIALIZER, 1L,
+                mDescriptorId, 0L, offset, 0, null, size);
+        final byte[] packet = iq.serializeWithChunk(mSerializerFactory, sendingFileInfo, padding);
+        assertNotNull(packet);
+        return packet;
+    }
+
+    @Test
+    public void testSerializeWithChunk() throws Exception {
+
+        final File file = createFile();
+        for (boolean padding : new boolean[] { false, true }) {
+            final SendingFileInfo first = open(file);
+            final SendingFileInfo second = open(file);
+            for (long offset = 0; offset < FILE_SIZE; offset += CHUNK_SIZE) {
+                final int size = (int) Math.min(CHUNK_SIZE, FILE_SIZE - offset);
+                assertArrayEquals(readChunkPacket(first, offset, size, padding),
+                        serializeChunkPacket(second, offset, size, padding));
+            }
+            assertArrayEquals(first.getDigest(), second.getDigest());
+        }
+    }
+
+    @Test
+    public void testUpdateTimestamp() throws Exception {
+
+        final File file = createFile();
+        for (boolean padding : new boolean[] { false, true }) {
+            for (long offset : new long[] { 0, CHUNK_SIZE, FILE_SIZE - CHUNK_SIZE }) {
+                final long timestamp = System.currentTimeMillis();
+                final SendingFileInfo first = open(file);
+                final PushFileChunkIQ iq = new PushFileChunkIQ(PushFileChunkIQ.IQ_PUSH_FILE_CHUNK_SERIALIZER, 1L,
+                        mDescriptorId, timestamp, offset, 0, null, CHUNK_SIZE);
+                final byte[] packet = iq.serializeWithChunk(mSerializerFactory, first, padding);
+                assertNotNull(packet);
+
+                // Replacing the timestamp gives the packet serialized with the new timestamp.
+                assertTrue(BinaryEncoder.rewriteLong(packet, iq.getTimestampOffset(packet.length), timestamp + 1234));
+                final SendingFileInfo second = open(file);
+                final PushFileChunkIQ expect = new PushFileChunkIQ(PushFileChunkIQ.IQ_PUSH_FILE_CHUNK_SERIALIZER, 1L,
+                        mDescriptorId, timestamp + 1234, offset, 0, null, CHUNK_SIZE);
+                assertArrayEquals(expect.serializeWithChunk(mSerializerFactory, second, padding), packet);
+
+                // A timestamp with a different encoded size is not replaced.
+                assertFalse(BinaryEncoder.rewriteLong(packet, iq.getTimestampOffset(packet.length), 1));
+            }
+        }
+    }
+
+    @Test
+    public void testAllocationPerMB() throws Exception {
+
+        final File file = createFile();
+
+        // Warmup.
+        for (int i = 0; i < 3; i++) {
+            SendingFileInfo sendingFileInfo = open(file);
+            for (long offset = 0; offset < FILE_SIZE; offset += CHUNK_SIZE) {
+                readChunkPacket(sendingFileInfo, offset, CHUNK_SIZE, false);
+            }
+            sendingFileInfo.cancel();
+            sendingFileInfo = open(file);
+            for (long offset = 0; offset < FILE_SIZE; offset += CHUNK_SIZE) {
+                serializeChunkPacket(sendingFileInfo, offset, CHUNK_SIZE, false);
+            }
+            sendingFileInfo.cancel();
+        }
+
+        final int count = FILE_SIZE / CHUNK_SIZE;
+        final SendingFileInfo chunkFileInfo = open(file);
+        final Measure chunk = Measure.run("Chunk + serialize", count, "chunk",
+                () -> readChunkPacket(chunkFileInfo, 0, CHUNK_SIZE, false));
+        chunkFileInfo.cancel();
+
+        final SendingFileInfo inPlaceFileInfo = open(file);
+        final Measure inPlace = Measure.run("Read in place", count, "chunk",
+                () -> serializeChunkPacket(inPlaceFileInfo, 0, CHUNK_SIZE, false));
+        inPlaceFileInfo.cancel();
+
+        // Reading in place must save at least the intermediate chunk array for each packet.
+        assertTrue(chunk.allocated - inPlace.allocated >= FILE_SIZE,
+                "saved " + (chunk.allocated - inPlace.allocated) + " bytes for " + FILE_SIZE + " bytes of file");
+    }
+}
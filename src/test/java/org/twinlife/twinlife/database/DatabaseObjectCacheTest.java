@@ -0,0 +1,131 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.database;
+
+import androidx.annotation.NonNull;
+
+import org.junit.jupiter.api.Test;
+import org.twinlife.twinlife.DatabaseIdentifier;
+import org.twinlife.twinlife.DatabaseObject;
+import org.twinlife.twinlife.DatabaseObjectIdentification;
+import org.twinlife.twinlife.DatabaseTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DatabaseObjectCacheTest {
+
+    private static final int CACHE_SIZE = 100;
+
+    private static final DatabaseObjectIdentification FACTORY = new DatabaseObjectIdentification() {
+        private final UUID mSchemaId = UUID.randomUUID();
+
+        @Override
+        @NonNull
+        public DatabaseTable getKind() {
+
+            return DatabaseTable.values()[0];
+        }
+
+        @Override
+        @NonNull
+        public UUID getSchemaId() {
+
+            return mSchemaId;
+        }
+
+        @Override
+        public int getSchemaVersion() {
+
+            return 1;
+        }
+
+        @Override
+        public boolean isLocal() {
+
+            return true;
+        }
+    };
+
+    private static final class TestObject implements DatabaseObject {
+        private final DatabaseIdentifier mDatabaseId;
+        private final UUID mId;
+
+        TestObject(long id) {
+            mDatabaseId = new DatabaseIdentifier(FACTORY, id);
+            mId = UUID.randomUUID();
+        }
+
+        @Override
+        @NonNull
+        public DatabaseIdentifier getDatabaseId() {
+
+            return mDatabaseId;
+        }
+
+        @Override
+        @NonNull
+        public UUID getId() {
+
+            return mId;
+        }
+    }
+
+    @Test
+    public void testBounded() {
+
+        final DatabaseObjectCache cache = new DatabaseObjectCache(CACHE_SIZE);
+        final TestObject hot = new TestObject(0);
+        cache.put(hot);
+        assertSame(hot, cache.get(hot.getDatabaseId()));
+
+        // A scan of many objects only flushes the probation segment.
+        for (int i = 1; i <= 10 * CACHE_SIZE; i++) {
+            cache.put(new TestObject(i));
+        }
+        assertTrue(cache.size() <= CACHE_SIZE);
+        assertEquals(10 * CACHE_SIZE - CACHE_SIZE / 5, cache.getEvictionCount());
+        assertSame(hot, cache.get(hot.getId()));
+
+        cache.removeSchema(FACTORY.getSchemaId());
+        assertEquals(0, cache.size());
+        assertNull(cache.get(hot.getDatabaseId()));
+    }
+
+    @Test
+    public void testSingleInstance() {
+
+        final DatabaseObjectCache cache = new DatabaseObjectCache(CACHE_SIZE);
+        final List<TestObject> used = new ArrayList<>();
+        for (int i = 0; i < 10 * CACHE_SIZE; i++) {
+            final TestObject object = new TestObject(i);
+            cache.put(object);
+            if (i % 10 == 0) {
+                used.add(object);
+            }
+        }
+
+        // Evicted objects which are still referenced are returned with the same instance.
+        assertTrue(cache.size() <= CACHE_SIZE);
+        for (TestObject object : used) {
+            assertSame(object, cache.get(object.getDatabaseId()));
+            assertSame(object, cache.get(object.getId()));
+        }
+
+        final TestObject removed = used.get(0);
+        assertSame(removed, cache.remove(removed.getDatabaseId()));
+        assertNull(cache.get(removed.getId()));
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.database;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.jupiter.api.Test;
+import org.twinlife.twinlife.DatabaseCursor;
+import org.twinlife.twinlife.DatabaseStatement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QueryBuilderTest {
+
+    /**
+     * Statement that records the bound parameters.
+     */
+    private static final class BindStatement implements DatabaseStatement {
+        final List<Object> params = new ArrayList<>();
+
+        private void set(int index, @Nullable Object value) {
+
+            while (params.size() < index) {
+                params.add(null);
+            }
+            params.set(index - 1, value);
+        }
+
+        @Override
+        public void bindLong(int index, long value) {
+
+            set(index, value);
+        }
+
+        @Override
+        public void bindInt(int index, int value) {
+
+            set(index, (long) value);
+        }
+
+        @Override
+        public void bindBlob(int index, @NonNull byte[] value) {
+
+            set(index, value);
+        }
+
+        @Override
+        public void bindString(int index, @NonNull String value) {
+
+            set(index, value);
+        }
+
+        @Override
+        public void bindUUID(int index, @NonNull UUID value) {
+
+            set(index, value);
+        }
+
+        @Override
+        public void bindNull(int index) {
+
+            set(index, null);
+        }
+
+        @Override
+        @NonNull
+        public DatabaseCursor query() {
+
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        @Nullable
+        public Long queryLong() {
+
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @NonNull
+    private static List<Object> params(@NonNull QueryBuilder query) {
+
+        final BindStatement statement = new BindStatement();
+        query.bind(statement);
+        return statement.params;
+    }
+
+    @Test
+    public void testFilterMatch() {
+
+        final QueryBuilder query = new QueryBuilder("id FROM descriptorSearch");
+        assertTrue(query.filterMatch("descriptorSearch", "hello world"));
+        assertEquals("SELECT id FROM descriptorSearch WHERE descriptorSearch MATCH ?", query.getQuery());
+        assertEquals("\"hello world\"", params(query).get(0));
+    }
+
+    @Test
+    public void testFilterMatchEscape() {
+
+        // FTS5 operators and special characters are kept inside the quoted phrase.
+        final String[][] tests = {
+                { "say \"hi\" now", "\"say \"\"hi\"\" now\"" },
+                { "a OR b NOT c", "\"a OR b NOT c\"" },
+                { "col:value*", "\"col:value*\"" },
+                { "NEAR(x y)", "\"NEAR(x y)\"" },
+                { "100%", "\"100%\"" },
+                { "\"\"\"", "\"\"\"\"\"\"\"\"" },
+                { " été ", "\" été \"" }
+        };
+        for (String[] test : tests) {
+            final QueryBuilder query = new QueryBuilder("id FROM descriptorSearch");
+            assertTrue(query.filterMatch("descriptorSearch", test[0]), test[0]);
+            assertEquals(test[1], params(query).get(0));
+        }
+    }
+
+    @Test
+    public void testFilterMatchFallback() {
+
+        // Texts that cannot be searched by the trigram index: the query is not changed.
+        for (String text : new String[] { "", "ab", "😀😀", "a_b_c" }) {
+            assertFalse(QueryBuilder.canMatch(text), text);
+            final QueryBuilder query = new QueryBuilder("id FROM descriptorSearch");
+            assertFalse(query.filterMatch("descriptorSearch", text));
+            assertEquals("SELECT id FROM descriptorSearch", query.getQuery());
+            assertTrue(params(query).isEmpty());
+        }
+        assertTrue(QueryBuilder.canMatch("abc"));
+        assertTrue(QueryBuilder.canMatch("😀😀😀"));
+    }
+
+    @Test
+    public void testFilterMatchWithName() {
+
+        final QueryBuilder query = new QueryBuilder("d.id FROM descriptorSearch CROSS JOIN descriptor AS d");
+        query.filterInt("d.descriptorType", 2);
+        assertTrue(query.filterMatch("descriptorSearch", "50% off"));
+        query.filterName("d.content", "50% off");
+        assertEquals("SELECT d.id FROM descriptorSearch CROSS JOIN descriptor AS d WHERE d.descriptorType=?"
+                + " AND descriptorSearch MATCH ? AND d.content LIKE ? ESCAPE '^'", query.getQuery());
+        final List<Object> params = params(query);
+        assertEquals(3, params.size());
+        assertEquals(2L, params.get(0));
+        assertEquals("\"50% off\"", params.get(1));
+        assertEquals("%50^% off%", params.get(2));
+    }
+
+    @Test
+    public void testFilterInSet() {
+
+        final QueryBuilder query = new QueryBuilder("id FROM descriptor");
+        query.filterLong("cid", 12L);
+        query.filterInSet("id", Arrays.asList(1L, -2L, 3000000000L), true);
+        assertEquals("SELECT id FROM descriptor WHERE cid=? AND id IN (SELECT value FROM json_each(?))", query.getQuery());
+        final List<Object> params = params(query);
+        assertEquals(2, params.size());
+        assertEquals(12L, params.get(0));
+        assertEquals("[1,-2,3000000000]", params.get(1));
+
+        final QueryBuilder empty = new QueryBuilder("id FROM descriptor");
+        empty.filterInSet("id", Collections.emptyList(), true);
+        assertEquals("[]", params(empty).get(0));
+    }
+
+    @Test
+    public void testFilterInSetFallback() {
+
+        // Without json_each(), the ids are bound as integer parameters.
+        final QueryBuilder query = new QueryBuilder("id FROM descriptor");
+        query.filterLong("cid", 12L);
+        query.filterInSet("id", Arrays.asList(1L, -2L, 3L), false);
+        assertEquals("SELECT id FROM descriptor WHERE cid=? AND id IN (?, ?, ?)", query.getQuery());
+        assertEquals(Arrays.asList(12L, 1L, -2L, 3L), params(query));
+    }
+
+    @Test
+    public void testSplitSet() {
+
+        final List<Long> ids = new ArrayList<>();
+        for (long id = 0; id < 2 * QueryBuilder.MAX_IN_PARAMETERS + 10; id++) {
+            ids.add(id);
+        }
+
+        // The set is not split when json_each() is used or when it is small.
+        assertEquals(1, QueryBuilder.splitSet(ids, true).size());
+        assertEquals(1, QueryBuilder.splitSet(ids.subList(0, QueryBuilder.MAX_IN_PARAMETERS), false).size());
+
+        final List<Collection<Long>> parts = QueryBuilder.splitSet(ids, false);
+        assertEquals(3, parts.size());
+        final List<Long> result = new ArrayList<>();
+        for (Collection<Long> part : parts) {
+            assertTrue(part.size() <= QueryBuilder.MAX_IN_PARAMETERS);
+            final QueryBuilder query = new QueryBuilder("id FROM descriptor");
+            query.filterInSet("id", part, false);
+            final List<Object> params = params(query);
+            assertEquals(part.size(), params.size());
+            for (Object param : params) {
+                result.add((Long) param);
+            }
+        }
+        assertEquals(ids, result);
+    }
+}
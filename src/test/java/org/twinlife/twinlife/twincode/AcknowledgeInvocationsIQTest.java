@@ -0,0 +1,73 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.twincode;
+
+import androidx.annotation.NonNull;
+
+import org.junit.jupiter.api.Test;
+import org.twinlife.twinlife.BaseService.ErrorCode;
+import org.twinlife.twinlife.twincode.inbound.TwincodeInboundServiceImpl;
+import org.twinlife.twinlife.util.BinaryCompactDecoder;
+import org.twinlife.twinlife.util.SerializerFactoryImpl;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AcknowledgeInvocationsIQTest {
+
+    private final SerializerFactoryImpl mSerializerFactory = new SerializerFactoryImpl();
+
+    @NonNull
+    private AcknowledgeInvocationsIQ roundTrip(long requestId, @NonNull List<AcknowledgeInvocationsIQ.Acknowledge> acknowledges) throws Exception {
+
+        final AcknowledgeInvocationsIQ iq = new AcknowledgeInvocationsIQ(TwincodeInboundServiceImpl.IQ_ACKNOWLEDGE_INVOCATIONS_SERIALIZER,
+                requestId, acknowledges);
+        final byte[] packet = iq.serializeCompact(mSerializerFactory);
+
+        final BinaryCompactDecoder decoder = new BinaryCompactDecoder(new ByteArrayInputStream(packet));
+        assertEquals(TwincodeInboundServiceImpl.IQ_ACKNOWLEDGE_INVOCATIONS_SERIALIZER.schemaId, decoder.readUUID());
+        assertEquals(TwincodeInboundServiceImpl.IQ_ACKNOWLEDGE_INVOCATIONS_SERIALIZER.schemaVersion, decoder.readInt());
+        return (AcknowledgeInvocationsIQ) TwincodeInboundServiceImpl.IQ_ACKNOWLEDGE_INVOCATIONS_SERIALIZER.deserialize(mSerializerFactory, decoder);
+    }
+
+    @Test
+    public void testAcknowledgeInvocations() throws Exception {
+
+        final ErrorCode[] errorCodes = {
+                ErrorCode.SUCCESS, ErrorCode.ITEM_NOT_FOUND, ErrorCode.BAD_REQUEST, ErrorCode.NO_PERMISSION,
+                ErrorCode.NO_PRIVATE_KEY, ErrorCode.EXPIRED
+        };
+        final List<AcknowledgeInvocationsIQ.Acknowledge> acknowledges = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            acknowledges.add(new AcknowledgeInvocationsIQ.Acknowledge(UUID.randomUUID(), errorCodes[i % errorCodes.length]));
+        }
+
+        final AcknowledgeInvocationsIQ result = roundTrip(123456789L, acknowledges);
+        assertEquals(123456789L, result.getRequestId());
+        assertEquals(acknowledges.size(), result.getAcknowledges().size());
+        for (int i = 0; i < acknowledges.size(); i++) {
+            assertEquals(acknowledges.get(i).invocationId, result.getAcknowledges().get(i).invocationId);
+            assertEquals(acknowledges.get(i).errorCode, result.getAcknowledges().get(i).errorCode);
+        }
+    }
+
+    @Test
+    public void testEmptyAcknowledgeInvocations() throws Exception {
+
+        final AcknowledgeInvocationsIQ result = roundTrip(3L, Collections.emptyList());
+        assertEquals(3L, result.getRequestId());
+        assertTrue(result.getAcknowledges().isEmpty());
+    }
+}
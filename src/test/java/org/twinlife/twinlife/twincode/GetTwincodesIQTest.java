@@ -0,0 +1,99 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.twincode;
+
+import androidx.annotation.NonNull;
+
+import org.junit.jupiter.api.Test;
+import org.twinlife.twinlife.BaseService;
+import org.twinlife.twinlife.twincode.outbound.TwincodeOutboundServiceImpl;
+import org.twinlife.twinlife.util.BinaryCompactDecoder;
+import org.twinlife.twinlife.util.SerializerFactoryImpl;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GetTwincodesIQTest {
+
+    private static final int KNOWN_COUNT = 40;
+    private static final int UNKNOWN_COUNT = 24;
+
+    private final SerializerFactoryImpl mSerializerFactory = new SerializerFactoryImpl();
+
+    @NonNull
+    private OnGetTwincodesIQ decode(@NonNull byte[] packet) throws Exception {
+
+        final BinaryCompactDecoder decoder = new BinaryCompactDecoder(new ByteArrayInputStream(packet));
+        assertEquals(TwincodeOutboundServiceImpl.IQ_ON_GET_TWINCODES_SERIALIZER.schemaId, decoder.readUUID());
+        assertEquals(TwincodeOutboundServiceImpl.IQ_ON_GET_TWINCODES_SERIALIZER.schemaVersion, decoder.readInt());
+        return (OnGetTwincodesIQ) TwincodeOutboundServiceImpl.IQ_ON_GET_TWINCODES_SERIALIZER.deserialize(mSerializerFactory, decoder);
+    }
+
+    @Test
+    public void testGetTwincodes() throws Exception {
+
+        final LocalTwincodeServer server = new LocalTwincodeServer();
+        final List<UUID> request = new ArrayList<>();
+        final Set<UUID> known = new HashSet<>();
+        for (int i = 0; i < KNOWN_COUNT; i++) {
+            final UUID twincodeId = UUID.randomUUID();
+            final List<BaseService.AttributeNameValue> attributes = new ArrayList<>();
+            BaseService.AttributeNameStringValue.add(attributes, "name", "Twincode " + i);
+            BaseService.AttributeNameLongValue.add(attributes, "index", i);
+            server.addTwincode(twincodeId, 1000L + i, attributes);
+            known.add(twincodeId);
+            request.add(twincodeId);
+        }
+        final Set<UUID> unknown = new HashSet<>();
+        for (int i = 0; i < UNKNOWN_COUNT; i++) {
+            final UUID twincodeId = UUID.randomUUID();
+            unknown.add(twincodeId);
+            request.add(twincodeId);
+        }
+
+        final GetTwincodesIQ iq = new GetTwincodesIQ(TwincodeOutboundServiceImpl.IQ_GET_TWINCODES_SERIALIZER, 42L, request);
+        final OnGetTwincodesIQ response = decode(server.handle(iq.serializeCompact(mSerializerFactory)));
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(42L, response.getRequestId());
+        assertEquals(unknown, new HashSet<>(response.getUnknownTwincodeList()));
+        assertEquals(KNOWN_COUNT, response.getTwincodeList().size());
+        for (GetTwincodeInfo twincode : response.getTwincodeList()) {
+            assertTrue(known.contains(twincode.twincodeOutboundId));
+            assertEquals(2, twincode.attributes.size());
+            assertEquals("name", twincode.attributes.get(0).name);
+            final long index = (Long) twincode.attributes.get(1).value;
+            assertEquals("Twincode " + index, twincode.attributes.get(0).value);
+            assertEquals(1000L + index, twincode.modificationDate);
+            assertNull(twincode.signature);
+        }
+    }
+
+    @Test
+    public void testEmptyResponse() throws Exception {
+
+        final LocalTwincodeServer server = new LocalTwincodeServer();
+        final List<UUID> request = new ArrayList<>();
+        request.add(UUID.randomUUID());
+
+        final GetTwincodesIQ iq = new GetTwincodesIQ(TwincodeOutboundServiceImpl.IQ_GET_TWINCODES_SERIALIZER, 7L, request);
+        final OnGetTwincodesIQ response = decode(server.handle(iq.serializeCompact(mSerializerFactory)));
+
+        assertEquals(request, response.getUnknownTwincodeList());
+        assertTrue(response.getTwincodeList().isEmpty());
+    }
+}
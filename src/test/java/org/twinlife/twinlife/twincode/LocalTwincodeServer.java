@@ -0,0 +1,85 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.twincode;
+
+import androidx.annotation.NonNull;
+
+import org.twinlife.twinlife.BaseService.AttributeNameValue;
+import org.twinlife.twinlife.SerializerException;
+import org.twinlife.twinlife.twincode.outbound.TwincodeOutboundServiceImpl;
+import org.twinlife.twinlife.util.BinaryCompactDecoder;
+import org.twinlife.twinlife.util.SerializerFactoryImpl;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Local stand-in for the twincode server: it answers the GetTwincodesIQ packets produced
+ * by the client with the OnGetTwincodesIQ built from the twincodes it knows.
+ */
+public class LocalTwincodeServer {
+
+    private final SerializerFactoryImpl mSerializerFactory = new SerializerFactoryImpl();
+    private final Map<UUID, GetTwincodeInfo> mTwincodes = new HashMap<>();
+    private int mRequestCount;
+
+    public void addTwincode(@NonNull UUID twincodeId, long modificationDate, @NonNull List<AttributeNameValue> attributes) {
+
+        mTwincodes.put(twincodeId, new GetTwincodeInfo(twincodeId, modificationDate, attributes, null));
+    }
+
+    public boolean hasTwincode(@NonNull UUID twincodeId) {
+
+        return mTwincodes.containsKey(twincodeId);
+    }
+
+    public int getRequestCount() {
+
+        return mRequestCount;
+    }
+
+    /**
+     * Handle the packet sent by the client and return the response packet.
+     *
+     * @param packet the GetTwincodesIQ packet.
+     * @return the OnGetTwincodesIQ packet.
+     */
+    @NonNull
+    public byte[] handle(@NonNull byte[] packet) throws SerializerException {
+
+        final BinaryCompactDecoder decoder = new BinaryCompactDecoder(new ByteArrayInputStream(packet));
+        final UUID schemaId = decoder.readUUID();
+        final int schemaVersion = decoder.readInt();
+        if (!TwincodeOutboundServiceImpl.IQ_GET_TWINCODES_SERIALIZER.schemaId.equals(schemaId)
+                || TwincodeOutboundServiceImpl.IQ_GET_TWINCODES_SERIALIZER.schemaVersion != schemaVersion) {
+            throw new SerializerException("Unexpected schema " + schemaId + "." + schemaVersion);
+        }
+
+        mRequestCount++;
+        final GetTwincodesIQ request = (GetTwincodesIQ) TwincodeOutboundServiceImpl.IQ_GET_TWINCODES_SERIALIZER.deserialize(mSerializerFactory, decoder);
+        final List<UUID> unknownList = new ArrayList<>();
+        final List<GetTwincodeInfo> twincodeList = new ArrayList<>();
+        for (UUID twincodeId : request.getTwincodeList()) {
+            final GetTwincodeInfo twincode = mTwincodes.get(twincodeId);
+            if (twincode == null) {
+                unknownList.add(twincodeId);
+            } else {
+                twincodeList.add(twincode);
+            }
+        }
+
+        final OnGetTwincodesIQ response = new OnGetTwincodesIQ(TwincodeOutboundServiceImpl.IQ_ON_GET_TWINCODES_SERIALIZER,
+                request.getRequestId(), unknownList, twincodeList);
+        return response.serializeCompact(mSerializerFactory);
+    }
+}
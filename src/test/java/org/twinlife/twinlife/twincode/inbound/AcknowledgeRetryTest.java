@@ -0,0 +1,49 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.twincode.inbound;
+
+import org.junit.jupiter.api.Test;
+import org.twinlife.twinlife.twincode.inbound.TwincodeInboundServiceImpl.AcknowledgeRetry;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AcknowledgeRetryTest {
+
+    @Test
+    public void testAllSucceeded() {
+
+        final AcknowledgeRetry retry = new AcknowledgeRetry(3);
+        assertFalse(retry.succeeded());
+        assertFalse(retry.succeeded());
+
+        // The batch is disabled only when the last acknowledge is received.
+        assertTrue(retry.succeeded());
+    }
+
+    @Test
+    public void testOneFailed() {
+
+        final AcknowledgeRetry retry = new AcknowledgeRetry(3);
+        assertFalse(retry.succeeded());
+        retry.failed();
+        assertFalse(retry.succeeded());
+    }
+
+    @Test
+    public void testLastFailed() {
+
+        final AcknowledgeRetry retry = new AcknowledgeRetry(2);
+        assertFalse(retry.succeeded());
+        retry.failed();
+
+        // A late response for an acknowledge of the same batch does not disable the batch.
+        assertFalse(retry.succeeded());
+    }
+}
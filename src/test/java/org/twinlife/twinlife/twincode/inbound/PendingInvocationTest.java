@@ -0,0 +1,175 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.twincode.inbound;
+
+import androidx.annotation.NonNull;
+
+import org.junit.jupiter.api.Test;
+import org.twinlife.twinlife.RepositoryObject;
+import org.twinlife.twinlife.TrustMethod;
+import org.twinlife.twinlife.TwincodeInvocation;
+import org.twinlife.twinlife.twincode.inbound.TwincodeInboundServiceImpl.PendingInvocation;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PendingInvocationTest {
+
+    private static final RepositoryObject SUBJECT = (RepositoryObject) Proxy.newProxyInstance(RepositoryObject.class.getClassLoader(),
+            new Class<?>[] { RepositoryObject.class }, (proxy, method, args) -> null);
+
+    private final Object mLock = new Object();
+    private final List<UUID> mExecuted = Collections.synchronizedList(new ArrayList<>());
+
+    @NonNull
+    private static TwincodeInvocation createInvocation(@NonNull UUID invocationId) {
+
+        return new TwincodeInvocation(invocationId, SUBJECT, "test", null, null, 0, null, null, TrustMethod.NONE);
+    }
+
+    /**
+     * Same as TwincodeInboundServiceImpl.dispatchInvocation() when the decryption is finished.
+     */
+    private void dispatch(@NonNull PendingInvocation pendingInvocation, @NonNull TwincodeInvocation invocation,
+                          @NonNull ExecutorService executor) {
+
+        final boolean queued;
+        synchronized (mLock) {
+            queued = pendingInvocation.queue(invocation);
+        }
+        if (!queued) {
+            execute(pendingInvocation, invocation, executor);
+        }
+    }
+
+    /**
+     * Same as TwincodeInboundServiceImpl.executeInvocation() followed by finishInvocation() when the
+     * invocation is acknowledged.
+     */
+    private void execute(@NonNull PendingInvocation pendingInvocation, @NonNull TwincodeInvocation invocation,
+                         @NonNull ExecutorService executor) {
+
+        executor.execute(() -> {
+            mExecuted.add(invocation.invocationId);
+
+            final TwincodeInvocation next;
+            synchronized (mLock) {
+                next = pendingInvocation.finish(invocation.invocationId);
+            }
+            if (next != null) {
+                execute(pendingInvocation, next, executor);
+            }
+        });
+    }
+
+    @Test
+    public void testQueue() {
+
+        final UUID first = UUID.randomUUID();
+        final UUID second = UUID.randomUUID();
+        final UUID third = UUID.randomUUID();
+        final PendingInvocation pendingInvocation = new PendingInvocation(UUID.randomUUID(), first);
+        pendingInvocation.invocationList.add(second);
+        pendingInvocation.invocationList.add(third);
+
+        // The decryption of the third and second invocations finish first: they are queued.
+        final TwincodeInvocation thirdInvocation = createInvocation(third);
+        final TwincodeInvocation secondInvocation = createInvocation(second);
+        assertTrue(pendingInvocation.queue(thirdInvocation));
+        assertTrue(pendingInvocation.queue(secondInvocation));
+        assertNull(pendingInvocation.next());
+
+        // The first invocation is executed immediately and the others follow in the arrival order.
+        assertFalse(pendingInvocation.queue(createInvocation(first)));
+        assertEquals(secondInvocation, pendingInvocation.finish(first));
+        assertEquals(thirdInvocation, pendingInvocation.finish(second));
+        assertNull(pendingInvocation.finish(third));
+        assertTrue(pendingInvocation.invocationList.isEmpty());
+    }
+
+    @Test
+    public void testFinishBeforeDecrypt() {
+
+        final UUID first = UUID.randomUUID();
+        final UUID second = UUID.randomUUID();
+        final PendingInvocation pendingInvocation = new PendingInvocation(UUID.randomUUID(), first);
+        pendingInvocation.invocationList.add(second);
+
+        // The first invocation is finished while the second is still being decrypted.
+        assertFalse(pendingInvocation.queue(createInvocation(first)));
+        assertNull(pendingInvocation.finish(first));
+
+        // The second one is now first and is executed when its decryption is finished.
+        assertFalse(pendingInvocation.queue(createInvocation(second)));
+        assertNull(pendingInvocation.finish(second));
+    }
+
+    @Test
+    public void testOutOfOrderDecrypt() throws Exception {
+
+        final int count = 200;
+        final List<UUID> invocationIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            invocationIds.add(UUID.randomUUID());
+        }
+        final PendingInvocation pendingInvocation = new PendingInvocation(UUID.randomUUID(), invocationIds.get(0));
+        pendingInvocation.invocationList.addAll(invocationIds.subList(1, count));
+
+        // Decrypt on several threads with random delays so that the decryptions finish out of order,
+        // and execute on a single thread as the twinlife executor does.
+        final ExecutorService decryptExecutor = Executors.newFixedThreadPool(4);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch decrypted = new CountDownLatch(count);
+        final Random random = new Random(1);
+        try {
+            for (UUID invocationId : invocationIds) {
+                final int delay = random.nextInt(3);
+                decryptExecutor.execute(() -> {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                    }
+                    dispatch(pendingInvocation, createInvocation(invocationId), executor);
+                    decrypted.countDown();
+                });
+            }
+            assertTrue(decrypted.await(10, TimeUnit.SECONDS));
+
+            // Wait for the last invocation to be executed.
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (mExecuted.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+        } finally {
+            decryptExecutor.shutdownNow();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(invocationIds, mExecuted);
+        synchronized (mLock) {
+            assertTrue(pendingInvocation.invocationList.isEmpty());
+            assertTrue(pendingInvocation.waitingInvocations == null || pendingInvocation.waitingInvocations.isEmpty());
+        }
+    }
+}
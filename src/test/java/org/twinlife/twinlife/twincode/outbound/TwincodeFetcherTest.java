@@ -0,0 +1,368 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.twincode.outbound;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.jupiter.api.Test;
+import org.twinlife.twinlife.BaseService;
+import org.twinlife.twinlife.BaseService.ErrorCode;
+import org.twinlife.twinlife.TwincodeOutbound;
+import org.twinlife.twinlife.TwincodeOutboundService;
+import org.twinlife.twinlife.twincode.GetTwincodeInfo;
+import org.twinlife.twinlife.twincode.GetTwincodesIQ;
+import org.twinlife.twinlife.twincode.LocalTwincodeServer;
+import org.twinlife.twinlife.twincode.OnGetTwincodesIQ;
+import org.twinlife.twinlife.util.BinaryCompactDecoder;
+import org.twinlife.twinlife.util.SerializerFactoryImpl;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TwincodeFetcherTest {
+
+    private final SerializerFactoryImpl mSerializerFactory = new SerializerFactoryImpl();
+    private final LocalTwincodeServer mServer = new LocalTwincodeServer();
+
+    // The jobs scheduled by the fetcher and the responses received from the server.
+    private final List<Runnable> mScheduled = new ArrayList<>();
+    private final List<Runnable> mResponses = new ArrayList<>();
+
+    // What was sent and saved by the fetcher.
+    private final List<List<UUID>> mBatches = new ArrayList<>();
+    private final List<UUID> mSingles = new ArrayList<>();
+    private final List<Integer> mImports = new ArrayList<>();
+    private final Map<UUID, Long> mRefreshPeriods = new HashMap<>();
+    private final Set<UUID> mEvicted = new HashSet<>();
+
+    // The results received by the callers.
+    private final Map<UUID, List<ErrorCode>> mResults = new HashMap<>();
+
+    @Nullable
+    private ErrorCode mBatchError;
+    private boolean mSignIn = true;
+    private long mRequestId;
+
+    private final TwincodeFetcher mFetcher = new TwincodeFetcher(new TwincodeFetcher.Transport() {
+        @Override
+        public void schedule(@NonNull Runnable runnable, long delay) {
+
+            assertEquals(TwincodeFetcher.FETCH_TWINCODE_DELAY, delay);
+            mScheduled.add(runnable);
+        }
+
+        @Override
+        public void sendGetTwincodes(@NonNull List<UUID> twincodeIds) {
+
+            mBatches.add(twincodeIds);
+            final ErrorCode errorCode = mBatchError;
+            final boolean signIn = mSignIn;
+            if (errorCode != null) {
+                mResponses.add(() -> mFetcher.onGetTwincodesError(twincodeIds, errorCode, signIn));
+                return;
+            }
+
+            final OnGetTwincodesIQ response = getTwincodes(twincodeIds);
+            mResponses.add(() -> mFetcher.onGetTwincodes(twincodeIds, response.getTwincodeList(), response.getUnknownTwincodeList()));
+        }
+
+        @Override
+        public void sendGetTwincode(@NonNull UUID twincodeId) {
+
+            mSingles.add(twincodeId);
+            mResponses.add(() -> {
+                if (mServer.hasTwincode(twincodeId)) {
+                    // Same as onGetTwincode(): the refresh period is taken when the response is received.
+                    mRefreshPeriods.put(twincodeId, mFetcher.getRefreshPeriod(twincodeId));
+                    mFetcher.finish(twincodeId, ErrorCode.SUCCESS, createTwincode(twincodeId));
+                } else {
+                    mFetcher.finish(twincodeId, ErrorCode.ITEM_NOT_FOUND, null);
+                }
+            });
+        }
+
+        @Override
+        @Nullable
+        public Map<UUID, TwincodeOutbound> importTwincodes(@NonNull List<GetTwincodeInfo> twincodes,
+                                                           @NonNull Map<UUID, Long> refreshPeriods) {
+
+            mImports.add(twincodes.size());
+            final Map<UUID, TwincodeOutbound> result = new HashMap<>();
+            for (GetTwincodeInfo twincode : twincodes) {
+                final Long refreshPeriod = refreshPeriods.get(twincode.twincodeOutboundId);
+                if (refreshPeriod != null) {
+                    mRefreshPeriods.put(twincode.twincodeOutboundId, refreshPeriod);
+                    result.put(twincode.twincodeOutboundId, createTwincode(twincode.twincodeOutboundId));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void evictTwincode(@NonNull UUID twincodeId) {
+
+            mEvicted.add(twincodeId);
+        }
+    });
+
+    @NonNull
+    private static TwincodeOutbound createTwincode(@NonNull UUID twincodeId) {
+
+        return (TwincodeOutbound) Proxy.newProxyInstance(TwincodeOutbound.class.getClassLoader(),
+                new Class<?>[] { TwincodeOutbound.class },
+                (proxy, method, args) -> "getId".equals(method.getName()) ? twincodeId : null);
+    }
+
+    @NonNull
+    private OnGetTwincodesIQ getTwincodes(@NonNull List<UUID> twincodeIds) {
+
+        try {
+            final GetTwincodesIQ iq = new GetTwincodesIQ(TwincodeOutboundServiceImpl.IQ_GET_TWINCODES_SERIALIZER,
+                    ++mRequestId, twincodeIds);
+            final byte[] packet = mServer.handle(iq.serializeCompact(mSerializerFactory));
+            final BinaryCompactDecoder decoder = new BinaryCompactDecoder(new ByteArrayInputStream(packet));
+            assertEquals(TwincodeOutboundServiceImpl.IQ_ON_GET_TWINCODES_SERIALIZER.schemaId, decoder.readUUID());
+            assertEquals(TwincodeOutboundServiceImpl.IQ_ON_GET_TWINCODES_SERIALIZER.schemaVersion, decoder.readInt());
+            return (OnGetTwincodesIQ) TwincodeOutboundServiceImpl.IQ_ON_GET_TWINCODES_SERIALIZER.deserialize(mSerializerFactory, decoder);
+
+        } catch (Exception exception) {
+            throw new AssertionError(exception);
+        }
+    }
+
+    @NonNull
+    private List<UUID> addTwincodes(int count) {
+
+        final List<UUID> twincodeIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final UUID twincodeId = UUID.randomUUID();
+            final List<BaseService.AttributeNameValue> attributes = new ArrayList<>();
+            BaseService.AttributeNameStringValue.add(attributes, "name", "Twincode " + i);
+            mServer.addTwincode(twincodeId, 1000L + i, attributes);
+            twincodeIds.add(twincodeId);
+        }
+        return twincodeIds;
+    }
+
+    private void fetch(@NonNull UUID twincodeId, long refreshPeriod) {
+
+        mFetcher.fetch(twincodeId, refreshPeriod, (ErrorCode errorCode, TwincodeOutbound twincodeOutbound) -> {
+            if (errorCode == ErrorCode.SUCCESS) {
+                assertNotNull(twincodeOutbound);
+                assertEquals(twincodeId, twincodeOutbound.getId());
+            } else {
+                assertNull(twincodeOutbound);
+            }
+            List<ErrorCode> results = mResults.get(twincodeId);
+            if (results == null) {
+                results = new ArrayList<>();
+                mResults.put(twincodeId, results);
+            }
+            results.add(errorCode);
+        });
+    }
+
+    private void runScheduled() {
+
+        final List<Runnable> jobs = new ArrayList<>(mScheduled);
+        mScheduled.clear();
+        for (Runnable job : jobs) {
+            job.run();
+        }
+    }
+
+    private void receiveResponses() {
+
+        while (!mResponses.isEmpty()) {
+            mResponses.remove(0).run();
+        }
+    }
+
+    @Test
+    public void testFetchWhenIdle() {
+
+        final UUID twincodeId = addTwincodes(1).get(0);
+
+        // Nothing is being fetched: the twincode is requested immediately without waiting for the job.
+        fetch(twincodeId, TwincodeOutboundService.REFRESH_PERIOD);
+        assertEquals(Collections.singletonList(twincodeId), mSingles);
+        assertTrue(mScheduled.isEmpty());
+
+        receiveResponses();
+        assertEquals(Collections.singletonList(ErrorCode.SUCCESS), mResults.get(twincodeId));
+        assertNull(mFetcher.getRefreshPeriod(twincodeId));
+    }
+
+    @Test
+    public void testCoalesce() {
+
+        final List<UUID> twincodeIds = addTwincodes(3);
+        final UUID first = twincodeIds.get(0);
+
+        // The first twincode is sent immediately, the same twincode is not requested again
+        // and the other twincodes are queued for one GetTwincodesIQ.
+        fetch(first, TwincodeOutboundService.NO_REFRESH_PERIOD);
+        fetch(first, TwincodeOutboundService.LONG_REFRESH_PERIOD);
+        fetch(twincodeIds.get(1), TwincodeOutboundService.REFRESH_PERIOD);
+        fetch(twincodeIds.get(2), TwincodeOutboundService.NO_REFRESH_PERIOD);
+        fetch(twincodeIds.get(1), TwincodeOutboundService.LONG_REFRESH_PERIOD);
+        fetch(first, TwincodeOutboundService.REFRESH_PERIOD);
+        assertEquals(Collections.singletonList(first), mSingles);
+        assertEquals(1, mScheduled.size());
+
+        runScheduled();
+        assertEquals(Collections.singletonList(twincodeIds.subList(1, 3)), mBatches);
+
+        receiveResponses();
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(Collections.singletonList(2), mImports);
+        assertEquals(Arrays.asList(ErrorCode.SUCCESS, ErrorCode.SUCCESS, ErrorCode.SUCCESS), mResults.get(first));
+        assertEquals(Arrays.asList(ErrorCode.SUCCESS, ErrorCode.SUCCESS), mResults.get(twincodeIds.get(1)));
+        assertEquals(Collections.singletonList(ErrorCode.SUCCESS), mResults.get(twincodeIds.get(2)));
+
+        // The twincodes are imported with the longest refresh period of the callers.
+        assertEquals((Long) TwincodeOutboundService.LONG_REFRESH_PERIOD, mRefreshPeriods.get(first));
+        assertEquals((Long) TwincodeOutboundService.LONG_REFRESH_PERIOD, mRefreshPeriods.get(twincodeIds.get(1)));
+        assertEquals((Long) TwincodeOutboundService.NO_REFRESH_PERIOD, mRefreshPeriods.get(twincodeIds.get(2)));
+    }
+
+    @Test
+    public void testSplitBatch() {
+
+        final int count = 2 * TwincodeFetcher.MAX_FETCH_TWINCODES + 10;
+        final List<UUID> known = addTwincodes(count - 5);
+        final List<UUID> twincodeIds = new ArrayList<>(known);
+        final Set<UUID> unknown = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            final UUID twincodeId = UUID.randomUUID();
+            unknown.add(twincodeId);
+            twincodeIds.add(twincodeId);
+        }
+
+        // A first twincode is being fetched: the others are queued and sent by groups of MAX_FETCH_TWINCODES.
+        final UUID first = addTwincodes(1).get(0);
+        fetch(first, TwincodeOutboundService.REFRESH_PERIOD);
+        for (UUID twincodeId : twincodeIds) {
+            fetch(twincodeId, TwincodeOutboundService.REFRESH_PERIOD);
+        }
+        assertEquals(1, mScheduled.size());
+        runScheduled();
+
+        assertEquals(3, mBatches.size());
+        assertEquals(TwincodeFetcher.MAX_FETCH_TWINCODES, mBatches.get(0).size());
+        assertEquals(TwincodeFetcher.MAX_FETCH_TWINCODES, mBatches.get(1).size());
+        assertEquals(10, mBatches.get(2).size());
+        final List<UUID> sent = new ArrayList<>();
+        for (List<UUID> batch : mBatches) {
+            sent.addAll(batch);
+        }
+        assertEquals(twincodeIds, sent);
+
+        // Each response is imported with a single call and the unknown twincodes are evicted.
+        receiveResponses();
+        assertEquals(3, mServer.getRequestCount());
+        assertEquals(Arrays.asList(TwincodeFetcher.MAX_FETCH_TWINCODES, TwincodeFetcher.MAX_FETCH_TWINCODES, 5), mImports);
+        assertEquals(unknown, mEvicted);
+        for (UUID twincodeId : known) {
+            assertEquals(Collections.singletonList(ErrorCode.SUCCESS), mResults.get(twincodeId));
+        }
+        for (UUID twincodeId : unknown) {
+            assertEquals(Collections.singletonList(ErrorCode.ITEM_NOT_FOUND), mResults.get(twincodeId));
+        }
+        assertEquals(Collections.singletonList(ErrorCode.SUCCESS), mResults.get(first));
+    }
+
+    @Test
+    public void testFallbackWhenRejected() {
+
+        final List<UUID> twincodeIds = addTwincodes(6);
+
+        // The server does not know GetTwincodesIQ: the batch is sent again with one GetTwincodeIQ per twincode.
+        mBatchError = ErrorCode.BAD_REQUEST;
+        for (UUID twincodeId : twincodeIds.subList(0, 3)) {
+            fetch(twincodeId, TwincodeOutboundService.REFRESH_PERIOD);
+        }
+        runScheduled();
+        assertEquals(1, mBatches.size());
+        receiveResponses();
+        assertEquals(twincodeIds.subList(0, 3), mSingles);
+        assertTrue(mImports.isEmpty());
+        for (UUID twincodeId : twincodeIds.subList(0, 3)) {
+            assertEquals(Collections.singletonList(ErrorCode.SUCCESS), mResults.get(twincodeId));
+        }
+
+        // The next twincodes are fetched one by one without trying the batch again.
+        mSingles.clear();
+        mBatchError = null;
+        for (UUID twincodeId : twincodeIds.subList(3, 6)) {
+            fetch(twincodeId, TwincodeOutboundService.REFRESH_PERIOD);
+        }
+        runScheduled();
+        assertEquals(1, mBatches.size());
+        assertEquals(twincodeIds.subList(3, 6), mSingles);
+        receiveResponses();
+
+        // After a sign in, the batch is used again.
+        mFetcher.onSignIn();
+        final List<UUID> others = addTwincodes(3);
+        for (UUID twincodeId : others) {
+            fetch(twincodeId, TwincodeOutboundService.REFRESH_PERIOD);
+        }
+        runScheduled();
+        assertEquals(2, mBatches.size());
+        assertEquals(others.subList(1, 3), mBatches.get(1));
+        receiveResponses();
+        assertEquals(Collections.singletonList(2), mImports);
+    }
+
+    @Test
+    public void testBatchErrors() {
+
+        final List<UUID> twincodeIds = addTwincodes(6);
+
+        // A server error sends the batch again with GetTwincodeIQ but the next fetches still use the batch.
+        mBatchError = ErrorCode.SERVER_ERROR;
+        for (UUID twincodeId : twincodeIds.subList(0, 3)) {
+            fetch(twincodeId, TwincodeOutboundService.REFRESH_PERIOD);
+        }
+        runScheduled();
+        receiveResponses();
+        assertEquals(twincodeIds.subList(0, 3), mSingles);
+
+        // When we are disconnected, the error is reported to the callers.
+        mBatchError = ErrorCode.TWINLIFE_OFFLINE;
+        mSignIn = false;
+        for (UUID twincodeId : twincodeIds.subList(3, 6)) {
+            fetch(twincodeId, TwincodeOutboundService.REFRESH_PERIOD);
+        }
+        runScheduled();
+        assertEquals(2, mBatches.size());
+        assertEquals(twincodeIds.subList(4, 6), mBatches.get(1));
+        receiveResponses();
+        assertEquals(Collections.singletonList(ErrorCode.SUCCESS), mResults.get(twincodeIds.get(3)));
+        for (UUID twincodeId : twincodeIds.subList(4, 6)) {
+            assertEquals(Collections.singletonList(ErrorCode.TWINLIFE_OFFLINE), mResults.get(twincodeId));
+        }
+    }
+}
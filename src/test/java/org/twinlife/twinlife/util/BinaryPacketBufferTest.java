@@ -0,0 +1,125 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.util;
+
+import androidx.annotation.NonNull;
+
+import org.junit.jupiter.api.Test;
+import org.twinlife.twinlife.BaseService;
+import org.twinlife.twinlife.SerializerException;
+import org.twinlife.twinlife.twincode.GetTwincodeIQ;
+import org.twinlife.twinlife.twincode.InvokeTwincodeIQ;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinaryPacketBufferTest {
+
+    private static final int ITERATIONS = 100000;
+
+    private final SerializerFactoryImpl mSerializerFactory = new SerializerFactoryImpl();
+
+    @NonNull
+    private static List<BinaryPacketIQ> commonPackets() {
+
+        final List<BinaryPacketIQ> result = new ArrayList<>();
+        result.add(new BinaryPacketIQ(BinaryPacketIQ.createDefaultSerializer(UUID.randomUUID(), 1), 123L));
+        result.add(new GetTwincodeIQ(GetTwincodeIQ.createSerializer(UUID.randomUUID(), 2), 124L, UUID.randomUUID()));
+
+        final List<BaseService.AttributeNameValue> attributes = new ArrayList<>();
+        BaseService.AttributeNameStringValue.add(attributes, "name", "Some contact name");
+        BaseService.AttributeNameStringValue.add(attributes, "description", "A longer description of the contact");
+        result.add(new InvokeTwincodeIQ(InvokeTwincodeIQ.createSerializer(UUID.randomUUID(), 2), 125L,
+                0, UUID.randomUUID(), UUID.randomUUID(), "pair::invite", attributes, null, 0, 0L));
+        return result;
+    }
+
+    @Test
+    public void testSerialize() throws SerializerException {
+
+        for (BinaryPacketIQ iq : commonPackets()) {
+            final byte[] expect = iq.serializeCompact(mSerializerFactory);
+
+            final BinaryPacketBuffer buffer = BinaryPacketBuffer.acquire();
+            try {
+                iq.serializeCompact(mSerializerFactory, buffer);
+                assertArrayEquals(expect, buffer.toByteArray());
+            } finally {
+                buffer.release();
+            }
+
+            final ByteBuffer target = ByteBuffer.allocate(expect.length + 10);
+            target.position(10);
+            final int length = iq.serializeCompact(mSerializerFactory, target);
+            assertEquals(expect.length, length);
+            assertEquals(expect.length + 10, target.position());
+
+            final byte[] data = new byte[expect.length + 4];
+            assertEquals(expect.length, iq.serializeCompact(mSerializerFactory, data, 4, expect.length));
+            for (int i = 0; i < expect.length; i++) {
+                assertEquals(expect[i], data[i + 4]);
+                assertEquals(expect[i], target.get(i + 10));
+            }
+
+            // Caller-owned slice too small.
+            assertThrows(SerializerException.class, () -> iq.serializeCompact(mSerializerFactory, data, 0, expect.length - 1));
+        }
+    }
+
+    @Test
+    public void testNestedAcquire() {
+
+        final BinaryPacketBuffer first = BinaryPacketBuffer.acquire();
+        first.write(1);
+        final BinaryPacketBuffer second = BinaryPacketBuffer.acquire();
+        assertTrue(first != second);
+        second.write(2);
+        second.release();
+        assertEquals(1, first.size());
+        first.release();
+
+        final BinaryPacketBuffer third = BinaryPacketBuffer.acquire();
+        assertTrue(first == third);
+        assertEquals(0, third.size());
+        third.release();
+    }
+
+    @Test
+    public void testAllocationPerIQ() throws Exception {
+
+        for (BinaryPacketIQ iq : commonPackets()) {
+            final String name = iq.getClass().getSimpleName();
+
+            // Warmup.
+            for (int i = 0; i < ITERATIONS; i++) {
+                iq.serializeCompact(mSerializerFactory);
+                final BinaryPacketBuffer buffer = BinaryPacketBuffer.acquire();
+                iq.serializeCompact(mSerializerFactory, buffer);
+                buffer.release();
+            }
+
+            final Measure array = Measure.run(name + " serializeCompact", ITERATIONS, "IQ",
+                    () -> iq.serializeCompact(mSerializerFactory));
+            final Measure pooled = Measure.run(name + " pooled buffer", ITERATIONS, "IQ", () -> {
+                final BinaryPacketBuffer buffer = BinaryPacketBuffer.acquire();
+                iq.serializeCompact(mSerializerFactory, buffer);
+                buffer.release();
+            });
+
+            assertTrue(pooled.allocated <= array.allocated);
+        }
+    }
+}
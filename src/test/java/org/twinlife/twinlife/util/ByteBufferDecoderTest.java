@@ -0,0 +1,136 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.util;
+
+import androidx.annotation.NonNull;
+
+import org.junit.jupiter.api.Test;
+import org.twinlife.twinlife.BaseService;
+import org.twinlife.twinlife.Decoder;
+import org.twinlife.twinlife.SerializerException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ByteBufferDecoderTest {
+
+    private static final UUID ID = UUID.fromString("3a9ca7c4-6153-426d-b716-d81fd625293c");
+    private static final int ITERATIONS = 200000;
+
+    @NonNull
+    private static byte[] encode(boolean compact) throws SerializerException {
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final BinaryEncoder encoder = compact ? new BinaryCompactEncoder(outputStream) : new BinaryEncoder(outputStream);
+        final List<BaseService.AttributeNameValue> attributes = new ArrayList<>();
+        BaseService.AttributeNameStringValue.add(attributes, "name", "café ☕");
+
+        encoder.writeUUID(ID);
+        encoder.writeInt(-12345);
+        encoder.writeLong(Long.MAX_VALUE);
+        encoder.writeBoolean(true);
+        encoder.writeString("hello world");
+        encoder.writeString("été");
+        encoder.writeOptionalString(null);
+        encoder.writeOptionalUUID(ID);
+        encoder.writeDouble(3.14159);
+        encoder.writeData(new byte[] { 1, 2, 3, 4 });
+        encoder.writeOptionalBytes(new byte[] { 5, 6 });
+        encoder.writeAttributes(attributes);
+        return outputStream.toByteArray();
+    }
+
+    private static void check(@NonNull Decoder decoder) throws SerializerException {
+
+        assertEquals(ID, decoder.readUUID());
+        assertEquals(-12345, decoder.readInt());
+        assertEquals(Long.MAX_VALUE, decoder.readLong());
+        assertTrue(decoder.readBoolean());
+        assertEquals("hello world", decoder.readString());
+        assertEquals("été", decoder.readString());
+        assertNull(decoder.readOptionalString());
+        assertEquals(ID, decoder.readOptionalUUID());
+        assertEquals(3.14159, decoder.readDouble(), 0.0);
+
+        final ByteBuffer data = decoder.readBytes(null);
+        assertEquals(4, data.remaining());
+        assertEquals(1, data.get(0));
+        assertEquals(4, data.get(3));
+
+        final byte[] optional = decoder.readOptionalBytes(null);
+        assertNotNull(optional);
+        assertEquals(2, optional.length);
+        assertEquals(6, optional[1]);
+
+        final List<BaseService.AttributeNameValue> attributes = decoder.readAttributes();
+        assertNotNull(attributes);
+        assertEquals(1, attributes.size());
+        assertEquals("café ☕", attributes.get(0).value);
+        assertTrue(decoder.isEof());
+    }
+
+    @Test
+    public void testDecode() throws SerializerException {
+
+        for (boolean compact : new boolean[] { false, true }) {
+            final byte[] content = encode(compact);
+
+            check(new ByteBufferDecoder(ByteBuffer.wrap(content), compact));
+            check(new ByteBufferDecoder(ByteBuffer.wrap(content), compact, true));
+
+            final ByteBuffer direct = ByteBuffer.allocateDirect(content.length + 1);
+            direct.put((byte) 0);
+            direct.put(content);
+            direct.flip();
+            direct.get();
+            check(new ByteBufferDecoder(direct, compact));
+            check(new ByteBufferDecoder(direct, compact, true));
+            assertEquals(1, direct.position());
+        }
+    }
+
+    @Test
+    public void testTruncated() throws SerializerException {
+
+        final byte[] content = encode(true);
+        final ByteBufferDecoder decoder = new ByteBufferDecoder(ByteBuffer.wrap(content, 0, 10), true);
+        assertThrows(SerializerException.class, decoder::readUUID);
+        assertFalse(decoder.isEof());
+        assertEquals(0, decoder.getPosition());
+    }
+
+    @Test
+    public void testPerformance() throws Exception {
+
+        final byte[] content = encode(true);
+        final ByteBuffer buffer = ByteBuffer.wrap(content);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            check(new BinaryCompactDecoder(new ByteBufferInputStream(buffer.duplicate())));
+            check(new ByteBufferDecoder(buffer, true));
+        }
+
+        final Measure stream = Measure.run("BinaryCompactDecoder", ITERATIONS, "packet",
+                () -> check(new BinaryCompactDecoder(new ByteBufferInputStream(buffer.duplicate()))));
+        final Measure direct = Measure.run("ByteBufferDecoder", ITERATIONS, "packet",
+                () -> check(new ByteBufferDecoder(buffer, true)));
+
+        assertTrue(direct.allocated <= stream.allocated);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *  Copyright (c) 2025 twinlife SA.
+ *  SPDX-License-Identifier: AGPL-3.0-only
+ *
+ *  Contributors:
+ *   Stephane Carrez (Stephane.Carrez@twin.life)
+ */
+
+package org.twinlife.twinlife.util;
+
+import androidx.annotation.NonNull;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measure the time and the heap allocation of an operation executed by the current thread.
+ */
+public final class Measure {
+
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    public final long allocated;
+    public final long duration;
+
+    private Measure(long allocated, long duration) {
+
+        this.allocated = allocated;
+        this.duration = duration;
+    }
+
+    /**
+     * Execute the operation `count` times and report the measured allocation and time per operation.
+     *
+     * @param label the label to report.
+     * @param count the number of times the operation is executed.
+     * @param unit the name of one operation in the report.
+     * @param operation the operation to measure.
+     * @return the total allocated bytes and duration in nanoseconds.
+     */
+    @NonNull
+    public static Measure run(@NonNull String label, int count, @NonNull String unit,
+                              @NonNull Operation operation) throws Exception {
+
+        final long startAllocated = allocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            operation.run();
+        }
+        final long duration = System.nanoTime() - start;
+        final long allocated = allocatedBytes() - startAllocated;
+
+        System.out.println(label + ": " + (allocated / count) + " bytes/" + unit + " " + (duration / count) + " ns/" + unit);
+        return new Measure(allocated, duration);
+    }
+
+    private static long allocatedBytes() {
+
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}